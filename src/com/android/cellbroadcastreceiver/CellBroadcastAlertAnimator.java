@@ -0,0 +1,391 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.cellbroadcastreceiver;
+
+import static com.android.cellbroadcastreceiver.CellBroadcastReceiver.VDBG;
+
+import android.annotation.NonNull;
+import android.annotation.Nullable;
+import android.graphics.Color;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.Choreographer;
+import android.view.Display;
+import android.view.View;
+
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.io.PrintWriter;
+
+/**
+ * Animates the flashing warning icon and the pulsation of the background color of
+ * {@link CellBroadcastAlertDialog}.
+ *
+ * <p>Both animations run on one clock, which is paused while the screen is off or the dialog is
+ * hidden, so an alert left on screen for hours does not wake the device up to animate. The icon
+ * and the background only change a few times per second, so instead of running every frame, the
+ * animator asks {@link Choreographer} for the frame of the next change, and changes the view
+ * properties in that frame. The icon is flashed by its alpha, which does not redraw the icon.
+ *
+ * <p>Not thread safe, the animator must be used on the main thread.
+ */
+public class CellBroadcastAlertAnimator implements Choreographer.FrameCallback {
+
+    private static final String TAG = "CBAlertAnimator";
+
+    /** Length of time for the warning icon to be visible. */
+    @VisibleForTesting
+    public static final int WARNING_ICON_ON_DURATION_MSEC = 800;
+    /** Length of time for the warning icon to be off. */
+    @VisibleForTesting
+    public static final int WARNING_ICON_OFF_DURATION_MSEC = 800;
+
+    /** Default interval for the highlight color of the pulsation. */
+    private static final int PULSATION_ON_DURATION_MSEC = 1000;
+    /** Default interval for the normal color of the pulsation. */
+    private static final int PULSATION_OFF_DURATION_MSEC = 1000;
+    /** Max value for the interval of the color change. */
+    private static final int PULSATION_MAX_ON_OFF_DURATION_MSEC = 120000;
+    /** Default time for the pulsation */
+    private static final int PULSATION_DURATION_MSEC = 10000;
+    /** Max time for the pulsation */
+    private static final int PULSATION_MAX_DURATION_MSEC = 86400000;
+
+    /** Frame interval of a 60 Hz display, used until the display of the views is known. */
+    private static final long DEFAULT_FRAME_INTERVAL_NANOS = 1000000000L / 60;
+
+    private static final long NANOS_PER_MS = 1000000L;
+
+    // frames animated and frames dropped by all the animators of the process.
+    private static final Object sStatsLock = new Object();
+    private static long sFrames;
+    private static long sDroppedFrames;
+    private static long sMaxDroppedFrames;
+
+    private final Choreographer mChoreographer;
+    private long mFrameIntervalNanos = DEFAULT_FRAME_INTERVAL_NANOS;
+
+    // The clock of the animations is the uptime minus the time the animator has been paused.
+    private long mPausedTime;
+    private long mPausedAt;
+    private boolean mPaused;
+
+    /** Whether a frame is requested, and the uptime it is due in nanoseconds. */
+    private boolean mFrameScheduled;
+    private long mFrameDueNanos;
+
+    /** The View containing the warning icon, or null if the icon is not animated. */
+    @VisibleForTesting
+    public View mWarningIconView;
+    /** Warning icon state: visible == true, hidden == false. */
+    @VisibleForTesting
+    public boolean mWarningIconVisible;
+    /** The clock time the warning icon animation started. */
+    @VisibleForTesting
+    public long mIconStartTime;
+
+    @VisibleForTesting
+    public int mBackgroundColor = Color.TRANSPARENT;
+    @VisibleForTesting
+    public int mHighlightColor = Color.TRANSPARENT;
+    @VisibleForTesting
+    public int mOnInterval;
+    @VisibleForTesting
+    public int mOffInterval;
+    @VisibleForTesting
+    public int mDuration;
+    @VisibleForTesting
+    public boolean mIsPulsationOn;
+    /** The View whose background pulsates, or null if there is no pulsation. */
+    @VisibleForTesting
+    public View mLayout;
+    /** The clock time the pulsation started. */
+    @VisibleForTesting
+    public long mPulsationStartTime;
+
+    /** Create an animator running on the {@link Choreographer} of the current thread. */
+    public CellBroadcastAlertAnimator() {
+        mChoreographer = Choreographer.getInstance();
+    }
+
+    /**
+     * Start flashing the warning icon, starting with the icon visible.
+     *
+     * @param iconView the view of the icon
+     */
+    public void startIcon(@NonNull View iconView) {
+        mWarningIconView = iconView;
+        mWarningIconView.setVisibility(View.VISIBLE);
+        mWarningIconVisible = true;
+        mWarningIconView.setAlpha(1f);
+        mIconStartTime = getClockTime(SystemClock.uptimeMillis());
+        updateFrameInterval(iconView);
+        scheduleFrame();
+    }
+
+    /** Stop flashing the warning icon, leaving it as it is. */
+    public void stopIcon() {
+        mWarningIconView = null;
+        scheduleFrame();
+    }
+
+    /**
+     * Start the pulsation of the background color of a view.
+     *
+     * @param layout the view whose background pulsates
+     * @param pattern the highlight color, and optionally the duration of the pulsation, and
+     * the on and off intervals of the highlight color in milliseconds
+     */
+    public void startPulsation(@Nullable View layout, @Nullable int[] pattern) {
+        if (layout == null || pattern == null || pattern.length == 0) {
+            Log.d(TAG, layout == null ? "layout is null" : "no pulsation pattern");
+            return;
+        }
+        stopPulsation();
+
+        mLayout = layout;
+        Drawable bg = mLayout.getBackground();
+        if (bg instanceof ColorDrawable) {
+            mBackgroundColor = ((ColorDrawable) bg).getColor();
+        }
+
+        mHighlightColor = pattern[0];
+        mDuration = PULSATION_DURATION_MSEC;
+        if (pattern.length > 1) {
+            if (pattern[1] < 0 || pattern[1] > PULSATION_MAX_DURATION_MSEC) {
+                Log.wtf(TAG, "Invalid pulsation duration: " + pattern[1]);
+            } else {
+                mDuration = pattern[1];
+            }
+        }
+
+        mOnInterval = PULSATION_ON_DURATION_MSEC;
+        if (pattern.length > 2) {
+            if (pattern[2] < 0 || pattern[2] > PULSATION_MAX_ON_OFF_DURATION_MSEC) {
+                Log.wtf(TAG, "Invalid pulsation on interval: " + pattern[2]);
+            } else {
+                mOnInterval = pattern[2];
+            }
+        }
+
+        mOffInterval = PULSATION_OFF_DURATION_MSEC;
+        if (pattern.length > 3) {
+            if (pattern[3] < 0 || pattern[3] > PULSATION_MAX_ON_OFF_DURATION_MSEC) {
+                Log.wtf(TAG, "Invalid pulsation off interval: " + pattern[3]);
+            } else {
+                mOffInterval = pattern[3];
+            }
+        }
+
+        if (VDBG) {
+            Log.d(TAG, "start pulsation, highlight color=" + mHighlightColor
+                    + ", background color=" + mBackgroundColor
+                    + ", duration=" + mDuration
+                    + ", on=" + mOnInterval + ", off=" + mOffInterval);
+        }
+
+        mIsPulsationOn = false;
+        mPulsationStartTime = getClockTime(SystemClock.uptimeMillis());
+        updateFrameInterval(layout);
+        scheduleFrame();
+    }
+
+    /** Stop the pulsation, restoring the background color. */
+    public void stopPulsation() {
+        if (mLayout != null) {
+            mLayout.setBackgroundColor(mBackgroundColor);
+        }
+        mLayout = null;
+        mIsPulsationOn = false;
+        scheduleFrame();
+        if (VDBG) {
+            Log.d(TAG, "pulsation stopped");
+        }
+    }
+
+    /**
+     * Pause the animations, e.g. when the screen is off or the dialog is hidden. The clock of the
+     * animations stops until they are resumed.
+     */
+    public void pause() {
+        if (mPaused) {
+            return;
+        }
+        mPaused = true;
+        mPausedAt = SystemClock.uptimeMillis();
+        scheduleFrame();
+    }
+
+    /** Resume the animations where they were paused. */
+    public void resume() {
+        if (!mPaused) {
+            return;
+        }
+        mPaused = false;
+        mPausedTime += SystemClock.uptimeMillis() - mPausedAt;
+        scheduleFrame();
+    }
+
+    /** @return true if the animations are paused */
+    public boolean isPaused() {
+        return mPaused;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        mFrameScheduled = false;
+        long droppedFrames = Math.max(0, frameTimeNanos - mFrameDueNanos) / mFrameIntervalNanos;
+        synchronized (sStatsLock) {
+            sFrames++;
+            sDroppedFrames += droppedFrames;
+            sMaxDroppedFrames = Math.max(sMaxDroppedFrames, droppedFrames);
+        }
+        if (droppedFrames > 0 && VDBG) {
+            Log.d(TAG, "animation frame " + droppedFrames + " frames late");
+        }
+        // the frame might start a little before it was due, which must not miss the change.
+        long uptime = Math.max(frameTimeNanos, mFrameDueNanos) / NANOS_PER_MS;
+        if (!mPaused) {
+            update(getClockTime(uptime));
+        }
+        scheduleFrame();
+    }
+
+    /**
+     * Show the icon and the background as they are at a time of the clock.
+     *
+     * @param time the clock time in milliseconds
+     */
+    @VisibleForTesting
+    public void update(long time) {
+        if (mWarningIconView != null) {
+            boolean visible = isIconVisible(time - mIconStartTime);
+            if (visible != mWarningIconVisible) {
+                mWarningIconVisible = visible;
+                mWarningIconView.setAlpha(visible ? 1f : 0f);
+            }
+        }
+        if (mLayout != null) {
+            long elapsed = time - mPulsationStartTime;
+            if (elapsed >= mDuration) {
+                stopPulsation();
+            } else {
+                boolean on = isPulsationOn(elapsed);
+                if (on != mIsPulsationOn) {
+                    mIsPulsationOn = on;
+                    mLayout.setBackgroundColor(on ? mHighlightColor : mBackgroundColor);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param time the clock time in milliseconds
+     * @return the clock time of the next change of the icon or the background, or -1 if nothing
+     * is animated
+     */
+    @VisibleForTesting
+    public long getNextChangeTime(long time) {
+        long next = -1;
+        if (mWarningIconView != null) {
+            long period = WARNING_ICON_ON_DURATION_MSEC + WARNING_ICON_OFF_DURATION_MSEC;
+            long elapsed = time - mIconStartTime;
+            long phase = elapsed % period;
+            next = time - phase + (phase < WARNING_ICON_ON_DURATION_MSEC
+                    ? WARNING_ICON_ON_DURATION_MSEC : period);
+        }
+        if (mLayout != null) {
+            long elapsed = time - mPulsationStartTime;
+            long change = mPulsationStartTime + mDuration;
+            if (mOnInterval > 0 && mOffInterval > 0) {
+                long period = mOffInterval + mOnInterval;
+                long phase = elapsed % period;
+                change = Math.min(change, time - phase + (phase < mOffInterval
+                        ? mOffInterval : period));
+            }
+            next = next < 0 ? change : Math.min(next, change);
+        }
+        return next;
+    }
+
+    /**
+     * Dump how many frames were animated, and how many were dropped.
+     *
+     * @param writer the writer of the dump
+     */
+    public static void dump(@NonNull PrintWriter writer) {
+        synchronized (sStatsLock) {
+            writer.println("CellBroadcastAlertAnimator:");
+            writer.println("  frames=" + sFrames + " droppedFrames=" + sDroppedFrames
+                    + " maxDroppedFrames=" + sMaxDroppedFrames);
+        }
+    }
+
+    private static boolean isIconVisible(long elapsed) {
+        return elapsed % (WARNING_ICON_ON_DURATION_MSEC + WARNING_ICON_OFF_DURATION_MSEC)
+                < WARNING_ICON_ON_DURATION_MSEC;
+    }
+
+    /** The pulsation starts with the background color, and then highlights it. */
+    private boolean isPulsationOn(long elapsed) {
+        if (mOnInterval == 0) {
+            return false;
+        }
+        if (mOffInterval == 0) {
+            return true;
+        }
+        return elapsed % (mOffInterval + mOnInterval) >= mOffInterval;
+    }
+
+    /**
+     * @param uptime the uptime in milliseconds
+     * @return the clock time in milliseconds, which stays where it was paused while paused
+     */
+    @VisibleForTesting
+    public long getClockTime(long uptime) {
+        return (mPaused ? mPausedAt : uptime) - mPausedTime;
+    }
+
+    /** Request the frame of the next change, or cancel the requested frame if there is none. */
+    private void scheduleFrame() {
+        if (mFrameScheduled) {
+            mChoreographer.removeFrameCallback(this);
+            mFrameScheduled = false;
+        }
+        if (mPaused) {
+            return;
+        }
+        long uptime = SystemClock.uptimeMillis();
+        long next = getNextChangeTime(getClockTime(uptime));
+        if (next < 0) {
+            return;
+        }
+        long delay = Math.max(0, next + mPausedTime - uptime);
+        mFrameDueNanos = (uptime + delay) * NANOS_PER_MS;
+        mFrameScheduled = true;
+        mChoreographer.postFrameCallbackDelayed(this, delay);
+    }
+
+    private void updateFrameInterval(View view) {
+        Display display = view.getDisplay();
+        if (display != null && display.getRefreshRate() > 0) {
+            mFrameIntervalNanos = (long) (1000000000L / display.getRefreshRate());
+        }
+    }
+}
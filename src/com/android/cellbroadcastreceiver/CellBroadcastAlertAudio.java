@@ -45,15 +45,18 @@ import android.media.MediaPlayer;
 import android.media.MediaPlayer.OnCompletionListener;
 import android.media.MediaPlayer.OnErrorListener;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.IBinder;
-import android.os.Looper;
 import android.os.Message;
+import android.os.Process;
 import android.os.SystemClock;
+import android.os.Trace;
 import android.os.VibrationEffect;
 import android.os.Vibrator;
 import android.preference.PreferenceManager;
 import android.provider.Settings;
 import android.speech.tts.TextToSpeech;
+import android.speech.tts.UtteranceProgressListener;
 import android.telephony.PhoneStateListener;
 import android.telephony.SubscriptionManager;
 import android.telephony.TelephonyManager;
@@ -64,10 +67,19 @@ import com.android.cellbroadcastreceiver.CellBroadcastAlertService.AlertType;
 import com.android.internal.annotations.VisibleForTesting;
 
 import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Manages alert audio and vibration and text-to-speech. Runs as a service so that
  * it can continue to play if another activity overrides the CellBroadcastListActivity.
+ *
+ * <p>The tone, vibration, speech and LED flash are started and stopped on an audio thread of
+ * the service, so that the alert dialog started at the same time has the main thread to itself.
+ * Callbacks from other threads are posted to the audio thread. The service moves through the
+ * states idle, alerting, pausing, speaking and stopping, and only along the transitions
+ * allowed by {@link #isValidTransition}.
  */
 public class CellBroadcastAlertAudio extends Service implements TextToSpeech.OnInitListener,
         TextToSpeech.OnUtteranceCompletedListener, AudioManager.OnAudioFocusChangeListener {
@@ -105,6 +117,10 @@ public class CellBroadcastAlertAudio extends Service implements TextToSpeech.OnI
     public static final String ALERT_AUDIO_SUB_INDEX =
             "com.android.cellbroadcastreceiver.ALERT_AUDIO_SUB_INDEX";
 
+    /** Extra for the received time of the alert, which identifies its reminders. */
+    public static final String ALERT_AUDIO_RECEIVED_TIME =
+            "com.android.cellbroadcastreceiver.ALERT_AUDIO_RECEIVED_TIME";
+
     private static final String TTS_UTTERANCE_ID = "com.android.cellbroadcastreceiver.UTTERANCE_ID";
 
     /** Pause duration between alert sound and alert speech. */
@@ -122,15 +138,27 @@ public class CellBroadcastAlertAudio extends Service implements TextToSpeech.OnI
     /** Default delay for resent alert audio intent */
     private static final long DEFAULT_RESENT_DELAY_MSEC = 200L;
 
-    private int mState;
+    /** Time to wait at most for the audio thread to release the audio when destroyed. */
+    private static final long RELEASE_TIMEOUT_MSEC = 2000L;
+
+    private final AtomicInteger mState = new AtomicInteger(STATE_IDLE);
+    // Held while moving to STATE_STOPPING and stopping the service, so that a start is either
+    // resent because the service stops, or handled because the stop failed.
+    private final Object mStopLock = new Object();
 
     private TextToSpeech mTts;
     private boolean mTtsEngineReady;
+    // true if mTts is the engine kept warm by CellBroadcastSpeechEngine, which is not ours to shut
+    // down.
+    private boolean mTtsShared;
+    private long mTtsInitStartTime;
+    private volatile long mSpeakTime;
 
     private AlertType mAlertType;
     private String mMessageBody;
     private String mMessageLanguage;
     private int mSubId;
+    private long mReceivedTime;
     private boolean mTtsLanguageSupported;
     private boolean mEnableVibrate;
     private boolean mEnableAudio;
@@ -150,6 +178,7 @@ public class CellBroadcastAlertAudio extends Service implements TextToSpeech.OnI
     private AudioManager mAudioManager;
     private TelephonyManager mTelephonyManager;
     private int mInitialCallState;
+    // the start ID of the last intent handled on the audio thread.
     private int mStartId;
     private ScreenOffReceiver mScreenOffReceiver;
 
@@ -158,11 +187,36 @@ public class CellBroadcastAlertAudio extends Service implements TextToSpeech.OnI
     private static final int ALERT_PAUSE_FINISHED = 1001;
     private static final int ALERT_LED_FLASH_TOGGLE = 1002;
 
+    private HandlerThread mAudioThread;
+
     @VisibleForTesting
     public Handler mHandler;
 
     private PhoneStateListener mPhoneStateListener;
 
+    private final UtteranceProgressListener mUtteranceProgressListener =
+            new UtteranceProgressListener() {
+                @Override
+                public void onStart(String utteranceId) {
+                    if (TTS_UTTERANCE_ID.equals(utteranceId)) {
+                        CellBroadcastAlertLatency.getInstance().onStep(
+                                CellBroadcastAlertLatency.STEP_SPEECH_START,
+                                SystemClock.elapsedRealtime() - mSpeakTime);
+                    }
+                }
+
+                @Override
+                public void onDone(String utteranceId) {
+                    onUtteranceCompleted(utteranceId);
+                }
+
+                @Override
+                public void onError(String utteranceId) {
+                    // as the engine reports to an OnUtteranceCompletedListener.
+                    onUtteranceCompleted(utteranceId);
+                }
+            };
+
     /**
      * Callback from TTS engine after initialization.
      *
@@ -170,10 +224,17 @@ public class CellBroadcastAlertAudio extends Service implements TextToSpeech.OnI
      */
     @Override
     public void onInit(int status) {
+        mHandler.post(() -> handleTtsInit(status));
+    }
+
+    private void handleTtsInit(int status) {
         if (DBG) log("onInit() TTS engine status: " + status);
+        CellBroadcastAlertLatency.getInstance().onStep(
+                CellBroadcastAlertLatency.STEP_TTS_ENGINE_INIT,
+                SystemClock.elapsedRealtime() - mTtsInitStartTime);
         if (status == TextToSpeech.SUCCESS) {
             mTtsEngineReady = true;
-            mTts.setOnUtteranceCompletedListener(this);
+            mTts.setOnUtteranceProgressListener(mUtteranceProgressListener);
             // try to set the TTS language to match the broadcast
             setTtsLanguage();
         } else {
@@ -212,6 +273,10 @@ public class CellBroadcastAlertAudio extends Service implements TextToSpeech.OnI
      */
     @Override
     public void onUtteranceCompleted(String utteranceId) {
+        mHandler.post(() -> handleUtteranceCompleted(utteranceId));
+    }
+
+    private void handleUtteranceCompleted(String utteranceId) {
         if (utteranceId.equals(TTS_UTTERANCE_ID)) {
             // When we reach here, it could be TTS completed or TTS was cut due to another
             // new alert started playing. We don't want to stop the service in the later case.
@@ -228,7 +293,9 @@ public class CellBroadcastAlertAudio extends Service implements TextToSpeech.OnI
         mAudioManager = (AudioManager) getSystemService(Context.AUDIO_SERVICE);
         // Listen for incoming calls to kill the alarm.
         mTelephonyManager = ((TelephonyManager) getSystemService(Context.TELEPHONY_SERVICE));
-        mHandler = new Handler(Looper.getMainLooper()) {
+        mAudioThread = new HandlerThread(TAG, Process.THREAD_PRIORITY_AUDIO);
+        mAudioThread.start();
+        mHandler = new Handler(mAudioThread.getLooper()) {
             @Override
             public void handleMessage(Message msg) {
                 switch (msg.what) {
@@ -250,8 +317,7 @@ public class CellBroadcastAlertAudio extends Service implements TextToSpeech.OnI
                         }
                         // Set alert reminder depending on user preference
                         CellBroadcastAlertReminder.queueAlertReminder(getApplicationContext(),
-                                mSubId,
-                                true);
+                                mReceivedTime, mSubId, true);
                         break;
 
                     case ALERT_PAUSE_FINISHED:
@@ -263,6 +329,7 @@ public class CellBroadcastAlertAudio extends Service implements TextToSpeech.OnI
                             mTts.setAudioAttributes(getAlertAudioAttributes());
                             // Flush the text to speech queue
                             mTts.speak("", TextToSpeech.QUEUE_FLUSH, null, null);
+                            mSpeakTime = SystemClock.elapsedRealtime();
                             res = mTts.speak(mMessageBody, 2, null, TTS_UTTERANCE_ID);
                             mIsTextToSpeechSpeaking = true;
                             setState(STATE_SPEAKING);
@@ -287,7 +354,8 @@ public class CellBroadcastAlertAudio extends Service implements TextToSpeech.OnI
                 }
             }
         };
-        mPhoneStateListener = new PhoneStateListener() {
+        // call state changes are delivered on the audio thread.
+        mPhoneStateListener = new PhoneStateListener(command -> mHandler.post(command)) {
             @Override
             public void onCallStateChanged(int state, String ignored) {
                 // Stop the alert sound and speech if the call state changes.
@@ -304,13 +372,37 @@ public class CellBroadcastAlertAudio extends Service implements TextToSpeech.OnI
     @Override
     public void onDestroy() {
         setState(STATE_STOPPING);
-        // stop audio, vibration and TTS
         if (DBG) log("onDestroy");
-        stop();
         // Stop listening for incoming calls.
         mTelephonyManager.listen(mPhoneStateListener, LISTEN_NONE);
+        // stop audio, vibration and TTS on the audio thread after the intents queued so far,
+        // and wait for it, as nothing may play once the service is destroyed.
+        if (mHandler.getLooper().isCurrentThread()) {
+            release();
+        } else {
+            CountDownLatch released = new CountDownLatch(1);
+            boolean posted = mHandler.post(() -> {
+                release();
+                released.countDown();
+            });
+            try {
+                if (posted && !released.await(RELEASE_TIMEOUT_MSEC, TimeUnit.MILLISECONDS)) {
+                    loge("Timed out releasing the alert audio");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        mAudioThread.quitSafely();
+    }
+
+    private void release() {
+        stop();
         // shutdown TTS engine
-        if (mTts != null) {
+        if (mTts != null && mTtsShared) {
+            CellBroadcastSpeechEngine.getInstance().release(mTts);
+            mTts = null;
+        } else if (mTts != null) {
             try {
                 mTts.shutdown();
             } catch (IllegalStateException e) {
@@ -333,41 +425,67 @@ public class CellBroadcastAlertAudio extends Service implements TextToSpeech.OnI
 
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
+        long commandTime = SystemClock.elapsedRealtime();
         if (DBG) log("onStartCommand");
         // No intent, tell the system not to restart us.
         if (intent == null) {
             if (DBG) log("Null intent. Stop CellBroadcastAlertAudio service");
-            stopAlertAudioService();
+            stopAlertAudioService(startId);
             return START_NOT_STICKY;
         }
 
-        // Check if service stop is in progress
-        if (getState() == STATE_STOPPING) {
-            if (DBG) log("stop is in progress");
-            PendingIntent pi;
-            pi = PendingIntent.getService(this, 1 /*REQUEST_CODE_CONTENT_INTENT*/, intent,
-                    PendingIntent.FLAG_ONE_SHOT
-                            | PendingIntent.FLAG_UPDATE_CURRENT
-                            | PendingIntent.FLAG_IMMUTABLE);
-            AlarmManager alarmManager = getSystemService(AlarmManager.class);
-            if (alarmManager == null) {
-                loge("can't get Alarm Service");
-                return START_NOT_STICKY;
+        synchronized (mStopLock) {
+            // Check if service stop is in progress
+            if (getState() == STATE_STOPPING) {
+                if (DBG) log("stop is in progress");
+                PendingIntent pi;
+                pi = PendingIntent.getService(this, 1 /*REQUEST_CODE_CONTENT_INTENT*/, intent,
+                        PendingIntent.FLAG_ONE_SHOT
+                                | PendingIntent.FLAG_UPDATE_CURRENT
+                                | PendingIntent.FLAG_IMMUTABLE);
+                AlarmManager alarmManager = getSystemService(AlarmManager.class);
+                if (alarmManager == null) {
+                    loge("can't get Alarm Service");
+                    return START_NOT_STICKY;
+                }
+                if (DBG) log("resent intent");
+                // resent again
+                long triggerTime = SystemClock.elapsedRealtime() + DEFAULT_RESENT_DELAY_MSEC;
+                alarmManager.setExact(AlarmManager.ELAPSED_REALTIME_WAKEUP,
+                        triggerTime, pi);
+                return START_STICKY;
             }
-            if (DBG) log("resent intent");
-            // resent again
-            long triggerTime = SystemClock.elapsedRealtime() + DEFAULT_RESENT_DELAY_MSEC;
-            alarmManager.setExact(AlarmManager.ELAPSED_REALTIME_WAKEUP,
-                    triggerTime, pi);
-            return START_STICKY;
+            // Not stopping, so a stop of the audio thread from now on fails, as it stops an
+            // older start ID, and the intent is handled after it.
         }
 
-        mStartId = startId;
-        return handleStartIntent(intent);
+        mHandler.post(() -> {
+            mStartId = startId;
+            long startTime = SystemClock.elapsedRealtime();
+            Trace.beginSection("CBR.handleStartIntent");
+            try {
+                handleStartIntent(intent);
+            } finally {
+                Trace.endSection();
+            }
+            long endTime = SystemClock.elapsedRealtime();
+            CellBroadcastAlertLatency latency = CellBroadcastAlertLatency.getInstance();
+            latency.onStep(CellBroadcastAlertLatency.STEP_AUDIO_OFF_MAIN_THREAD,
+                    endTime - startTime);
+            if (getState() == STATE_ALERTING) {
+                latency.onStep(CellBroadcastAlertLatency.STEP_AUDIO_FIRST_SOUND,
+                        endTime - commandTime);
+            }
+        });
+        CellBroadcastAlertLatency.getInstance().onStep(
+                CellBroadcastAlertLatency.STEP_AUDIO_MAIN_THREAD,
+                SystemClock.elapsedRealtime() - commandTime);
+        // the alert stops the service itself if it has nothing to play.
+        return START_STICKY;
     }
 
     /**
-     * Handle the start intent
+     * Handle the start intent. Runs on the audio thread, except in tests.
      *
      * @param intent    the intent to start the service
      */
@@ -378,6 +496,8 @@ public class CellBroadcastAlertAudio extends Service implements TextToSpeech.OnI
         mMessageLanguage = intent.getStringExtra(ALERT_AUDIO_MESSAGE_LANGUAGE);
         mSubId = intent.getIntExtra(ALERT_AUDIO_SUB_INDEX,
                 SubscriptionManager.INVALID_SUBSCRIPTION_ID);
+        mReceivedTime = intent.getLongExtra(ALERT_AUDIO_RECEIVED_TIME,
+                CellBroadcastAlertReminder.ALERT_ID_UNKNOWN);
 
         SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
 
@@ -426,14 +546,31 @@ public class CellBroadcastAlertAudio extends Service implements TextToSpeech.OnI
 
         if (mMessageBody != null && mEnableAudio) {
             if (mTts == null) {
-                mTts = new TextToSpeech(this, this);
+                // borrow the engine kept warm if there is one, which saves its start.
+                mTts = CellBroadcastSpeechEngine.getInstance().acquire();
+                if (mTts != null) {
+                    mTtsShared = true;
+                    mTtsEngineReady = true;
+                    mTts.setOnUtteranceProgressListener(mUtteranceProgressListener);
+                    setTtsLanguage();
+                } else {
+                    mTtsInitStartTime = SystemClock.elapsedRealtime();
+                    mTts = new TextToSpeech(this, this);
+                }
             } else if (mTtsEngineReady) {
                 setTtsLanguage();
             }
         }
 
         if ((mEnableAudio || mEnableVibrate) && (mAlertType != AlertType.MUTE)) {
-            playAlertTone(mAlertType, mVibrationPattern);
+            Trace.beginSection("CBR.playAlertTone");
+            try {
+                playAlertTone(mAlertType, mVibrationPattern);
+            } finally {
+                Trace.endSection();
+            }
+            CellBroadcastAlertLatency.getInstance().onStage(
+                    CellBroadcastAlertLatency.STAGE_AUDIO_STARTED, intent);
         } else {
             if (DBG) log("No audio/vibrate playing. Stop CellBroadcastAlertAudio service");
             stopAlertAudioService();
@@ -503,7 +640,8 @@ public class CellBroadcastAlertAudio extends Service implements TextToSpeech.OnI
             // vibration.
             if (!res.getBoolean(R.bool.mute_by_physical_button)) {
                 mScreenOffReceiver = new ScreenOffReceiver(effect, attr);
-                registerReceiver(mScreenOffReceiver, new IntentFilter(Intent.ACTION_SCREEN_OFF));
+                registerReceiver(mScreenOffReceiver, new IntentFilter(Intent.ACTION_SCREEN_OFF),
+                        null /* broadcastPermission */, mHandler);
             }
         }
 
@@ -513,8 +651,25 @@ public class CellBroadcastAlertAudio extends Service implements TextToSpeech.OnI
         }
 
         if (mEnableAudio) {
-            // future optimization: reuse media player object
-            mMediaPlayer = mMediaPlayerInjected != null ? mMediaPlayerInjected : new MediaPlayer();
+            boolean isWatch = getPackageManager().hasSystemFeature(PackageManager.FEATURE_WATCH);
+            int toneRes = CellBroadcastAlertTonePool.getToneResource(alertType, isWatch);
+            // Take the tone prepared in the background if there is one, which saves opening and
+            // decoding the tone file before it starts.
+            MediaPlayer prepared = null;
+            if (mMediaPlayerInjected == null && toneRes != 0) {
+                try {
+                    prepared = CellBroadcastAlertTonePool.getInstance().acquire(res, toneRes,
+                            getAlertAudioAttributes());
+                } catch (Resources.NotFoundException e) {
+                    loge("Failed to find prepared alert tone: " + e);
+                }
+            }
+            if (prepared != null) {
+                mMediaPlayer = prepared;
+            } else {
+                mMediaPlayer = mMediaPlayerInjected != null ? mMediaPlayerInjected
+                        : new MediaPlayer();
+            }
             mMediaPlayer.setOnErrorListener(new OnErrorListener() {
                 public boolean onError(MediaPlayer mp, int what, int extra) {
                     loge("Error occurred while playing audio.");
@@ -536,36 +691,17 @@ public class CellBroadcastAlertAudio extends Service implements TextToSpeech.OnI
             }
 
             try {
-                log("Locale=" + res.getConfiguration().getLocales() + ", alertType=" + alertType);
-
-                // Load the tones based on type
-                switch (alertType) {
-                    case ETWS_EARTHQUAKE:
-                        setDataSourceFromResource(res, mMediaPlayer, R.raw.etws_earthquake);
-                        break;
-                    case ETWS_TSUNAMI:
-                        setDataSourceFromResource(res, mMediaPlayer, R.raw.etws_tsunami);
-                        break;
-                    case OTHER:
-                        setDataSourceFromResource(res, mMediaPlayer, R.raw.etws_other_disaster);
-                        break;
-                    case ETWS_DEFAULT:
-                        setDataSourceFromResource(res, mMediaPlayer, R.raw.etws_default);
-                        break;
-                    case INFO:
-                    case AREA:
-                        if (getPackageManager().hasSystemFeature(PackageManager.FEATURE_WATCH)) {
-                            //TODO(b/279183006): remove watch workaround when URI supported.
-                            setDataSourceFromResource(res, mMediaPlayer, R.raw.watch_info);
-                        } else {
-                            mMediaPlayer.setDataSource(this,
-                                    Settings.System.DEFAULT_NOTIFICATION_URI);
-                        }
-                        break;
-                    case TEST:
-                    case DEFAULT:
-                    default:
-                        setDataSourceFromResource(res, mMediaPlayer, R.raw.default_tone);
+                log("Locale=" + res.getConfiguration().getLocales() + ", alertType=" + alertType
+                        + ", prepared=" + (prepared != null));
+
+                // Load the tones based on type, unless the tone was prepared already
+                if (prepared == null) {
+                    if (toneRes != 0) {
+                        setDataSourceFromResource(res, mMediaPlayer, toneRes);
+                    } else {
+                        mMediaPlayer.setDataSource(this,
+                                Settings.System.DEFAULT_NOTIFICATION_URI);
+                    }
                 }
 
                 // Request audio focus (though we're going to play even if we don't get it). The
@@ -579,14 +715,18 @@ public class CellBroadcastAlertAudio extends Service implements TextToSpeech.OnI
                                         : AudioManager.STREAM_ALARM).build(),
                         AudioManager.AUDIOFOCUS_GAIN_TRANSIENT,
                         AudioManager.AUDIOFOCUS_FLAG_DELAY_OK);
-                mMediaPlayer.setAudioAttributes(getAlertAudioAttributes());
+                if (prepared == null) {
+                    mMediaPlayer.setAudioAttributes(getAlertAudioAttributes());
+                }
                 setAlertVolume();
 
                 // If we are using the custom alert duration, set looping to true so we can repeat
                 // the alert. The tone playing will stop when ALERT_SOUND_FINISHED arrives.
                 // Otherwise we just play the alert tone once.
                 mMediaPlayer.setLooping(customAlertDuration >= 0);
-                mMediaPlayer.prepare();
+                if (prepared == null) {
+                    mMediaPlayer.prepare();
+                }
                 // If the duration is specified by the config, stop playing the alert after
                 // the specified duration.
                 if (customAlertDuration >= 0) {
@@ -734,12 +874,24 @@ public class CellBroadcastAlertAudio extends Service implements TextToSpeech.OnI
      * Get audio attribute for the alarm.
      */
     private AudioAttributes getAlertAudioAttributes() {
+        return getAlertAudioAttributes(mAlertType, mOverrideDnd);
+    }
+
+    /**
+     * Get the audio attributes of the alert tone and speech.
+     *
+     * @param alertType the alert type
+     * @param overrideDnd true if the alert overrides do not disturb
+     * @return the audio attributes
+     */
+    public static AudioAttributes getAlertAudioAttributes(AlertType alertType,
+            boolean overrideDnd) {
         AudioAttributes.Builder builder = new AudioAttributes.Builder();
 
         builder.setContentType(AudioAttributes.CONTENT_TYPE_SONIFICATION);
-        builder.setUsage((mAlertType == AlertType.INFO || mAlertType == AlertType.AREA) ?
+        builder.setUsage((alertType == AlertType.INFO || alertType == AlertType.AREA) ?
                 AudioAttributes.USAGE_NOTIFICATION : AudioAttributes.USAGE_ALARM);
-        if (mOverrideDnd) {
+        if (overrideDnd) {
             // Set FLAG_BYPASS_INTERRUPTION_POLICY and FLAG_BYPASS_MUTE so that it enables
             // audio in any DnD mode, even in total silence DnD mode (requires MODIFY_PHONE_STATE).
 
@@ -816,28 +968,88 @@ public class CellBroadcastAlertAudio extends Service implements TextToSpeech.OnI
     }
 
     /**
-     * Stop CellBroadcastAlertAudio Service and set state to STATE_STOPPING
+     * Stop CellBroadcastAlertAudio Service and set state to STATE_STOPPING. Runs on the audio
+     * thread, which handled the intent of {@link #mStartId} last.
      */
     private boolean stopAlertAudioService() {
-        if (DBG) log("stopAlertAudioService, current state is " + getState());
-        boolean result = false;
-        if (getState() != STATE_STOPPING) {
-            setState(STATE_STOPPING);
-            result = stopSelfResult(mStartId);
-            if (DBG) log((result ? "Successful" : "Failed")
-                    + " to stop AlertAudioService[" + mStartId + "]");
+        return stopAlertAudioService(mStartId);
+    }
+
+    /**
+     * Stop CellBroadcastAlertAudio Service if no newer intent was started than the given one, and
+     * set state to STATE_STOPPING. Otherwise the service goes back to STATE_IDLE, and the newer
+     * intent is handled next.
+     *
+     * @param startId the start ID of the last intent handled
+     */
+    private boolean stopAlertAudioService(int startId) {
+        synchronized (mStopLock) {
+            if (DBG) log("stopAlertAudioService, current state is " + getState());
+            boolean result = false;
+            if (getState() != STATE_STOPPING) {
+                setState(STATE_STOPPING);
+                result = stopSelfResult(startId);
+                if (DBG) log((result ? "Successful" : "Failed")
+                        + " to stop AlertAudioService[" + startId + "]");
+                if (!result) {
+                    // the service keeps running for the newer start, so it is not stopping.
+                    mState.compareAndSet(STATE_STOPPING, STATE_IDLE);
+                }
+            }
+            return result;
         }
-        return result;
     }
 
     /**
-     * Set AlertAudioService state
+     * Move the service to another state, if the transition is allowed.
      *
-     * @param state service status
+     * @param state the new state
+     * @return true if the service is in the new state
      */
-    private synchronized void setState(int state) {
-        if (DBG) log("Set state from " + mState + " to " + state);
-        mState = state;
+    private boolean setState(int state) {
+        while (true) {
+            int current = mState.get();
+            if (current == state) {
+                return true;
+            }
+            if (!isValidTransition(current, state)) {
+                loge("Invalid state transition from " + current + " to " + state);
+                return false;
+            }
+            if (mState.compareAndSet(current, state)) {
+                if (DBG) log("Set state from " + current + " to " + state);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Whether the service can move from a state to another. Stopping is final, as the service
+     * is destroyed afterwards. Only a failed stop goes back to idle, see
+     * {@link #stopAlertAudioService(int)}.
+     *
+     * @param from the current state
+     * @param to the new state
+     * @return true if the transition is allowed
+     */
+    private static boolean isValidTransition(int from, int to) {
+        if (to == STATE_STOPPING) {
+            return from != STATE_STOPPING;
+        }
+        switch (from) {
+            case STATE_IDLE:
+                // the tone finished, and the speech follows after a pause.
+                return to == STATE_ALERTING || to == STATE_PAUSING;
+            case STATE_ALERTING:
+                return to == STATE_IDLE;
+            case STATE_PAUSING:
+                return to == STATE_SPEAKING || to == STATE_IDLE;
+            case STATE_SPEAKING:
+                return to == STATE_IDLE;
+            case STATE_STOPPING:
+            default:
+                return false;
+        }
     }
 
     /**
@@ -845,8 +1057,8 @@ public class CellBroadcastAlertAudio extends Service implements TextToSpeech.OnI
      * @return service status
      */
     @VisibleForTesting
-    public synchronized int getState() {
-        return mState;
+    public int getState() {
+        return mState.get();
     }
 
     /*
@@ -865,7 +1077,7 @@ public class CellBroadcastAlertAudio extends Service implements TextToSpeech.OnI
         @Override
         public void onReceive(Context context, Intent intent) {
             // Restart the vibration after screen off
-            if (mState == STATE_ALERTING) {
+            if (getState() == STATE_ALERTING) {
                 mVibrator.vibrate(mVibrationEffect, mAudioAttr);
             }
         }
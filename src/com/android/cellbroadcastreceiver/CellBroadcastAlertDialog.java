@@ -21,14 +21,11 @@ import static com.android.cellbroadcastservice.CellBroadcastMetrics.ERRSRC_CBR;
 import static com.android.cellbroadcastservice.CellBroadcastMetrics.ERRTYPE_ICONRESOURCE;
 import static com.android.cellbroadcastservice.CellBroadcastMetrics.ERRTYPE_STATUSBAR;
 
-import android.annotation.IntDef;
 import android.annotation.NonNull;
 import android.app.Activity;
 import android.app.AlertDialog;
 import android.app.KeyguardManager;
 import android.app.NotificationManager;
-import android.app.PendingIntent;
-import android.app.RemoteAction;
 import android.app.StatusBarManager;
 import android.content.BroadcastReceiver;
 import android.content.ClipData;
@@ -39,24 +36,17 @@ import android.content.IntentFilter;
 import android.content.SharedPreferences;
 import android.content.res.Configuration;
 import android.content.res.Resources;
-import android.graphics.Color;
 import android.graphics.Point;
-import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Drawable;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
 import android.os.PowerManager;
+import android.os.SystemClock;
 import android.preference.PreferenceManager;
 import android.provider.Telephony;
 import android.telephony.SmsCbCmasInfo;
 import android.telephony.SmsCbMessage;
-import android.text.Spannable;
-import android.text.SpannableString;
-import android.text.TextUtils;
-import android.text.method.LinkMovementMethod;
-import android.text.style.ClickableSpan;
-import android.text.util.Linkify;
 import android.util.Log;
 import android.view.Display;
 import android.view.Gravity;
@@ -64,13 +54,9 @@ import android.view.KeyEvent;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
 import android.view.Window;
 import android.view.WindowManager;
-import android.view.textclassifier.TextClassification;
-import android.view.textclassifier.TextClassification.Request;
-import android.view.textclassifier.TextClassifier;
-import android.view.textclassifier.TextLinks;
-import android.view.textclassifier.TextLinks.TextLink;
 import android.widget.ImageView;
 import android.widget.TextView;
 import android.widget.Toast;
@@ -78,15 +64,11 @@ import android.widget.Toast;
 import com.android.cellbroadcastreceiver.CellBroadcastChannelManager.CellBroadcastChannelRange;
 import com.android.internal.annotations.VisibleForTesting;
 
-import java.lang.annotation.Retention;
-import java.lang.annotation.RetentionPolicy;
 import java.lang.reflect.Method;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.Locale;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -105,82 +87,25 @@ public class CellBroadcastAlertDialog extends Activity {
     //  without acknowledging the dialog
     static final String FROM_SAVE_STATE_NOTIFICATION_EXTRA = "from_save_state_notification";
 
-    /** Not link any text. */
-    private static final int LINK_METHOD_NONE = 0;
-
-    private static final String LINK_METHOD_NONE_STRING = "none";
-
-    /** Use {@link android.text.util.Linkify} to generate links. */
-    private static final int LINK_METHOD_LEGACY_LINKIFY = 1;
-
-    private static final String LINK_METHOD_LEGACY_LINKIFY_STRING = "legacy_linkify";
-
-    /**
-     * Use the machine learning based {@link TextClassifier} to generate links. Will fallback to
-     * {@link #LINK_METHOD_LEGACY_LINKIFY} if not enabled.
-     */
-    private static final int LINK_METHOD_SMART_LINKIFY = 2;
-
-    private static final String LINK_METHOD_SMART_LINKIFY_STRING = "smart_linkify";
-
-    /**
-     * Use the machine learning based {@link TextClassifier} to generate links but hiding copy
-     * option. Will fallback to
-     * {@link #LINK_METHOD_LEGACY_LINKIFY} if not enabled.
-     */
-    private static final int LINK_METHOD_SMART_LINKIFY_NO_COPY = 3;
-
-    private static final String LINK_METHOD_SMART_LINKIFY_NO_COPY_STRING = "smart_linkify_no_copy";
-
-
-    /**
-     * Text link method
-     * @hide
-     */
-    @Retention(RetentionPolicy.SOURCE)
-    @IntDef(prefix = "LINK_METHOD_",
-            value = {LINK_METHOD_NONE, LINK_METHOD_LEGACY_LINKIFY,
-                    LINK_METHOD_SMART_LINKIFY, LINK_METHOD_SMART_LINKIFY_NO_COPY})
-    private @interface LinkMethod {}
-
-
     /** List of cell broadcast messages to display (oldest to newest). */
     protected ArrayList<SmsCbMessage> mMessageList;
 
     /** Whether a CMAS alert other than Presidential Alert was displayed. */
     private boolean mShowOptOutDialog;
 
-    /** Length of time for the warning icon to be visible. */
-    private static final int WARNING_ICON_ON_DURATION_MSEC = 800;
-
-    /** Length of time for the warning icon to be off. */
-    private static final int WARNING_ICON_OFF_DURATION_MSEC = 800;
-
-    /** Default interval for the highlight color of the pulsation. */
-    private static final int PULSATION_ON_DURATION_MSEC = 1000;
-    /** Default interval for the normal color of the pulsation. */
-    private static final int PULSATION_OFF_DURATION_MSEC = 1000;
-    /** Max value for the interval of the color change. */
-    private static final int PULSATION_MAX_ON_OFF_DURATION_MSEC = 120000;
-    /** Default time for the pulsation */
-    private static final int PULSATION_DURATION_MSEC = 10000;
-    /** Max time for the pulsation */
-    private static final int PULSATION_MAX_DURATION_MSEC = 86400000;
+    /** Animator of the flashing warning icon and the pulsation of the background color. */
+    @VisibleForTesting
+    public CellBroadcastAlertAnimator mAnimator = new CellBroadcastAlertAnimator();
 
-    /** Length of time to keep the screen turned on. */
-    private static final int KEEP_SCREEN_ON_DURATION_MSEC = 60000;
+    /** The warning icon Drawable. */
+    private Drawable mWarningIcon;
 
-    /** Animation handler for the flashing warning icon (emergency alerts only). */
-    @VisibleForTesting
-    public AnimationHandler mAnimationHandler = new AnimationHandler();
+    /** The View containing the warning icon. */
+    private ImageView mWarningIconView;
 
     /** Handler to add and remove screen on flags for emergency alerts. */
     private final ScreenOffHandler mScreenOffHandler = new ScreenOffHandler();
 
-    /** Pulsation handler for the alert background color. */
-    @VisibleForTesting
-    public PulsationHandler mPulsationHandler = new PulsationHandler();
-
     // Show the opt-out dialog
     private AlertDialog mOptOutDialog;
 
@@ -193,107 +118,11 @@ public class CellBroadcastAlertDialog extends Activity {
         public void onReceive(Context context, Intent intent){
             Log.d(TAG, "onSreenOff: remove FLAG_TURN_SCREEN_ON flag");
             getWindow().clearFlags(WindowManager.LayoutParams.FLAG_TURN_SCREEN_ON);
+            // nobody sees the animations until the dialog is resumed.
+            mAnimator.pause();
         }
     };
 
-    /**
-     * Animation handler for the flashing warning icon (emergency alerts only).
-     */
-    @VisibleForTesting
-    public class AnimationHandler extends Handler {
-        /** Latest {@code message.what} value for detecting old messages. */
-        @VisibleForTesting
-        public final AtomicInteger mCount = new AtomicInteger();
-
-        /** Warning icon state: visible == true, hidden == false. */
-        @VisibleForTesting
-        public boolean mWarningIconVisible;
-
-        /** The warning icon Drawable. */
-        private Drawable mWarningIcon;
-
-        /** The View containing the warning icon. */
-        private ImageView mWarningIconView;
-
-        /** Package local constructor (called from outer class). */
-        AnimationHandler() {}
-
-        /** Start the warning icon animation. */
-        @VisibleForTesting
-        public void startIconAnimation(int subId) {
-            if (!initDrawableAndImageView(subId)) {
-                return;     // init failure
-            }
-            mWarningIconVisible = true;
-            mWarningIconView.setVisibility(View.VISIBLE);
-            updateIconState();
-            queueAnimateMessage();
-        }
-
-        /** Stop the warning icon animation. */
-        @VisibleForTesting
-        public void stopIconAnimation() {
-            // Increment the counter so the handler will ignore the next message.
-            mCount.incrementAndGet();
-        }
-
-        /** Update the visibility of the warning icon. */
-        private void updateIconState() {
-            mWarningIconView.setImageAlpha(mWarningIconVisible ? 255 : 0);
-            mWarningIconView.invalidateDrawable(mWarningIcon);
-        }
-
-        /** Queue a message to animate the warning icon. */
-        private void queueAnimateMessage() {
-            int msgWhat = mCount.incrementAndGet();
-            sendEmptyMessageDelayed(msgWhat, mWarningIconVisible ? WARNING_ICON_ON_DURATION_MSEC
-                    : WARNING_ICON_OFF_DURATION_MSEC);
-        }
-
-        @Override
-        public void handleMessage(Message msg) {
-            if (msg.what == mCount.get()) {
-                mWarningIconVisible = !mWarningIconVisible;
-                updateIconState();
-                queueAnimateMessage();
-            }
-        }
-
-        /**
-         * Initialize the Drawable and ImageView fields.
-         *
-         * @param subId Subscription index
-         *
-         * @return true if successful; false if any field failed to initialize
-         */
-        private boolean initDrawableAndImageView(int subId) {
-            if (mWarningIcon == null) {
-                try {
-                    mWarningIcon = CellBroadcastSettings.getResourcesByOperator(
-                            getApplicationContext(), subId,
-                            CellBroadcastReceiver
-                                    .getRoamingOperatorSupported(getApplicationContext()))
-                            .getDrawable(R.drawable.ic_warning_googred);
-                } catch (Resources.NotFoundException e) {
-                    CellBroadcastReceiverMetrics.getInstance().logModuleError(
-                            ERRSRC_CBR, ERRTYPE_ICONRESOURCE);
-                    Log.e(TAG, "warning icon resource not found", e);
-                    return false;
-                }
-            }
-            if (mWarningIconView == null) {
-                mWarningIconView = (ImageView) findViewById(R.id.icon);
-                if (mWarningIconView != null) {
-                    mWarningIconView.setImageDrawable(mWarningIcon);
-                } else {
-                    Log.e(TAG, "failed to get ImageView for warning icon");
-                    return false;
-                }
-            }
-            return true;
-        }
-    }
-
     /**
      * Handler to add {@code FLAG_KEEP_SCREEN_ON} for emergency alerts. After a short delay,
      * remove the flag so the screen can turn off to conserve the battery.
@@ -306,16 +135,9 @@ public class CellBroadcastAlertDialog extends Activity {
         ScreenOffHandler() {}
 
         /** Add screen on window flags and queue a delayed message to remove them later. */
-        void startScreenOnTimer(@NonNull SmsCbMessage message) {
+        void startScreenOnTimer(@NonNull CellBroadcastAlertDisplayModel model) {
             // if screenOnDuration in milliseconds. if set to 0, do not turn screen on.
-            int screenOnDuration = KEEP_SCREEN_ON_DURATION_MSEC;
-            CellBroadcastChannelManager channelManager = new CellBroadcastChannelManager(
-                    getApplicationContext(), message.getSubscriptionId());
-            CellBroadcastChannelRange range = channelManager
-                    .getCellBroadcastChannelRangeFromMessage(message);
-            if (range!= null) {
-                screenOnDuration = range.mScreenOnDuration;
-            }
+            int screenOnDuration = model.getScreenOnDuration();
             if (screenOnDuration == 0) {
                 Log.d(TAG, "screenOnDuration set to 0, do not turn screen on");
                 return;
@@ -360,130 +182,6 @@ public class CellBroadcastAlertDialog extends Activity {
         }
     }
 
-    /**
-     * Pulsation handler for the alert window background color.
-     */
-    @VisibleForTesting
-    public static class PulsationHandler extends Handler {
-        /** Latest {@code message.what} value for detecting old messages. */
-        @VisibleForTesting
-        public final AtomicInteger mCount = new AtomicInteger();
-
-        @VisibleForTesting
-        public int mBackgroundColor = Color.TRANSPARENT;
-        @VisibleForTesting
-        public int mHighlightColor = Color.TRANSPARENT;
-        @VisibleForTesting
-        public int mOnInterval;
-        @VisibleForTesting
-        public int mOffInterval;
-        @VisibleForTesting
-        public int mDuration;
-        @VisibleForTesting
-        public boolean mIsPulsationOn;
-        @VisibleForTesting
-        public View mLayout;
-
-        /** Package local constructor (called from outer class). */
-        PulsationHandler() {
-        }
-
-        /** Start the pulsation. */
-        @VisibleForTesting
-        public void start(View layout, int[] pattern) {
-            if (layout == null || pattern == null || pattern.length == 0) {
-                Log.d(TAG, layout == null ? "layout is null" : "no pulsation pattern");
-                return;
-            }
-
-            post(() -> {
-                mLayout = layout;
-                Drawable bg = mLayout.getBackground();
-                if (bg instanceof ColorDrawable) {
-                    mBackgroundColor = ((ColorDrawable) bg).getColor();
-                }
-
-                mHighlightColor = pattern[0];
-                mDuration = PULSATION_DURATION_MSEC;
-                if (pattern.length > 1) {
-                    if (pattern[1] < 0 || pattern[1] > PULSATION_MAX_DURATION_MSEC) {
-                        Log.wtf(TAG, "Invalid pulsation duration: " + pattern[1]);
-                    } else {
-                        mDuration = pattern[1];
-                    }
-                }
-
-                mOnInterval = PULSATION_ON_DURATION_MSEC;
-                if (pattern.length > 2) {
-                    if (pattern[2] < 0 || pattern[2] > PULSATION_MAX_ON_OFF_DURATION_MSEC) {
-                        Log.wtf(TAG, "Invalid pulsation on interval: " + pattern[2]);
-                    } else {
-                        mOnInterval = pattern[2];
-                    }
-                }
-
-                mOffInterval = PULSATION_OFF_DURATION_MSEC;
-                if (pattern.length > 3) {
-                    if (pattern[3] < 0 || pattern[3] > PULSATION_MAX_ON_OFF_DURATION_MSEC) {
-                        Log.wtf(TAG, "Invalid pulsation off interval: " + pattern[3]);
-                    } else {
-                        mOffInterval = pattern[3];
-                    }
-                }
-
-                if (VDBG) {
-                    Log.d(TAG, "start pulsation, highlight color=" + mHighlightColor
-                            + ", background color=" + mBackgroundColor
-                            + ", duration=" + mDuration
-                            + ", on=" + mOnInterval + ", off=" + mOffInterval);
-                }
-
-                mCount.set(0);
-                queuePulsationMessage();
-                postDelayed(() -> onPulsationStopped(), mDuration);
-            });
-        }
-
-        /** Stop the pulsation. */
-        @VisibleForTesting
-        public void stop() {
-            post(() -> onPulsationStopped());
-        }
-
-        private void onPulsationStopped() {
-            // Increment the counter so the handler will ignore the next message.
-            mCount.incrementAndGet();
-            if (mLayout != null) {
-                mLayout.setBackgroundColor(mBackgroundColor);
-            }
-            mLayout = null;
-            mIsPulsationOn = false;
-            if (VDBG) {
-                Log.d(TAG, "pulsation stopped");
-            }
-        }
-
-        /** Queue a message to pulsate the background color of the alert. */
-        private void queuePulsationMessage() {
-            int msgWhat = mCount.incrementAndGet();
-            sendEmptyMessageDelayed(msgWhat, mIsPulsationOn ? mOnInterval : mOffInterval);
-        }
-
-        @Override
-        public void handleMessage(Message msg) {
-            if (mLayout == null) {
-                return;
-            }
-
-            if (msg.what == mCount.get()) {
-                mIsPulsationOn = !mIsPulsationOn;
-                mLayout.setBackgroundColor(mIsPulsationOn ? mHighlightColor
-                        : mBackgroundColor);
-                queuePulsationMessage();
-            }
-        }
-    }
-
     Comparator<SmsCbMessage> mPriorityBasedComparator = (Comparator) (o1, o2) -> {
         boolean isPresidentialAlert1 =
                 ((SmsCbMessage) o1).isCmasMessage()
@@ -511,6 +209,9 @@ public class CellBroadcastAlertDialog extends Activity {
             dismissAllFromNotification(getIntent());
             return;
         }
+        CellBroadcastAlertLatency.getInstance().onStage(
+                CellBroadcastAlertLatency.STAGE_DIALOG_CREATED, getIntent());
+        final long createTime = SystemClock.elapsedRealtime();
 
         final Window win = getWindow();
 
@@ -569,22 +270,20 @@ public class CellBroadcastAlertDialog extends Activity {
                 return;
             }
 
-            CellBroadcastChannelManager channelManager = new CellBroadcastChannelManager(
-                    this, message.getSubscriptionId());
-            if (channelManager.isEmergencyMessage(message)) {
+            // Usually prepared by CellBroadcastAlertService while the dialog was launched.
+            CellBroadcastAlertDisplayModel model = CellBroadcastAlertDisplayModel.get(
+                    getApplicationContext(), message);
+            if (model.isEmergency()) {
                 Log.d(TAG, "onCreate setting screen on timer for emergency alert for sub "
                         + message.getSubscriptionId());
-                mScreenOffHandler.startScreenOnTimer(message);
+                mScreenOffHandler.startScreenOnTimer(model);
             }
 
             setFinishAlertOnTouchOutside();
 
             updateAlertText(message);
 
-            Resources res = CellBroadcastSettings.getResourcesByOperator(getApplicationContext(),
-                    message.getSubscriptionId(),
-                    CellBroadcastReceiver.getRoamingOperatorSupported(getApplicationContext()));
-            if (res.getBoolean(R.bool.enable_text_copy)) {
+            if (model.isTextCopyEnabled()) {
                 TextView textView = findViewById(R.id.message);
                 if (textView != null) {
                     textView.setOnLongClickListener(v -> copyMessageToClipboard(message,
@@ -592,12 +291,13 @@ public class CellBroadcastAlertDialog extends Activity {
                 }
             }
 
-            if (res.getBoolean(R.bool.disable_capture_alert_dialog)) {
+            if (model.isCaptureDisabled()) {
                 getWindow().addFlags(WindowManager.LayoutParams.FLAG_SECURE);
             }
-            startPulsatingAsNeeded(channelManager
-                    .getCellBroadcastChannelRangeFromMessage(message));
+            startPulsatingAsNeeded(model);
         }
+        CellBroadcastAlertLatency.getInstance().onStep(CellBroadcastAlertLatency.STEP_DIALOG_BIND,
+                SystemClock.elapsedRealtime() - createTime);
     }
 
     @Override
@@ -615,19 +315,20 @@ public class CellBroadcastAlertDialog extends Activity {
     @VisibleForTesting
     public void onResume() {
         super.onResume();
+        // only the first time the alert is shown counts, not when the dialog is resumed later.
+        if (getIntent() != null) {
+            CellBroadcastAlertLatency.getInstance().onStage(
+                    CellBroadcastAlertLatency.STAGE_DIALOG_SHOWN, getIntent());
+            onFirstFrame(CellBroadcastAlertLatency.getReceiveTime(getIntent()));
+            getIntent().removeExtra(CellBroadcastAlertLatency.EXTRA_RECEIVE_TIME);
+        }
         setWindowBottom();
         setMaxHeightScrollView();
+        mAnimator.resume();
         SmsCbMessage message = getLatestMessage();
-        if (message != null) {
-            int subId = message.getSubscriptionId();
-            CellBroadcastChannelManager channelManager = new CellBroadcastChannelManager(this,
-                    subId);
-            CellBroadcastChannelRange range = channelManager
-                    .getCellBroadcastChannelRangeFromMessage(message);
-            if (channelManager.isEmergencyMessage(message)
-                    && (range!= null && range.mDisplayIcon)) {
-                mAnimationHandler.startIconAnimation(subId);
-            }
+        if (message != null && CellBroadcastAlertDisplayModel.get(getApplicationContext(),
+                message).isIconDisplayed()) {
+            startIconAnimation(message.getSubscriptionId());
         }
         // Some LATAM carriers mandate to disable navigation bars, quick settings etc when alert
         // dialog is showing. This is to make sure users to ack the alert before switching to
@@ -636,13 +337,13 @@ public class CellBroadcastAlertDialog extends Activity {
     }
 
     /**
-     * Stop animating warning icon.
+     * Pause animating warning icon and the pulsation.
      */
     @Override
     @VisibleForTesting
     public void onPause() {
         Log.d(TAG, "onPause called");
-        mAnimationHandler.stopIconAnimation();
+        mAnimator.pause();
         setStatusBarDisabledIfNeeded(false);
         super.onPause();
     }
@@ -697,6 +398,28 @@ public class CellBroadcastAlertDialog extends Activity {
         }
     }
 
+    /**
+     * Record the latency of the first frame of the dialog.
+     *
+     * @param receiveTime the time at which the shown alert was received, or -1 if unknown
+     */
+    private void onFirstFrame(long receiveTime) {
+        if (receiveTime < 0) {
+            return;
+        }
+        final ViewTreeObserver observer = getWindow().getDecorView().getViewTreeObserver();
+        observer.addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                observer.removeOnPreDrawListener(this);
+                CellBroadcastAlertLatency.getInstance().onStage(
+                        CellBroadcastAlertLatency.STAGE_DIALOG_FIRST_FRAME, receiveTime,
+                        SystemClock.elapsedRealtime());
+                return true;
+            }
+        });
+    }
+
     /** Returns the currently displayed message. */
     SmsCbMessage getLatestMessage() {
         int index = mMessageList.size() - 1;
@@ -729,138 +452,6 @@ public class CellBroadcastAlertDialog extends Activity {
                 CellBroadcastAlertService.SMS_CB_MESSAGE_EXTRA, mMessageList);
     }
 
-    /**
-     * Get link method
-     *
-     * @param subId Subscription index
-     * @return The link method
-     */
-    private @LinkMethod int getLinkMethod(int subId) {
-        Resources res = CellBroadcastSettings.getResourcesByOperator(getApplicationContext(),
-                subId, CellBroadcastReceiver.getRoamingOperatorSupported(getApplicationContext()));
-        switch (res.getString(R.string.link_method)) {
-            case LINK_METHOD_NONE_STRING: return LINK_METHOD_NONE;
-            case LINK_METHOD_LEGACY_LINKIFY_STRING: return LINK_METHOD_LEGACY_LINKIFY;
-            case LINK_METHOD_SMART_LINKIFY_STRING: return LINK_METHOD_SMART_LINKIFY;
-            case LINK_METHOD_SMART_LINKIFY_NO_COPY_STRING: return LINK_METHOD_SMART_LINKIFY_NO_COPY;
-        }
-        return LINK_METHOD_NONE;
-    }
-
-    /**
-     * Add URL links to the applicable texts.
-     *
-     * @param textView Text view
-     * @param messageText The text string of the message
-     * @param linkMethod Link method
-     */
-    private void addLinks(@NonNull TextView textView, @NonNull String messageText,
-            @LinkMethod int linkMethod) {
-        if (linkMethod == LINK_METHOD_LEGACY_LINKIFY) {
-            Spannable text = new SpannableString(messageText);
-            Linkify.addLinks(text, Linkify.ALL);
-            textView.setMovementMethod(LinkMovementMethod.getInstance());
-            textView.setText(text);
-        } else if (linkMethod == LINK_METHOD_SMART_LINKIFY
-                || linkMethod == LINK_METHOD_SMART_LINKIFY_NO_COPY) {
-            // Text classification cannot be run in the main thread.
-            new Thread(() -> {
-                final TextClassifier classifier = textView.getTextClassifier();
-
-                TextClassifier.EntityConfig entityConfig =
-                        new TextClassifier.EntityConfig.Builder()
-                                .setIncludedTypes(Arrays.asList(
-                                        TextClassifier.TYPE_URL,
-                                        TextClassifier.TYPE_EMAIL,
-                                        TextClassifier.TYPE_PHONE,
-                                        TextClassifier.TYPE_ADDRESS,
-                                        TextClassifier.TYPE_FLIGHT_NUMBER))
-                                .setExcludedTypes(Arrays.asList(
-                                        TextClassifier.TYPE_DATE,
-                                        TextClassifier.TYPE_DATE_TIME))
-                                .build();
-
-                TextLinks.Request request = new TextLinks.Request.Builder(messageText)
-                        .setEntityConfig(entityConfig)
-                        .build();
-                Spannable text;
-                if (linkMethod == LINK_METHOD_SMART_LINKIFY) {
-                    text = new SpannableString(messageText);
-                    // Add links to the spannable text.
-                    classifier.generateLinks(request).apply(
-                            text, TextLinks.APPLY_STRATEGY_REPLACE, null);
-                } else {
-                    TextLinks textLinks = classifier.generateLinks(request);
-                    // Add links to the spannable text.
-                    text = applyTextLinksToSpannable(messageText, textLinks, classifier);
-                }
-                // UI can be only updated in the main thread.
-                runOnUiThread(() -> {
-                    textView.setMovementMethod(LinkMovementMethod.getInstance());
-                    textView.setText(text);
-                });
-            }).start();
-        }
-    }
-
-    private Spannable applyTextLinksToSpannable(String text, TextLinks textLinks,
-            TextClassifier textClassifier) {
-        Spannable result = new SpannableString(text);
-        for (TextLink link : textLinks.getLinks()) {
-            TextClassification textClassification = textClassifier.classifyText(
-                    new Request.Builder(
-                            text,
-                            link.getStart(),
-                            link.getEnd())
-                            .build());
-            if (textClassification.getActions().isEmpty()) {
-                continue;
-            }
-            RemoteAction remoteAction = textClassification.getActions().get(0);
-            result.setSpan(new RemoteActionSpan(remoteAction), link.getStart(), link.getEnd(),
-                    Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
-        }
-        return result;
-    }
-
-    private static class RemoteActionSpan extends ClickableSpan {
-        private final RemoteAction mRemoteAction;
-        private RemoteActionSpan(RemoteAction remoteAction) {
-            mRemoteAction = remoteAction;
-        }
-        @Override
-        public void onClick(@NonNull View view) {
-            try {
-                mRemoteAction.getActionIntent().send();
-            } catch (PendingIntent.CanceledException e) {
-                Log.e(TAG, "Failed to start the pendingintent.");
-            }
-        }
-    }
-
-    /**
-     * If the carrier or country is configured to show the alert dialog title text in the
-     * language matching the message, this method returns the string in that language. Otherwise
-     * this method returns the string in the device's current language
-     *
-     * @param resId resource Id
-     * @param res Resources for the subId
-     * @param languageCode the ISO-639-1 language code for this message, or null if unspecified
-     */
-    private String overrideTranslation(int resId, Resources res, String languageCode) {
-        if (!TextUtils.isEmpty(languageCode)
-                && res.getBoolean(R.bool.override_alert_title_language_to_match_message_locale)) {
-            // TODO change resources to locale from message
-            Configuration conf = res.getConfiguration();
-            conf = new Configuration(conf);
-            conf.setLocale(new Locale(languageCode));
-            Context localizedContext = getApplicationContext().createConfigurationContext(conf);
-            return localizedContext.getResources().getText(resId).toString();
-        } else {
-            return res.getText(resId).toString();
-        }
-    }
-
     /**
      * Update alert text when a new emergency alert arrives.
      * @param message CB message which is used to update alert text.
@@ -869,34 +460,16 @@ public class CellBroadcastAlertDialog extends Activity {
         if (message == null) {
             return;
         }
-        Context context = getApplicationContext();
-        int titleId = CellBroadcastResources.getDialogTitleResource(context, message);
+        CellBroadcastAlertDisplayModel model = CellBroadcastAlertDisplayModel.get(
+                getApplicationContext(), message);
 
-        Resources res = CellBroadcastSettings.getResourcesByOperator(context,
-                message.getSubscriptionId(),
-                CellBroadcastReceiver.getRoamingOperatorSupported(context));
-
-        CellBroadcastChannelManager channelManager = new CellBroadcastChannelManager(
-                this, message.getSubscriptionId());
-        CellBroadcastChannelRange range = channelManager
-                .getCellBroadcastChannelRangeFromMessage(message);
-        String languageCode;
-        if (range != null && !TextUtils.isEmpty(range.mLanguageCode)) {
-            languageCode = range.mLanguageCode;
-        } else {
-            languageCode = message.getLanguageCode();
-        }
-
-        if (res.getBoolean(R.bool.show_alert_title)) {
-            String title = overrideTranslation(titleId, res, languageCode);
+        String title = model.getTitle();
+        if (title != null) {
             TextView titleTextView = findViewById(R.id.alertTitle);
 
             if (titleTextView != null) {
-                String timeFormat = res.getString(R.string.date_time_format);
-                if (!TextUtils.isEmpty(timeFormat)) {
+                if (model.isTitleMultiLine()) {
                     titleTextView.setSingleLine(false);
-                    title += "\n" + new SimpleDateFormat(timeFormat).format(
-                            message.getReceivedTime());
                 }
                 setTitle(title);
                 titleTextView.setText(title);
@@ -910,13 +483,9 @@ public class CellBroadcastAlertDialog extends Activity {
         TextView textView = findViewById(R.id.message);
         String messageText = message.getMessageBody();
         if (textView != null && messageText != null) {
-            int linkMethod = getLinkMethod(message.getSubscriptionId());
-            if (linkMethod != LINK_METHOD_NONE) {
-                addLinks(textView, messageText, linkMethod);
-            } else {
-                // Do not add any link to the message text.
-                textView.setText(messageText);
-            }
+            // The links are added once generated, without holding the dialog back.
+            CellBroadcastLinkifier.getInstance().setText(textView, messageText,
+                    model.getLinkMethod());
         }
 
         String dismissButtonText = getString(R.string.button_dismiss);
@@ -927,21 +496,19 @@ public class CellBroadcastAlertDialog extends Activity {
 
         ((TextView) findViewById(R.id.dismissButton)).setText(dismissButtonText);
 
-        setPictogram(context, message);
+        setPictogram(model.getPictogramResId());
 
         if (this.hasWindowFocus()) {
-            Configuration config = res.getConfiguration();
+            Configuration config = getResources().getConfiguration();
             setPictogramAreaLayout(config.orientation);
         }
     }
 
     /**
      * Set pictogram image
-     * @param context
-     * @param message
+     * @param resId resource id of the pictogram, or -1 if the alert has none
      */
-    private void setPictogram(Context context, SmsCbMessage message) {
-        int resId = CellBroadcastResources.getDialogPictogramResource(context, message);
+    private void setPictogram(int resId) {
         ImageView image = findViewById(R.id.pictogramImage);
         // not all layouts may have a pictogram image, e.g. watch
         if (image == null) {
@@ -996,13 +563,59 @@ public class CellBroadcastAlertDialog extends Activity {
         }
     }
 
-    private void startPulsatingAsNeeded(CellBroadcastChannelRange range) {
-        mPulsationHandler.stop();
+    /**
+     * Start animating the warning icon.
+     *
+     * @param subId Subscription index
+     */
+    private void startIconAnimation(int subId) {
+        if (!initDrawableAndImageView(subId)) {
+            return;     // init failure
+        }
+        mAnimator.startIcon(mWarningIconView);
+    }
+
+    /**
+     * Initialize the warning icon Drawable and ImageView fields.
+     *
+     * @param subId Subscription index
+     *
+     * @return true if successful; false if any field failed to initialize
+     */
+    private boolean initDrawableAndImageView(int subId) {
+        if (mWarningIcon == null) {
+            try {
+                mWarningIcon = CellBroadcastSettings.getResourcesByOperator(
+                        getApplicationContext(), subId,
+                        CellBroadcastReceiver.getRoamingOperatorSupported(getApplicationContext()))
+                        .getDrawable(R.drawable.ic_warning_googred);
+            } catch (Resources.NotFoundException e) {
+                CellBroadcastReceiverMetrics.getInstance().logModuleError(
+                        ERRSRC_CBR, ERRTYPE_ICONRESOURCE);
+                Log.e(TAG, "warning icon resource not found", e);
+                return false;
+            }
+        }
+        if (mWarningIconView == null) {
+            mWarningIconView = (ImageView) findViewById(R.id.icon);
+            if (mWarningIconView != null) {
+                mWarningIconView.setImageDrawable(mWarningIcon);
+            } else {
+                Log.e(TAG, "failed to get ImageView for warning icon");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void startPulsatingAsNeeded(CellBroadcastAlertDisplayModel model) {
+        mAnimator.stopPulsation();
+        int[] pattern = model.getPulsationPattern();
         if (VDBG) {
-            Log.d(TAG, "start pulsation as needed for range:" + range);
+            Log.d(TAG, "start pulsation as needed for pattern:" + Arrays.toString(pattern));
         }
-        if (range != null) {
-            mPulsationHandler.start(findViewById(R.id.parentPanel), range.mPulsationPattern);
+        if (pattern != null) {
+            mAnimator.startPulsation(findViewById(R.id.parentPanel), pattern);
         }
     }
 
@@ -1041,20 +654,22 @@ public class CellBroadcastAlertDialog extends Activity {
             // For emergency alerts, keep screen on so the user can read it
             SmsCbMessage message = getLatestMessage();
             if (message != null) {
-                CellBroadcastChannelManager channelManager = new CellBroadcastChannelManager(
-                        this, message.getSubscriptionId());
-                if (channelManager.isEmergencyMessage(message)) {
+                CellBroadcastAlertDisplayModel model = CellBroadcastAlertDisplayModel.get(
+                        getApplicationContext(), message);
+                if (model.isEmergency()) {
                     Log.d(TAG, "onCreate setting screen on timer for emergency alert for sub "
                             + message.getSubscriptionId());
-                    mScreenOffHandler.startScreenOnTimer(message);
+                    mScreenOffHandler.startScreenOnTimer(model);
                 }
-                startPulsatingAsNeeded(channelManager
-                        .getCellBroadcastChannelRangeFromMessage(message));
+                startPulsatingAsNeeded(model);
             }
 
             hideOptOutDialog(); // Hide opt-out dialog when new alert coming
             setFinishAlertOnTouchOutside();
             updateAlertText(getLatestMessage());
+            // the dialog is on screen already, and shows the new alert now.
+            CellBroadcastAlertLatency.getInstance().onStage(
+                    CellBroadcastAlertLatency.STAGE_DIALOG_SHOWN, intent);
             // If the new intent was sent from a notification, dismiss it.
             clearNotification(intent);
         } else {
@@ -1070,7 +685,8 @@ public class CellBroadcastAlertDialog extends Activity {
         if (intent.getBooleanExtra(DISMISS_NOTIFICATION_EXTRA, false)) {
             NotificationManager notificationManager =
                     (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
-            notificationManager.cancel(CellBroadcastAlertService.NOTIFICATION_ID);
+            CellBroadcastNotificationComposer.getInstance().cancel(notificationManager,
+                    CellBroadcastAlertService.NOTIFICATION_ID);
 
             // Clear new message list when user swipe the notification
             // except dialog and notification are visible at the same time.
@@ -1091,14 +707,14 @@ public class CellBroadcastAlertDialog extends Activity {
         // Stop playing alert sound/vibration/speech (if started)
         stopService(new Intent(this, CellBroadcastAlertAudio.class));
         // Cancel any pending alert reminder
-        CellBroadcastAlertReminder.cancelAlertReminder();
+        CellBroadcastAlertReminder.cancelAlertReminder(this);
         // Remove the all current showing alert message from the list.
         if (mMessageList != null) {
             mMessageList.clear();
         }
         // clear notifications.
         clearNotification(intent);
-        // Remove pending screen-off messages (animation messages are removed in onPause()).
+        // Remove pending screen-off messages (animations are paused in onPause()).
         mScreenOffHandler.stopScreenOnTimer();
         finish();
     }
@@ -1113,19 +729,21 @@ public class CellBroadcastAlertDialog extends Activity {
         // Stop playing alert sound/vibration/speech (if started)
         stopService(new Intent(this, CellBroadcastAlertAudio.class));
 
-        mPulsationHandler.stop();
-
-        // Cancel any pending alert reminder
-        CellBroadcastAlertReminder.cancelAlertReminder();
+        mAnimator.stopPulsation();
 
         // Remove the current alert message from the list.
         SmsCbMessage lastMessage = removeLatestMessage();
         if (lastMessage == null) {
             Log.e(TAG, "dismiss() called with empty message list!");
+            // Cancel any pending alert reminder
+            CellBroadcastAlertReminder.cancelAlertReminder(this);
             finish();
             return;
         }
 
+        // Cancel the pending reminders of the dismissed alert
+        CellBroadcastAlertReminder.cancelAlertReminder(this, lastMessage.getReceivedTime());
+
         // Remove the read message from the notification bar.
         // e.g, read the message from emergency alert history, need to update the notification bar.
         removeReadMessageFromNotificationBar(lastMessage, getApplicationContext());
@@ -1160,14 +778,14 @@ public class CellBroadcastAlertDialog extends Activity {
             int subId = nextMessage.getSubscriptionId();
             if (channelManager.isEmergencyMessage(nextMessage)
                     && (range!= null && range.mDisplayIcon)) {
-                mAnimationHandler.startIconAnimation(subId);
+                startIconAnimation(subId);
             } else {
-                mAnimationHandler.stopIconAnimation();
+                mAnimator.stopIcon();
             }
             return;
         }
 
-        // Remove pending screen-off messages (animation messages are removed in onPause()).
+        // Remove pending screen-off messages (animations are paused in onPause()).
         mScreenOffHandler.stopScreenOnTimer();
 
         // Show opt-in/opt-out dialog when the first CMAS alert is received.
@@ -1298,7 +916,8 @@ public class CellBroadcastAlertDialog extends Activity {
         if (unreadMessageList.isEmpty()) {
             Log.d(TAG, "removeReadMessageFromNotificationBar, cancel notification");
             NotificationManager notificationManager = getSystemService(NotificationManager.class);
-            notificationManager.cancel(CellBroadcastAlertService.NOTIFICATION_ID);
+            CellBroadcastNotificationComposer.getInstance().cancel(notificationManager,
+                    CellBroadcastAlertService.NOTIFICATION_ID);
         } else {
             Log.d(TAG, "removeReadMessageFromNotificationBar, update count to "
                     + unreadMessageList.size() );
@@ -1320,11 +939,8 @@ public class CellBroadcastAlertDialog extends Activity {
         if (mMessageList != null) {
             int dismissCount = 0;
             for (SmsCbMessage message : mMessageList) {
-                CellBroadcastChannelManager channelManager = new CellBroadcastChannelManager(
-                        this, message.getSubscriptionId());
-                CellBroadcastChannelManager.CellBroadcastChannelRange range =
-                        channelManager.getCellBroadcastChannelRangeFromMessage(message);
-                if (range != null && range.mDismissOnOutsideTouch) {
+                if (CellBroadcastAlertDisplayModel.get(getApplicationContext(), message)
+                        .isDismissOnOutsideTouch()) {
                     dismissCount++;
                 }
             }
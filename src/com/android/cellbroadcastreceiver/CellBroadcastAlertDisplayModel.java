@@ -0,0 +1,340 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.cellbroadcastreceiver;
+
+import android.annotation.NonNull;
+import android.annotation.Nullable;
+import android.content.Context;
+import android.content.res.Resources;
+import android.telephony.SmsCbMessage;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.android.cellbroadcastreceiver.CellBroadcastChannelManager.CellBroadcastChannelRange;
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.io.PrintWriter;
+import java.text.SimpleDateFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * What {@link CellBroadcastAlertDialog} shows for an alert, i.e. its title, link method,
+ * pictogram, pulsation pattern and how long it keeps the screen on.
+ *
+ * <p>These depend on the channel ranges and the resources of the operator, which are slow to
+ * resolve, so {@link CellBroadcastAlertService} prepares the model of an alert while the dialog
+ * is being launched, and the dialog only inflates its layout and binds the model. The models are
+ * cached by alert, and are cleared when the carrier configuration or the locale changes.
+ */
+public class CellBroadcastAlertDisplayModel {
+
+    private static final String TAG = "CBAlertDisplayModel";
+
+    /** Maximum number of cached models. */
+    @VisibleForTesting
+    public static final int MAX_ENTRIES = 16;
+
+    /** Length of time to keep the screen turned on. */
+    private static final int KEEP_SCREEN_ON_DURATION_MSEC = 60000;
+
+    // Values of the link_method carrier configuration.
+    private static final String LINK_METHOD_NONE_STRING = "none";
+    private static final String LINK_METHOD_LEGACY_LINKIFY_STRING = "legacy_linkify";
+    private static final String LINK_METHOD_SMART_LINKIFY_STRING = "smart_linkify";
+    private static final String LINK_METHOD_SMART_LINKIFY_NO_COPY_STRING = "smart_linkify_no_copy";
+
+    private static final Object sCacheLock = new Object();
+
+    // the models of the recently shown alerts, least recently used first.
+    private static final LinkedHashMap<Key, CellBroadcastAlertDisplayModel> sCache =
+            new LinkedHashMap<Key, CellBroadcastAlertDisplayModel>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(
+                        Map.Entry<Key, CellBroadcastAlertDisplayModel> eldest) {
+                    return size() > MAX_ENTRIES;
+                }
+            };
+    private static long sHits;
+    private static long sMisses;
+
+    private final @Nullable String mTitle;
+    private final boolean mTitleMultiLine;
+    private final @CellBroadcastLinkifier.LinkMethod int mLinkMethod;
+    private final int mPictogramResId;
+    private final boolean mEmergency;
+    private final boolean mIconDisplayed;
+    private final int mScreenOnDuration;
+    private final @Nullable int[] mPulsationPattern;
+    private final boolean mDismissOnOutsideTouch;
+    private final boolean mTextCopyEnabled;
+    private final boolean mCaptureDisabled;
+
+    private CellBroadcastAlertDisplayModel(@NonNull Context context,
+            @NonNull SmsCbMessage message) {
+        int subId = message.getSubscriptionId();
+        String operator = CellBroadcastReceiver.getRoamingOperatorSupported(context);
+        Resources res = CellBroadcastSettings.getResourcesByOperator(context, subId, operator);
+        CellBroadcastChannelManager channelManager = new CellBroadcastChannelManager(context,
+                subId);
+        CellBroadcastChannelRange range = channelManager
+                .getCellBroadcastChannelRangeFromMessage(message);
+
+        String title = null;
+        boolean titleMultiLine = false;
+        if (res.getBoolean(R.bool.show_alert_title)) {
+            String languageCode;
+            if (range != null && !TextUtils.isEmpty(range.mLanguageCode)) {
+                languageCode = range.mLanguageCode;
+            } else {
+                languageCode = message.getLanguageCode();
+            }
+            title = overrideTranslation(context,
+                    CellBroadcastResources.getDialogTitleResource(context, message), res, subId,
+                    operator, languageCode);
+            String timeFormat = res.getString(R.string.date_time_format);
+            if (!TextUtils.isEmpty(timeFormat)) {
+                titleMultiLine = true;
+                title += "\n" + new SimpleDateFormat(timeFormat).format(
+                        message.getReceivedTime());
+            }
+        }
+        mTitle = title;
+        mTitleMultiLine = titleMultiLine;
+        mLinkMethod = getLinkMethod(res);
+        mPictogramResId = CellBroadcastResources.getDialogPictogramResource(context, message);
+        mEmergency = channelManager.isEmergencyMessage(message);
+        mIconDisplayed = mEmergency && range != null && range.mDisplayIcon;
+        // if set to 0, do not turn screen on.
+        mScreenOnDuration = range != null ? range.mScreenOnDuration
+                : KEEP_SCREEN_ON_DURATION_MSEC;
+        mPulsationPattern = range != null ? range.mPulsationPattern : null;
+        mDismissOnOutsideTouch = range != null && range.mDismissOnOutsideTouch;
+        mTextCopyEnabled = res.getBoolean(R.bool.enable_text_copy);
+        mCaptureDisabled = res.getBoolean(R.bool.disable_capture_alert_dialog);
+    }
+
+    /**
+     * Prepare the model of an alert before the dialog shows it. A failure is logged, and the
+     * dialog creates the model itself then.
+     *
+     * @param context the context
+     * @param message the alert
+     */
+    public static void prepare(@NonNull Context context, @NonNull SmsCbMessage message) {
+        CellBroadcastAlertDisplayModel model;
+        try {
+            model = new CellBroadcastAlertDisplayModel(context, message);
+        } catch (RuntimeException e) {
+            // the alert is being played and shown, which must not be interrupted by this.
+            Log.e(TAG, "failed to prepare the display model: " + e);
+            return;
+        }
+        synchronized (sCacheLock) {
+            sCache.put(new Key(message), model);
+        }
+    }
+
+    /**
+     * Get the model of an alert, creating it if it was not prepared, e.g. for an alert shown
+     * from the history.
+     *
+     * @param context the context
+     * @param message the alert
+     * @return the model of the alert
+     */
+    public static @NonNull CellBroadcastAlertDisplayModel get(@NonNull Context context,
+            @NonNull SmsCbMessage message) {
+        Key key = new Key(message);
+        synchronized (sCacheLock) {
+            CellBroadcastAlertDisplayModel model = sCache.get(key);
+            if (model != null) {
+                sHits++;
+                return model;
+            }
+            sMisses++;
+        }
+        CellBroadcastAlertDisplayModel model = new CellBroadcastAlertDisplayModel(context,
+                message);
+        synchronized (sCacheLock) {
+            sCache.put(key, model);
+        }
+        return model;
+    }
+
+    /**
+     * @param message the alert
+     * @return true if the model of the alert is cached
+     */
+    @VisibleForTesting
+    public static boolean isCached(@NonNull SmsCbMessage message) {
+        synchronized (sCacheLock) {
+            return sCache.containsKey(new Key(message));
+        }
+    }
+
+    /**
+     * Forget the cached models, e.g. when the locale or the carrier configuration changed.
+     */
+    public static void clearCache() {
+        synchronized (sCacheLock) {
+            sCache.clear();
+        }
+    }
+
+    /**
+     * Dump the cached models and how often the dialog found them prepared.
+     *
+     * @param writer the writer of the dump
+     */
+    public static void dump(@NonNull PrintWriter writer) {
+        synchronized (sCacheLock) {
+            writer.println("CellBroadcastAlertDisplayModel:");
+            writer.println("  cached=" + sCache.size() + " hits=" + sHits
+                    + " misses=" + sMisses);
+        }
+    }
+
+    /** @return the title of the alert, or null if no title is shown */
+    public @Nullable String getTitle() {
+        return mTitle;
+    }
+
+    /** @return true if the title spans multiple lines, i.e. it shows the received time */
+    public boolean isTitleMultiLine() {
+        return mTitleMultiLine;
+    }
+
+    /** @return the method to add links to the message text */
+    public @CellBroadcastLinkifier.LinkMethod int getLinkMethod() {
+        return mLinkMethod;
+    }
+
+    /** @return the resource id of the pictogram, or -1 if the alert has none */
+    public int getPictogramResId() {
+        return mPictogramResId;
+    }
+
+    /** @return true if the alert is an emergency alert of its channel ranges */
+    public boolean isEmergency() {
+        return mEmergency;
+    }
+
+    /** @return true if the flashing warning icon is shown */
+    public boolean isIconDisplayed() {
+        return mIconDisplayed;
+    }
+
+    /** @return how long an emergency alert keeps the screen on in milliseconds, 0 for not */
+    public int getScreenOnDuration() {
+        return mScreenOnDuration;
+    }
+
+    /**
+     * @return the pulsation pattern of the background, i.e. its highlight color, duration and
+     * on and off intervals, or null if the alert has no channel range
+     */
+    public @Nullable int[] getPulsationPattern() {
+        return mPulsationPattern;
+    }
+
+    /** @return true if the alert is dismissed by touching outside of it */
+    public boolean isDismissOnOutsideTouch() {
+        return mDismissOnOutsideTouch;
+    }
+
+    /** @return true if the message text can be copied by a long click */
+    public boolean isTextCopyEnabled() {
+        return mTextCopyEnabled;
+    }
+
+    /** @return true if the dialog cannot be captured in screenshots */
+    public boolean isCaptureDisabled() {
+        return mCaptureDisabled;
+    }
+
+    private static @CellBroadcastLinkifier.LinkMethod int getLinkMethod(Resources res) {
+        switch (res.getString(R.string.link_method)) {
+            case LINK_METHOD_NONE_STRING:
+                return CellBroadcastLinkifier.LINK_METHOD_NONE;
+            case LINK_METHOD_LEGACY_LINKIFY_STRING:
+                return CellBroadcastLinkifier.LINK_METHOD_LEGACY_LINKIFY;
+            case LINK_METHOD_SMART_LINKIFY_STRING:
+                return CellBroadcastLinkifier.LINK_METHOD_SMART_LINKIFY;
+            case LINK_METHOD_SMART_LINKIFY_NO_COPY_STRING:
+                return CellBroadcastLinkifier.LINK_METHOD_SMART_LINKIFY_NO_COPY;
+        }
+        return CellBroadcastLinkifier.LINK_METHOD_NONE;
+    }
+
+    /**
+     * If the carrier or country is configured to show the alert dialog title text in the
+     * language matching the message, this method returns the string in that language. Otherwise
+     * this method returns the string in the device's current language
+     *
+     * @param context the context
+     * @param resId resource Id
+     * @param res Resources for the subId
+     * @param subId Subscription index
+     * @param operator the roaming operator, or empty if none
+     * @param languageCode the ISO-639-1 language code for this message, or null if unspecified
+     */
+    private static String overrideTranslation(Context context, int resId, Resources res,
+            int subId, String operator, String languageCode) {
+        if (!TextUtils.isEmpty(languageCode)
+                && res.getBoolean(R.bool.override_alert_title_language_to_match_message_locale)) {
+            return CellBroadcastSettings.getResourcesByOperatorAndLanguage(context, subId,
+                    operator, languageCode).getText(resId).toString();
+        } else {
+            return res.getText(resId).toString();
+        }
+    }
+
+    /**
+     * Identifies an alert. The received time alone is not unique, as alerts might be received
+     * in the same millisecond.
+     */
+    private static class Key {
+        final long mReceivedTime;
+        final int mSerialNumber;
+        final int mServiceCategory;
+        final int mSubId;
+
+        Key(SmsCbMessage message) {
+            mReceivedTime = message.getReceivedTime();
+            mSerialNumber = message.getSerialNumber();
+            mServiceCategory = message.getServiceCategory();
+            mSubId = message.getSubscriptionId();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return mReceivedTime == key.mReceivedTime && mSerialNumber == key.mSerialNumber
+                    && mServiceCategory == key.mServiceCategory && mSubId == key.mSubId;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(mReceivedTime, mSerialNumber, mServiceCategory, mSubId);
+        }
+    }
+}
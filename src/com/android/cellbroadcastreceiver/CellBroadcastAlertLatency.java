@@ -0,0 +1,340 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.cellbroadcastreceiver;
+
+import android.annotation.NonNull;
+import android.annotation.Nullable;
+import android.content.Intent;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.io.PrintWriter;
+
+/**
+ * Measures the latency of an alert through the stages of the app, from the broadcast of
+ * {@link android.provider.Telephony.Sms.Intents#SMS_CB_RECEIVED_ACTION} until the alert is on
+ * screen.
+ *
+ * <p>{@link CellBroadcastReceiver} stamps the received intent with the monotonic time
+ * {@link #EXTRA_RECEIVE_TIME}, which is carried along in the intents of the following stages.
+ * Each stage records the time since then in a histogram, and as a trace counter so that the
+ * stages of an alert line up with the trace sections of the app. The durations of single steps,
+ * e.g. the time from the start of the alert audio to its first sound, are recorded alike.
+ */
+public class CellBroadcastAlertLatency {
+
+    private static final String TAG = "CBAlertLatency";
+
+    /**
+     * Elapsed realtime in milliseconds at which the app received an alert, see
+     * {@link SystemClock#elapsedRealtime}.
+     */
+    public static final String EXTRA_RECEIVE_TIME =
+            "com.android.cellbroadcastreceiver.intent.extra.RECEIVE_TIME";
+
+    /** {@link CellBroadcastAlertService} started handling the alert. */
+    public static final int STAGE_SERVICE_STARTED = 0;
+    /** The alert was written to the database. */
+    public static final int STAGE_STORED = 1;
+    /** {@link CellBroadcastAlertService} started showing the alert. */
+    public static final int STAGE_SHOW_ALERT = 2;
+    /** The alert was posted as a notification. */
+    public static final int STAGE_NOTIFIED = 3;
+    /** {@link CellBroadcastAlertAudio} started the alert tone, vibration or speech. */
+    public static final int STAGE_AUDIO_STARTED = 4;
+    /** {@link CellBroadcastAlertDialog} was created. */
+    public static final int STAGE_DIALOG_CREATED = 5;
+    /** {@link CellBroadcastAlertDialog} showed the alert. */
+    public static final int STAGE_DIALOG_SHOWN = 6;
+    /** {@link CellBroadcastAlertDialog} drew its first frame. */
+    public static final int STAGE_DIALOG_FIRST_FRAME = 7;
+
+    /** Time the main thread spent starting {@link CellBroadcastAlertAudio}. */
+    public static final int STEP_AUDIO_MAIN_THREAD = 0;
+    /**
+     * Time the audio thread spent starting the tone, vibration and speech, which the main thread
+     * used to spend.
+     */
+    public static final int STEP_AUDIO_OFF_MAIN_THREAD = 1;
+    /** Time from the start of {@link CellBroadcastAlertAudio} to the first sound or vibration. */
+    public static final int STEP_AUDIO_FIRST_SOUND = 2;
+    /** Time from binding the text-to-speech engine to its initialization. */
+    public static final int STEP_TTS_ENGINE_INIT = 3;
+    /** Time from asking the text-to-speech engine to speak an alert to the start of speech. */
+    public static final int STEP_SPEECH_START = 4;
+    /** Time {@link CellBroadcastAlertDialog} spent creating its views and binding the alert. */
+    public static final int STEP_DIALOG_BIND = 5;
+
+    private static final String[] STEP_NAMES = {
+            "audioMainThread",
+            "audioOffMainThread",
+            "audioFirstSound",
+            "ttsEngineInit",
+            "speechStart",
+            "dialogBind"
+    };
+
+    private static final String[] STAGE_NAMES = {
+            "serviceStarted",
+            "stored",
+            "showAlert",
+            "notified",
+            "audioStarted",
+            "dialogCreated",
+            "dialogShown",
+            "dialogFirstFrame"
+    };
+
+    // Upper bounds of the histogram buckets in milliseconds, growing by about 1.5 up to a
+    // minute. Latencies above the last bound go into an overflow bucket.
+    private static final long[] BUCKET_BOUNDS = {
+            1, 2, 3, 5, 8, 12, 18, 27, 40, 60, 90, 135, 200, 300, 450, 700, 1000, 1500,
+            2200, 3300, 5000, 7500, 11000, 17000, 25000, 38000, 60000
+    };
+
+    private static final double[] PERCENTILES = {0.5, 0.95, 0.99};
+    private static final String[] PERCENTILE_NAMES = {"p50", "p95", "p99"};
+
+    private static CellBroadcastAlertLatency sInstance;
+
+    private final Histogram[] mHistograms = new Histogram[STAGE_NAMES.length];
+    private final Histogram[] mStepHistograms = new Histogram[STEP_NAMES.length];
+
+    /**
+     * Get the instance of the app.
+     */
+    public static synchronized CellBroadcastAlertLatency getInstance() {
+        if (sInstance == null) {
+            sInstance = new CellBroadcastAlertLatency();
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    public CellBroadcastAlertLatency() {
+        for (int stage = 0; stage < mHistograms.length; stage++) {
+            mHistograms[stage] = new Histogram();
+        }
+        for (int step = 0; step < mStepHistograms.length; step++) {
+            mStepHistograms[step] = new Histogram();
+        }
+    }
+
+    /**
+     * Stamp an intent with the current time as the time at which the alert was received.
+     *
+     * @param intent the intent of the received alert
+     */
+    public static void setReceiveTime(@NonNull Intent intent) {
+        intent.putExtra(EXTRA_RECEIVE_TIME, SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * Carry the receive time of an alert over to the intent of the next stage.
+     *
+     * @param from the intent of the current stage, or null
+     * @param to the intent of the next stage
+     */
+    public static void copyReceiveTime(@Nullable Intent from, @NonNull Intent to) {
+        long receiveTime = getReceiveTime(from);
+        if (receiveTime >= 0) {
+            to.putExtra(EXTRA_RECEIVE_TIME, receiveTime);
+        }
+    }
+
+    /**
+     * @param intent the intent of an alert, or null
+     * @return the time at which the alert was received, or -1 if the intent has none
+     */
+    public static long getReceiveTime(@Nullable Intent intent) {
+        return intent != null ? intent.getLongExtra(EXTRA_RECEIVE_TIME, -1) : -1;
+    }
+
+    /**
+     * Record that an alert reached a stage now. Does nothing if the intent has no receive time.
+     *
+     * @param stage the stage, e.g. {@link #STAGE_STORED}
+     * @param intent the intent of the alert, or null
+     */
+    public void onStage(int stage, @Nullable Intent intent) {
+        onStage(stage, getReceiveTime(intent), SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * Record that an alert reached a stage.
+     *
+     * @param stage the stage, e.g. {@link #STAGE_STORED}
+     * @param receiveTime the time at which the alert was received, or -1 if unknown
+     * @param now the current elapsed realtime in milliseconds
+     */
+    @VisibleForTesting
+    public void onStage(int stage, long receiveTime, long now) {
+        if (receiveTime < 0 || now < receiveTime) {
+            return;
+        }
+        long latency = now - receiveTime;
+        mHistograms[stage].add(latency);
+        if (Trace.isEnabled()) {
+            Trace.setCounter("CBR alert latency " + STAGE_NAMES[stage], latency);
+        }
+        if (CellBroadcastReceiver.VDBG) {
+            Log.v(TAG, STAGE_NAMES[stage] + " after " + latency + "ms");
+        }
+    }
+
+    /**
+     * Record the duration of a step of an alert, which does not depend on when the alert was
+     * received.
+     *
+     * @param step the step, e.g. {@link #STEP_AUDIO_FIRST_SOUND}
+     * @param durationMillis the duration of the step in milliseconds
+     */
+    public void onStep(int step, long durationMillis) {
+        if (durationMillis < 0) {
+            return;
+        }
+        mStepHistograms[step].add(durationMillis);
+        if (Trace.isEnabled()) {
+            Trace.setCounter("CBR alert step " + STEP_NAMES[step], durationMillis);
+        }
+        if (CellBroadcastReceiver.VDBG) {
+            Log.v(TAG, STEP_NAMES[step] + " took " + durationMillis + "ms");
+        }
+    }
+
+    /**
+     * @param step the step, e.g. {@link #STEP_AUDIO_FIRST_SOUND}
+     * @return the number of times the step was recorded
+     */
+    @VisibleForTesting
+    public long getStepCount(int step) {
+        return mStepHistograms[step].getCount();
+    }
+
+    /**
+     * @param stage the stage, e.g. {@link #STAGE_STORED}
+     * @return the number of alerts which reached the stage
+     */
+    @VisibleForTesting
+    public long getCount(int stage) {
+        return mHistograms[stage].getCount();
+    }
+
+    /**
+     * @param stage the stage, e.g. {@link #STAGE_STORED}
+     * @param percentile the percentile between 0 and 1, e.g. 0.95
+     * @return the upper bound of the latency of the percentile in milliseconds, or -1 if no
+     * alert reached the stage
+     */
+    @VisibleForTesting
+    public long getPercentile(int stage, double percentile) {
+        return mHistograms[stage].getPercentile(percentile);
+    }
+
+    /**
+     * Forget all recorded latencies.
+     */
+    @VisibleForTesting
+    public void reset() {
+        for (Histogram histogram : mHistograms) {
+            histogram.reset();
+        }
+        for (Histogram histogram : mStepHistograms) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Dump the latency percentiles of each stage and step.
+     *
+     * @param writer the writer of the dump
+     */
+    public void dump(@NonNull PrintWriter writer) {
+        writer.println("CellBroadcastAlertLatency (ms since received):");
+        for (int stage = 0; stage < mHistograms.length; stage++) {
+            mHistograms[stage].dump(writer, STAGE_NAMES[stage]);
+        }
+        writer.println("CellBroadcastAlertLatency (ms per step):");
+        for (int step = 0; step < mStepHistograms.length; step++) {
+            mStepHistograms[step].dump(writer, STEP_NAMES[step]);
+        }
+    }
+
+    /**
+     * A histogram of latencies with fixed buckets, which does not allocate when adding.
+     */
+    private static class Histogram {
+        private final long[] mBuckets = new long[BUCKET_BOUNDS.length + 1];
+        private long mCount;
+        private long mTotal;
+        private long mMax;
+
+        synchronized void add(long latency) {
+            int bucket = 0;
+            while (bucket < BUCKET_BOUNDS.length && latency > BUCKET_BOUNDS[bucket]) {
+                bucket++;
+            }
+            mBuckets[bucket]++;
+            mCount++;
+            mTotal += latency;
+            mMax = Math.max(mMax, latency);
+        }
+
+        synchronized long getCount() {
+            return mCount;
+        }
+
+        synchronized long getPercentile(double percentile) {
+            if (mCount == 0) {
+                return -1;
+            }
+            long rank = (long) Math.ceil(percentile * mCount);
+            long seen = 0;
+            for (int bucket = 0; bucket < BUCKET_BOUNDS.length; bucket++) {
+                seen += mBuckets[bucket];
+                if (seen >= rank) {
+                    // the bound of the bucket might be above the largest latency seen.
+                    return Math.min(BUCKET_BOUNDS[bucket], mMax);
+                }
+            }
+            return mMax;
+        }
+
+        synchronized void reset() {
+            for (int bucket = 0; bucket < mBuckets.length; bucket++) {
+                mBuckets[bucket] = 0;
+            }
+            mCount = 0;
+            mTotal = 0;
+            mMax = 0;
+        }
+
+        synchronized void dump(PrintWriter writer, String name) {
+            writer.print("  " + name + ": count=" + mCount);
+            if (mCount > 0) {
+                for (int i = 0; i < PERCENTILES.length; i++) {
+                    writer.print(" " + PERCENTILE_NAMES[i] + "=" + getPercentile(PERCENTILES[i]));
+                }
+                writer.print(" mean=" + mTotal / mCount + " max=" + mMax);
+            }
+            writer.println();
+        }
+    }
+}
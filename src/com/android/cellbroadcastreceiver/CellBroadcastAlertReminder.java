@@ -20,8 +20,6 @@ import static com.android.cellbroadcastreceiver.CellBroadcastReceiver.DBG;
 import static com.android.cellbroadcastservice.CellBroadcastMetrics.ERRSRC_CBR;
 import static com.android.cellbroadcastservice.CellBroadcastMetrics.ERRTYPE_REMINDERINTERVAL;
 
-import android.app.AlarmManager;
-import android.app.PendingIntent;
 import android.app.Service;
 import android.content.Context;
 import android.content.Intent;
@@ -30,15 +28,11 @@ import android.content.pm.PackageManager;
 import android.content.res.Resources;
 import android.media.AudioAttributes;
 import android.media.AudioManager;
-import android.media.Ringtone;
-import android.media.RingtoneManager;
-import android.net.Uri;
 import android.os.IBinder;
-import android.os.SystemClock;
 import android.os.VibrationEffect;
 import android.os.Vibrator;
 import android.preference.PreferenceManager;
-import android.telephony.SubscriptionManager;
+import android.text.format.DateUtils;
 import android.util.Log;
 
 import com.android.internal.annotations.VisibleForTesting;
@@ -57,16 +51,8 @@ public class CellBroadcastAlertReminder extends Service {
     @VisibleForTesting
     public static final String ALERT_REMINDER_VIBRATE_EXTRA = "alert_reminder_vibrate_extra";
 
-    /**
-     * Pending intent for alert reminder. This is static so that we don't have to start the
-     * service in order to cancel any pending reminders when user dismisses the alert dialog.
-     */
-    private static PendingIntent sPlayReminderIntent;
-
-    /**
-     * Alert reminder for current ringtone being played.
-     */
-    private static Ringtone sPlayReminderRingtone;
+    /** Alert id of the reminders of an alert which is not known. */
+    public static final long ALERT_ID_UNKNOWN = 0;
 
     @Override
     public IBinder onBind(Intent intent) {
@@ -84,9 +70,14 @@ public class CellBroadcastAlertReminder extends Service {
         log("playing alert reminder");
         playAlertReminderSound(intent.getBooleanExtra(ALERT_REMINDER_VIBRATE_EXTRA, true));
 
-        int subId = intent.getIntExtra(SubscriptionManager.EXTRA_SUBSCRIPTION_INDEX,
-                SubscriptionManager.DEFAULT_SUBSCRIPTION_ID);
-        if (queueAlertReminder(this, subId, false)) {
+        // the settings may have changed since the reminders were queued, so the next reminders
+        // follow the current ones.
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
+        int reminderIntervalMinutes = getReminderIntervalMinutes(prefs);
+        if (CellBroadcastReminderScheduler.getInstance(this).onAlarm(
+                reminderIntervalMinutes > 1
+                        ? reminderIntervalMinutes * DateUtils.MINUTE_IN_MILLIS : 0,
+                prefs.getBoolean(CellBroadcastSettings.KEY_ENABLE_ALERT_VIBRATE, true))) {
             return START_STICKY;
         } else {
             log("no reminders queued");
@@ -96,30 +87,16 @@ public class CellBroadcastAlertReminder extends Service {
     }
 
     /**
-     * Use the RingtoneManager to play the alert reminder sound.
+     * Play the alert reminder sound, which the scheduler keeps prepared between reminders.
      *
      * @param enableVibration True to enable vibration when the alert reminder tone is playing,
      *                        otherwise false.
      */
     private void playAlertReminderSound(boolean enableVibration) {
-        Uri notificationUri = RingtoneManager.getDefaultUri(RingtoneManager.TYPE_NOTIFICATION);
-        if (notificationUri == null) {
-            loge("Can't get URI for alert reminder sound");
-            return;
-        }
-        Ringtone r = RingtoneManager.getRingtone(this, notificationUri);
-
-        if (r != null) {
-            if (getPackageManager().hasSystemFeature(PackageManager.FEATURE_WATCH)) {
-                r.setStreamType(AudioManager.STREAM_ALARM);
-            } else {
-                r.setStreamType(AudioManager.STREAM_NOTIFICATION);
-            }
-            log("playing alert reminder sound");
-            r.play();
-        } else {
-            loge("can't get Ringtone for alert reminder sound");
-        }
+        int streamType = getPackageManager().hasSystemFeature(PackageManager.FEATURE_WATCH)
+                ? AudioManager.STREAM_ALARM : AudioManager.STREAM_NOTIFICATION;
+        log("playing alert reminder sound");
+        CellBroadcastReminderScheduler.getInstance(this).playSound(this, streamType);
 
         if (enableVibration) {
             // Vibrate for 500ms.
@@ -137,36 +114,31 @@ public class CellBroadcastAlertReminder extends Service {
     }
 
     /**
-     * Helper method to start the alert reminder service to queue the alert reminder.
+     * Queue the alert reminder of an alert which is not known.
+     *
+     * @see #queueAlertReminder(Context, long, int, boolean)
+     */
+    @VisibleForTesting
+    public static boolean queueAlertReminder(Context context, int subId, boolean firstTime) {
+        return queueAlertReminder(context, ALERT_ID_UNKNOWN, subId, firstTime);
+    }
+
+    /**
+     * Queue the reminders of an alert, replacing the ones queued for it before. The interval
+     * and vibration of the next reminders are read from the preferences again when the
+     * reminder plays.
      *
      * @param context Context.
+     * @param alertId The alert, i.e. its received time.
      * @param subId Subscription index
      * @param firstTime True if entering this method for the first time, otherwise false.
      *
      * @return true if a pending reminder was set; false if there are no more reminders
      */
-    @VisibleForTesting
-    public static boolean queueAlertReminder(Context context, int subId, boolean firstTime) {
-        // Stop any alert reminder sound and cancel any previously queued reminders.
-        cancelAlertReminder();
-
+    public static boolean queueAlertReminder(Context context, long alertId, int subId,
+            boolean firstTime) {
         SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
-        String prefStr = prefs.getString(CellBroadcastSettings.KEY_ALERT_REMINDER_INTERVAL,
-                null);
-        int reminderIntervalMinutes;
-
-        if (prefStr == null) {
-            if (DBG) log("no preference value for alert reminder");
-            return false;
-        }
-        try {
-            reminderIntervalMinutes = Integer.valueOf(prefStr);
-        } catch (NumberFormatException ignored) {
-            CellBroadcastReceiverMetrics.getInstance().logModuleError(
-                    ERRSRC_CBR, ERRTYPE_REMINDERINTERVAL);
-            loge("invalid alert reminder interval preference: " + prefStr);
-            return false;
-        }
+        int reminderIntervalMinutes = getReminderIntervalMinutes(prefs);
 
         if (reminderIntervalMinutes == 0) {
             if (DBG) log("Reminder is turned off.");
@@ -179,57 +151,83 @@ public class CellBroadcastAlertReminder extends Service {
             return false;
         }
 
+        int firstIntervalMinutes = reminderIntervalMinutes;
         if (firstTime) {
             Resources res = CellBroadcastSettings.getResourcesByOperator(context, subId,
                     CellBroadcastReceiver.getRoamingOperatorSupported(context));
             int interval = res.getInteger(R.integer.first_reminder_interval_in_min);
             // If there is first reminder interval configured, use it.
             if (interval != 0) {
-                reminderIntervalMinutes = interval;
+                firstIntervalMinutes = interval;
             } else if (reminderIntervalMinutes == 1) {
-                reminderIntervalMinutes = 2;   // "1" = one reminder after 2 minutes
+                firstIntervalMinutes = 2;   // "1" = one reminder after 2 minutes
             }
         }
 
-        if (DBG) log("queueAlertReminder() in " + reminderIntervalMinutes + " minutes");
+        if (DBG) log("queueAlertReminder() in " + firstIntervalMinutes + " minutes");
 
-        Intent playIntent = new Intent(context, CellBroadcastAlertReminder.class);
-        playIntent.setAction(ACTION_PLAY_ALERT_REMINDER);
-        playIntent.putExtra(ALERT_REMINDER_VIBRATE_EXTRA,
+        // remind user after 2 minutes or 15 minutes
+        CellBroadcastReminderScheduler.getInstance(context).schedule(alertId, subId,
+                firstIntervalMinutes * DateUtils.MINUTE_IN_MILLIS,
+                reminderIntervalMinutes == 1
+                        ? 0 : reminderIntervalMinutes * DateUtils.MINUTE_IN_MILLIS,
                 prefs.getBoolean(CellBroadcastSettings.KEY_ENABLE_ALERT_VIBRATE, true));
-        playIntent.putExtra(SubscriptionManager.EXTRA_SUBSCRIPTION_INDEX, subId);
-        sPlayReminderIntent = PendingIntent.getService(context, 0, playIntent,
-                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+        log("Set reminder in " + firstIntervalMinutes + " minutes");
+        return true;
+    }
 
-        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
-        if (alarmManager == null) {
-            loge("can't get Alarm Service");
-            return false;
+    /**
+     * @return the alert reminder interval preference in minutes, where 1 means remind once, or
+     * 0 if the reminders are turned off or the preference is not valid
+     */
+    private static int getReminderIntervalMinutes(SharedPreferences prefs) {
+        String prefStr = prefs.getString(CellBroadcastSettings.KEY_ALERT_REMINDER_INTERVAL,
+                null);
+        if (prefStr == null) {
+            if (DBG) log("no preference value for alert reminder");
+            return 0;
+        }
+        try {
+            return Integer.valueOf(prefStr);
+        } catch (NumberFormatException ignored) {
+            CellBroadcastReceiverMetrics.getInstance().logModuleError(
+                    ERRSRC_CBR, ERRTYPE_REMINDERINTERVAL);
+            loge("invalid alert reminder interval preference: " + prefStr);
+            return 0;
         }
-
-        // remind user after 2 minutes or 15 minutes
-        long triggerTime = SystemClock.elapsedRealtime() + (reminderIntervalMinutes * 60000);
-        // We use setExact instead of set because this is for emergency reminder.
-        alarmManager.setExact(AlarmManager.ELAPSED_REALTIME_WAKEUP,
-                triggerTime, sPlayReminderIntent);
-        log("Set reminder in " + reminderIntervalMinutes + " minutes");
-        return true;
     }
 
     /**
-     * Stops alert reminder and cancels any queued reminders.
+     * Stops alert reminder and cancels the queued reminders of all alerts. Called on the main
+     * thread.
+     *
+     * @param context Context.
      */
-    static void cancelAlertReminder() {
+    static void cancelAlertReminder(Context context) {
         if (DBG) log("cancelAlertReminder()");
-        if (sPlayReminderRingtone != null) {
-            if (DBG) log("stopping play reminder ringtone");
-            sPlayReminderRingtone.stop();
-            sPlayReminderRingtone = null;
-        }
-        if (sPlayReminderIntent != null) {
-            if (DBG) log("canceling pending play reminder intent");
-            sPlayReminderIntent.cancel();
-            sPlayReminderIntent = null;
+        CellBroadcastReminderScheduler scheduler =
+                CellBroadcastReminderScheduler.getInstance(context);
+        scheduler.cancelAll();
+        scheduler.releaseSound();
+    }
+
+    /**
+     * Stops alert reminder and cancels the queued reminders of an alert, and of the alerts
+     * which are not known as they can't be dismissed by themselves. Called on the main thread.
+     *
+     * @param context Context.
+     * @param alertId The alert, i.e. its received time.
+     */
+    static void cancelAlertReminder(Context context, long alertId) {
+        if (DBG) log("cancelAlertReminder() for alert " + alertId);
+        CellBroadcastReminderScheduler scheduler =
+                CellBroadcastReminderScheduler.getInstance(context);
+        scheduler.cancel(alertId);
+        scheduler.cancel(ALERT_ID_UNKNOWN);
+        if (scheduler.size() == 0) {
+            scheduler.releaseSound();
+        } else {
+            scheduler.stopSound();
         }
     }
 
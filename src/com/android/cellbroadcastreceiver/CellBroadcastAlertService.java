@@ -33,6 +33,7 @@ import static com.android.cellbroadcastservice.CellBroadcastMetrics.RPT_GSM;
 import static com.android.cellbroadcastservice.CellBroadcastMetrics.SRC_CBR;
 
 import android.annotation.NonNull;
+import android.annotation.Nullable;
 import android.app.ActivityManager;
 import android.app.ActivityOptions;
 import android.app.Notification;
@@ -57,6 +58,7 @@ import android.os.IBinder;
 import android.os.Looper;
 import android.os.PowerManager;
 import android.os.SystemProperties;
+import android.os.Trace;
 import android.os.UserHandle;
 import android.preference.PreferenceManager;
 import android.provider.Telephony;
@@ -72,6 +74,8 @@ import android.view.Display;
 import com.android.cellbroadcastreceiver.CellBroadcastChannelManager.CellBroadcastChannelRange;
 import com.android.internal.annotations.VisibleForTesting;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
@@ -194,11 +198,21 @@ public class CellBroadcastAlertService extends Service {
         Log.d(TAG, "onStartCommand: " + action);
         if (Telephony.Sms.Intents.ACTION_SMS_EMERGENCY_CB_RECEIVED.equals(action) ||
                 Telephony.Sms.Intents.SMS_CB_RECEIVED_ACTION.equals(action)) {
-            handleCellBroadcastIntent(intent);
+            Trace.beginSection("CBR.handleCellBroadcastIntent");
+            try {
+                handleCellBroadcastIntent(intent);
+            } finally {
+                Trace.endSection();
+            }
         } else if (SHOW_NEW_ALERT_ACTION.equals(action)) {
             if (UserHandle.myUserId() == ((ActivityManager) getSystemService(
                     Context.ACTIVITY_SERVICE)).getCurrentUser()) {
-                showNewAlert(intent);
+                Trace.beginSection("CBR.showNewAlert");
+                try {
+                    showNewAlert(intent);
+                } finally {
+                    Trace.endSection();
+                }
             } else {
                 Log.d(TAG, "Not active user, ignore the alert display");
             }
@@ -370,6 +384,8 @@ public class CellBroadcastAlertService extends Service {
             Log.e(TAG, "received SMS_CB_RECEIVED_ACTION with no message extra");
             return;
         }
+        CellBroadcastAlertLatency.getInstance().onStage(
+                CellBroadcastAlertLatency.STAGE_SERVICE_STARTED, intent);
 
         if (message.getMessageFormat() == MESSAGE_FORMAT_3GPP) {
             CellBroadcastReceiverMetrics.getInstance().logMessageReported(mContext,
@@ -382,25 +398,55 @@ public class CellBroadcastAlertService extends Service {
         if (!shouldDisplayMessage(message)) {
             return;
         }
+        final CellBroadcastDuplicateCache duplicateCache =
+                CellBroadcastDuplicateCache.getInstance(mContext);
+        final long now = System.currentTimeMillis();
 
         final Intent alertIntent = new Intent(SHOW_NEW_ALERT_ACTION);
         alertIntent.setClass(this, CellBroadcastAlertService.class);
         alertIntent.putExtra(EXTRA_MESSAGE, message);
+        CellBroadcastAlertLatency.copyReceiveTime(intent, alertIntent);
+
+        final CellBroadcastChannelManager channelManager =
+                new CellBroadcastChannelManager(mContext, message.getSubscriptionId());
+        final CellBroadcastChannelRange range = channelManager
+                .getCellBroadcastChannelRangeFromMessage(message);
 
-        // write to database on a background thread
-        new CellBroadcastContentProvider.AsyncCellBroadcastTask(getContentResolver())
+        // write to database on a background thread. The alert lane does not wait behind other
+        // operations of the provider, and the insert does not wait for the database to be
+        // initialized, so the alert is shown once it is stored without a long delay.
+        new CellBroadcastContentProvider.AsyncCellBroadcastTask(getContentResolver(),
+                CellBroadcastOperationExecutor.LANE_ALERT)
                 .execute((CellBroadcastContentProvider.CellBroadcastOperation) provider -> {
-                    CellBroadcastChannelManager channelManager =
-                            new CellBroadcastChannelManager(mContext, message.getSubscriptionId());
-                    CellBroadcastChannelRange range = channelManager
-                            .getCellBroadcastChannelRangeFromMessage(message);
+                    // The framework might deliver an alert again, e.g. after a cell
+                    // reselection. Testers resend the same alerts on purpose, so repeats are
+                    // shown in testing mode. The cache reads its file on first use, so it is
+                    // checked here instead of on the main thread.
+                    if (!CellBroadcastReceiver.isTestingMode(getApplicationContext())
+                            && duplicateCache.isDuplicate(message, now)) {
+                        Log.d(TAG, "ignoring repeated alert, serialNumber="
+                                + message.getSerialNumber()
+                                + " serviceCategory=" + message.getServiceCategory());
+                        return false;
+                    }
+                    duplicateCache.add(message, now);
+
                     // Check if the message was marked as do not display. Some channels
                     // are reserved for biz purpose where the msg should be routed as a data SMS
                     // rather than being displayed as pop-up or notification. However,
                     // per requirements those messages might also need to write to sms inbox...
                     boolean ret = false;
                     if (range != null && range.mDisplay == true) {
-                        if (provider.insertNewBroadcast(message)) {
+                        Trace.beginSection("CBR.insertNewBroadcast");
+                        boolean inserted;
+                        try {
+                            inserted = provider.insertNewBroadcast(message);
+                        } finally {
+                            Trace.endSection();
+                        }
+                        if (inserted) {
+                            CellBroadcastAlertLatency.getInstance().onStage(
+                                    CellBroadcastAlertLatency.STAGE_STORED, alertIntent);
                             // new message, show the alert or notification on UI thread
                             // if not display..
                             startService(alertIntent);
@@ -425,6 +471,7 @@ public class CellBroadcastAlertService extends Service {
                             provider.writeMessageToSmsInbox(message, mContext);
                         }
                     }
+                    duplicateCache.save();
 
                     return ret;
                 });
@@ -456,6 +503,8 @@ public class CellBroadcastAlertService extends Service {
             Log.e(TAG, "received SHOW_NEW_ALERT_ACTION with no message extra");
             return;
         }
+        CellBroadcastAlertLatency.getInstance().onStage(
+                CellBroadcastAlertLatency.STAGE_SHOW_ALERT, intent);
 
         if (mTelephonyManager.getCallState() != TelephonyManager.CALL_STATE_IDLE
                 && CellBroadcastSettings.getResourcesByOperator(mContext, cbm.getSubscriptionId(),
@@ -472,7 +521,7 @@ public class CellBroadcastAlertService extends Service {
                 mContext, cbm.getSubscriptionId());
         if (channelManager.isEmergencyMessage(cbm) && !sRemindAfterCallFinish) {
             // start alert sound / vibration / TTS and display full-screen alert
-            openEmergencyAlertNotification(cbm);
+            openEmergencyAlertNotification(cbm, intent);
             Resources res = CellBroadcastSettings.getResources(mContext, cbm.getSubscriptionId());
 
             CellBroadcastChannelRange range = channelManager
@@ -498,6 +547,8 @@ public class CellBroadcastAlertService extends Service {
             ArrayList<SmsCbMessage> messageList = CellBroadcastReceiverApp
                     .addNewMessageToList(cbm);
             addToNotificationBar(cbm, messageList, this, false, true, false);
+            CellBroadcastAlertLatency.getInstance().onStage(
+                    CellBroadcastAlertLatency.STAGE_NOTIFIED, intent);
         }
         CellBroadcastReceiverMetrics.getInstance().logFeatureChangedAsNeeded(mContext);
     }
@@ -631,8 +682,11 @@ public class CellBroadcastAlertService extends Service {
     /**
      * Display an alert message for emergency alerts.
      * @param message the alert to display
+     * @param alertIntent the intent which showed the alert, to carry over its receive time, or
+     * null if the alert is shown again later
      */
-    private void openEmergencyAlertNotification(SmsCbMessage message) {
+    private void openEmergencyAlertNotification(SmsCbMessage message,
+            @Nullable Intent alertIntent) {
         if (!shouldDisplayFullScreenMessage(message)) {
             Log.d(TAG, "openEmergencyAlertNotification: do not show full screen alert "
                     + "due to user preference");
@@ -734,9 +788,12 @@ public class CellBroadcastAlertService extends Service {
 
         audioIntent.putExtra(CellBroadcastAlertAudio.ALERT_AUDIO_SUB_INDEX,
                 message.getSubscriptionId());
+        audioIntent.putExtra(CellBroadcastAlertAudio.ALERT_AUDIO_RECEIVED_TIME,
+                message.getReceivedTime());
         audioIntent.putExtra(CellBroadcastAlertAudio.ALERT_AUDIO_DURATION,
                 (range != null) ? range.mAlertDuration : -1);
 
+        CellBroadcastAlertLatency.copyReceiveTime(alertIntent, audioIntent);
         startService(audioIntent);
 
         ArrayList<SmsCbMessage> messageList = new ArrayList<>();
@@ -750,6 +807,7 @@ public class CellBroadcastAlertService extends Service {
             Intent alertDialogIntent = createDisplayMessageIntent(this,
                     CellBroadcastAlertDialog.class, messageList);
             alertDialogIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+            CellBroadcastAlertLatency.copyReceiveTime(alertIntent, alertDialogIntent);
 
             int displayId = SystemProperties.getInt(PROP_DISPLAY, Display.DEFAULT_DISPLAY);
             Log.d(TAG, "openEmergencyAlertNotification: current displayId = " + displayId);
@@ -766,6 +824,9 @@ public class CellBroadcastAlertService extends Service {
             } else {
                 startActivity(alertDialogIntent);
             }
+            // The dialog is created on this thread once the system launched it, so the display
+            // model is prepared in the meantime, and the dialog only binds it.
+            CellBroadcastAlertDisplayModel.prepare(this, message);
         }
     }
 
@@ -787,9 +848,11 @@ public class CellBroadcastAlertService extends Service {
         Resources res = CellBroadcastSettings.getResourcesByOperator(context,
                 message.getSubscriptionId(),
                 CellBroadcastReceiver.getRoamingOperatorSupported(context));
-        int channelTitleId = CellBroadcastResources.getDialogTitleResource(context, message);
-        CharSequence channelName = context.getText(channelTitleId);
-        String messageBody = message.getMessageBody();
+        CellBroadcastNotificationComposer composer =
+                CellBroadcastNotificationComposer.getInstance();
+        CellBroadcastNotificationComposer.Line line = composer.getLine(context, message);
+        CharSequence channelName = line.getTitle();
+        String messageBody = line.getBody();
         final NotificationManager notificationManager =
                 (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
         createNotificationChannels(context);
@@ -797,11 +860,55 @@ public class CellBroadcastAlertService extends Service {
         boolean isWatch = context.getPackageManager()
                 .hasSystemFeature(PackageManager.FEATURE_WATCH);
         int notificationId = NOTIFICATION_ID;
-        // Create intent to show the new messages when user selects the notification.
-        Intent intent;
         if (isWatch) {
             // For FEATURE_WATCH we want to mark as read and use a unique notification id
             notificationId = (message.getServiceCategory() << 16 | message.getSerialNumber());
+        }
+
+        String channelId;
+        if (!line.isEmergency()) {
+            channelId = NOTIFICATION_CHANNEL_NON_EMERGENCY_ALERTS;
+        } else if (sRemindAfterCallFinish) {
+            channelId = NOTIFICATION_CHANNEL_EMERGENCY_ALERTS_IN_VOICECALL;
+        } else if (fromDialog) {
+            channelId = NOTIFICATION_CHANNEL_EMERGENCY_ALERTS;
+        } else {
+            channelId = NOTIFICATION_CHANNEL_HIGH_PRIORITY_EMERGENCY_ALERTS;
+        }
+
+        boolean nonSwipeableNotification = message.isEmergencyMessage()
+                && CellBroadcastSettings.getResources(context, message.getSubscriptionId())
+                .getBoolean(R.bool.non_swipeable_notification) || sRemindAfterCallFinish;
+
+        // increment unread alert count (decremented when user dismisses alert dialog)
+        int unreadCount = messageList.size();
+        boolean showCount = unreadCount > 1
+                || res.getBoolean(R.bool.disable_capture_alert_dialog);
+        CharSequence title = null;
+        CharSequence text;
+        if (showCount) {
+            // use generic count of unread broadcasts if more than one unread
+            if (res.getBoolean(R.bool.show_alert_title)) {
+                title = context.getString(R.string.notification_multiple_title);
+            }
+            text = context.getString(R.string.notification_multiple, unreadCount);
+        } else {
+            if (res.getBoolean(R.bool.show_alert_title)) {
+                title = channelName;
+            }
+            text = messageBody;
+        }
+
+        // the notification is only built if it changed, or should alert again.
+        if (!composer.shouldNotify(notificationId, new CellBroadcastNotificationComposer.Content(
+                channelId, title, text, nonSwipeableNotification, unreadCount, message,
+                fromSaveState, fromDialog), shouldAlert)) {
+            return;
+        }
+
+        // Create intent to show the new messages when user selects the notification.
+        Intent intent;
+        if (isWatch) {
             intent = createMarkAsReadIntent(context, message.getReceivedTime(), notificationId);
         } else {
             // For anything else we handle it normally
@@ -823,23 +930,6 @@ public class CellBroadcastAlertService extends Service {
                             PendingIntent.FLAG_UPDATE_CURRENT
                             | PendingIntent.FLAG_IMMUTABLE);
         }
-        CellBroadcastChannelManager channelManager = new CellBroadcastChannelManager(
-                context, message.getSubscriptionId());
-
-        String channelId;
-        if (!channelManager.isEmergencyMessage(message)) {
-            channelId = NOTIFICATION_CHANNEL_NON_EMERGENCY_ALERTS;
-        } else if (sRemindAfterCallFinish) {
-            channelId = NOTIFICATION_CHANNEL_EMERGENCY_ALERTS_IN_VOICECALL;
-        } else if (fromDialog) {
-            channelId = NOTIFICATION_CHANNEL_EMERGENCY_ALERTS;
-        } else {
-            channelId = NOTIFICATION_CHANNEL_HIGH_PRIORITY_EMERGENCY_ALERTS;
-        }
-
-        boolean nonSwipeableNotification = message.isEmergencyMessage()
-                && CellBroadcastSettings.getResources(context, message.getSubscriptionId())
-                .getBoolean(R.bool.non_swipeable_notification) || sRemindAfterCallFinish;
 
         // use default sound/vibration/lights for non-emergency broadcasts
         Notification.Builder builder =
@@ -877,20 +967,12 @@ public class CellBroadcastAlertService extends Service {
             builder.setDefaults(Notification.DEFAULT_ALL);
         }
 
-        // increment unread alert count (decremented when user dismisses alert dialog)
-        int unreadCount = messageList.size();
-        if (unreadCount > 1 || res.getBoolean(R.bool.disable_capture_alert_dialog)) {
-            // use generic count of unread broadcasts if more than one unread
-            if (res.getBoolean(R.bool.show_alert_title)) {
-                builder.setContentTitle(context.getString(R.string.notification_multiple_title));
-            }
-            builder.setContentText(context.getString(R.string.notification_multiple, unreadCount));
-        } else {
-            if (res.getBoolean(R.bool.show_alert_title)) {
-                builder.setContentTitle(channelName);
-            }
-            builder.setContentText(messageBody)
-                    .setStyle(new Notification.BigTextStyle().bigText(messageBody));
+        if (title != null) {
+            builder.setContentTitle(title);
+        }
+        builder.setContentText(text);
+        if (!showCount) {
+            builder.setStyle(new Notification.BigTextStyle().bigText(messageBody));
         }
 
         notificationManager.notify(notificationId, builder.build());
@@ -911,7 +993,7 @@ public class CellBroadcastAlertService extends Service {
         // Emergency messages use a different audio playback and display path. Since we use
         // addToNotification for the emergency display on FEATURE WATCH devices vs the
         // Alert Dialog, it will call this and override the emergency audio tone.
-        if (isWatch && !channelManager.isEmergencyMessage(message)) {
+        if (isWatch && !line.isEmergency()) {
             if (res.getBoolean(R.bool.watch_enable_non_emergency_audio)) {
                 // start audio/vibration/speech service for non emergency alerts
                 Intent audioIntent = new Intent(context, CellBroadcastAlertAudio.class);
@@ -927,8 +1009,17 @@ public class CellBroadcastAlertService extends Service {
     /**
      * Creates the notification channel and registers it with NotificationManager. If a channel
      * with the same ID is already registered, NotificationManager will ignore this call.
+     *
+     * <p>The channels are only registered once per process, and again when the locale or the
+     * carrier changed, see {@link CellBroadcastNotificationChannelRegistry}.
      */
     static void createNotificationChannels(Context context) {
+        CellBroadcastNotificationChannelRegistry registry =
+                CellBroadcastNotificationChannelRegistry.getInstance();
+        String fingerprint = CellBroadcastNotificationChannelRegistry.getFingerprint(context);
+        if (!registry.shouldCreate(fingerprint)) {
+            return;
+        }
         NotificationManager notificationManager =
                 (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
         final NotificationChannel highPriorityEmergency = new NotificationChannel(
@@ -981,6 +1072,7 @@ public class CellBroadcastAlertService extends Service {
                 context.getString(R.string.notification_channel_settings_updates),
                 NotificationManager.IMPORTANCE_DEFAULT);
         notificationManager.createNotificationChannel(settingsUpdate);
+        registry.onCreated(fingerprint);
     }
 
 
@@ -1016,6 +1108,19 @@ public class CellBroadcastAlertService extends Service {
         return new LocalBinder();
     }
 
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        CellBroadcastAlertLatency.getInstance().dump(writer);
+        CellBroadcastAlertTonePool.getInstance().dump(writer);
+        CellBroadcastReminderScheduler.getInstance(this).dump(writer);
+        CellBroadcastNotificationChannelRegistry.getInstance().dump(writer);
+        CellBroadcastNotificationComposer.getInstance().dump(writer);
+        CellBroadcastLinkifier.getInstance().dump(writer);
+        CellBroadcastAlertDisplayModel.dump(writer);
+        CellBroadcastAlertAnimator.dump(writer);
+        CellBroadcastSettings.dumpResourcesCache(writer);
+    }
+
     @VisibleForTesting
     class LocalBinder extends Binder {
         public CellBroadcastAlertService getService() {
@@ -1056,12 +1161,13 @@ public class CellBroadcastAlertService extends Service {
                     notificationManager.getActiveNotifications();
 
             if(notificationList != null && notificationList.length >0) {
-                notificationManager.cancel(CellBroadcastAlertService.NOTIFICATION_ID);
+                CellBroadcastNotificationComposer.getInstance().cancel(notificationManager,
+                        CellBroadcastAlertService.NOTIFICATION_ID);
                 ArrayList<SmsCbMessage> newMessageList =
                         CellBroadcastReceiverApp.getNewMessageList();
 
                 for (int i = 0; i < newMessageList.size(); i++) {
-                    openEmergencyAlertNotification(newMessageList.get(i));
+                    openEmergencyAlertNotification(newMessageList.get(i), null);
                 }
             }
             CellBroadcastReceiverApp.clearNewMessageList();
@@ -0,0 +1,330 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.cellbroadcastreceiver;
+
+import android.annotation.NonNull;
+import android.annotation.Nullable;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+import android.content.res.AssetFileDescriptor;
+import android.content.res.Resources;
+import android.media.AudioAttributes;
+import android.media.MediaPlayer;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
+import android.preference.PreferenceManager;
+import android.util.Log;
+import android.util.TypedValue;
+
+import com.android.cellbroadcastreceiver.CellBroadcastAlertService.AlertType;
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Keeps the alert tones prepared in media players, so that {@link CellBroadcastAlertAudio} can
+ * start the tone of an alert without opening and decoding the tone file first.
+ *
+ * <p>A player is prepared for each tone of the alert types, with the audio attributes the alerts
+ * will use, when the carrier configuration or the locale changes. The tones are keyed by the
+ * file they resolve to, as they are localized by language and operator. A player is handed out
+ * once, and another one is prepared in the background for the next alert. Alerts whose tone or
+ * attributes are not prepared fall back to preparing a player themselves.
+ */
+public class CellBroadcastAlertTonePool {
+
+    private static final String TAG = "CBAlertTonePool";
+
+    private static CellBroadcastAlertTonePool sInstance;
+
+    private final Object mLock = new Object();
+    // at most one prepared player for each tone and audio attributes.
+    private final HashMap<Key, MediaPlayer> mPlayers = new HashMap<>();
+    private Handler mHandler;
+    private long mHitCount;
+    private long mMissCount;
+    private long mPreparedCount;
+    private long mMaxPrepareMs;
+
+    /**
+     * Get the pool of the app.
+     */
+    public static synchronized CellBroadcastAlertTonePool getInstance() {
+        if (sInstance == null) {
+            sInstance = new CellBroadcastAlertTonePool();
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    public CellBroadcastAlertTonePool() {
+    }
+
+    /**
+     * Get the tone of an alert type.
+     *
+     * @param alertType the alert type
+     * @param isWatch true if the device is a watch
+     * @return the raw resource of the tone, or 0 if the alert plays the default notification
+     * sound
+     */
+    public static int getToneResource(@NonNull AlertType alertType, boolean isWatch) {
+        switch (alertType) {
+            case ETWS_EARTHQUAKE:
+                return R.raw.etws_earthquake;
+            case ETWS_TSUNAMI:
+                return R.raw.etws_tsunami;
+            case OTHER:
+                return R.raw.etws_other_disaster;
+            case ETWS_DEFAULT:
+                return R.raw.etws_default;
+            case INFO:
+            case AREA:
+                //TODO(b/279183006): remove watch workaround when URI supported.
+                return isWatch ? R.raw.watch_info : 0;
+            case TEST:
+            case DEFAULT:
+            default:
+                return R.raw.default_tone;
+        }
+    }
+
+    /**
+     * Prepare the tones of all alert types in the background, for the resources of a
+     * subscription. Players prepared for other tones, e.g. of the previous locale, are released.
+     *
+     * @param context the context
+     * @param subId the subscription index
+     */
+    public void prewarm(@NonNull Context context, int subId) {
+        post(() -> {
+            Context appContext = context.getApplicationContext();
+            Resources res = CellBroadcastSettings.getResourcesByOperator(appContext, subId,
+                    CellBroadcastReceiver.getRoamingOperatorSupported(appContext));
+            boolean isWatch = appContext.getPackageManager().hasSystemFeature(
+                    PackageManager.FEATURE_WATCH);
+            SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(appContext);
+            // as CellBroadcastAlertService decides, without the ranges which override it.
+            boolean overrideDnd = isWatch || (res.getBoolean(R.bool.show_override_dnd_settings)
+                    && prefs.getBoolean(CellBroadcastSettings.KEY_OVERRIDE_DND, false))
+                    || res.getBoolean(R.bool.override_dnd);
+            prewarmNow(res, isWatch, overrideDnd);
+        });
+    }
+
+    /**
+     * Prepare the tones of all alert types on the calling thread.
+     *
+     * @param res the resources the tones are read from
+     * @param isWatch true if the device is a watch
+     * @param overrideDnd true if the alerts override do not disturb
+     */
+    @VisibleForTesting
+    public void prewarmNow(@NonNull Resources res, boolean isWatch, boolean overrideDnd) {
+        HashMap<Key, Integer> tones = new HashMap<>();
+        for (AlertType alertType : AlertType.values()) {
+            int toneRes = getToneResource(alertType, isWatch);
+            if (toneRes != 0) {
+                AudioAttributes attributes = CellBroadcastAlertAudio.getAlertAudioAttributes(
+                        alertType, overrideDnd);
+                tones.put(new Key(res, toneRes, attributes), toneRes);
+            }
+        }
+        releaseAllExcept(tones.keySet());
+        for (Map.Entry<Key, Integer> tone : tones.entrySet()) {
+            prepareIfNeeded(res, tone.getValue(), tone.getKey());
+        }
+    }
+
+    /**
+     * Take the prepared player of a tone. Another player is prepared for the tone in the
+     * background, for the next alert with the same tone and attributes.
+     *
+     * @param res the resources the tone is read from
+     * @param toneRes the raw resource of the tone
+     * @param attributes the audio attributes of the alert
+     * @return the prepared player, which the caller owns and releases, or null if the tone is
+     * not prepared with these attributes
+     */
+    public @Nullable MediaPlayer acquire(@NonNull Resources res, int toneRes,
+            @NonNull AudioAttributes attributes) {
+        Key key = new Key(res, toneRes, attributes);
+        MediaPlayer player;
+        synchronized (mLock) {
+            player = mPlayers.remove(key);
+            if (player != null) {
+                mHitCount++;
+            } else {
+                mMissCount++;
+            }
+        }
+        post(() -> prepareIfNeeded(res, toneRes, key));
+        return player;
+    }
+
+    /**
+     * Release all prepared players, e.g. when the system runs low on memory.
+     */
+    public void clear() {
+        releaseAllExcept(null);
+    }
+
+    /**
+     * @return the number of prepared players
+     */
+    @VisibleForTesting
+    public int size() {
+        synchronized (mLock) {
+            return mPlayers.size();
+        }
+    }
+
+    /**
+     * Dump the prepared tones and how often the alerts found theirs prepared.
+     *
+     * @param writer the writer of the dump
+     */
+    public void dump(@NonNull PrintWriter writer) {
+        synchronized (mLock) {
+            writer.println("CellBroadcastAlertTonePool:");
+            writer.println("  prepared=" + mPlayers.size() + " hits=" + mHitCount
+                    + " misses=" + mMissCount + " preparedTotal=" + mPreparedCount
+                    + " maxPrepareMs=" + mMaxPrepareMs);
+            for (Key key : mPlayers.keySet()) {
+                writer.println("  " + key);
+            }
+        }
+    }
+
+    private void prepareIfNeeded(Resources res, int toneRes, Key key) {
+        synchronized (mLock) {
+            if (mPlayers.containsKey(key)) {
+                return;
+            }
+        }
+        long start = SystemClock.elapsedRealtime();
+        MediaPlayer player = new MediaPlayer();
+        try (AssetFileDescriptor afd = res.openRawResourceFd(toneRes)) {
+            player.setDataSource(afd.getFileDescriptor(), afd.getStartOffset(), afd.getLength());
+            player.setAudioAttributes(key.mAttributes);
+            player.prepare();
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "failed to prepare " + key + ": " + e);
+            player.release();
+            return;
+        }
+        long prepareMs = SystemClock.elapsedRealtime() - start;
+        synchronized (mLock) {
+            if (!mPlayers.containsKey(key)) {
+                mPlayers.put(key, player);
+                mPreparedCount++;
+                mMaxPrepareMs = Math.max(mMaxPrepareMs, prepareMs);
+                player = null;
+            }
+        }
+        if (player != null) {
+            player.release();
+        }
+        if (CellBroadcastReceiver.VDBG) {
+            Log.v(TAG, "prepared " + key + " in " + prepareMs + "ms");
+        }
+    }
+
+    private void releaseAllExcept(@Nullable Set<Key> keep) {
+        List<MediaPlayer> released = new ArrayList<>();
+        synchronized (mLock) {
+            Iterator<Map.Entry<Key, MediaPlayer>> it = mPlayers.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Key, MediaPlayer> entry = it.next();
+                if (keep == null || !keep.contains(entry.getKey())) {
+                    released.add(entry.getValue());
+                    it.remove();
+                }
+            }
+        }
+        for (MediaPlayer player : released) {
+            player.release();
+        }
+    }
+
+    private void post(Runnable task) {
+        Handler handler;
+        synchronized (mLock) {
+            if (mHandler == null) {
+                HandlerThread thread = new HandlerThread(TAG, Process.THREAD_PRIORITY_BACKGROUND);
+                thread.start();
+                mHandler = new Handler(thread.getLooper());
+            }
+            handler = mHandler;
+        }
+        handler.post(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                // a failed warm-up only means the alert prepares its tone itself.
+                Log.e(TAG, "failed to prepare tones", e);
+            }
+        });
+    }
+
+    /**
+     * Identifies a prepared tone by the file it resolved to, and the audio attributes it was
+     * prepared with, which cannot be changed once prepared.
+     */
+    private static class Key {
+        final String mFile;
+        final AudioAttributes mAttributes;
+
+        Key(Resources res, int toneRes, AudioAttributes attributes) {
+            TypedValue value = new TypedValue();
+            res.getValue(toneRes, value, true);
+            mFile = String.valueOf(value.string);
+            mAttributes = attributes;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return mFile.equals(key.mFile) && mAttributes.equals(key.mAttributes);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(mFile, mAttributes);
+        }
+
+        @Override
+        public String toString() {
+            return mFile + " usage=" + mAttributes.getUsage()
+                    + " flags=0x" + Integer.toHexString(mAttributes.getFlags());
+        }
+    }
+}
@@ -20,30 +20,47 @@ import static com.android.cellbroadcastservice.CellBroadcastMetrics.ERRSRC_CBR;
 import static com.android.cellbroadcastservice.CellBroadcastMetrics.ERRTYPE_PROVIDERINIT;
 
 import android.annotation.NonNull;
+import android.annotation.Nullable;
 import android.content.ContentProvider;
 import android.content.ContentProviderClient;
 import android.content.ContentResolver;
+import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.UriMatcher;
+import android.database.ContentObserver;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.MatrixCursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteQueryBuilder;
 import android.net.Uri;
-import android.os.AsyncTask;
 import android.os.Bundle;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.os.UserManager;
+import android.preference.PreferenceManager;
 import android.provider.Telephony;
-import android.telephony.SmsCbCmasInfo;
-import android.telephony.SmsCbEtwsInfo;
 import android.telephony.SmsCbLocation;
 import android.telephony.SmsCbMessage;
 import android.text.TextUtils;
+import android.util.ArrayMap;
+import android.util.ArraySet;
 import android.util.Log;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
 
 import com.android.internal.annotations.VisibleForTesting;
 
-import java.util.concurrent.CountDownLatch;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 /**
  * ContentProvider for the database of received cell broadcasts.
@@ -67,6 +84,83 @@ public class CellBroadcastContentProvider extends ContentProvider {
     /** URI matcher type to get a cell broadcast by ID. */
     private static final int CB_ALL_ID = 1;
 
+    /** URI matcher type to search cell broadcasts. */
+    private static final int CB_SEARCH = 2;
+
+    /**
+     * Content URI to search the message body of cell broadcasts. Results are sorted from most
+     * recently received to least recently received and returned a page at a time, see the
+     * {@code SEARCH_PARAM_*} query parameters.
+     */
+    @VisibleForTesting
+    public static final Uri SEARCH_URI = Uri.parse("content://cellbroadcasts-app/search");
+
+    /** Search query parameter for the keywords to match in the message body. */
+    public static final String SEARCH_PARAM_QUERY = "q";
+
+    /** Search query parameter to only return broadcasts of this service category. */
+    public static final String SEARCH_PARAM_CATEGORY = "category";
+
+    /** Search query parameter to only return broadcasts of this CMAS severity. */
+    public static final String SEARCH_PARAM_SEVERITY = "severity";
+
+    /** Search query parameter to only return broadcasts delivered at or after this time. */
+    public static final String SEARCH_PARAM_SINCE = "since";
+
+    /** Search query parameter to only return broadcasts delivered before this time. */
+    public static final String SEARCH_PARAM_UNTIL = "until";
+
+    /** Search query parameter for the maximum number of rows in the result. */
+    public static final String SEARCH_PARAM_LIMIT = "limit";
+
+    /** Search query parameter for the number of matching rows to skip. */
+    public static final String SEARCH_PARAM_OFFSET = "offset";
+
+    /** Number of rows returned by a search without {@link #SEARCH_PARAM_LIMIT}. */
+    @VisibleForTesting
+    public static final int SEARCH_DEFAULT_PAGE_SIZE = 50;
+
+    /** Maximum number of rows returned by a search. */
+    private static final int SEARCH_MAX_PAGE_SIZE = 500;
+
+    /** URI matcher type to get the changes of cell broadcasts. */
+    private static final int CB_CHANGES = 3;
+
+    /**
+     * Content URI to get the cell broadcasts changed after a change sequence number, with one row
+     * per changed broadcast holding its {@link Telephony.CellBroadcasts#_ID}, the latest
+     * {@link CellBroadcastDatabaseHelper#CHANGE_SEQUENCE} and
+     * {@link CellBroadcastDatabaseHelper#CHANGE_TYPE}, sorted by sequence number. The sequence
+     * number to start after is given by {@link #CHANGES_PARAM_SINCE}.
+     */
+    @VisibleForTesting
+    public static final Uri CHANGES_URI = Uri.parse("content://cellbroadcasts-app/changes");
+
+    /** Changes query parameter for the last change sequence number already known. */
+    public static final String CHANGES_PARAM_SINCE = "since";
+
+    /**
+     * Boolean cursor extra of {@link #CHANGES_URI} which is true if changes after the given
+     * sequence number were dropped from the change log, and the caller has to reload all rows.
+     */
+    public static final String EXTRA_CHANGES_TRUNCATED = "changes_truncated";
+
+    /**
+     * Notify the rows of the whole table instead of each row once an operation changed more rows
+     * than this.
+     */
+    private static final int MAX_ROW_NOTIFICATIONS = 100;
+
+    /**
+     * Maximum number of row IDs bound to one statement of a bulk operation, to stay below the
+     * limit of host parameters of SQLite.
+     */
+    private static final int MAX_ROW_IDS_PER_STATEMENT = 500;
+
+    /** Selection of the unread broadcasts; rows inserted without a read state are unread. */
+    private static final String UNREAD_SELECTION =
+            "IFNULL(" + Telephony.CellBroadcasts.MESSAGE_READ + ",0)=0";
+
     /** MIME type for the list of all cell broadcasts. */
     private static final String CB_LIST_TYPE = "vnd.android.cursor.dir/cellbroadcast";
 
@@ -75,22 +169,73 @@ public class CellBroadcastContentProvider extends ContentProvider {
 
     public static final String CALL_MIGRATION_METHOD = "migrate-legacy-data";
 
+    /** SMS thread IDs keyed by SMS sender address. */
+    private static final ArrayMap<String, Long> sSmsThreadIdCache = new ArrayMap<>();
+
+    /** Incremented whenever {@link #sSmsThreadIdCache} is invalidated. */
+    private static int sSmsThreadIdCacheGeneration = 0;
+
+    /** Observer for thread changes in the SMS provider, guarded by sSmsThreadIdCache. */
+    private static ContentObserver sSmsThreadObserver;
+
+    /** Values of R.bool.always_mark_sms_read keyed by subId and roaming operator. */
+    private static final ArrayMap<String, Boolean> sAlwaysMarkSmsReadCache = new ArrayMap<>();
+
     static {
         sUriMatcher.addURI(CB_AUTHORITY, null, CB_ALL);
         sUriMatcher.addURI(CB_AUTHORITY, "#", CB_ALL_ID);
+        sUriMatcher.addURI(CB_AUTHORITY, "search", CB_SEARCH);
+        sUriMatcher.addURI(CB_AUTHORITY, "changes", CB_CHANGES);
     }
 
+    /** Row URIs changed since the last notification keyed by flag, guarded by itself. */
+    private final SparseArray<ArraySet<Uri>> mPendingChanges = new SparseArray<>();
+
+    /** Database initialization is in progress on the background thread. */
+    private static final int INIT_STATE_INITIALIZING = 0;
+
+    /** Database is open and all staged inserts have been written. */
+    private static final int INIT_STATE_READY = 1;
+
     /**
-     * The database for this content provider. Before using this we need to wait on
-     * mInitializedLatch, which counts down once initialization finishes in a background thread
+     * The database for this content provider. Before using this we need to wait for the
+     * initialization in a background thread to finish, see {@link #awaitInit()}.
      */
 
     @VisibleForTesting
     public CellBroadcastDatabaseHelper mOpenHelper;
 
-    // Latch which counts down from 1 when initialization in CellBroadcastOpenHelper.tryToMigrateV13
-    // is finished
-    private final CountDownLatch mInitializedLatch = new CountDownLatch(1);
+    private final Object mInitLock = new Object();
+
+    // Initialization state, guarded by mInitLock. Moves to INIT_STATE_READY once
+    // CellBroadcastOpenHelper.tryToMigrateV13 is finished and the staged inserts are flushed.
+    private int mInitState = INIT_STATE_INITIALIZING;
+
+    // Alerts received while the database was initializing, guarded by mInitLock.
+    private final ArrayList<ContentValues> mStagedInserts = new ArrayList<>();
+
+    /**
+     * The file the staged alerts are written to before they are acknowledged, or null to only
+     * keep them in memory. Guarded by mInitLock.
+     */
+    @VisibleForTesting
+    public @Nullable CellBroadcastStagedInserts mStagedInsertsFile;
+
+    // Whether the alerts staged by a previous process were read, guarded by mInitLock.
+    private boolean mStagedInsertsLoaded;
+
+    // Whether a query was answered before the database was ready, guarded by mInitLock.
+    private boolean mNotifyWhenReady;
+
+    // Completed once the database is ready.
+    private final CompletableFuture<Void> mDatabaseReadyFuture = new CompletableFuture<>();
+
+    // Initialization metrics, guarded by mInitLock.
+    private long mInitStartTimeMs;
+    private long mInitDurationMs = -1;
+    private int mInitWaitCount;
+    private long mInitWaitTotalMs;
+    private int mStagedInsertCount;
 
     /**
      * Initialize content provider.
@@ -99,6 +244,8 @@ public class CellBroadcastContentProvider extends ContentProvider {
     @Override
     public boolean onCreate() {
         mOpenHelper = new CellBroadcastDatabaseHelper(getContext(), false);
+        mStagedInsertsFile = new CellBroadcastStagedInserts(
+                new File(getContext().getFilesDir(), CellBroadcastStagedInserts.FILE_NAME));
         // trigger this to create database explicitly. Otherwise the db will be created only after
         // the first query/update/insertion. Data migration is done inside db creation and we want
         // to migrate data from cellbroadcast-legacy immediately when upgrade to the mainline module
@@ -106,40 +253,243 @@ public class CellBroadcastContentProvider extends ContentProvider {
         // getReadable database will also call tryToMigrateV13 which copies the DB file to allow
         // for safe rollbacks.
         // This is done in a background thread to avoid triggering an ANR if the disk operations are
-        // too slow, and all other database uses should wait for the latch.
+        // too slow. New alerts are staged in a file until the database is ready, and all other
+        // database uses wait for the initialization to finish.
+        synchronized (mInitLock) {
+            mInitStartTimeMs = SystemClock.elapsedRealtime();
+        }
         new Thread(() -> {
-            mOpenHelper.getReadableDatabase();
-            mInitializedLatch.countDown();
-        }).start();
+            SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+            onDatabaseInitialized(db);
+            // Migrate data from cellbroadcast-legacy after the database is ready, so that new
+            // alerts and queries are not held behind a long migration. The migration commits
+            // in pages and resumes from its checkpoint if it gets interrupted.
+            if (!PreferenceManager.getDefaultSharedPreferences(getContext()).getBoolean(
+                    CellBroadcastDatabaseHelper.KEY_LEGACY_DATA_MIGRATION, false)) {
+                mOpenHelper.migrateFromLegacyIfNeeded(db);
+                getContext().getContentResolver().notifyChange(CONTENT_URI, null, false);
+            }
+        }, "CellBroadcastProviderInit").start();
         return true;
     }
 
-    protected SQLiteDatabase awaitInitAndGetWritableDatabase() {
-        while (mInitializedLatch.getCount() != 0) {
+    /**
+     * Flush the alerts staged during initialization and mark the database as ready.
+     */
+    @VisibleForTesting
+    protected void onDatabaseInitialized(SQLiteDatabase db) {
+        boolean changed = false;
+        while (true) {
+            ArrayList<ContentValues> staged;
+            synchronized (mInitLock) {
+                loadStagedInsertsLocked();
+                if (mStagedInserts.isEmpty()) {
+                    mInitState = INIT_STATE_READY;
+                    mInitDurationMs = SystemClock.elapsedRealtime() - mInitStartTimeMs;
+                    Log.d(TAG, "database ready in " + mInitDurationMs + "ms, waits="
+                            + mInitWaitCount + ", staged inserts=" + mStagedInsertCount);
+                    changed |= mNotifyWhenReady;
+                    break;
+                }
+                staged = new ArrayList<>(mStagedInserts);
+            }
+            // write outside of the lock so new alerts can still be staged meanwhile
+            db.beginTransaction();
             try {
-                mInitializedLatch.await();
-            } catch (InterruptedException e) {
-                CellBroadcastReceiverMetrics.getInstance().logModuleError(
-                        ERRSRC_CBR, ERRTYPE_PROVIDERINIT);
-                Log.e(TAG, "Interrupted while waiting for db initialization. e=" + e);
+                for (ContentValues cv : staged) {
+                    // the file of the staged alerts might not have been updated after they
+                    // were written, if the process died in between.
+                    if (isStagedInsertWritten(db, cv)) {
+                        continue;
+                    }
+                    if (db.insert(CellBroadcastDatabaseHelper.TABLE_NAME, null, cv) == -1) {
+                        Log.e(TAG, "failed to insert staged broadcast into database");
+                    }
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
             }
+            synchronized (mInitLock) {
+                mStagedInserts.subList(0, staged.size()).clear();
+                if (mStagedInsertsFile != null) {
+                    mStagedInsertsFile.write(mStagedInserts);
+                }
+            }
+            changed = true;
+        }
+        mDatabaseReadyFuture.complete(null);
+        if (changed) {
+            getContext().getContentResolver().notifyChange(CONTENT_URI, null, false);
         }
-        return mOpenHelper.getWritableDatabase();
     }
 
-    protected SQLiteDatabase awaitInitAndGetReadableDatabase() {
-        while (mInitializedLatch.getCount() != 0) {
+    /**
+     * Read the alerts staged by a previous process which died before they were written to the
+     * database, ahead of the alerts staged since.
+     */
+    private void loadStagedInsertsLocked() {
+        if (mStagedInsertsLoaded) {
+            return;
+        }
+        mStagedInsertsLoaded = true;
+        if (mStagedInsertsFile != null) {
+            List<ContentValues> previous = mStagedInsertsFile.read();
+            if (!previous.isEmpty()) {
+                Log.d(TAG, "restored " + previous.size() + " staged broadcasts");
+                mStagedInserts.addAll(0, previous);
+            }
+        }
+    }
+
+    /**
+     * @return true if a staged alert is in the database already
+     */
+    private static boolean isStagedInsertWritten(SQLiteDatabase db, ContentValues cv) {
+        return DatabaseUtils.queryNumEntries(db, CellBroadcastDatabaseHelper.TABLE_NAME,
+                Telephony.CellBroadcasts.DELIVERY_TIME + "=? AND "
+                        + Telephony.CellBroadcasts.SERIAL_NUMBER + "=? AND "
+                        + Telephony.CellBroadcasts.SERVICE_CATEGORY + "=?",
+                new String[] {
+                        cv.getAsString(Telephony.CellBroadcasts.DELIVERY_TIME),
+                        cv.getAsString(Telephony.CellBroadcasts.SERIAL_NUMBER),
+                        cv.getAsString(Telephony.CellBroadcasts.SERVICE_CATEGORY)}) > 0;
+    }
+
+    /**
+     * @return true if the database initialization is finished.
+     */
+    protected boolean isDatabaseReady() {
+        synchronized (mInitLock) {
+            return mInitState == INIT_STATE_READY;
+        }
+    }
+
+    /**
+     * Get a future which is completed once the database is initialized. Callers which must not
+     * block, e.g. the UI thread, can use this to defer queries until the database is ready.
+     *
+     * @return the future for database readiness
+     */
+    public @NonNull CompletableFuture<Void> getDatabaseReadyFuture() {
+        if (isDatabaseReady()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return mDatabaseReadyFuture;
+    }
+
+    /**
+     * Block until the database initialization is finished.
+     */
+    private void awaitInit() {
+        synchronized (mInitLock) {
+            if (mInitState == INIT_STATE_READY) {
+                return;
+            }
+            mInitWaitCount++;
+        }
+        long startTime = SystemClock.elapsedRealtime();
+        boolean interrupted = false;
+        while (true) {
             try {
-                mInitializedLatch.await();
+                mDatabaseReadyFuture.get();
+                break;
             } catch (InterruptedException e) {
-                CellBroadcastReceiverMetrics.getInstance().logModuleError(
-                        ERRSRC_CBR, ERRTYPE_PROVIDERINIT);
-                Log.e(TAG, "Interrupted while waiting for db initialization. e=" + e);
+                if (!interrupted) {
+                    CellBroadcastReceiverMetrics.getInstance().logModuleError(
+                            ERRSRC_CBR, ERRTYPE_PROVIDERINIT);
+                    Log.e(TAG, "Interrupted while waiting for db initialization. e=" + e);
+                }
+                interrupted = true;
+            } catch (ExecutionException e) {
+                // the future is only completed normally.
+                throw new IllegalStateException(e);
             }
         }
+        synchronized (mInitLock) {
+            mInitWaitTotalMs += SystemClock.elapsedRealtime() - startTime;
+        }
+        if (interrupted) {
+            // restore the interrupt status for the caller
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Answer a query of the main thread with no rows while the database initializes, instead
+     * of blocking it. Observers of the cursor are notified once the database is ready.
+     *
+     * @return the empty cursor, or null if the query should wait for the database
+     */
+    private @Nullable Cursor getCursorIfNotReady(String[] projection) {
+        if (isDatabaseReady() || !Looper.getMainLooper().isCurrentThread()) {
+            return null;
+        }
+        synchronized (mInitLock) {
+            if (mInitState == INIT_STATE_READY) {
+                return null;
+            }
+            mNotifyWhenReady = true;
+        }
+        Log.d(TAG, "database not ready, no rows for the query of the main thread");
+        Cursor c = new MatrixCursor(projection != null
+                ? projection : CellBroadcastDatabaseHelper.QUERY_COLUMNS);
+        c.setNotificationUri(getContext().getContentResolver(), CONTENT_URI);
+        return c;
+    }
+
+    protected SQLiteDatabase awaitInitAndGetWritableDatabase() {
+        awaitInit();
+        return mOpenHelper.getWritableDatabase();
+    }
+
+    protected SQLiteDatabase awaitInitAndGetReadableDatabase() {
+        awaitInit();
         return mOpenHelper.getReadableDatabase();
     }
 
+    /**
+     * Stage a new alert if the database is still initializing. The alert is written to the file
+     * of the staged alerts before this returns, so it is kept if the process dies.
+     *
+     * @param cv the values of the alert to insert
+     * @return true if the alert was staged, false if it should be written directly
+     */
+    private boolean stageInsertIfNotReady(ContentValues cv) {
+        if (isDatabaseReady()) {
+            return false;
+        }
+        synchronized (mInitLock) {
+            if (mInitState == INIT_STATE_READY) {
+                return false;
+            }
+            loadStagedInsertsLocked();
+            mStagedInserts.add(cv);
+            if (mStagedInsertsFile != null && !mStagedInsertsFile.write(mStagedInserts)) {
+                // wait for the database instead of keeping the alert only in memory.
+                mStagedInserts.remove(mStagedInserts.size() - 1);
+                return false;
+            }
+            mStagedInsertCount++;
+            return true;
+        }
+    }
+
+    @Override
+    public void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        synchronized (mInitLock) {
+            writer.println("CellBroadcastContentProvider:");
+            writer.println("  initState=" + (mInitState == INIT_STATE_READY
+                    ? "ready" : "initializing"));
+            writer.println("  timeToReadyMs=" + mInitDurationMs);
+            writer.println("  initWaitCount=" + mInitWaitCount);
+            writer.println("  initWaitTotalMs=" + mInitWaitTotalMs);
+            writer.println("  stagedInsertCount=" + mStagedInsertCount);
+            writer.println("  pendingStagedInserts=" + mStagedInserts.size());
+        }
+        CellBroadcastOperationExecutor.getInstance().dump(writer);
+    }
+
     /**
      * Return a cursor for the cell broadcast table.
      * @param uri the URI to query.
@@ -154,9 +504,15 @@ public class CellBroadcastContentProvider extends ContentProvider {
     public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs,
             String sortOrder) {
         SQLiteQueryBuilder qb = new SQLiteQueryBuilder();
-        qb.setTables(CellBroadcastDatabaseHelper.TABLE_NAME);
+        qb.setTables(CellBroadcastDatabaseHelper.VIEW_NAME);
 
         int match = sUriMatcher.match(uri);
+        if (match == CB_ALL || match == CB_ALL_ID) {
+            Cursor c = getCursorIfNotReady(projection);
+            if (c != null) {
+                return c;
+            }
+        }
         switch (match) {
             case CB_ALL:
                 // get all broadcasts
@@ -167,6 +523,12 @@ public class CellBroadcastContentProvider extends ContentProvider {
                 qb.appendWhere("(_id=" + uri.getPathSegments().get(0) + ')');
                 break;
 
+            case CB_SEARCH:
+                return search(uri, projection, selection, selectionArgs);
+
+            case CB_CHANGES:
+                return queryChanges(uri);
+
             default:
                 Log.e(TAG, "Invalid query: " + uri);
                 throw new IllegalArgumentException("Unknown URI: " + uri);
@@ -187,6 +549,146 @@ public class CellBroadcastContentProvider extends ContentProvider {
         return c;
     }
 
+    /**
+     * Get the cell broadcasts changed after the sequence number given by the URI. A broadcast
+     * changed several times is returned once with its latest change.
+     */
+    private Cursor queryChanges(Uri uri) {
+        long since = getSearchParameter(uri, CHANGES_PARAM_SINCE, 0);
+        SQLiteDatabase db = awaitInitAndGetReadableDatabase();
+
+        // The changes after since are complete unless the oldest kept change is newer.
+        boolean truncated = false;
+        try (Cursor oldest = db.rawQuery("SELECT MIN(" + CellBroadcastDatabaseHelper.CHANGE_SEQUENCE
+                + ") FROM " + CellBroadcastDatabaseHelper.CHANGES_TABLE_NAME, null)) {
+            if (oldest.moveToFirst() && !oldest.isNull(0)) {
+                truncated = oldest.getLong(0) > since + 1;
+            }
+        }
+
+        Cursor c = db.rawQuery("SELECT "
+                + CellBroadcastDatabaseHelper.CHANGE_ROW_ID + " AS " + Telephony.CellBroadcasts._ID
+                + ", MAX(" + CellBroadcastDatabaseHelper.CHANGE_SEQUENCE + ") AS "
+                + CellBroadcastDatabaseHelper.CHANGE_SEQUENCE
+                + ", " + CellBroadcastDatabaseHelper.CHANGE_TYPE
+                + " FROM " + CellBroadcastDatabaseHelper.CHANGES_TABLE_NAME
+                + " WHERE " + CellBroadcastDatabaseHelper.CHANGE_SEQUENCE + ">?"
+                + " GROUP BY " + CellBroadcastDatabaseHelper.CHANGE_ROW_ID
+                + " ORDER BY " + CellBroadcastDatabaseHelper.CHANGE_SEQUENCE,
+                new String[] {Long.toString(since)});
+        if (c != null) {
+            Bundle extras = new Bundle();
+            extras.putBoolean(EXTRA_CHANGES_TRUNCATED, truncated);
+            c.setExtras(extras);
+            c.setNotificationUri(getContext().getContentResolver(), CONTENT_URI);
+        }
+        return c;
+    }
+
+    /**
+     * Search the cell broadcasts matching the filters of the query parameters of the URI. The
+     * keywords are matched as word prefixes through the full-text search index, so the cost does
+     * not grow with the number of stored messages.
+     */
+    private Cursor search(Uri uri, String[] projection, String selection,
+            String[] selectionArgs) {
+        StringBuilder where = new StringBuilder();
+        ArrayList<String> args = new ArrayList<>();
+
+        String match = buildSearchMatch(uri.getQueryParameter(SEARCH_PARAM_QUERY));
+        if (match != null) {
+            where.append(Telephony.CellBroadcasts._ID + " IN (SELECT docid FROM "
+                    + CellBroadcastDatabaseHelper.SEARCH_TABLE_NAME + " WHERE "
+                    + CellBroadcastDatabaseHelper.SEARCH_TABLE_NAME + " MATCH ?)");
+            args.add(match);
+        }
+        appendSearchFilter(uri, SEARCH_PARAM_CATEGORY,
+                Telephony.CellBroadcasts.SERVICE_CATEGORY + "=?", where, args);
+        appendSearchFilter(uri, SEARCH_PARAM_SEVERITY,
+                Telephony.CellBroadcasts.CMAS_SEVERITY + "=?", where, args);
+        appendSearchFilter(uri, SEARCH_PARAM_SINCE,
+                Telephony.CellBroadcasts.DELIVERY_TIME + ">=?", where, args);
+        appendSearchFilter(uri, SEARCH_PARAM_UNTIL,
+                Telephony.CellBroadcasts.DELIVERY_TIME + "<?", where, args);
+        if (!TextUtils.isEmpty(selection)) {
+            if (where.length() > 0) {
+                where.append(" AND ");
+            }
+            where.append('(').append(selection).append(')');
+            if (selectionArgs != null) {
+                Collections.addAll(args, selectionArgs);
+            }
+        }
+
+        long limit = getSearchParameter(uri, SEARCH_PARAM_LIMIT, SEARCH_DEFAULT_PAGE_SIZE);
+        long offset = getSearchParameter(uri, SEARCH_PARAM_OFFSET, 0);
+        if (limit <= 0 || offset < 0) {
+            throw new IllegalArgumentException("Invalid page: " + uri);
+        }
+        limit = Math.min(limit, SEARCH_MAX_PAGE_SIZE);
+
+        SQLiteQueryBuilder qb = new SQLiteQueryBuilder();
+        qb.setTables(CellBroadcastDatabaseHelper.VIEW_NAME);
+        SQLiteDatabase db = awaitInitAndGetReadableDatabase();
+        Cursor c = qb.query(db, projection, where.length() > 0 ? where.toString() : null,
+                args.toArray(new String[0]), null, null,
+                Telephony.CellBroadcasts.DEFAULT_SORT_ORDER, offset + "," + limit);
+        if (c != null) {
+            c.setNotificationUri(getContext().getContentResolver(), CONTENT_URI);
+        }
+        return c;
+    }
+
+    /**
+     * Convert the keywords typed by the user to an FTS match expression in which every keyword
+     * must match the prefix of a word. Quotes are dropped so that the input cannot change the
+     * syntax of the expression.
+     *
+     * @return the match expression, or null if there are no keywords
+     */
+    @VisibleForTesting
+    public static String buildSearchMatch(String keywords) {
+        if (TextUtils.isEmpty(keywords)) {
+            return null;
+        }
+        StringBuilder match = new StringBuilder();
+        for (String keyword : keywords.replace("\"", " ").trim().split("\\s+")) {
+            if (keyword.isEmpty()) {
+                continue;
+            }
+            if (match.length() > 0) {
+                match.append(' ');
+            }
+            match.append('"').append(keyword).append("*\"");
+        }
+        return match.length() > 0 ? match.toString() : null;
+    }
+
+    private static void appendSearchFilter(Uri uri, String parameter, String clause,
+            StringBuilder where, ArrayList<String> args) {
+        String value = uri.getQueryParameter(parameter);
+        if (TextUtils.isEmpty(value)) {
+            return;
+        }
+        if (where.length() > 0) {
+            where.append(" AND ");
+        }
+        where.append(clause);
+        args.add(Long.toString(getSearchParameter(uri, parameter, 0)));
+    }
+
+    private static long getSearchParameter(Uri uri, String parameter, long defaultValue) {
+        String value = uri.getQueryParameter(parameter);
+        if (TextUtils.isEmpty(value)) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + parameter + ": " + value);
+        }
+    }
+
     /**
      * Return the MIME type of the data at the specified URI.
      * @param uri the URI to query.
@@ -202,6 +704,10 @@ public class CellBroadcastContentProvider extends ContentProvider {
             case CB_ALL_ID:
                 return CB_TYPE;
 
+            case CB_SEARCH:
+            case CB_CHANGES:
+                return CB_LIST_TYPE;
+
             default:
                 return null;
         }
@@ -277,19 +783,11 @@ public class CellBroadcastContentProvider extends ContentProvider {
         cv.put(Telephony.CellBroadcasts.MESSAGE_FORMAT, message.getMessageFormat());
         cv.put(Telephony.CellBroadcasts.MESSAGE_PRIORITY, message.getMessagePriority());
 
-        SmsCbEtwsInfo etwsInfo = message.getEtwsWarningInfo();
-        if (etwsInfo != null) {
-            cv.put(Telephony.CellBroadcasts.ETWS_WARNING_TYPE, etwsInfo.getWarningType());
-        }
-
-        SmsCbCmasInfo cmasInfo = message.getCmasWarningInfo();
-        if (cmasInfo != null) {
-            cv.put(Telephony.CellBroadcasts.CMAS_MESSAGE_CLASS, cmasInfo.getMessageClass());
-            cv.put(Telephony.CellBroadcasts.CMAS_CATEGORY, cmasInfo.getCategory());
-            cv.put(Telephony.CellBroadcasts.CMAS_RESPONSE_TYPE, cmasInfo.getResponseType());
-            cv.put(Telephony.CellBroadcasts.CMAS_SEVERITY, cmasInfo.getSeverity());
-            cv.put(Telephony.CellBroadcasts.CMAS_URGENCY, cmasInfo.getUrgency());
-            cv.put(Telephony.CellBroadcasts.CMAS_CERTAINTY, cmasInfo.getCertainty());
+        // the ETWS and CMAS attributes are stored packed, and unpacked by the view for readers.
+        int warningAttributes = CellBroadcastWarningAttributes.pack(
+                message.getEtwsWarningInfo(), message.getCmasWarningInfo());
+        if (warningAttributes != 0) {
+            cv.put(CellBroadcastDatabaseHelper.WARNING_ATTRIBUTES, warningAttributes);
         }
 
         return cv;
@@ -302,15 +800,22 @@ public class CellBroadcastContentProvider extends ContentProvider {
      */
     @VisibleForTesting
     public boolean insertNewBroadcast(SmsCbMessage message) {
-        SQLiteDatabase db = awaitInitAndGetWritableDatabase();
         ContentValues cv = getContentValues(message);
+        if (stageInsertIfNotReady(cv)) {
+            // The alert is written once the database initialization finishes.
+            Log.d(TAG, "database not ready, staged new broadcast");
+            return true;
+        }
+        SQLiteDatabase db = awaitInitAndGetWritableDatabase();
 
         // Note: this method previously queried the database for duplicate message IDs, but this
         // is not compatible with CMAS carrier requirements and could also cause other emergency
         // alerts, e.g. ETWS, to not display if the database is filled with old messages.
         // Use duplicate message ID detection in CellBroadcastAlertService instead of DB query.
         long rowId = db.insert(CellBroadcastDatabaseHelper.TABLE_NAME, null, cv);
-        if (rowId == -1) {
+        if (rowId != -1) {
+            recordChange(ContentResolver.NOTIFY_INSERT, rowId);
+        } else {
             Log.e(TAG, "failed to insert new broadcast into database");
             // Return true on DB write failure because we still want to notify the user.
             // The SmsCbMessage will be passed with the intent, so the message will be
@@ -334,6 +839,7 @@ public class CellBroadcastContentProvider extends ContentProvider {
                 Telephony.CellBroadcasts._ID + "=?",
                 new String[]{Long.toString(rowId)});
         if (rowCount != 0) {
+            recordChange(ContentResolver.NOTIFY_DELETE, rowId);
             return true;
         } else {
             Log.e(TAG, "failed to delete broadcast at row " + rowId);
@@ -351,6 +857,7 @@ public class CellBroadcastContentProvider extends ContentProvider {
 
         int rowCount = db.delete(CellBroadcastDatabaseHelper.TABLE_NAME, null, null);
         if (rowCount != 0) {
+            recordChange(ContentResolver.NOTIFY_DELETE, -1);
             return true;
         } else {
             Log.e(TAG, "failed to delete all broadcasts");
@@ -358,6 +865,90 @@ public class CellBroadcastContentProvider extends ContentProvider {
         }
     }
 
+    /**
+     * Internal method to delete cell broadcasts by row ID in one transaction and notify observers
+     * once.
+     * @param rowIds the row IDs of the broadcasts to delete
+     * @return true if the database was updated, false otherwise
+     */
+    @VisibleForTesting
+    public boolean deleteBroadcasts(long[] rowIds) {
+        SQLiteDatabase db = awaitInitAndGetWritableDatabase();
+
+        int rowCount = 0;
+        db.beginTransaction();
+        try {
+            for (int start = 0; start < rowIds.length; start += MAX_ROW_IDS_PER_STATEMENT) {
+                int end = Math.min(rowIds.length, start + MAX_ROW_IDS_PER_STATEMENT);
+                rowCount += deleteAndRecordChanges(db,
+                        getInSelection(Telephony.CellBroadcasts._ID, end - start),
+                        getInSelectionArgs(rowIds, start, end));
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        if (rowCount != 0) {
+            return true;
+        } else {
+            Log.e(TAG, "failed to delete " + rowIds.length + " broadcasts");
+            return false;
+        }
+    }
+
+    /**
+     * @return the selection of {@code count} values of a column, e.g. {@code _id IN (?,?)}
+     */
+    private static String getInSelection(String columnName, int count) {
+        StringBuilder sb = new StringBuilder(columnName).append(" IN (");
+        for (int i = 0; i < count; i++) {
+            sb.append(i == 0 ? "?" : ",?");
+        }
+        return sb.append(')').toString();
+    }
+
+    /**
+     * @return the arguments of {@link #getInSelection} for the values in [start, end)
+     */
+    private static String[] getInSelectionArgs(long[] values, int start, int end) {
+        String[] args = new String[end - start];
+        for (int i = start; i < end; i++) {
+            args[i - start] = Long.toString(values[i]);
+        }
+        return args;
+    }
+
+    /**
+     * Internal method to mark cell broadcasts read by row ID in one transaction and notify
+     * observers once.
+     * @param rowIds the row IDs of the broadcasts to mark read
+     * @return true if the database was updated, false otherwise
+     */
+    @VisibleForTesting
+    public boolean markBroadcastsRead(long[] rowIds) {
+        return markBroadcastsRead(Telephony.CellBroadcasts._ID, rowIds);
+    }
+
+    /**
+     * Internal method to mark all unread cell broadcasts read and notify observers once.
+     * @return true if the database was updated, false otherwise
+     */
+    @VisibleForTesting
+    public boolean markAllBroadcastsRead() {
+        SQLiteDatabase db = awaitInitAndGetWritableDatabase();
+
+        ContentValues cv = new ContentValues(1);
+        cv.put(Telephony.CellBroadcasts.MESSAGE_READ, 1);
+
+        int rowCount = updateAndRecordChanges(db, cv, UNREAD_SELECTION, null);
+        if (rowCount != 0) {
+            return true;
+        } else {
+            Log.e(TAG, "failed to mark all broadcasts read");
+            return false;
+        }
+    }
+
     /**
      * Internal method to mark a broadcast as read and notify observers. The broadcast can be
      * identified by delivery time (for new alerts) or by row ID. The caller is responsible for
@@ -368,19 +959,42 @@ public class CellBroadcastContentProvider extends ContentProvider {
      * @return true if the database was updated, false otherwise
      */
     boolean markBroadcastRead(String columnName, long columnValue) {
+        return markBroadcastsRead(columnName, new long[] {columnValue});
+    }
+
+    /**
+     * Internal method to mark the unread broadcasts matching any of the given values read in one
+     * transaction and notify observers once.
+     *
+     * @param columnName the column name to query (ID or delivery time)
+     * @param columnValues the IDs or delivery times of the broadcasts to mark read
+     * @return true if the database was updated, false otherwise
+     */
+    private boolean markBroadcastsRead(String columnName, long[] columnValues) {
         SQLiteDatabase db = awaitInitAndGetWritableDatabase();
 
         ContentValues cv = new ContentValues(1);
         cv.put(Telephony.CellBroadcasts.MESSAGE_READ, 1);
 
-        String whereClause = columnName + "=?";
-        String[] whereArgs = new String[]{Long.toString(columnValue)};
-
-        int rowCount = db.update(CellBroadcastDatabaseHelper.TABLE_NAME, cv, whereClause, whereArgs);
+        int rowCount = 0;
+        db.beginTransaction();
+        try {
+            for (int start = 0; start < columnValues.length;
+                    start += MAX_ROW_IDS_PER_STATEMENT) {
+                int end = Math.min(columnValues.length, start + MAX_ROW_IDS_PER_STATEMENT);
+                rowCount += updateAndRecordChanges(db, cv, UNREAD_SELECTION + " AND "
+                        + getInSelection(columnName, end - start),
+                        getInSelectionArgs(columnValues, start, end));
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
         if (rowCount != 0) {
             return true;
         } else {
-            Log.e(TAG, "failed to mark broadcast read: " + columnName + " = " + columnValue);
+            Log.e(TAG, "failed to mark " + columnValues.length + " broadcasts read by "
+                    + columnName);
             return false;
         }
     }
@@ -405,8 +1019,7 @@ public class CellBroadcastContentProvider extends ContentProvider {
         String whereClause = columnName + "=?";
         String[] whereArgs = new String[]{Long.toString(columnValue)};
 
-        int rowCount = db.update(CellBroadcastDatabaseHelper.TABLE_NAME, cv, whereClause,
-                whereArgs);
+        int rowCount = updateAndRecordChanges(db, cv, whereClause, whereArgs);
         if (rowCount != 0) {
             return true;
         } else {
@@ -416,6 +1029,117 @@ public class CellBroadcastContentProvider extends ContentProvider {
         }
     }
 
+    /**
+     * Update the rows matching the where clause, and record the row of each of them as updated.
+     * @return the number of updated rows
+     */
+    private int updateAndRecordChanges(SQLiteDatabase db, ContentValues cv, String whereClause,
+            String[] whereArgs) {
+        db.beginTransaction();
+        try {
+            ArrayList<Long> rowIds = new ArrayList<>();
+            try (Cursor c = db.query(CellBroadcastDatabaseHelper.TABLE_NAME,
+                    new String[] {Telephony.CellBroadcasts._ID}, whereClause, whereArgs,
+                    null, null, null)) {
+                while (c.moveToNext()) {
+                    rowIds.add(c.getLong(0));
+                }
+            }
+            int rowCount = db.update(CellBroadcastDatabaseHelper.TABLE_NAME, cv, whereClause,
+                    whereArgs);
+            db.setTransactionSuccessful();
+            for (long rowId : rowIds) {
+                recordChange(ContentResolver.NOTIFY_UPDATE, rowId);
+            }
+            return rowCount;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Delete rows and record the rows which were deleted, see {@link #updateAndRecordChanges}.
+     *
+     * @return the number of deleted rows
+     */
+    private int deleteAndRecordChanges(SQLiteDatabase db, String whereClause,
+            String[] whereArgs) {
+        db.beginTransaction();
+        try {
+            ArrayList<Long> rowIds = new ArrayList<>();
+            try (Cursor c = db.query(CellBroadcastDatabaseHelper.TABLE_NAME,
+                    new String[] {Telephony.CellBroadcasts._ID}, whereClause, whereArgs,
+                    null, null, null)) {
+                while (c.moveToNext()) {
+                    rowIds.add(c.getLong(0));
+                }
+            }
+            int rowCount = db.delete(CellBroadcastDatabaseHelper.TABLE_NAME, whereClause,
+                    whereArgs);
+            db.setTransactionSuccessful();
+            for (long rowId : rowIds) {
+                recordChange(ContentResolver.NOTIFY_DELETE, rowId);
+            }
+            return rowCount;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Record a changed row, to be notified by {@link #notifyPendingChanges} once the operation
+     * finished.
+     *
+     * @param flag {@link ContentResolver#NOTIFY_INSERT}, {@link ContentResolver#NOTIFY_UPDATE}
+     * or {@link ContentResolver#NOTIFY_DELETE}
+     * @param rowId the row ID of the changed row, or -1 if all rows might have changed
+     */
+    private void recordChange(int flag, long rowId) {
+        synchronized (mPendingChanges) {
+            ArraySet<Uri> uris = mPendingChanges.get(flag);
+            if (uris == null) {
+                uris = new ArraySet<>();
+                mPendingChanges.put(flag, uris);
+            }
+            if (uris.contains(CONTENT_URI)) {
+                // the whole table is notified already.
+                return;
+            }
+            if (rowId < 0 || uris.size() >= MAX_ROW_NOTIFICATIONS) {
+                uris.clear();
+                uris.add(CONTENT_URI);
+            } else {
+                uris.add(ContentUris.withAppendedId(CONTENT_URI, rowId));
+            }
+        }
+    }
+
+    /**
+     * Notify observers of the rows changed since the last notification. Each changed row is
+     * notified as {@code CONTENT_URI/<id>} with the flag of its change, which observers of
+     * {@link #CONTENT_URI} receive when they observe descendants.
+     *
+     * @param resolver the content resolver to notify through
+     * @param changed whether the operation reported a change, to notify the whole table if no
+     *                row was recorded
+     */
+    void notifyPendingChanges(ContentResolver resolver, boolean changed) {
+        SparseArray<ArraySet<Uri>> changes;
+        synchronized (mPendingChanges) {
+            changes = mPendingChanges.clone();
+            mPendingChanges.clear();
+        }
+        if (changes.size() == 0) {
+            if (changed) {
+                resolver.notifyChange(CONTENT_URI, null, false);
+            }
+            return;
+        }
+        for (int i = 0; i < changes.size(); i++) {
+            resolver.notifyChange(changes.valueAt(i), null, changes.keyAt(i));
+        }
+    }
+
     /**
      * Write message to sms inbox if pending. e.g, when receive alerts in direct boot mode, we
      * might need to sync message to sms inbox after user unlock.
@@ -427,13 +1151,16 @@ public class CellBroadcastContentProvider extends ContentProvider {
         // query all messages currently marked as sms inbox sync pending
         try (Cursor cursor = query(
                 CellBroadcastContentProvider.CONTENT_URI,
-                CellBroadcastDatabaseHelper.QUERY_COLUMNS,
+                CellBroadcastDatabaseHelper.PACKED_QUERY_COLUMNS,
                 CellBroadcastDatabaseHelper.SMS_SYNC_PENDING + "=1",
                 null, null)) {
             if (cursor != null) {
+                CellBroadcastCursorAdapter.ColumnIndexes columns =
+                        new CellBroadcastCursorAdapter.ColumnIndexes(cursor);
+                SparseIntArray subIdCache = new SparseIntArray(2);
                 while (cursor.moveToNext()) {
                     SmsCbMessage message = CellBroadcastCursorAdapter
-                            .createFromCursor(context, cursor);
+                            .createFromCursor(context, cursor, columns, subIdCache);
                     if (message != null) {
                         Log.d(TAG, "handling message received pending for sms sync: "
                                 + message.toString());
@@ -471,19 +1198,17 @@ public class CellBroadcastContentProvider extends ContentProvider {
             return;
         }
         // composing SMS
+        String address =
+                CellBroadcastResources.getSmsSenderAddressResourceEnglishString(context, message);
         ContentValues cv = new ContentValues();
         cv.put(Telephony.Sms.Inbox.BODY, message.getMessageBody());
         cv.put(Telephony.Sms.Inbox.DATE, message.getReceivedTime());
         cv.put(Telephony.Sms.Inbox.SUBSCRIPTION_ID, message.getSubscriptionId());
         cv.put(Telephony.Sms.Inbox.SUBJECT, context.getString(
                 CellBroadcastResources.getDialogTitleResource(context, message)));
-        cv.put(Telephony.Sms.Inbox.ADDRESS,
-                CellBroadcastResources.getSmsSenderAddressResourceEnglishString(context, message));
-        cv.put(Telephony.Sms.Inbox.THREAD_ID, Telephony.Threads.getOrCreateThreadId(context,
-                CellBroadcastResources.getSmsSenderAddressResourceEnglishString(context, message)));
-        if (CellBroadcastSettings.getResourcesByOperator(context, message.getSubscriptionId(),
-                        CellBroadcastReceiver.getRoamingOperatorSupported(context))
-                .getBoolean(R.bool.always_mark_sms_read)) {
+        cv.put(Telephony.Sms.Inbox.ADDRESS, address);
+        cv.put(Telephony.Sms.Inbox.THREAD_ID, getOrCreateSmsThreadId(context, address));
+        if (shouldAlwaysMarkSmsRead(context, message.getSubscriptionId())) {
             // Always mark SMS message READ. End users expect when they read new CBS messages,
             // the unread alert count in the notification should be decreased, as they thought it
             // was coming from SMS. Now we are marking those SMS as read (SMS now serve as a message
@@ -500,6 +1225,91 @@ public class CellBroadcastContentProvider extends ContentProvider {
         }
     }
 
+    /**
+     * Get the SMS thread ID for the given sender address. The sender addresses are a small fixed
+     * set, so the thread IDs are cached to avoid a round-trip to the SMS provider for every
+     * message. The cache is dropped whenever the SMS provider reports a thread may be deleted.
+     *
+     * @param context the context to use
+     * @param address the SMS sender address
+     * @return the thread ID for the address
+     */
+    private static long getOrCreateSmsThreadId(@NonNull Context context, @NonNull String address) {
+        int generation;
+        synchronized (sSmsThreadIdCache) {
+            registerSmsThreadObserverIfNeeded(context);
+            Long threadId = sSmsThreadIdCache.get(address);
+            if (threadId != null) {
+                return threadId;
+            }
+            generation = sSmsThreadIdCacheGeneration;
+        }
+
+        long threadId = Telephony.Threads.getOrCreateThreadId(context, address);
+        synchronized (sSmsThreadIdCache) {
+            // Do not cache the thread ID if the threads changed while it was being resolved.
+            if (generation == sSmsThreadIdCacheGeneration) {
+                sSmsThreadIdCache.put(address, threadId);
+            }
+        }
+        return threadId;
+    }
+
+    private static void registerSmsThreadObserverIfNeeded(@NonNull Context context) {
+        if (sSmsThreadObserver != null) {
+            return;
+        }
+        sSmsThreadObserver = new ContentObserver(null) {
+            @Override
+            public void onChange(boolean selfChange, @NonNull Collection<Uri> uris, int flags) {
+                // Providers that do not report the type of change are handled conservatively.
+                if ((flags & ContentResolver.NOTIFY_DELETE) != 0
+                        || (flags & (ContentResolver.NOTIFY_INSERT
+                        | ContentResolver.NOTIFY_UPDATE)) == 0) {
+                    invalidateSmsThreadIdCache();
+                }
+            }
+        };
+        context.getApplicationContext().getContentResolver().registerContentObserver(
+                Telephony.Threads.CONTENT_URI, true, sSmsThreadObserver);
+    }
+
+    private static void invalidateSmsThreadIdCache() {
+        synchronized (sSmsThreadIdCache) {
+            sSmsThreadIdCache.clear();
+            sSmsThreadIdCacheGeneration++;
+        }
+    }
+
+    /**
+     * Check whether messages written to the SMS inbox should be marked as read. The value is
+     * cached per subscription and roaming operator until the carrier configuration changes.
+     */
+    private static boolean shouldAlwaysMarkSmsRead(@NonNull Context context, int subId) {
+        String operator = CellBroadcastReceiver.getRoamingOperatorSupported(context);
+        String key = subId + ":" + operator;
+        synchronized (sAlwaysMarkSmsReadCache) {
+            Boolean markRead = sAlwaysMarkSmsReadCache.get(key);
+            if (markRead == null) {
+                markRead = CellBroadcastSettings.getResourcesByOperator(context, subId, operator)
+                        .getBoolean(R.bool.always_mark_sms_read);
+                sAlwaysMarkSmsReadCache.put(key, markRead);
+            }
+            return markRead;
+        }
+    }
+
+    /**
+     * Clear the cached SMS inbox settings and thread IDs. Called when the carrier configuration
+     * changes.
+     */
+    static void resetSmsInboxCache() {
+        synchronized (sAlwaysMarkSmsReadCache) {
+            sAlwaysMarkSmsReadCache.clear();
+        }
+        invalidateSmsThreadIdCache();
+    }
+
     /** Callback for users of AsyncCellBroadcastOperation. */
     interface CellBroadcastOperation {
         /**
@@ -512,23 +1322,41 @@ public class CellBroadcastContentProvider extends ContentProvider {
 
     /**
      * Async task to call this content provider's internal methods on a background thread.
-     * The caller supplies the CellBroadcastOperation object to call for this provider.
+     * The caller supplies the CellBroadcastOperation object to call for this provider. The
+     * operation runs on {@link CellBroadcastOperationExecutor} in the lane of the task.
      */
-    static class AsyncCellBroadcastTask extends AsyncTask<CellBroadcastOperation, Void, Void> {
+    static class AsyncCellBroadcastTask {
         /** Reference to this app's content resolver. */
-        private ContentResolver mContentResolver;
+        private final ContentResolver mContentResolver;
+
+        private final int mLane;
 
+        /**
+         * Create a task for an action of the user.
+         */
         AsyncCellBroadcastTask(ContentResolver contentResolver) {
+            this(contentResolver, CellBroadcastOperationExecutor.LANE_USER);
+        }
+
+        /**
+         * @param lane the lane of the task, e.g. {@link CellBroadcastOperationExecutor#LANE_ALERT}
+         */
+        AsyncCellBroadcastTask(ContentResolver contentResolver, int lane) {
             mContentResolver = contentResolver;
+            mLane = lane;
         }
 
         /**
-         * Perform a generic operation on the CellBroadcastContentProvider.
-         * @param params the CellBroadcastOperation object to call for this provider
-         * @return void
+         * Queue a generic operation on the CellBroadcastContentProvider.
+         * @param operation the CellBroadcastOperation object to call for this provider
+         * @return false if the operation was rejected because too many operations are queued
          */
-        @Override
-        protected Void doInBackground(CellBroadcastOperation... params) {
+        boolean execute(CellBroadcastOperation operation) {
+            return CellBroadcastOperationExecutor.getInstance().execute(mLane,
+                    () -> run(operation));
+        }
+
+        private void run(CellBroadcastOperation operation) {
             ContentProviderClient cpc = mContentResolver.acquireContentProviderClient(
                     CellBroadcastContentProvider.CB_AUTHORITY);
             CellBroadcastContentProvider provider = (CellBroadcastContentProvider)
@@ -536,20 +1364,17 @@ public class CellBroadcastContentProvider extends ContentProvider {
 
             if (provider != null) {
                 try {
-                    boolean changed = params[0].execute(provider);
+                    boolean changed = operation.execute(provider);
                     if (changed) {
                         Log.d(TAG, "database changed: notifying observers...");
-                        mContentResolver.notifyChange(CONTENT_URI, null, false);
                     }
+                    provider.notifyPendingChanges(mContentResolver, changed);
                 } finally {
                     cpc.release();
                 }
             } else {
                 Log.e(TAG, "getLocalContentProvider() returned null");
             }
-
-            mContentResolver = null;    // free reference to content resolver
-            return null;
         }
     }
 }
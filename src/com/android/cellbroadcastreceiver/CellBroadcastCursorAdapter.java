@@ -16,6 +16,7 @@
 
 package com.android.cellbroadcastreceiver;
 
+import android.annotation.Nullable;
 import android.content.Context;
 import android.database.Cursor;
 import android.provider.Telephony;
@@ -24,6 +25,8 @@ import android.telephony.SmsCbEtwsInfo;
 import android.telephony.SmsCbLocation;
 import android.telephony.SmsCbMessage;
 import android.telephony.SubscriptionManager;
+import android.util.LruCache;
+import android.util.SparseIntArray;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -39,10 +42,37 @@ import com.android.modules.utils.build.SdkLevel;
  */
 public class CellBroadcastCursorAdapter extends CursorAdapter {
 
+    /** Maximum number of decoded rows kept in memory. */
+    @VisibleForTesting
+    public static final int ROW_CACHE_SIZE = 128;
+
+    /** Number of rows decoded in the background when a cursor is loaded. */
+    static final int PREFETCH_ROW_COUNT = 32;
+
+    /** Marker for slot indexes without a cached subscription ID. */
+    private static final int SUB_ID_NOT_CACHED = Integer.MIN_VALUE;
+
+    /** Marker for column indexes not looked up yet. */
+    private static final int COLUMN_UNRESOLVED = -2;
+
     private boolean mIsActionMode = false;
     private CheckedTextView mCheckedTextView;
     private ListView mListView;
 
+    // Column indexes of the current cursor, resolved in swapCursor.
+    private ColumnIndexes mColumnIndexes;
+
+    // Indexes of the _id and read columns of the current cursor, resolved on the first bind.
+    private int mIdColumn = COLUMN_UNRESOLVED;
+    private int mReadColumn = COLUMN_UNRESOLVED;
+
+    // Subscription IDs of the current cursor keyed by slot index.
+    private final SparseIntArray mSubIdCache = new SparseIntArray(2);
+
+    // Decoded rows keyed by _id, shared with the loader thread which prefetches the first rows.
+    private final LruCache<Long, CellBroadcastListItemModel> mRowCache =
+            new LruCache<>(ROW_CACHE_SIZE);
+
     public CellBroadcastCursorAdapter(Context context, ListView listview) {
         // don't set FLAG_AUTO_REQUERY or FLAG_REGISTER_CONTENT_OBSERVER
         super(context, null, 0);
@@ -59,54 +89,243 @@ public class CellBroadcastCursorAdapter extends CursorAdapter {
      */
     @Override
     public View newView(Context context, Cursor cursor, ViewGroup parent) {
-        SmsCbMessage message = createFromCursor(context, cursor);
-
+        // bindView is always called right after this, so do not decode the row here.
         LayoutInflater factory = LayoutInflater.from(context);
-        CellBroadcastListItem listItem = (CellBroadcastListItem) factory.inflate(
-                    R.layout.cell_broadcast_list_item, parent, false);
+        return factory.inflate(R.layout.cell_broadcast_list_item, parent, false);
+    }
+
+    /**
+     * Column indexes of a cursor, resolved once per cursor and reused for every row so that
+     * reading a row does not need to search the column names.
+     */
+    static final class ColumnIndexes {
+        final int mGeoScope;
+        final int mSerialNum;
+        final int mCategory;
+        final int mLanguage;
+        final int mBody;
+        final int mFormat;
+        final int mPriority;
+        final int mSlotIndex;
+        final int mPlmn;
+        final int mLac;
+        final int mCid;
+        final int mEtwsWarningType;
+        final int mCmasMessageClass;
+        final int mCmasCategory;
+        final int mCmasResponseType;
+        final int mCmasSeverity;
+        final int mCmasUrgency;
+        final int mCmasCertainty;
+        final int mWarningAttributes;
+        final int mTime;
+        final int mDcs;
+        final int mMaximumWaitTime;
+
+        ColumnIndexes(Cursor cursor) {
+            mGeoScope = cursor.getColumnIndexOrThrow(Telephony.CellBroadcasts.GEOGRAPHICAL_SCOPE);
+            mSerialNum = cursor.getColumnIndexOrThrow(Telephony.CellBroadcasts.SERIAL_NUMBER);
+            mCategory = cursor.getColumnIndexOrThrow(Telephony.CellBroadcasts.SERVICE_CATEGORY);
+            mLanguage = cursor.getColumnIndexOrThrow(Telephony.CellBroadcasts.LANGUAGE_CODE);
+            mBody = cursor.getColumnIndexOrThrow(Telephony.CellBroadcasts.MESSAGE_BODY);
+            mFormat = cursor.getColumnIndexOrThrow(Telephony.CellBroadcasts.MESSAGE_FORMAT);
+            mPriority = cursor.getColumnIndexOrThrow(Telephony.CellBroadcasts.MESSAGE_PRIORITY);
+            mSlotIndex = cursor.getColumnIndexOrThrow(Telephony.CellBroadcasts.SLOT_INDEX);
+            mPlmn = cursor.getColumnIndex(Telephony.CellBroadcasts.PLMN);
+            mLac = cursor.getColumnIndex(Telephony.CellBroadcasts.LAC);
+            mCid = cursor.getColumnIndex(Telephony.CellBroadcasts.CID);
+            mEtwsWarningType = cursor.getColumnIndex(Telephony.CellBroadcasts.ETWS_WARNING_TYPE);
+            mCmasMessageClass = cursor.getColumnIndex(
+                    Telephony.CellBroadcasts.CMAS_MESSAGE_CLASS);
+            mCmasCategory = cursor.getColumnIndex(Telephony.CellBroadcasts.CMAS_CATEGORY);
+            mCmasResponseType = cursor.getColumnIndex(
+                    Telephony.CellBroadcasts.CMAS_RESPONSE_TYPE);
+            mCmasSeverity = cursor.getColumnIndex(Telephony.CellBroadcasts.CMAS_SEVERITY);
+            mCmasUrgency = cursor.getColumnIndex(Telephony.CellBroadcasts.CMAS_URGENCY);
+            mCmasCertainty = cursor.getColumnIndex(Telephony.CellBroadcasts.CMAS_CERTAINTY);
+            mWarningAttributes = cursor.getColumnIndex(
+                    CellBroadcastDatabaseHelper.WARNING_ATTRIBUTES);
+
+            String timeColumn = null;
+            if (cursor.getColumnIndex(Telephony.CellBroadcasts.DELIVERY_TIME) >= 0) {
+                timeColumn = Telephony.CellBroadcasts.DELIVERY_TIME;
+            } else if (cursor.getColumnIndex(Telephony.CellBroadcasts.RECEIVED_TIME) >= 0) {
+                timeColumn = Telephony.CellBroadcasts.RECEIVED_TIME;
+            }
+            mTime = cursor.getColumnIndexOrThrow(timeColumn);
+
+            mDcs = cursor.getColumnIndex(Telephony.CellBroadcasts.DATA_CODING_SCHEME);
+            mMaximumWaitTime = cursor.getColumnIndex(Telephony.CellBroadcasts.MAXIMUM_WAIT_TIME);
+        }
+    }
+
+    @Override
+    public Cursor swapCursor(Cursor newCursor) {
+        // resolve the column indexes once for the new cursor rather than for every row.
+        mColumnIndexes = newCursor != null ? new ColumnIndexes(newCursor) : null;
+        mIdColumn = COLUMN_UNRESOLVED;
+        mReadColumn = COLUMN_UNRESOLVED;
+        // subscriptions might have changed since the last load.
+        mSubIdCache.clear();
+        return super.swapCursor(newCursor);
+    }
+
+    /**
+     * Create a message from the current row of the cursor, using the column indexes and
+     * subscription IDs cached for this adapter.
+     *
+     * @param context the context to use
+     * @param cursor the cursor, which is already moved to the row to read
+     * @return the message of the row
+     */
+    SmsCbMessage getMessageFromCursor(Context context, Cursor cursor) {
+        if (mColumnIndexes == null || cursor != getCursor()) {
+            return createFromCursor(context, cursor);
+        }
+        return createFromCursor(context, cursor, mColumnIndexes, mSubIdCache);
+    }
+
+    /**
+     * Get the decoded model of the current row of the cursor, from the row cache if possible.
+     *
+     * @param context the context to use
+     * @param cursor the cursor, which is already moved to the row to read
+     * @return the model of the row
+     */
+    CellBroadcastListItemModel getItemModel(Context context, Cursor cursor) {
+        int idColumn;
+        int readColumn;
+        if (cursor == getCursor()) {
+            if (mIdColumn == COLUMN_UNRESOLVED) {
+                mIdColumn = cursor.getColumnIndex(Telephony.CellBroadcasts._ID);
+                mReadColumn = cursor.getColumnIndex(Telephony.CellBroadcasts.MESSAGE_READ);
+            }
+            idColumn = mIdColumn;
+            readColumn = mReadColumn;
+        } else {
+            idColumn = cursor.getColumnIndex(Telephony.CellBroadcasts._ID);
+            readColumn = cursor.getColumnIndex(Telephony.CellBroadcasts.MESSAGE_READ);
+        }
+        if (idColumn < 0) {
+            SmsCbMessage message = getMessageFromCursor(context, cursor);
+            return CellBroadcastListItemModel.create(context, message,
+                    readColumn >= 0 ? cursor.getInt(readColumn) != 0
+                            : CellBroadcastListItemModel.queryMessageRead(context, message));
+        }
 
-        listItem.bind(message);
-        return listItem;
+        long id = cursor.getLong(idColumn);
+        CellBroadcastListItemModel model = mRowCache.get(id);
+        if (model == null) {
+            SmsCbMessage message = getMessageFromCursor(context, cursor);
+            model = CellBroadcastListItemModel.create(context, message,
+                    readColumn >= 0 ? cursor.getInt(readColumn) != 0
+                            : CellBroadcastListItemModel.queryMessageRead(context, message));
+            mRowCache.put(id, model);
+        } else if (readColumn >= 0) {
+            // the read state is the only column of a stored alert which might change.
+            CellBroadcastListItemModel updated = model.withRead(cursor.getInt(readColumn) != 0);
+            if (updated != model) {
+                model = updated;
+                mRowCache.put(id, model);
+            }
+        }
+        return model;
+    }
+
+    /**
+     * Decode the first rows of a newly loaded cursor so that the first screen of the history can
+     * be bound without decoding on the main thread. Called from the loader thread before the
+     * cursor is delivered, so the cursor is not shared with the main thread yet.
+     *
+     * @param context the context to use
+     * @param cursor the newly loaded cursor
+     */
+    void prefetchRows(Context context, Cursor cursor) {
+        int idColumn = cursor.getColumnIndex(Telephony.CellBroadcasts._ID);
+        if (idColumn < 0) {
+            return;
+        }
+        int readColumn = cursor.getColumnIndex(Telephony.CellBroadcasts.MESSAGE_READ);
+        ColumnIndexes columns = new ColumnIndexes(cursor);
+        SparseIntArray subIdCache = new SparseIntArray(2);
+        int position = cursor.getPosition();
+        try {
+            int count = Math.min(cursor.getCount(), PREFETCH_ROW_COUNT);
+            for (int i = 0; i < count && cursor.moveToPosition(i); i++) {
+                long id = cursor.getLong(idColumn);
+                CellBroadcastListItemModel model = mRowCache.get(id);
+                boolean read;
+                if (readColumn >= 0) {
+                    read = cursor.getInt(readColumn) != 0;
+                } else if (model != null) {
+                    continue;
+                } else {
+                    read = true;
+                }
+                if (model != null) {
+                    model = model.withRead(read);
+                } else {
+                    SmsCbMessage message = createFromCursor(context, cursor, columns, subIdCache);
+                    if (readColumn < 0) {
+                        read = CellBroadcastListItemModel.queryMessageRead(context, message);
+                    }
+                    model = CellBroadcastListItemModel.create(context, message, read);
+                }
+                mRowCache.put(id, model);
+            }
+        } finally {
+            cursor.moveToPosition(position);
+        }
+    }
+
+    /**
+     * Drop all decoded rows, e.g. when the source of the history or the locale changed.
+     */
+    void clearRowCache() {
+        mRowCache.evictAll();
     }
 
     static SmsCbMessage createFromCursor(Context context, Cursor cursor) {
-        int geoScope = cursor.getInt(
-                cursor.getColumnIndexOrThrow(Telephony.CellBroadcasts.GEOGRAPHICAL_SCOPE));
-        int serialNum = cursor.getInt(
-                cursor.getColumnIndexOrThrow(Telephony.CellBroadcasts.SERIAL_NUMBER));
-        int category = cursor.getInt(
-                cursor.getColumnIndexOrThrow(Telephony.CellBroadcasts.SERVICE_CATEGORY));
-        String language = cursor.getString(
-                cursor.getColumnIndexOrThrow(Telephony.CellBroadcasts.LANGUAGE_CODE));
-        String body = cursor.getString(
-                cursor.getColumnIndexOrThrow(Telephony.CellBroadcasts.MESSAGE_BODY));
-        int format = cursor.getInt(
-                cursor.getColumnIndexOrThrow(Telephony.CellBroadcasts.MESSAGE_FORMAT));
-        int priority = cursor.getInt(
-                cursor.getColumnIndexOrThrow(Telephony.CellBroadcasts.MESSAGE_PRIORITY));
-        int slotIndex = cursor.getInt(
-                cursor.getColumnIndexOrThrow(Telephony.CellBroadcasts.SLOT_INDEX));
+        return createFromCursor(context, cursor, new ColumnIndexes(cursor), null);
+    }
+
+    /**
+     * Create a message from the current row of the cursor.
+     *
+     * @param context the context to use
+     * @param cursor the cursor, which is already moved to the row to read
+     * @param columns the column indexes of the cursor
+     * @param subIdCache subscription IDs keyed by slot index, or null to not cache them
+     * @return the message of the row
+     */
+    static SmsCbMessage createFromCursor(Context context, Cursor cursor, ColumnIndexes columns,
+            @Nullable SparseIntArray subIdCache) {
+        int geoScope = cursor.getInt(columns.mGeoScope);
+        int serialNum = cursor.getInt(columns.mSerialNum);
+        int category = cursor.getInt(columns.mCategory);
+        String language = cursor.getString(columns.mLanguage);
+        String body = cursor.getString(columns.mBody);
+        int format = cursor.getInt(columns.mFormat);
+        int priority = cursor.getInt(columns.mPriority);
+        int slotIndex = cursor.getInt(columns.mSlotIndex);
 
         String plmn;
-        int plmnColumn = cursor.getColumnIndex(Telephony.CellBroadcasts.PLMN);
-        if (plmnColumn != -1 && !cursor.isNull(plmnColumn)) {
-            plmn = cursor.getString(plmnColumn);
+        if (columns.mPlmn != -1 && !cursor.isNull(columns.mPlmn)) {
+            plmn = cursor.getString(columns.mPlmn);
         } else {
             plmn = null;
         }
 
         int lac;
-        int lacColumn = cursor.getColumnIndex(Telephony.CellBroadcasts.LAC);
-        if (lacColumn != -1 && !cursor.isNull(lacColumn)) {
-            lac = cursor.getInt(lacColumn);
+        if (columns.mLac != -1 && !cursor.isNull(columns.mLac)) {
+            lac = cursor.getInt(columns.mLac);
         } else {
             lac = -1;
         }
 
         int cid;
-        int cidColumn = cursor.getColumnIndex(Telephony.CellBroadcasts.CID);
-        if (cidColumn != -1 && !cursor.isNull(cidColumn)) {
-            cid = cursor.getInt(cidColumn);
+        if (columns.mCid != -1 && !cursor.isNull(columns.mCid)) {
+            cid = cursor.getInt(columns.mCid);
         } else {
             cid = -1;
         }
@@ -114,87 +333,107 @@ public class CellBroadcastCursorAdapter extends CursorAdapter {
         SmsCbLocation location = new SmsCbLocation(plmn, lac, cid);
 
         SmsCbEtwsInfo etwsInfo;
-        int etwsWarningTypeColumn = cursor.getColumnIndex(
-                Telephony.CellBroadcasts.ETWS_WARNING_TYPE);
-        if (etwsWarningTypeColumn != -1 && !cursor.isNull(etwsWarningTypeColumn)) {
-            int warningType = cursor.getInt(etwsWarningTypeColumn);
-            etwsInfo = new SmsCbEtwsInfo(warningType, false, false, false, null);
+        SmsCbCmasInfo cmasInfo;
+        if (columns.mWarningAttributes != -1) {
+            // one packed column instead of a null check and a read for each attribute.
+            int warningAttributes = cursor.isNull(columns.mWarningAttributes)
+                    ? 0 : cursor.getInt(columns.mWarningAttributes);
+            etwsInfo = CellBroadcastWarningAttributes.getEtwsInfo(warningAttributes);
+            cmasInfo = CellBroadcastWarningAttributes.getCmasInfo(warningAttributes);
         } else {
-            etwsInfo = null;
+            etwsInfo = getEtwsInfo(cursor, columns);
+            cmasInfo = getCmasInfo(cursor, columns);
         }
 
-        SmsCbCmasInfo cmasInfo;
-        int cmasMessageClassColumn = cursor.getColumnIndex(
-                Telephony.CellBroadcasts.CMAS_MESSAGE_CLASS);
-        if (cmasMessageClassColumn != -1 && !cursor.isNull(cmasMessageClassColumn)) {
-            int messageClass = cursor.getInt(cmasMessageClassColumn);
+        long time = cursor.getLong(columns.mTime);
+
+        int dcs = 0;
+        if (columns.mDcs >= 0) {
+            dcs = cursor.getInt(columns.mDcs);
+        }
+
+        int subId;
+        int cachedSubId = subIdCache != null
+                ? subIdCache.get(slotIndex, SUB_ID_NOT_CACHED) : SUB_ID_NOT_CACHED;
+        if (cachedSubId != SUB_ID_NOT_CACHED) {
+            subId = cachedSubId;
+        } else {
+            subId = getSubIdForSlotIndex(context, slotIndex);
+            if (subIdCache != null) {
+                subIdCache.put(slotIndex, subId);
+            }
+        }
+
+        int maximumWaitTimeSec = 0;
+        if (columns.mMaximumWaitTime >= 0) {
+            maximumWaitTimeSec = cursor.getInt(columns.mMaximumWaitTime);
+        }
+
+        return new SmsCbMessage(format, geoScope, serialNum, location, category, language, dcs,
+                body, priority, etwsInfo, cmasInfo, maximumWaitTimeSec, null, time,
+                slotIndex, subId);
+    }
+
+    /**
+     * Read the ETWS warning info from the unpacked column, e.g. of cell broadcast service rows.
+     */
+    private static @Nullable SmsCbEtwsInfo getEtwsInfo(Cursor cursor, ColumnIndexes columns) {
+        if (columns.mEtwsWarningType != -1 && !cursor.isNull(columns.mEtwsWarningType)) {
+            int warningType = cursor.getInt(columns.mEtwsWarningType);
+            return new SmsCbEtwsInfo(warningType, false, false, false, null);
+        }
+        return null;
+    }
+
+    /**
+     * Read the CMAS warning info from the unpacked columns, e.g. of cell broadcast service rows.
+     */
+    private static @Nullable SmsCbCmasInfo getCmasInfo(Cursor cursor, ColumnIndexes columns) {
+        if (columns.mCmasMessageClass != -1 && !cursor.isNull(columns.mCmasMessageClass)) {
+            int messageClass = cursor.getInt(columns.mCmasMessageClass);
 
             int cmasCategory;
-            int cmasCategoryColumn = cursor.getColumnIndex(
-                    Telephony.CellBroadcasts.CMAS_CATEGORY);
-            if (cmasCategoryColumn != -1 && !cursor.isNull(cmasCategoryColumn)) {
-                cmasCategory = cursor.getInt(cmasCategoryColumn);
+            if (columns.mCmasCategory != -1 && !cursor.isNull(columns.mCmasCategory)) {
+                cmasCategory = cursor.getInt(columns.mCmasCategory);
             } else {
                 cmasCategory = SmsCbCmasInfo.CMAS_CATEGORY_UNKNOWN;
             }
 
             int responseType;
-            int cmasResponseTypeColumn = cursor.getColumnIndex(
-                    Telephony.CellBroadcasts.CMAS_RESPONSE_TYPE);
-            if (cmasResponseTypeColumn != -1 && !cursor.isNull(cmasResponseTypeColumn)) {
-                responseType = cursor.getInt(cmasResponseTypeColumn);
+            if (columns.mCmasResponseType != -1 && !cursor.isNull(columns.mCmasResponseType)) {
+                responseType = cursor.getInt(columns.mCmasResponseType);
             } else {
                 responseType = SmsCbCmasInfo.CMAS_RESPONSE_TYPE_UNKNOWN;
             }
 
             int severity;
-            int cmasSeverityColumn = cursor.getColumnIndex(
-                    Telephony.CellBroadcasts.CMAS_SEVERITY);
-            if (cmasSeverityColumn != -1 && !cursor.isNull(cmasSeverityColumn)) {
-                severity = cursor.getInt(cmasSeverityColumn);
+            if (columns.mCmasSeverity != -1 && !cursor.isNull(columns.mCmasSeverity)) {
+                severity = cursor.getInt(columns.mCmasSeverity);
             } else {
                 severity = SmsCbCmasInfo.CMAS_SEVERITY_UNKNOWN;
             }
 
             int urgency;
-            int cmasUrgencyColumn = cursor.getColumnIndex(
-                    Telephony.CellBroadcasts.CMAS_URGENCY);
-            if (cmasUrgencyColumn != -1 && !cursor.isNull(cmasUrgencyColumn)) {
-                urgency = cursor.getInt(cmasUrgencyColumn);
+            if (columns.mCmasUrgency != -1 && !cursor.isNull(columns.mCmasUrgency)) {
+                urgency = cursor.getInt(columns.mCmasUrgency);
             } else {
                 urgency = SmsCbCmasInfo.CMAS_URGENCY_UNKNOWN;
             }
 
             int certainty;
-            int cmasCertaintyColumn = cursor.getColumnIndex(
-                    Telephony.CellBroadcasts.CMAS_CERTAINTY);
-            if (cmasCertaintyColumn != -1 && !cursor.isNull(cmasCertaintyColumn)) {
-                certainty = cursor.getInt(cmasCertaintyColumn);
+            if (columns.mCmasCertainty != -1 && !cursor.isNull(columns.mCmasCertainty)) {
+                certainty = cursor.getInt(columns.mCmasCertainty);
             } else {
                 certainty = SmsCbCmasInfo.CMAS_CERTAINTY_UNKNOWN;
             }
 
-            cmasInfo = new SmsCbCmasInfo(messageClass, cmasCategory, responseType, severity,
+            return new SmsCbCmasInfo(messageClass, cmasCategory, responseType, severity,
                     urgency, certainty);
-        } else {
-            cmasInfo = null;
-        }
-
-        String timeColumn = null;
-        if (cursor.getColumnIndex(Telephony.CellBroadcasts.DELIVERY_TIME) >= 0) {
-            timeColumn = Telephony.CellBroadcasts.DELIVERY_TIME;
-        } else if (cursor.getColumnIndex(Telephony.CellBroadcasts.RECEIVED_TIME) >= 0) {
-            timeColumn = Telephony.CellBroadcasts.RECEIVED_TIME;
-        }
-
-        long time = cursor.getLong(cursor.getColumnIndexOrThrow(timeColumn));
-
-        int dcs = 0;
-        if (cursor.getColumnIndex(Telephony.CellBroadcasts.DATA_CODING_SCHEME) >= 0) {
-            dcs = cursor.getInt(cursor.getColumnIndexOrThrow(
-                    Telephony.CellBroadcasts.DATA_CODING_SCHEME));
         }
+        return null;
+    }
 
+    private static int getSubIdForSlotIndex(Context context, int slotIndex) {
         int subId = SubscriptionManager.INVALID_SUBSCRIPTION_ID;
         if (SdkLevel.isAtLeastU()) {
             subId = SubscriptionManager.getSubscriptionId(slotIndex);
@@ -209,16 +448,7 @@ public class CellBroadcastCursorAdapter extends CursorAdapter {
         if (!SubscriptionManager.isValidSubscriptionId(subId)) {
             subId = SubscriptionManager.DEFAULT_SUBSCRIPTION_ID;
         }
-
-        int maximumWaitTimeSec = 0;
-        if (cursor.getColumnIndex(Telephony.CellBroadcasts.MAXIMUM_WAIT_TIME) >= 0) {
-            maximumWaitTimeSec = cursor.getInt(cursor.getColumnIndexOrThrow(
-                    Telephony.CellBroadcasts.MAXIMUM_WAIT_TIME));
-        }
-
-        return new SmsCbMessage(format, geoScope, serialNum, location, category, language, dcs,
-                body, priority, etwsInfo, cmasInfo, maximumWaitTimeSec, null, time,
-                slotIndex, subId);
+        return subId;
     }
 
     /**
@@ -230,14 +460,14 @@ public class CellBroadcastCursorAdapter extends CursorAdapter {
      */
     @Override
     public void bindView(View view, Context context, Cursor cursor) {
-        SmsCbMessage message = createFromCursor(context, cursor);
+        CellBroadcastListItemModel model = getItemModel(context, cursor);
         CellBroadcastListItem listItem = (CellBroadcastListItem) view;
         mCheckedTextView = view.findViewById(R.id.checkBox);
         if (mCheckedTextView != null) {
             updateCheckTextViewVisibility();
             checkIsSelected(cursor.getPosition());
         }
-        listItem.bind(message);
+        listItem.bind(model);
     }
 
     public void setIsActionMode(boolean value) {
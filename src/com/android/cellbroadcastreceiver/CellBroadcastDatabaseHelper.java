@@ -16,6 +16,10 @@
 
 package com.android.cellbroadcastreceiver;
 
+import static android.content.ContentResolver.NOTIFY_DELETE;
+import static android.content.ContentResolver.NOTIFY_INSERT;
+import static android.content.ContentResolver.NOTIFY_UPDATE;
+
 import static java.nio.file.Files.copy;
 
 import android.annotation.NonNull;
@@ -26,7 +30,7 @@ import android.content.SharedPreferences;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
-import android.os.RemoteException;
+import android.os.SystemClock;
 import android.preference.PreferenceManager;
 import android.provider.Telephony;
 import android.provider.Telephony.CellBroadcasts;
@@ -53,17 +57,85 @@ public class CellBroadcastDatabaseHelper extends SQLiteOpenHelper {
      * Database version 11: adds delivery time index
      * Database version 12: add slotIndex
      * Database version 13: add smsSyncPending
+     * Database version 14: add full-text search index over message body
+     * Database version 15: add change log
+     * Database version 16: pack ETWS and CMAS columns into warning attributes, add view
+     *
+     * Versions 14 and later are stored in {@link #DATABASE_NAME_V16}, a copy of the version 13
+     * database, so a module rolled back to version 13 still finds its database unchanged.
      */
-    private static final int DATABASE_VERSION = 13;
+    private static final int DATABASE_VERSION = 16;
+
+    // Version of DATABASE_NAME_V13, which the legacy provider keeps.
+    private static final int DATABASE_VERSION_V13 = 13;
 
     private static final String OLD_DATABASE_NAME = "cell_broadcasts.db";
     private static final String DATABASE_NAME_V13 = "cell_broadcasts_v13.db";
+    private static final String DATABASE_NAME_V16 = "cell_broadcasts_v16.db";
     @VisibleForTesting
     public static final String TABLE_NAME = "broadcasts";
 
+    /**
+     * View of {@link #TABLE_NAME} which unpacks {@link #WARNING_ATTRIBUTES} into the ETWS and
+     * CMAS columns of {@link Telephony.CellBroadcasts}, so that readers keep the same columns.
+     */
+    @VisibleForTesting
+    public static final String VIEW_NAME = "broadcasts_view";
+
+    // FTS4 table indexing the message body of TABLE_NAME, with the row ID of the message as docid.
+    @VisibleForTesting
+    public static final String SEARCH_TABLE_NAME = "broadcasts_fts";
+
+    // Log of the rows inserted, updated and deleted in TABLE_NAME, newest CHANGE_LOG_SIZE entries.
+    @VisibleForTesting
+    public static final String CHANGES_TABLE_NAME = "broadcast_changes";
+
+    /**
+     * Sequence number of a change, increasing with every change.
+     * <P>Type: INTEGER</P>
+     */
+    public static final String CHANGE_SEQUENCE = "seq";
+
+    /**
+     * Row ID in {@link #TABLE_NAME} of the changed row.
+     * <P>Type: INTEGER</P>
+     */
+    public static final String CHANGE_ROW_ID = "row_id";
+
+    /**
+     * Type of a change, one of {@link android.content.ContentResolver#NOTIFY_INSERT},
+     * {@link android.content.ContentResolver#NOTIFY_UPDATE} or
+     * {@link android.content.ContentResolver#NOTIFY_DELETE}.
+     * <P>Type: INTEGER</P>
+     */
+    public static final String CHANGE_TYPE = "change_type";
+
+    // Number of changes kept in CHANGES_TABLE_NAME.
+    @VisibleForTesting
+    public static final int CHANGE_LOG_SIZE = 1000;
+
     // Preference key for whether the data migration from pre-R CBR app was complete.
     public static final String KEY_LEGACY_DATA_MIGRATION = "legacy_data_migration";
 
+    // Table holding the legacy row ID of the last migrated message while the data migration is
+    // in progress. It is written in the transaction of each migrated page, so the checkpoint
+    // never disagrees with the migrated rows.
+    private static final String MIGRATION_CHECKPOINT_TABLE_NAME = "legacy_migration_checkpoint";
+
+    // Column of MIGRATION_CHECKPOINT_TABLE_NAME with the legacy row ID.
+    private static final String MIGRATION_CHECKPOINT_LAST_ID = "last_id";
+
+    // Preference key for the number of started data migration attempts.
+    private static final String KEY_LEGACY_DATA_MIGRATION_ATTEMPTS =
+            "legacy_data_migration_attempts";
+
+    // Number of legacy rows queried and committed at a time during data migration.
+    @VisibleForTesting
+    public static final int LEGACY_MIGRATION_PAGE_SIZE = 500;
+
+    // Report the data migration once it failed this many times. It is still retried afterwards.
+    private static final int LEGACY_MIGRATION_REPORT_ATTEMPTS = 3;
+
     /**
      * Is the message pending for sms synchronization.
      * when received cellbroadcast message in direct boot mode, we will retry synchronizing
@@ -72,6 +144,13 @@ public class CellBroadcastDatabaseHelper extends SQLiteOpenHelper {
      */
     public static final String SMS_SYNC_PENDING = "isSmsSyncPending";
 
+    /**
+     * ETWS and CMAS attributes packed by {@link CellBroadcastWarningAttributes}, stored instead
+     * of the ETWS and CMAS columns of {@link Telephony.CellBroadcasts}.
+     * <P>Type: INTEGER</P>
+     */
+    public static final String WARNING_ATTRIBUTES = "warning_attributes";
+
     /*
      * Query columns for instantiating SmsCbMessage.
      */
@@ -99,6 +178,47 @@ public class CellBroadcastDatabaseHelper extends SQLiteOpenHelper {
             Telephony.CellBroadcasts.CMAS_CERTAINTY
     };
 
+    /**
+     * Query columns for instantiating SmsCbMessage from {@link #VIEW_NAME}, with the ETWS and
+     * CMAS attributes read from {@link #WARNING_ATTRIBUTES} instead of being unpacked.
+     */
+    public static final String[] PACKED_QUERY_COLUMNS = {
+            Telephony.CellBroadcasts._ID,
+            Telephony.CellBroadcasts.SLOT_INDEX,
+            Telephony.CellBroadcasts.GEOGRAPHICAL_SCOPE,
+            Telephony.CellBroadcasts.PLMN,
+            Telephony.CellBroadcasts.LAC,
+            Telephony.CellBroadcasts.CID,
+            Telephony.CellBroadcasts.SERIAL_NUMBER,
+            Telephony.CellBroadcasts.SERVICE_CATEGORY,
+            Telephony.CellBroadcasts.LANGUAGE_CODE,
+            Telephony.CellBroadcasts.MESSAGE_BODY,
+            Telephony.CellBroadcasts.DELIVERY_TIME,
+            Telephony.CellBroadcasts.MESSAGE_READ,
+            Telephony.CellBroadcasts.MESSAGE_FORMAT,
+            Telephony.CellBroadcasts.MESSAGE_PRIORITY,
+            WARNING_ATTRIBUTES
+    };
+
+    // Columns of TABLE_NAME, other than the packed warning attributes.
+    private static final String[] STORED_COLUMNS = {
+            Telephony.CellBroadcasts._ID,
+            Telephony.CellBroadcasts.SLOT_INDEX,
+            Telephony.CellBroadcasts.GEOGRAPHICAL_SCOPE,
+            Telephony.CellBroadcasts.PLMN,
+            Telephony.CellBroadcasts.LAC,
+            Telephony.CellBroadcasts.CID,
+            Telephony.CellBroadcasts.SERIAL_NUMBER,
+            Telephony.CellBroadcasts.SERVICE_CATEGORY,
+            Telephony.CellBroadcasts.LANGUAGE_CODE,
+            Telephony.CellBroadcasts.MESSAGE_BODY,
+            Telephony.CellBroadcasts.DELIVERY_TIME,
+            Telephony.CellBroadcasts.MESSAGE_READ,
+            Telephony.CellBroadcasts.MESSAGE_FORMAT,
+            Telephony.CellBroadcasts.MESSAGE_PRIORITY,
+            SMS_SYNC_PENDING
+    };
+
     /**
      * Returns a string used to create the cell broadcast table. This is exposed so the unit test
      * can construct its own in-memory database to match the cell broadcast db.
@@ -120,16 +240,22 @@ public class CellBroadcastDatabaseHelper extends SQLiteOpenHelper {
                 + Telephony.CellBroadcasts.MESSAGE_READ + " INTEGER,"
                 + Telephony.CellBroadcasts.MESSAGE_FORMAT + " INTEGER,"
                 + Telephony.CellBroadcasts.MESSAGE_PRIORITY + " INTEGER,"
-                + Telephony.CellBroadcasts.ETWS_WARNING_TYPE + " INTEGER,"
-                + Telephony.CellBroadcasts.CMAS_MESSAGE_CLASS + " INTEGER,"
-                + Telephony.CellBroadcasts.CMAS_CATEGORY + " INTEGER,"
-                + Telephony.CellBroadcasts.CMAS_RESPONSE_TYPE + " INTEGER,"
-                + Telephony.CellBroadcasts.CMAS_SEVERITY + " INTEGER,"
-                + Telephony.CellBroadcasts.CMAS_URGENCY + " INTEGER,"
-                + Telephony.CellBroadcasts.CMAS_CERTAINTY + " INTEGER,"
+                + WARNING_ATTRIBUTES + " INTEGER,"
                 + SMS_SYNC_PENDING + " BOOLEAN);";
     }
 
+    /**
+     * Returns a string used to create the cell broadcast table of the legacy provider, which is
+     * the table of database version 13. It keeps the ETWS and CMAS attributes in their own
+     * columns instead of {@link #WARNING_ATTRIBUTES}, because {@link #migrateFromLegacyIfNeeded}
+     * reads them with {@link #QUERY_COLUMNS}.
+     */
+    private static String getStringForLegacyCellBroadcastTableCreation(String tableName) {
+        return getStringForCellBroadcastTableCreation(tableName).replace(
+                WARNING_ATTRIBUTES + " INTEGER,",
+                String.join(" INTEGER,", CellBroadcastWarningAttributes.COLUMNS) + " INTEGER,");
+    }
+
     private final Context mContext;
     final boolean mLegacyProvider;
 
@@ -137,27 +263,34 @@ public class CellBroadcastDatabaseHelper extends SQLiteOpenHelper {
 
     @VisibleForTesting
     public CellBroadcastDatabaseHelper(Context context, boolean legacyProvider) {
-        super(context, DATABASE_NAME_V13, null, DATABASE_VERSION);
-        mContext = context;
-        mLegacyProvider = legacyProvider;
+        this(context, legacyProvider, legacyProvider ? DATABASE_NAME_V13 : DATABASE_NAME_V16);
     }
 
     @VisibleForTesting
     public CellBroadcastDatabaseHelper(Context context, boolean legacyProvider, String dbName) {
-        super(context, dbName, null, DATABASE_VERSION);
+        super(context, dbName, null, legacyProvider ? DATABASE_VERSION_V13 : DATABASE_VERSION);
         mContext = context;
         mLegacyProvider = legacyProvider;
     }
 
     @Override
     public void onCreate(SQLiteDatabase db) {
-        db.execSQL(getStringForCellBroadcastTableCreation(TABLE_NAME));
+        if (mLegacyProvider) {
+            db.execSQL(getStringForLegacyCellBroadcastTableCreation(TABLE_NAME));
+        } else {
+            db.execSQL(getStringForCellBroadcastTableCreation(TABLE_NAME));
+        }
 
         db.execSQL("CREATE INDEX IF NOT EXISTS deliveryTimeIndex ON " + TABLE_NAME
                 + " (" + Telephony.CellBroadcasts.DELIVERY_TIME + ");");
         if (!mLegacyProvider) {
-            migrateFromLegacyIfNeeded(db);
+            createSearchIndex(db);
+            createChangeLog(db);
+            createView(db);
+            createMigrationCheckpoint(db);
         }
+        // Data migration from the legacy provider is not done here inside the creation
+        // transaction, see migrateFromLegacyIfNeeded which is called once the db is open.
     }
 
     @Override
@@ -176,6 +309,164 @@ public class CellBroadcastDatabaseHelper extends SQLiteOpenHelper {
             db.execSQL("ALTER TABLE " + TABLE_NAME + " ADD COLUMN " + SMS_SYNC_PENDING
                     + " BOOLEAN DEFAULT 0;");
         }
+        if (mLegacyProvider) {
+            // the legacy provider stays at version 13.
+            return;
+        }
+        if (oldVersion < 14) {
+            createSearchIndex(db);
+            // index the messages which were stored before the search index existed.
+            db.execSQL("INSERT INTO " + SEARCH_TABLE_NAME + "(" + SEARCH_TABLE_NAME
+                    + ") VALUES('rebuild');");
+        }
+        if (oldVersion < 15) {
+            createChangeLog(db);
+        }
+        if (oldVersion < 16) {
+            packWarningAttributes(db);
+            createMigrationCheckpoint(db);
+        }
+    }
+
+    /**
+     * Create the table of the data migration checkpoint, see {@link #migrateFromLegacyIfNeeded}.
+     */
+    private static void createMigrationCheckpoint(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + MIGRATION_CHECKPOINT_TABLE_NAME + " ("
+                + CellBroadcasts._ID + " INTEGER PRIMARY KEY,"
+                + MIGRATION_CHECKPOINT_LAST_ID + " INTEGER);");
+    }
+
+    /**
+     * Rebuild {@link #TABLE_NAME} with the ETWS and CMAS columns packed into
+     * {@link #WARNING_ATTRIBUTES}.
+     */
+    private static void packWarningAttributes(SQLiteDatabase db) {
+        String columns = String.join(", ", STORED_COLUMNS);
+        rebuildTable(db, getStringForCellBroadcastTableCreation(TABLE_NAME + "_new"),
+                columns + ", " + WARNING_ATTRIBUTES,
+                columns + ", " + CellBroadcastWarningAttributes.getPackSql());
+        createView(db);
+    }
+
+    /**
+     * Replace {@link #TABLE_NAME} by a table of another layout. SQLite cannot drop columns, so
+     * the rows are copied into a new table which replaces the old one. Row IDs are kept, so the
+     * search index and the change log stay valid. {@link #VIEW_NAME} is dropped and has to be
+     * recreated by the caller if the new layout has it.
+     *
+     * @param db the database
+     * @param createSql the statement creating the new table named {@code TABLE_NAME + "_new"}
+     * @param columns the columns of the new table to copy the rows into
+     * @param values the expressions of the old table to copy into the columns
+     */
+    private static void rebuildTable(SQLiteDatabase db, String createSql, String columns,
+            String values) {
+        String newTable = TABLE_NAME + "_new";
+        long sequence = 0;
+        try (Cursor c = db.rawQuery("SELECT seq FROM sqlite_sequence WHERE name=?",
+                new String[] {TABLE_NAME})) {
+            if (c.moveToFirst()) {
+                sequence = c.getLong(0);
+            }
+        }
+
+        // the view cannot refer to the old table while it is renamed.
+        db.execSQL("DROP VIEW IF EXISTS " + VIEW_NAME + ";");
+        db.execSQL(createSql);
+        db.execSQL("INSERT INTO " + newTable + " (" + columns + ") SELECT " + values
+                + " FROM " + TABLE_NAME + ";");
+        // dropping the table drops its index and triggers, without running the triggers.
+        db.execSQL("DROP TABLE " + TABLE_NAME + ";");
+        db.execSQL("ALTER TABLE " + newTable + " RENAME TO " + TABLE_NAME + ";");
+        // keep row IDs of deleted rows from being reused.
+        db.execSQL("DELETE FROM sqlite_sequence WHERE name=?", new Object[] {TABLE_NAME});
+        db.execSQL("INSERT INTO sqlite_sequence (name, seq) VALUES (?, ?)",
+                new Object[] {TABLE_NAME, sequence});
+
+        db.execSQL("CREATE INDEX IF NOT EXISTS deliveryTimeIndex ON " + TABLE_NAME
+                + " (" + Telephony.CellBroadcasts.DELIVERY_TIME + ");");
+        createSearchIndex(db);
+        createChangeLog(db);
+    }
+
+    /**
+     * Create {@link #VIEW_NAME}, which has the columns of {@link #TABLE_NAME} with the ETWS and
+     * CMAS columns in place of {@link #WARNING_ATTRIBUTES}, and additionally
+     * {@link #WARNING_ATTRIBUTES} for readers which decode it themselves.
+     */
+    public static void createView(SQLiteDatabase db) {
+        StringBuilder sb = new StringBuilder("CREATE VIEW " + VIEW_NAME + " AS SELECT ");
+        sb.append(String.join(", ", STORED_COLUMNS));
+        for (int field = 0; field < CellBroadcastWarningAttributes.COLUMNS.length; field++) {
+            sb.append(", ").append(CellBroadcastWarningAttributes.getFieldSql(field))
+                    .append(" AS ").append(CellBroadcastWarningAttributes.COLUMNS[field]);
+        }
+        sb.append(", ").append(WARNING_ATTRIBUTES).append(" FROM ").append(TABLE_NAME)
+                .append(';');
+        db.execSQL("DROP VIEW IF EXISTS " + VIEW_NAME + ";");
+        db.execSQL(sb.toString());
+    }
+
+    /**
+     * Create the change log, and the triggers which log every insert, update and delete of
+     * {@link #TABLE_NAME} in it. Only the newest {@link #CHANGE_LOG_SIZE} changes are kept.
+     * This is exposed so the unit test can add the change log to its own in-memory database.
+     */
+    @VisibleForTesting
+    public static void createChangeLog(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + CHANGES_TABLE_NAME + " ("
+                + CHANGE_SEQUENCE + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+                + CHANGE_ROW_ID + " INTEGER,"
+                + CHANGE_TYPE + " INTEGER);");
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + CHANGES_TABLE_NAME + "_ai AFTER INSERT ON "
+                + TABLE_NAME + " BEGIN " + getChangeLogInsert("new", NOTIFY_INSERT) + " END;");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + CHANGES_TABLE_NAME + "_au AFTER UPDATE ON "
+                + TABLE_NAME + " BEGIN " + getChangeLogInsert("new", NOTIFY_UPDATE) + " END;");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + CHANGES_TABLE_NAME + "_ad AFTER DELETE ON "
+                + TABLE_NAME + " BEGIN " + getChangeLogInsert("old", NOTIFY_DELETE) + " END;");
+        // The sequence has no gaps, so this keeps the newest CHANGE_LOG_SIZE changes.
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + CHANGES_TABLE_NAME + "_prune AFTER INSERT"
+                + " ON " + CHANGES_TABLE_NAME + " BEGIN DELETE FROM " + CHANGES_TABLE_NAME
+                + " WHERE " + CHANGE_SEQUENCE + "<=new." + CHANGE_SEQUENCE + "-"
+                + CHANGE_LOG_SIZE + "; END;");
+    }
+
+    private static String getChangeLogInsert(String row, int changeType) {
+        return "INSERT INTO " + CHANGES_TABLE_NAME + "(" + CHANGE_ROW_ID + ", " + CHANGE_TYPE
+                + ") VALUES(" + row + "." + CellBroadcasts._ID + ", " + changeType + ");";
+    }
+
+    /**
+     * Create the full-text search index over the message body, and the triggers which keep it in
+     * sync with {@link #TABLE_NAME}. The index is an external content FTS4 table, so the message
+     * body is not stored twice. This is exposed so the unit test can add the index to its own
+     * in-memory database.
+     */
+    @VisibleForTesting
+    public static void createSearchIndex(SQLiteDatabase db) {
+        db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS " + SEARCH_TABLE_NAME + " USING fts4("
+                + "content=\"" + TABLE_NAME + "\", "
+                + Telephony.CellBroadcasts.MESSAGE_BODY + ");");
+
+        // External content tables must drop the old body before the row is changed or deleted.
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + SEARCH_TABLE_NAME + "_bd BEFORE DELETE ON "
+                + TABLE_NAME + " BEGIN DELETE FROM " + SEARCH_TABLE_NAME
+                + " WHERE docid=old." + CellBroadcasts._ID + "; END;");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + SEARCH_TABLE_NAME + "_bu BEFORE UPDATE OF "
+                + Telephony.CellBroadcasts.MESSAGE_BODY + " ON " + TABLE_NAME
+                + " BEGIN DELETE FROM " + SEARCH_TABLE_NAME
+                + " WHERE docid=old." + CellBroadcasts._ID + "; END;");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + SEARCH_TABLE_NAME + "_au AFTER UPDATE OF "
+                + Telephony.CellBroadcasts.MESSAGE_BODY + " ON " + TABLE_NAME
+                + " BEGIN INSERT INTO " + SEARCH_TABLE_NAME + "(docid, "
+                + Telephony.CellBroadcasts.MESSAGE_BODY + ") VALUES(new." + CellBroadcasts._ID
+                + ", new." + Telephony.CellBroadcasts.MESSAGE_BODY + "); END;");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + SEARCH_TABLE_NAME + "_ai AFTER INSERT ON "
+                + TABLE_NAME + " BEGIN INSERT INTO " + SEARCH_TABLE_NAME + "(docid, "
+                + Telephony.CellBroadcasts.MESSAGE_BODY + ") VALUES(new." + CellBroadcasts._ID
+                + ", new." + Telephony.CellBroadcasts.MESSAGE_BODY + "); END;");
     }
 
     private synchronized void tryToMigrateV13() {
@@ -204,15 +495,46 @@ public class CellBroadcastDatabaseHelper extends SQLiteOpenHelper {
         // else the V13 database has already been created.
     }
 
+    /**
+     * Copy the version 13 database to {@link #DATABASE_NAME_V16}, which is then upgraded. The
+     * version 13 database is left as it is, for a module rolled back to version 13.
+     */
+    private synchronized void tryToMigrateV16() {
+        File oldDb = mContext.getDatabasePath(DATABASE_NAME_V13);
+        File newDb = mContext.getDatabasePath(DATABASE_NAME_V16);
+        if (!oldDb.exists()) {
+            return;
+        }
+        // As for v13, the DB is copied again if it was modified after a rollback.
+        if (!newDb.exists() || oldDb.lastModified() > newDb.lastModified()) {
+            try {
+                Log.d(TAG, "copying to v16 db");
+                // also delete the journal of a previous copy, which must not be replayed.
+                mContext.deleteDatabase(DATABASE_NAME_V16);
+                copy(oldDb.toPath(), newDb.toPath());
+            } catch (Exception e) {
+                mContext.deleteDatabase(DATABASE_NAME_V16);
+                loge("could not copy DB to v16. e=" + e);
+            }
+        }
+    }
+
+    private void tryToMigrate() {
+        tryToMigrateV13();
+        if (!mLegacyProvider) {
+            tryToMigrateV16();
+        }
+    }
+
     @Override
     public SQLiteDatabase getReadableDatabase() {
-        tryToMigrateV13();
+        tryToMigrate();
         return super.getReadableDatabase();
     }
 
     @Override
     public SQLiteDatabase getWritableDatabase() {
-        tryToMigrateV13();
+        tryToMigrate();
         return super.getWritableDatabase();
     }
 
@@ -231,69 +553,175 @@ public class CellBroadcastDatabaseHelper extends SQLiteOpenHelper {
 
     /**
      * This is the migration logic to accommodate OEMs move to mainlined CBR for the first time.
-     * When the db is initially created, this is called once to
-     * migrate predefined data through {@link Telephony.CellBroadcasts#AUTHORITY_LEGACY_URI}
-     * from OEM app.
+     * After the db is created, this is called to migrate predefined data through
+     * {@link Telephony.CellBroadcasts#AUTHORITY_LEGACY_URI} from OEM app.
+     *
+     * Rows are copied in pages ordered by the legacy {@link Telephony.CellBroadcasts#_ID}, and
+     * each page is committed in its own transaction. The last migrated legacy row ID is saved as
+     * a checkpoint in the same transaction, so that an interrupted migration resumes where it
+     * stopped, neither missing nor duplicating rows.
      */
     @VisibleForTesting
-    public void migrateFromLegacyIfNeeded(@NonNull SQLiteDatabase db) {
+    public synchronized void migrateFromLegacyIfNeeded(@NonNull SQLiteDatabase db) {
         SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(mContext);
         if (sp.getBoolean(CellBroadcastDatabaseHelper.KEY_LEGACY_DATA_MIGRATION, false)) {
             log("Data migration was complete already");
             return;
         }
 
+        int attempts = sp.getInt(KEY_LEGACY_DATA_MIGRATION_ATTEMPTS, 0) + 1;
+        boolean complete = false;
+        int migratedRows = 0;
+        final long startTime = SystemClock.elapsedRealtime();
+
         try (ContentProviderClient client = getContentProviderClient()) {
             if (client == null) {
                 log("No legacy provider available for migration");
+                complete = true;
                 return;
             }
 
-            db.beginTransaction();
-            log("Starting migration from legacy provider");
-            // migration columns are same as query columns
-            try (Cursor c = client.query(Telephony.CellBroadcasts.AUTHORITY_LEGACY_URI,
-                QUERY_COLUMNS, null, null, null)) {
-                final ContentValues values = new ContentValues();
-                while (c.moveToNext()) {
-                    values.clear();
-                    for (String column : QUERY_COLUMNS) {
-                        copyFromCursorToContentValues(column, c, values);
+            long lastMigratedId = getMigrationCheckpoint(db);
+
+            log("Starting migration from legacy provider, attempt " + attempts
+                    + ", checkpoint " + lastMigratedId);
+            while (true) {
+                // migration columns are same as query columns
+                try (Cursor c = client.query(Telephony.CellBroadcasts.AUTHORITY_LEGACY_URI,
+                        QUERY_COLUMNS, Telephony.CellBroadcasts._ID + ">?",
+                        new String[]{Long.toString(lastMigratedId)},
+                        Telephony.CellBroadcasts._ID + " ASC LIMIT "
+                                + LEGACY_MIGRATION_PAGE_SIZE)) {
+                    if (c == null) {
+                        break;
                     }
-                    // remove the primary key to avoid UNIQUE constraint failure.
-                    values.remove(Telephony.CellBroadcasts._ID);
-
-                    try {
-                        if (db.insert(TABLE_NAME, null, values) == -1) {
-                            // We only have one shot to migrate data, so log and
-                            // keep marching forward
-                            loge("Failed to insert " + values + "; continuing");
-                        }
-                    } catch (Exception e) {
-                        // If insert for one message fails, continue with other messages
-                        loge("Failed to insert " + values + " due to exception: " + e);
+                    int rows = c.getCount();
+                    long pageLastId = migratePage(db, c, lastMigratedId);
+                    migratedRows += rows;
+                    if (rows < LEGACY_MIGRATION_PAGE_SIZE || pageLastId == -1
+                            || pageLastId == lastMigratedId) {
+                        // last page, or the legacy provider does not support paging
+                        break;
                     }
+                    lastMigratedId = pageLastId;
                 }
-
-                log("Finished migration from legacy provider");
-            } catch (RemoteException e) {
-                throw new IllegalStateException(e);
-            } finally {
-                // if beginTransaction() is called then setTransactionSuccessful() must be called.
-                // This is a nested begin/end transcation block -- since this is called from
-                // onCreate() which is inside another block in SQLiteOpenHelper. If a nested
-                // transaction fails, all transaction fail and that would result in table not being
-                // created (it's created in onCreate()).
-                db.setTransactionSuccessful();
-                db.endTransaction();
             }
+            complete = true;
+            long duration = SystemClock.elapsedRealtime() - startTime;
+            log("Finished migration from legacy provider, rows=" + migratedRows
+                    + ", duration=" + duration + "ms, rows/sec="
+                    + (duration > 0 ? migratedRows * 1000L / duration : migratedRows));
         } catch (Exception e) {
             // We have to guard ourselves against any weird behavior of the
             // legacy provider by trying to catch everything
-            loge("Failed migration from legacy provider: " + e);
+            loge("Failed migration from legacy provider after " + migratedRows + " rows: " + e);
+        } finally {
+            SharedPreferences.Editor editor = sp.edit();
+            if (complete) {
+                // Mark data migration was done to make sure this is done only once.
+                editor.putBoolean(KEY_LEGACY_DATA_MIGRATION, true);
+                editor.remove(KEY_LEGACY_DATA_MIGRATION_ATTEMPTS);
+                db.delete(MIGRATION_CHECKPOINT_TABLE_NAME, null, null);
+            } else {
+                // keep the checkpoint and the legacy data, and retry from the checkpoint on the
+                // next trigger, so the remaining history is not dropped.
+                if (attempts == LEGACY_MIGRATION_REPORT_ATTEMPTS) {
+                    Log.wtf(TAG, "Migration from legacy provider failed " + attempts
+                            + " times, retrying on the next start");
+                }
+                editor.putInt(KEY_LEGACY_DATA_MIGRATION_ATTEMPTS, attempts);
+            }
+            editor.commit();
+        }
+    }
+
+    /**
+     * @return the legacy row ID of the last migrated message, or -1 if none was migrated yet
+     */
+    private static long getMigrationCheckpoint(@NonNull SQLiteDatabase db) {
+        try (Cursor c = db.query(MIGRATION_CHECKPOINT_TABLE_NAME,
+                new String[] {MIGRATION_CHECKPOINT_LAST_ID}, null, null, null, null, null)) {
+            return c.moveToFirst() ? c.getLong(0) : -1;
+        }
+    }
+
+    /**
+     * Copy one page of legacy rows into the database in a single transaction, together with the
+     * checkpoint of the page.
+     *
+     * @param db the database to insert into
+     * @param c the cursor of legacy rows ordered by row ID
+     * @param lastMigratedId the legacy row ID of the last migrated row
+     * @return the legacy row ID of the last row in the page, or {@code lastMigratedId} if the page
+     * is empty, or -1 if the legacy cursor does not contain row IDs
+     */
+    private long migratePage(@NonNull SQLiteDatabase db, @NonNull Cursor c, long lastMigratedId) {
+        // resolve the column indexes once per page rather than once per value
+        final int[] columnIndexes = new int[QUERY_COLUMNS.length];
+        for (int i = 0; i < QUERY_COLUMNS.length; i++) {
+            columnIndexes[i] = c.getColumnIndex(QUERY_COLUMNS[i]);
+        }
+        final int idIndex = c.getColumnIndex(Telephony.CellBroadcasts._ID);
+        final boolean packed = hasColumn(db, TABLE_NAME, WARNING_ATTRIBUTES);
+        long lastId = lastMigratedId;
+        final ContentValues values = new ContentValues(QUERY_COLUMNS.length);
+
+        db.beginTransaction();
+        try {
+            while (c.moveToNext()) {
+                values.clear();
+                for (int i = 0; i < QUERY_COLUMNS.length; i++) {
+                    final int index = columnIndexes[i];
+                    // skip the primary key to avoid UNIQUE constraint failure.
+                    if (index == -1 || index == idIndex) {
+                        continue;
+                    }
+                    if (c.isNull(index)) {
+                        values.putNull(QUERY_COLUMNS[i]);
+                    } else {
+                        values.put(QUERY_COLUMNS[i], c.getString(index));
+                    }
+                }
+                if (packed) {
+                    CellBroadcastWarningAttributes.packContentValues(values);
+                }
+                if (idIndex != -1) {
+                    final long id = c.getLong(idIndex);
+                    if (id <= lastMigratedId) {
+                        // the legacy provider ignored the page selection, already migrated.
+                        continue;
+                    }
+                    lastId = id;
+                } else {
+                    lastId = -1;
+                }
+
+                try {
+                    if (db.insert(TABLE_NAME, null, values) == -1) {
+                        // We only have one shot to migrate data, so log and
+                        // keep marching forward
+                        loge("Failed to insert " + values + "; continuing");
+                    }
+                } catch (Exception e) {
+                    // If insert for one message fails, continue with other messages
+                    loge("Failed to insert " + values + " due to exception: " + e);
+                }
+            }
+            if (lastId != -1) {
+                db.execSQL("INSERT OR REPLACE INTO " + MIGRATION_CHECKPOINT_TABLE_NAME + " ("
+                        + CellBroadcasts._ID + ", " + MIGRATION_CHECKPOINT_LAST_ID
+                        + ") VALUES (0, ?);", new Object[] {lastId});
+            }
+            db.setTransactionSuccessful();
         } finally {
-            // Mark data migration was triggered to make sure this is done only once.
-            sp.edit().putBoolean(KEY_LEGACY_DATA_MIGRATION, true).commit();
+            db.endTransaction();
+        }
+        return lastId;
+    }
+
+    private static boolean hasColumn(SQLiteDatabase db, String table, String column) {
+        try (Cursor c = db.query(table, null, null, null, null, null, null, "0")) {
+            return c.getColumnIndex(column) != -1;
         }
     }
 
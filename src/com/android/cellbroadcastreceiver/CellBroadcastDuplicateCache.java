@@ -0,0 +1,299 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.cellbroadcastreceiver;
+
+import android.annotation.NonNull;
+import android.annotation.Nullable;
+import android.content.Context;
+import android.telephony.SmsCbLocation;
+import android.telephony.SmsCbMessage;
+import android.text.format.DateUtils;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Remembers the alerts received recently, to drop repeats which the framework delivers again,
+ * e.g. after a cell reselection or a restart of the process, before they are written to the
+ * database and notified again.
+ *
+ * <p>An alert is a repeat of an earlier one if it has the same serial number, service category
+ * and message body, and was received in the same area as given by the geographical scope of the
+ * serial number, as in 3GPP TS 23.041 section 9.4.1.2.1: in the same PLMN for PLMN wide alerts,
+ * in the same location area for location area wide alerts, and in the same cell for cell wide
+ * alerts. Alerts are remembered for {@link #DEFAULT_WINDOW_MILLIS}.
+ *
+ * <p>The alerts are kept as 64-bit keys in a fixed-size open-addressing table with a bounded
+ * number of probes, so that lookups take constant time and do not allocate. Once the probed
+ * slots are all taken, the oldest alert among them is forgotten. The table is persisted as a
+ * binary file of key and time pairs, which is read on first use. The cache is used on the alert
+ * lane of {@link CellBroadcastOperationExecutor}, so the file is not read on the main thread.
+ */
+public class CellBroadcastDuplicateCache {
+
+    private static final String TAG = "CBDuplicateCache";
+
+    /** Number of alerts which can be remembered, a power of two. */
+    @VisibleForTesting
+    public static final int CAPACITY = 256;
+
+    /** Time for which alerts are remembered. */
+    @VisibleForTesting
+    public static final long DEFAULT_WINDOW_MILLIS = DateUtils.DAY_IN_MILLIS;
+
+    // Number of slots searched for a key, starting at the slot of its hash.
+    private static final int MAX_PROBES = 8;
+
+    private static final long EMPTY_KEY = 0;
+
+    private static final String FILE_NAME = "duplicate_alerts";
+
+    private static final int FILE_VERSION = 1;
+
+    private static CellBroadcastDuplicateCache sInstance;
+
+    private final long[] mKeys = new long[CAPACITY];
+    private final long[] mTimes = new long[CAPACITY];
+    private final @Nullable AtomicFile mFile;
+    private final long mWindowMillis;
+
+    private boolean mLoaded;
+    private boolean mDirty;
+
+    /**
+     * Get the cache of the app, which is persisted in the files of the app.
+     */
+    public static synchronized CellBroadcastDuplicateCache getInstance(@NonNull Context context) {
+        if (sInstance == null) {
+            sInstance = new CellBroadcastDuplicateCache(
+                    new File(context.getApplicationContext().getFilesDir(), FILE_NAME),
+                    DEFAULT_WINDOW_MILLIS);
+        }
+        return sInstance;
+    }
+
+    /**
+     * @param file the file to persist the cache to, or null to not persist it
+     * @param windowMillis the time for which alerts are remembered
+     */
+    @VisibleForTesting
+    public CellBroadcastDuplicateCache(@Nullable File file, long windowMillis) {
+        mFile = file != null ? new AtomicFile(file) : null;
+        mWindowMillis = windowMillis;
+    }
+
+    /**
+     * Check whether a message repeats an alert received within the window.
+     *
+     * @param message the received message
+     * @param now the current wall clock time in milliseconds
+     * @return true if the message is a repeat
+     */
+    public synchronized boolean isDuplicate(@NonNull SmsCbMessage message, long now) {
+        loadIfNeeded();
+        long key = getKey(message);
+        int slot = getSlot(key);
+        for (int i = 0; i < MAX_PROBES; i++) {
+            int probe = (slot + i) & (CAPACITY - 1);
+            if (mKeys[probe] == key && isInWindow(mTimes[probe], now)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Remember a message, so that its repeats are detected. Call {@link #save} afterwards on a
+     * background thread to persist it.
+     *
+     * @param message the received message
+     * @param now the current wall clock time in milliseconds
+     */
+    public synchronized void add(@NonNull SmsCbMessage message, long now) {
+        loadIfNeeded();
+        put(getKey(message), now, now);
+        mDirty = true;
+    }
+
+    /**
+     * Write the cache to its file, if it changed since it was last written.
+     */
+    public void save() {
+        long[] keys;
+        long[] times;
+        synchronized (this) {
+            if (mFile == null || !mDirty) {
+                return;
+            }
+            keys = mKeys.clone();
+            times = mTimes.clone();
+            mDirty = false;
+        }
+        long now = System.currentTimeMillis();
+        FileOutputStream fos = null;
+        try {
+            fos = mFile.startWrite();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+            out.writeInt(FILE_VERSION);
+            for (int i = 0; i < CAPACITY; i++) {
+                if (keys[i] != EMPTY_KEY && isInWindow(times[i], now)) {
+                    out.writeLong(keys[i]);
+                    out.writeLong(times[i]);
+                }
+            }
+            out.flush();
+            mFile.finishWrite(fos);
+        } catch (IOException e) {
+            Log.e(TAG, "failed to save duplicate alerts: " + e);
+            mFile.failWrite(fos);
+        }
+    }
+
+    /**
+     * Forget all alerts, and delete the file of the cache.
+     */
+    @VisibleForTesting
+    public synchronized void clear() {
+        for (int i = 0; i < CAPACITY; i++) {
+            mKeys[i] = EMPTY_KEY;
+            mTimes[i] = 0;
+        }
+        if (mFile != null) {
+            mFile.delete();
+        }
+        mLoaded = true;
+        mDirty = false;
+    }
+
+    /**
+     * Get the key of a message, made of the fields which identify repeats of an alert. This does
+     * not allocate, as the hashes of the PLMN and of the body are cached by their strings.
+     *
+     * @param message the message
+     * @return the key of the message, never {@link #EMPTY_KEY}
+     */
+    @VisibleForTesting
+    public static long getKey(@NonNull SmsCbMessage message) {
+        long key = mix(message.getServiceCategory(), message.getSerialNumber());
+        String body = message.getMessageBody();
+        key = mix(key, body != null ? body.hashCode() : 0);
+
+        SmsCbLocation location = message.getLocation();
+        String plmn = location != null ? location.getPlmn() : null;
+        key = mix(key, plmn != null ? plmn.hashCode() : 0);
+        if (location != null) {
+            switch (message.getGeographicalScope()) {
+                case SmsCbMessage.GEOGRAPHICAL_SCOPE_CELL_WIDE_IMMEDIATE:
+                case SmsCbMessage.GEOGRAPHICAL_SCOPE_CELL_WIDE:
+                    // a repeat in another cell is a new alert for that cell.
+                    key = mix(key, location.getCid());
+                    // fall through
+                case SmsCbMessage.GEOGRAPHICAL_SCOPE_LOCATION_AREA_WIDE:
+                    key = mix(key, location.getLac());
+                    break;
+                case SmsCbMessage.GEOGRAPHICAL_SCOPE_PLMN_WIDE:
+                default:
+                    break;
+            }
+        }
+        return key != EMPTY_KEY ? key : 1;
+    }
+
+    private static long mix(long hash, int value) {
+        long h = (hash ^ value) * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 31);
+    }
+
+    private static int getSlot(long key) {
+        return (int) (key ^ (key >>> 32)) & (CAPACITY - 1);
+    }
+
+    private boolean isInWindow(long time, long now) {
+        // an alert from the future means the clock was changed, do not trust it.
+        return time <= now && now - time <= mWindowMillis;
+    }
+
+    /**
+     * Put a key into the slot which holds it already, or the first free slot, or else the slot
+     * of the oldest key among the probed slots.
+     */
+    private void put(long key, long time, long now) {
+        int slot = getSlot(key);
+        int target = -1;
+        int oldest = slot;
+        for (int i = 0; i < MAX_PROBES; i++) {
+            int probe = (slot + i) & (CAPACITY - 1);
+            if (mKeys[probe] == key) {
+                target = probe;
+                break;
+            }
+            if (target == -1 && (mKeys[probe] == EMPTY_KEY || !isInWindow(mTimes[probe], now))) {
+                target = probe;
+            }
+            if (mTimes[probe] < mTimes[oldest]) {
+                oldest = probe;
+            }
+        }
+        if (target == -1) {
+            target = oldest;
+        }
+        mKeys[target] = key;
+        mTimes[target] = time;
+    }
+
+    private void loadIfNeeded() {
+        if (mLoaded) {
+            return;
+        }
+        mLoaded = true;
+        if (mFile == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        int count = 0;
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(mFile.openRead()))) {
+            if (in.readInt() != FILE_VERSION) {
+                Log.w(TAG, "ignoring duplicate alerts of unknown version");
+                return;
+            }
+            while (in.available() >= 2 * Long.BYTES) {
+                long key = in.readLong();
+                long time = in.readLong();
+                if (key != EMPTY_KEY && isInWindow(time, now)) {
+                    put(key, time, now);
+                    count++;
+                }
+            }
+        } catch (FileNotFoundException e) {
+            // nothing was saved yet.
+        } catch (IOException e) {
+            Log.e(TAG, "failed to load duplicate alerts: " + e);
+        }
+        Log.d(TAG, "loaded " + count + " recent alerts");
+    }
+}
@@ -0,0 +1,512 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.cellbroadcastreceiver;
+
+import android.annotation.Nullable;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.AbstractCursor;
+import android.database.Cursor;
+import android.database.CursorIndexOutOfBoundsException;
+import android.database.DatabaseUtils;
+import android.net.Uri;
+import android.provider.Telephony;
+import android.util.ArraySet;
+
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Merges the alert history of {@link CellBroadcastContentProvider} with the history of the cell
+ * broadcast service into one list sorted from most recently to least recently received.
+ *
+ * Both sources are read as cursors already sorted by time, so the merge streams through them
+ * and stops once a page is filled. The next page is queried after the time of the last merged
+ * row by {@link Pager}, and the merged pages are kept, so each page only merges its own rows.
+ * A message stored by both sources is shown once, as the row
+ * of the cell broadcast service with the read state of the stored message. The location check
+ * time and geometry columns are not part of the merged rows, they are queried for a single row
+ * by {@link #queryDetails} when the details of that row are shown.
+ */
+public final class CellBroadcastHistoryMerger {
+
+    /** Columns read from the cell broadcast service. */
+    @VisibleForTesting
+    public static final String[] CBS_COLUMNS = {
+            Telephony.CellBroadcasts._ID,
+            Telephony.CellBroadcasts.SLOT_INDEX,
+            Telephony.CellBroadcasts.SUBSCRIPTION_ID,
+            Telephony.CellBroadcasts.GEOGRAPHICAL_SCOPE,
+            Telephony.CellBroadcasts.PLMN,
+            Telephony.CellBroadcasts.LAC,
+            Telephony.CellBroadcasts.CID,
+            Telephony.CellBroadcasts.SERIAL_NUMBER,
+            Telephony.CellBroadcasts.SERVICE_CATEGORY,
+            Telephony.CellBroadcasts.LANGUAGE_CODE,
+            Telephony.CellBroadcasts.DATA_CODING_SCHEME,
+            Telephony.CellBroadcasts.MESSAGE_BODY,
+            Telephony.CellBroadcasts.MESSAGE_FORMAT,
+            Telephony.CellBroadcasts.MESSAGE_PRIORITY,
+            Telephony.CellBroadcasts.ETWS_WARNING_TYPE,
+            Telephony.CellBroadcasts.CMAS_MESSAGE_CLASS,
+            Telephony.CellBroadcasts.CMAS_CATEGORY,
+            Telephony.CellBroadcasts.CMAS_RESPONSE_TYPE,
+            Telephony.CellBroadcasts.CMAS_SEVERITY,
+            Telephony.CellBroadcasts.CMAS_URGENCY,
+            Telephony.CellBroadcasts.CMAS_CERTAINTY,
+            Telephony.CellBroadcasts.RECEIVED_TIME,
+            Telephony.CellBroadcasts.MESSAGE_BROADCASTED,
+            Telephony.CellBroadcasts.MESSAGE_DISPLAYED,
+            Telephony.CellBroadcasts.MAXIMUM_WAIT_TIME
+    };
+
+    /**
+     * Columns of the merged rows. Rows only stored by {@link CellBroadcastContentProvider} have
+     * the negated local row ID as {@link Telephony.CellBroadcasts#_ID}, so that row IDs of both
+     * sources do not collide.
+     */
+    @VisibleForTesting
+    public static final String[] MERGED_COLUMNS = appendColumn(CBS_COLUMNS,
+            Telephony.CellBroadcasts.MESSAGE_READ);
+
+    /** Number of rows merged at a time. */
+    @VisibleForTesting
+    public static final int PAGE_SIZE = 200;
+
+    private CellBroadcastHistoryMerger() {
+    }
+
+    /**
+     * Merge two cursors sorted by time in descending order.
+     *
+     * @param cbs rows of the cell broadcast service with {@link #CBS_COLUMNS}, or null
+     * @param local rows of {@link CellBroadcastContentProvider} with
+     * {@link CellBroadcastDatabaseHelper#QUERY_COLUMNS}, or null
+     * @param limit the maximum number of merged rows
+     * @return the merged rows with {@link #MERGED_COLUMNS}
+     */
+    @VisibleForTesting
+    public static Cursor merge(@Nullable Cursor cbs, @Nullable Cursor local, int limit) {
+        Pager pager = new Pager();
+        pager.mergePage(cbs, local, limit);
+        return pager.getRows();
+    }
+
+    /**
+     * Query the columns which are not part of the merged rows for one row of the cell broadcast
+     * service.
+     *
+     * @param context the context to use
+     * @param cbsUri the content URI of the cell broadcast service
+     * @param id the row ID in the cell broadcast service
+     * @return {@link Telephony.CellBroadcasts#LOCATION_CHECK_TIME} and
+     * {@link Telephony.CellBroadcasts#GEOMETRIES} of the row, or null if it is not found
+     */
+    static @Nullable ContentValues queryDetails(Context context, Uri cbsUri, long id) {
+        try (Cursor cursor = context.getContentResolver().query(cbsUri,
+                new String[] {Telephony.CellBroadcasts.LOCATION_CHECK_TIME,
+                        Telephony.CellBroadcasts.GEOMETRIES},
+                Telephony.CellBroadcasts._ID + "=?", new String[] {Long.toString(id)}, null)) {
+            if (cursor == null || !cursor.moveToFirst()) {
+                return null;
+            }
+            ContentValues details = new ContentValues();
+            details.put(Telephony.CellBroadcasts.LOCATION_CHECK_TIME, cursor.getLong(0));
+            details.put(Telephony.CellBroadcasts.GEOMETRIES, cursor.getString(1));
+            return details;
+        }
+    }
+
+    private static boolean isReadLocally(Source local, Key key) {
+        Cursor cursor = local.mCursor;
+        int position = cursor.getPosition();
+        try {
+            do {
+                long time = local.time();
+                if (time < key.mTime) {
+                    break;
+                }
+                if (key.equals(local.key())) {
+                    return cursor.getInt(local.mRead) != 0;
+                }
+            } while (cursor.moveToNext());
+        } finally {
+            cursor.moveToPosition(position);
+        }
+        // only stored by the cell broadcast service, so there is nothing to highlight.
+        return true;
+    }
+
+    private static Object[] getCbsRow(Source cbs, boolean read) {
+        Object[] row = new Object[MERGED_COLUMNS.length];
+        for (int i = 0; i < cbs.mColumns.length; i++) {
+            row[i] = getValue(cbs.mCursor, cbs.mColumns[i]);
+        }
+        row[cbs.mColumns.length] = read ? 1 : 0;
+        return row;
+    }
+
+    private static Object[] getLocalRow(Source local) {
+        Object[] row = new Object[MERGED_COLUMNS.length];
+        for (int i = 0; i < MERGED_COLUMNS.length; i++) {
+            switch (MERGED_COLUMNS[i]) {
+                case Telephony.CellBroadcasts._ID:
+                    row[i] = -local.mCursor.getLong(local.mColumns[i]);
+                    break;
+                case Telephony.CellBroadcasts.RECEIVED_TIME:
+                    row[i] = local.time();
+                    break;
+                case Telephony.CellBroadcasts.MESSAGE_BROADCASTED:
+                case Telephony.CellBroadcasts.MESSAGE_DISPLAYED:
+                    // stored messages were broadcast and displayed to the user.
+                    row[i] = 1;
+                    break;
+                default:
+                    row[i] = getValue(local.mCursor, local.mColumns[i]);
+                    break;
+            }
+        }
+        return row;
+    }
+
+    private static Object getValue(Cursor cursor, int column) {
+        if (column < 0) {
+            return null;
+        }
+        switch (cursor.getType(column)) {
+            case Cursor.FIELD_TYPE_INTEGER:
+                return cursor.getLong(column);
+            case Cursor.FIELD_TYPE_FLOAT:
+                return cursor.getDouble(column);
+            case Cursor.FIELD_TYPE_STRING:
+                return cursor.getString(column);
+            case Cursor.FIELD_TYPE_BLOB:
+                return cursor.getBlob(column);
+            default:
+                return null;
+        }
+    }
+
+    private static String[] appendColumn(String[] columns, String column) {
+        String[] result = new String[columns.length + 1];
+        System.arraycopy(columns, 0, result, 0, columns.length);
+        result[columns.length] = column;
+        return result;
+    }
+
+    /**
+     * Merges the history a page at a time. Each page continues after the time of the last merged
+     * row instead of skipping the rows of the previous pages, so loading a page only reads the
+     * rows of that page from both sources. The rows of each page are kept as they were merged,
+     * and the cursor of the rows merged so far refers to them instead of copying them.
+     */
+    public static final class Pager {
+        // the merged pages, which are not changed once merged.
+        private final ArrayList<Object[][]> mPages = new ArrayList<>();
+        private int mCount;
+        // Duplicates have the same time, so only keys of the time of the last merged row need
+        // to be kept. Rows at that time are read again by the next page and skipped by key.
+        private long mKeyTime = Long.MIN_VALUE;
+        private final ArraySet<Key> mKeys = new ArraySet<>();
+        private boolean mComplete;
+
+        /**
+         * Query the next page of both sources and merge it.
+         *
+         * @param context the context to use
+         * @param cbsUri the content URI of the cell broadcast service
+         */
+        void loadPage(Context context, Uri cbsUri) {
+            String cbsSelection = null;
+            String localSelection = null;
+            String[] selectionArgs = null;
+            if (mCount > 0) {
+                cbsSelection = Telephony.CellBroadcasts.RECEIVED_TIME + "<=?";
+                localSelection = Telephony.CellBroadcasts.DELIVERY_TIME + "<=?";
+                selectionArgs = new String[] {Long.toString(mKeyTime)};
+            }
+            // A merged row consumes at most one new row of each source, and rows at the time of
+            // the last merged row may have been merged already.
+            int limit = PAGE_SIZE + mKeys.size();
+            try (Cursor cbs = context.getContentResolver().query(cbsUri, CBS_COLUMNS,
+                    cbsSelection, selectionArgs,
+                    Telephony.CellBroadcasts.RECEIVED_TIME + " DESC LIMIT " + limit);
+                 Cursor local = context.getContentResolver().query(
+                         CellBroadcastContentProvider.CONTENT_URI,
+                         CellBroadcastDatabaseHelper.QUERY_COLUMNS, localSelection,
+                         selectionArgs,
+                         Telephony.CellBroadcasts.DELIVERY_TIME + " DESC LIMIT " + limit)) {
+                mergePage(cbs, local, PAGE_SIZE);
+            }
+        }
+
+        /**
+         * Merge the next page from two cursors sorted by time in descending order, which start
+         * at or after the time of the last merged row.
+         *
+         * @param cbs rows of the cell broadcast service with {@link #CBS_COLUMNS}, or null
+         * @param local rows of {@link CellBroadcastContentProvider} with
+         * {@link CellBroadcastDatabaseHelper#QUERY_COLUMNS}, or null
+         * @param limit the maximum number of rows to merge
+         */
+        @VisibleForTesting
+        public void mergePage(@Nullable Cursor cbs, @Nullable Cursor local, int limit) {
+            Source cbsSource = cbs != null
+                    ? new Source(cbs, Telephony.CellBroadcasts.RECEIVED_TIME, CBS_COLUMNS)
+                    : null;
+            Source localSource = local != null
+                    ? new Source(local, Telephony.CellBroadcasts.DELIVERY_TIME, MERGED_COLUMNS)
+                    : null;
+            boolean hasCbs = cbs != null && cbs.moveToFirst();
+            boolean hasLocal = local != null && local.moveToFirst();
+
+            ArrayList<Object[]> rows = new ArrayList<>();
+            while ((hasCbs || hasLocal) && rows.size() < limit) {
+                boolean takeCbs = hasCbs && (!hasLocal || cbsSource.time() >= localSource.time());
+                Source source = takeCbs ? cbsSource : localSource;
+                long time = source.time();
+                if (time != mKeyTime) {
+                    mKeyTime = time;
+                    mKeys.clear();
+                }
+                Key key = source.key();
+                if (takeCbs) {
+                    if (mKeys.add(key)) {
+                        // The read state is only stored locally, so take it from a local
+                        // duplicate at the same time if there is one.
+                        rows.add(getCbsRow(cbsSource,
+                                !hasLocal || isReadLocally(localSource, key)));
+                    }
+                    hasCbs = cbs.moveToNext();
+                } else {
+                    if (mKeys.add(key)) {
+                        rows.add(getLocalRow(localSource));
+                    }
+                    hasLocal = local.moveToNext();
+                }
+            }
+            // Both sources ran out of rows before the page was filled.
+            mComplete = rows.size() < limit;
+            if (!rows.isEmpty()) {
+                mPages.add(rows.toArray(new Object[0][]));
+                mCount += rows.size();
+            }
+        }
+
+        /**
+         * @return the rows merged so far with {@link #MERGED_COLUMNS}, which does not change
+         * when more pages are merged
+         */
+        public Cursor getRows() {
+            return new PagesCursor(mPages.toArray(new Object[0][][]), mCount);
+        }
+
+        /**
+         * @return the number of rows merged so far
+         */
+        public int getCount() {
+            return mCount;
+        }
+
+        /**
+         * @return {@code true} if all rows of both sources are merged
+         */
+        public boolean isComplete() {
+            return mComplete;
+        }
+    }
+
+    /** Cursor over merged pages with {@link #MERGED_COLUMNS}, read like a MatrixCursor. */
+    private static final class PagesCursor extends AbstractCursor {
+        private final Object[][][] mPages;
+        // position of the first row of each page
+        private final int[] mPageStarts;
+        private final int mCount;
+        private Object[] mRow;
+
+        PagesCursor(Object[][][] pages, int count) {
+            mPages = pages;
+            mCount = count;
+            mPageStarts = new int[pages.length];
+            int start = 0;
+            for (int i = 0; i < pages.length; i++) {
+                mPageStarts[i] = start;
+                start += pages[i].length;
+            }
+        }
+
+        @Override
+        public boolean onMove(int oldPosition, int newPosition) {
+            int page = Arrays.binarySearch(mPageStarts, newPosition);
+            if (page < 0) {
+                // the page starting before the position
+                page = -page - 2;
+            }
+            mRow = mPages[page][newPosition - mPageStarts[page]];
+            return true;
+        }
+
+        @Override
+        public int getCount() {
+            return mCount;
+        }
+
+        @Override
+        public String[] getColumnNames() {
+            return MERGED_COLUMNS;
+        }
+
+        private Object get(int column) {
+            if (column < 0 || column >= MERGED_COLUMNS.length) {
+                throw new CursorIndexOutOfBoundsException("Requested column: " + column
+                        + ", # of columns: " + MERGED_COLUMNS.length);
+            }
+            if (mRow == null || isBeforeFirst() || isAfterLast()) {
+                throw new CursorIndexOutOfBoundsException("Position " + getPosition()
+                        + " is not a row");
+            }
+            return mRow[column];
+        }
+
+        @Override
+        public String getString(int column) {
+            Object value = get(column);
+            return value != null ? value.toString() : null;
+        }
+
+        @Override
+        public short getShort(int column) {
+            Object value = get(column);
+            if (value == null) return 0;
+            if (value instanceof Number) return ((Number) value).shortValue();
+            return Short.parseShort(value.toString());
+        }
+
+        @Override
+        public int getInt(int column) {
+            Object value = get(column);
+            if (value == null) return 0;
+            if (value instanceof Number) return ((Number) value).intValue();
+            return Integer.parseInt(value.toString());
+        }
+
+        @Override
+        public long getLong(int column) {
+            Object value = get(column);
+            if (value == null) return 0;
+            if (value instanceof Number) return ((Number) value).longValue();
+            return Long.parseLong(value.toString());
+        }
+
+        @Override
+        public float getFloat(int column) {
+            Object value = get(column);
+            if (value == null) return 0.0f;
+            if (value instanceof Number) return ((Number) value).floatValue();
+            return Float.parseFloat(value.toString());
+        }
+
+        @Override
+        public double getDouble(int column) {
+            Object value = get(column);
+            if (value == null) return 0.0d;
+            if (value instanceof Number) return ((Number) value).doubleValue();
+            return Double.parseDouble(value.toString());
+        }
+
+        @Override
+        public byte[] getBlob(int column) {
+            return (byte[]) get(column);
+        }
+
+        @Override
+        public int getType(int column) {
+            return DatabaseUtils.getTypeOfObject(get(column));
+        }
+
+        @Override
+        public boolean isNull(int column) {
+            return get(column) == null;
+        }
+    }
+
+    /** A source cursor with its column indexes resolved once. */
+    private static final class Source {
+        final Cursor mCursor;
+        final int mTime;
+        final int mSerialNumber;
+        final int mCategory;
+        final int mPlmn;
+        final int mRead;
+        // indexes of the given columns in the cursor, -1 for missing columns
+        final int[] mColumns;
+
+        Source(Cursor cursor, String timeColumn, String[] columns) {
+            mCursor = cursor;
+            mTime = cursor.getColumnIndexOrThrow(timeColumn);
+            mSerialNumber = cursor.getColumnIndexOrThrow(Telephony.CellBroadcasts.SERIAL_NUMBER);
+            mCategory = cursor.getColumnIndexOrThrow(Telephony.CellBroadcasts.SERVICE_CATEGORY);
+            mPlmn = cursor.getColumnIndex(Telephony.CellBroadcasts.PLMN);
+            mRead = cursor.getColumnIndex(Telephony.CellBroadcasts.MESSAGE_READ);
+            mColumns = new int[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                mColumns[i] = cursor.getColumnIndex(columns[i]);
+            }
+        }
+
+        long time() {
+            return mCursor.getLong(mTime);
+        }
+
+        Key key() {
+            return new Key(mCursor.getInt(mSerialNumber), mCursor.getInt(mCategory),
+                    mPlmn >= 0 ? mCursor.getString(mPlmn) : null, time());
+        }
+    }
+
+    /** Identifies one message across both sources. */
+    private static final class Key {
+        final int mSerialNumber;
+        final int mCategory;
+        final String mPlmn;
+        final long mTime;
+
+        private Key(int serialNumber, int category, String plmn, long time) {
+            mSerialNumber = serialNumber;
+            mCategory = category;
+            mPlmn = plmn;
+            mTime = time;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return mSerialNumber == other.mSerialNumber && mCategory == other.mCategory
+                    && mTime == other.mTime && Objects.equals(mPlmn, other.mPlmn);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(mSerialNumber, mCategory, mPlmn, mTime);
+        }
+    }
+}
@@ -65,8 +65,9 @@ public class CellBroadcastInternalReceiver extends BroadcastReceiver {
                     CellBroadcastAlertService.NOTIFICATION_ID);
             // Stop playing alert sound/vibration/speech (if started)
             context.stopService(new Intent(context, CellBroadcastAlertAudio.class));
-            CellBroadcastAlertReminder.cancelAlertReminder();
-            context.getSystemService(NotificationManager.class).cancel(notificationId);
+            CellBroadcastAlertReminder.cancelAlertReminder(context, deliveryTime);
+            CellBroadcastNotificationComposer.getInstance().cancel(
+                    context.getSystemService(NotificationManager.class), notificationId);
             getCellBroadcastTask(context, deliveryTime);
         } else if (CellBroadcastReceiver.CELLBROADCAST_START_CONFIG_ACTION.equals(
                 intent.getAction())) {
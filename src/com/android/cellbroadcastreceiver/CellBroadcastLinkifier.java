@@ -0,0 +1,409 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.cellbroadcastreceiver;
+
+import android.annotation.IntDef;
+import android.annotation.NonNull;
+import android.annotation.Nullable;
+import android.app.PendingIntent;
+import android.app.RemoteAction;
+import android.os.Handler;
+import android.os.LocaleList;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.text.Spannable;
+import android.text.SpannableString;
+import android.text.Spanned;
+import android.text.method.LinkMovementMethod;
+import android.text.style.ClickableSpan;
+import android.text.util.Linkify;
+import android.util.Log;
+import android.view.View;
+import android.view.textclassifier.TextClassification;
+import android.view.textclassifier.TextClassifier;
+import android.view.textclassifier.TextLinks;
+import android.view.textclassifier.TextLinks.TextLink;
+import android.widget.TextView;
+
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.io.PrintWriter;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adds links to the text of the alerts shown by {@link CellBroadcastAlertDialog}.
+ *
+ * <p>The text is shown without links first, and the links are generated on a background thread
+ * shared by all dialogs, then swapped in if the text view still shows the same text. The linked
+ * text is cached by text, link method and locales, so an alert shown again, e.g. after a
+ * rotation or from the history, gets its links right away. The background thread runs a few
+ * requests at a time, and drops the oldest ones when it falls behind. The text views waiting
+ * for a dropped request keep the plain text, and the text is linked again when shown again.
+ */
+public class CellBroadcastLinkifier {
+
+    private static final String TAG = "CBLinkifier";
+
+    /** Not link any text. */
+    public static final int LINK_METHOD_NONE = 0;
+
+    /** Use {@link android.text.util.Linkify} to generate links. */
+    public static final int LINK_METHOD_LEGACY_LINKIFY = 1;
+
+    /**
+     * Use the machine learning based {@link TextClassifier} to generate links. Will fallback to
+     * {@link #LINK_METHOD_LEGACY_LINKIFY} if not enabled.
+     */
+    public static final int LINK_METHOD_SMART_LINKIFY = 2;
+
+    /**
+     * Use the machine learning based {@link TextClassifier} to generate links but hiding copy
+     * option. Will fallback to
+     * {@link #LINK_METHOD_LEGACY_LINKIFY} if not enabled.
+     */
+    public static final int LINK_METHOD_SMART_LINKIFY_NO_COPY = 3;
+
+    /**
+     * Text link method
+     * @hide
+     */
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef(prefix = "LINK_METHOD_",
+            value = {LINK_METHOD_NONE, LINK_METHOD_LEGACY_LINKIFY,
+                    LINK_METHOD_SMART_LINKIFY, LINK_METHOD_SMART_LINKIFY_NO_COPY})
+    public @interface LinkMethod {}
+
+    /** Maximum number of linked texts cached. */
+    @VisibleForTesting
+    public static final int MAX_ENTRIES = 32;
+
+    // requests beyond these are dropped, oldest first.
+    private static final int MAX_QUEUED = 4;
+
+    private static CellBroadcastLinkifier sInstance;
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final ThreadPoolExecutor mExecutor;
+
+    // the linked texts, least recently used first.
+    private final LinkedHashMap<Key, Spanned> mCache = new LinkedHashMap<Key, Spanned>(
+            16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Spanned> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    // the texts being linked.
+    private final HashSet<Key> mInFlight = new HashSet<>();
+    // the text each text view waits for the links of, only used on the main thread.
+    private final WeakHashMap<TextView, Key> mPending = new WeakHashMap<>();
+    private long mHits;
+    private long mMisses;
+    private long mMaxLinkMs;
+
+    /**
+     * Get the linkifier of the app.
+     */
+    public static synchronized CellBroadcastLinkifier getInstance() {
+        if (sInstance == null) {
+            sInstance = new CellBroadcastLinkifier();
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    public CellBroadcastLinkifier() {
+        mExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(MAX_QUEUED), r -> new Thread(r, TAG),
+                new DropOldestPolicy());
+    }
+
+    /**
+     * Show a text in a text view, and add its links once generated. Called on the main thread.
+     *
+     * @param textView the text view
+     * @param text the text
+     * @param linkMethod the link method
+     */
+    public void setText(@NonNull TextView textView, @NonNull String text,
+            @LinkMethod int linkMethod) {
+        if (linkMethod == LINK_METHOD_NONE) {
+            mPending.remove(textView);
+            textView.setText(text);
+            return;
+        }
+        Key key = new Key(text, linkMethod, LocaleList.getDefault().toLanguageTags());
+        Spanned linked;
+        boolean queue;
+        synchronized (this) {
+            linked = mCache.get(key);
+            if (linked != null) {
+                mHits++;
+            } else {
+                mMisses++;
+            }
+            queue = linked == null && mInFlight.add(key);
+        }
+        if (linked != null) {
+            mPending.remove(textView);
+            showLinks(textView, linked);
+            return;
+        }
+        // the plain text is shown until the links are generated.
+        mPending.put(textView, key);
+        textView.setText(text);
+        if (queue) {
+            TextClassifier classifier = textView.getTextClassifier();
+            mExecutor.execute(new LinkTask(key, classifier));
+        }
+    }
+
+    /**
+     * Get the cached links of a text.
+     *
+     * @return the linked text, or null if it is not cached
+     */
+    @VisibleForTesting
+    public synchronized @Nullable Spanned getCached(@NonNull String text,
+            @LinkMethod int linkMethod) {
+        return mCache.get(new Key(text, linkMethod, LocaleList.getDefault().toLanguageTags()));
+    }
+
+    /**
+     * Dump the cached links and how often the dialogs found them cached.
+     *
+     * @param writer the writer of the dump
+     */
+    public synchronized void dump(@NonNull PrintWriter writer) {
+        writer.println("CellBroadcastLinkifier:");
+        writer.println("  cached=" + mCache.size() + " hits=" + mHits + " misses=" + mMisses
+                + " inFlight=" + mInFlight.size() + " maxLinkMs=" + mMaxLinkMs);
+    }
+
+    private void link(Key key, TextClassifier classifier) {
+        long start = SystemClock.elapsedRealtime();
+        Spanned linked = null;
+        try {
+            linked = generateLinks(key.mText, key.mLinkMethod, classifier);
+        } catch (RuntimeException e) {
+            // the text is left without links.
+            Log.e(TAG, "failed to generate links: " + e);
+        }
+        long linkMs = SystemClock.elapsedRealtime() - start;
+        synchronized (this) {
+            mInFlight.remove(key);
+            if (linked != null) {
+                mCache.put(key, linked);
+                mMaxLinkMs = Math.max(mMaxLinkMs, linkMs);
+            }
+        }
+        final Spanned result = linked;
+        // UI can be only updated in the main thread.
+        mMainHandler.post(() -> finishPending(key, result));
+    }
+
+    private void drop(Key key) {
+        Log.d(TAG, "dropped a link request");
+        synchronized (this) {
+            mInFlight.remove(key);
+        }
+        // requests are dropped by setText, so the text views stop waiting before the text can
+        // be shown and queued again.
+        if (mMainHandler.getLooper().isCurrentThread()) {
+            finishPending(key, null);
+        } else {
+            mMainHandler.post(() -> finishPending(key, null));
+        }
+    }
+
+    /**
+     * Stop waiting for the links of a text, and show them in the text views waiting for them.
+     * Called on the main thread.
+     *
+     * @param key the text
+     * @param linked the linked text, or null to keep the plain text
+     */
+    private void finishPending(Key key, @Nullable Spanned linked) {
+        Iterator<Map.Entry<TextView, Key>> it = mPending.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<TextView, Key> entry = it.next();
+            if (key.equals(entry.getValue())) {
+                it.remove();
+                if (linked != null) {
+                    showLinks(entry.getKey(), linked);
+                }
+            }
+        }
+    }
+
+    private static void showLinks(TextView textView, Spanned linked) {
+        textView.setMovementMethod(LinkMovementMethod.getInstance());
+        textView.setText(linked);
+    }
+
+    /**
+     * Generate the links of a text. Text classification cannot be run in the main thread.
+     *
+     * @param text the text
+     * @param linkMethod the link method
+     * @param classifier the text classifier of the text view
+     * @return the text with links
+     */
+    @VisibleForTesting
+    public static @NonNull Spanned generateLinks(@NonNull String text,
+            @LinkMethod int linkMethod, @Nullable TextClassifier classifier) {
+        Spannable result = new SpannableString(text);
+        if (linkMethod == LINK_METHOD_LEGACY_LINKIFY || classifier == null) {
+            Linkify.addLinks(result, Linkify.ALL);
+            return result;
+        }
+
+        TextClassifier.EntityConfig entityConfig =
+                new TextClassifier.EntityConfig.Builder()
+                        .setIncludedTypes(Arrays.asList(
+                                TextClassifier.TYPE_URL,
+                                TextClassifier.TYPE_EMAIL,
+                                TextClassifier.TYPE_PHONE,
+                                TextClassifier.TYPE_ADDRESS,
+                                TextClassifier.TYPE_FLIGHT_NUMBER))
+                        .setExcludedTypes(Arrays.asList(
+                                TextClassifier.TYPE_DATE,
+                                TextClassifier.TYPE_DATE_TIME))
+                        .build();
+
+        TextLinks.Request request = new TextLinks.Request.Builder(text)
+                .setEntityConfig(entityConfig)
+                .build();
+        TextLinks textLinks = classifier.generateLinks(request);
+        if (linkMethod == LINK_METHOD_SMART_LINKIFY) {
+            // Add links to the spannable text.
+            textLinks.apply(result, TextLinks.APPLY_STRATEGY_REPLACE, null);
+        } else {
+            // Add links to the spannable text, without the copy option.
+            for (TextLink link : textLinks.getLinks()) {
+                TextClassification textClassification = classifier.classifyText(
+                        new TextClassification.Request.Builder(
+                                text,
+                                link.getStart(),
+                                link.getEnd())
+                                .build());
+                if (textClassification.getActions().isEmpty()) {
+                    continue;
+                }
+                RemoteAction remoteAction = textClassification.getActions().get(0);
+                result.setSpan(new RemoteActionSpan(remoteAction), link.getStart(),
+                        link.getEnd(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+            }
+        }
+        return result;
+    }
+
+    private class LinkTask implements Runnable {
+        final Key mKey;
+        final TextClassifier mClassifier;
+
+        LinkTask(Key key, TextClassifier classifier) {
+            mKey = key;
+            mClassifier = classifier;
+        }
+
+        @Override
+        public void run() {
+            link(mKey, mClassifier);
+        }
+    }
+
+    /**
+     * Drops the oldest queued request for a new one, as
+     * {@link ThreadPoolExecutor.DiscardOldestPolicy}, and forgets the dropped text, so it is
+     * queued again the next time it is shown.
+     */
+    private class DropOldestPolicy implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                drop(((LinkTask) r).mKey);
+                return;
+            }
+            Runnable oldest = executor.getQueue().poll();
+            if (oldest != null) {
+                drop(((LinkTask) oldest).mKey);
+            }
+            executor.execute(r);
+        }
+    }
+
+    private static class RemoteActionSpan extends ClickableSpan {
+        private final RemoteAction mRemoteAction;
+        private RemoteActionSpan(RemoteAction remoteAction) {
+            mRemoteAction = remoteAction;
+        }
+        @Override
+        public void onClick(@NonNull View view) {
+            try {
+                mRemoteAction.getActionIntent().send();
+            } catch (PendingIntent.CanceledException e) {
+                Log.e(TAG, "Failed to start the pendingintent.");
+            }
+        }
+    }
+
+    /**
+     * Identifies a linked text. The links depend on the locales, as the classifier detects
+     * e.g. addresses and phone numbers by locale.
+     */
+    private static class Key {
+        final String mText;
+        final int mLinkMethod;
+        final String mLocales;
+        final int mHash;
+
+        Key(String text, int linkMethod, String locales) {
+            mText = text;
+            mLinkMethod = linkMethod;
+            mLocales = locales;
+            mHash = Objects.hash(text, linkMethod, locales);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return mHash == key.mHash && mLinkMethod == key.mLinkMethod
+                    && mText.equals(key.mText) && mLocales.equals(key.mLocales);
+        }
+
+        @Override
+        public int hashCode() {
+            return mHash;
+        }
+    }
+}
@@ -20,12 +20,14 @@ import static android.view.WindowManager.LayoutParams.SYSTEM_FLAG_HIDE_NON_SYSTE
 
 import android.annotation.Nullable;
 import android.app.ActionBar;
+import android.app.Activity;
 import android.app.AlertDialog;
 import android.app.Dialog;
 import android.app.DialogFragment;
 import android.app.FragmentManager;
 import android.app.ListFragment;
 import android.app.LoaderManager;
+import android.content.ContentValues;
 import android.content.Context;
 import android.content.CursorLoader;
 import android.content.DialogInterface;
@@ -49,6 +51,7 @@ import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.WindowManager;
+import android.widget.AbsListView;
 import android.widget.AbsListView.MultiChoiceModeListener;
 import android.widget.ListView;
 import android.widget.TextView;
@@ -58,6 +61,7 @@ import com.android.modules.utils.build.SdkLevel;
 import com.android.settingslib.collapsingtoolbar.CollapsingToolbarBaseActivity;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * This activity provides a list view of received cell broadcasts. Most of the work is handled
@@ -204,6 +208,12 @@ public class CellBroadcastListActivity extends CollapsingToolbarBaseActivity {
 
         private boolean mIsWatch;
 
+        // Number of rows before the end of the merged history at which the next page is loaded.
+        private static final int NEXT_PAGE_THRESHOLD = CellBroadcastHistoryMerger.PAGE_SIZE / 4;
+
+        // Whether the next page of the merged history is being loaded.
+        private boolean mLoadingNextPage;
+
         @VisibleForTesting
         public AlertDialog.Builder mInjectAlertDialogBuilder;
 
@@ -252,6 +262,19 @@ public class CellBroadcastListActivity extends CollapsingToolbarBaseActivity {
                 listView.setMultiChoiceModeListener(getMultiChoiceModeListener());
             }
 
+            listView.setOnScrollListener(new AbsListView.OnScrollListener() {
+                @Override
+                public void onScrollStateChanged(AbsListView view, int scrollState) {
+                }
+
+                @Override
+                public void onScroll(AbsListView view, int firstVisibleItem,
+                        int visibleItemCount, int totalItemCount) {
+                    maybeLoadNextHistoryPage(firstVisibleItem + visibleItemCount,
+                            totalItemCount);
+                }
+            });
+
             mCurrentLoaderId = LOADER_NORMAL_HISTORY;
             if (savedInstanceState != null && savedInstanceState.containsKey(KEY_LOADER_ID)) {
                 mCurrentLoaderId = savedInstanceState.getInt(KEY_LOADER_ID);
@@ -316,25 +339,50 @@ public class CellBroadcastListActivity extends CollapsingToolbarBaseActivity {
 
         @Override
         public Loader<Cursor> onCreateLoader(int id, Bundle args) {
+            if (id != mCurrentLoaderId) {
+                // The _id of the rows differ between the sources, so start over with the
+                // decoded rows.
+                mAdapter.clearRowCache();
+            }
             mCurrentLoaderId = id;
+            mLoadingNextPage = false;
             if (id == LOADER_NORMAL_HISTORY) {
                 Log.d(TAG, "onCreateLoader: normal history.");
-                return new CursorLoader(getActivity(), CellBroadcastContentProvider.CONTENT_URI,
-                        CellBroadcastDatabaseHelper.QUERY_COLUMNS, null, null,
+                return new HistoryCursorLoader(getActivity(), mAdapter,
+                        CellBroadcastContentProvider.CONTENT_URI,
+                        CellBroadcastDatabaseHelper.PACKED_QUERY_COLUMNS,
                         Telephony.CellBroadcasts.DELIVERY_TIME + " DESC");
             } else if (id == LOADER_HISTORY_FROM_CBS) {
-                Log.d(TAG, "onCreateLoader: history from cell broadcast service");
-                return new CursorLoader(getActivity(), CONTENT_URI,
-                        QUERY_COLUMNS, null, null,
-                        Telephony.CellBroadcasts.RECEIVED_TIME + " DESC");
+                Log.d(TAG, "onCreateLoader: history from cell broadcast service.");
+                return new MergedHistoryCursorLoader(getActivity(), mAdapter);
             }
 
             return null;
         }
 
+        /**
+         * Load the next page of the merged history once the list is scrolled close to the end of
+         * the rows loaded so far.
+         */
+        private void maybeLoadNextHistoryPage(int lastVisibleItem, int totalItemCount) {
+            if (mCurrentLoaderId != LOADER_HISTORY_FROM_CBS || mLoadingNextPage
+                    || lastVisibleItem < totalItemCount - NEXT_PAGE_THRESHOLD) {
+                return;
+            }
+            Loader<Cursor> loader = getLoaderManager().getLoader(LOADER_HISTORY_FROM_CBS);
+            if (!(loader instanceof MergedHistoryCursorLoader)
+                    || ((MergedHistoryCursorLoader) loader).isComplete()) {
+                // all rows are loaded already.
+                return;
+            }
+            mLoadingNextPage = true;
+            ((MergedHistoryCursorLoader) loader).loadNextPage();
+        }
+
         @Override
         public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
             if (DBG) Log.d(TAG, "onLoadFinished");
+            mLoadingNextPage = false;
             // Swap the new cursor in.  (The framework will take care of closing the
             // old cursor once we return.)
             mAdapter.swapCursor(data);
@@ -361,6 +409,43 @@ public class CellBroadcastListActivity extends CollapsingToolbarBaseActivity {
             startActivity(i);
         }
 
+        /**
+         * Show the details of the row at the position of the cursor. The columns which are not
+         * part of the merged history are queried from cell broadcast service off the main
+         * thread before the details are shown.
+         *
+         * @param cursor The cursor of the database
+         */
+        private void showBroadcastDetails(Cursor cursor) {
+            SmsCbMessage message = mAdapter.getMessageFromCursor(getContext(), cursor);
+            boolean messageDisplayed = wasMessageDisplayed(cursor);
+            long id = getDetailsRowId(cursor);
+            if (id < 0) {
+                showBroadcastDetails(message, getLocationCheckTime(cursor), messageDisplayed,
+                        getGeometryString(cursor));
+                return;
+            }
+            Activity activity = getActivity();
+            Context context = activity.getApplicationContext();
+            boolean queued = CellBroadcastOperationExecutor.getInstance().execute(
+                    CellBroadcastOperationExecutor.LANE_USER, () -> {
+                        ContentValues details = CellBroadcastHistoryMerger.queryDetails(
+                                context, CONTENT_URI, id);
+                        activity.runOnUiThread(() -> {
+                            if (!isAdded()) return;
+                            Long locationCheckTime = details != null ? details.getAsLong(
+                                    Telephony.CellBroadcasts.LOCATION_CHECK_TIME) : null;
+                            showBroadcastDetails(message,
+                                    locationCheckTime != null ? locationCheckTime : -1,
+                                    messageDisplayed, details != null ? details.getAsString(
+                                            Telephony.CellBroadcasts.GEOMETRIES) : null);
+                        });
+                    });
+            if (!queued) {
+                Log.e(TAG, "Failed to query the details of row " + id);
+            }
+        }
+
         private void showBroadcastDetails(SmsCbMessage message, long locationCheckTime,
                                           boolean messageDisplayed, String geometry) {
             // show dialog with delivery date/time and alert details
@@ -450,8 +535,8 @@ public class CellBroadcastListActivity extends CollapsingToolbarBaseActivity {
          */
         private long getLocationCheckTime(Cursor cursor) {
             if (mCurrentLoaderId != LOADER_HISTORY_FROM_CBS) return -1;
-            return cursor.getLong(cursor.getColumnIndex(
-                    Telephony.CellBroadcasts.LOCATION_CHECK_TIME));
+            int column = cursor.getColumnIndex(Telephony.CellBroadcasts.LOCATION_CHECK_TIME);
+            return column >= 0 ? cursor.getLong(column) : -1;
         }
 
         /**
@@ -480,6 +565,23 @@ public class CellBroadcastListActivity extends CollapsingToolbarBaseActivity {
             return null;
         }
 
+        /**
+         * Get the row ID in cell broadcast service of which the columns that are not part of the
+         * merged history need to be queried to show the details of the current row.
+         *
+         * @param cursor The cursor of the database
+         * @return The row ID, or -1 if there is nothing to query
+         */
+        private long getDetailsRowId(Cursor cursor) {
+            if (mCurrentLoaderId != LOADER_HISTORY_FROM_CBS
+                    || cursor.getColumnIndex(Telephony.CellBroadcasts.LOCATION_CHECK_TIME) >= 0) {
+                return -1;
+            }
+            long id = cursor.getLong(cursor.getColumnIndexOrThrow(Telephony.CellBroadcasts._ID));
+            // only stored locally if negative, see CellBroadcastHistoryMerger#MERGED_COLUMNS
+            return id >= 0 ? id : -1;
+        }
+
         @Override
         public boolean onContextItemSelected(MenuItem item) {
             Cursor cursor = mAdapter.getCursor();
@@ -491,9 +593,7 @@ public class CellBroadcastListActivity extends CollapsingToolbarBaseActivity {
                         break;
 
                     case MENU_VIEW_DETAILS:
-                        showBroadcastDetails(CellBroadcastCursorAdapter.createFromCursor(
-                                getContext(), cursor), getLocationCheckTime(cursor),
-                                wasMessageDisplayed(cursor), getGeometryString(cursor));
+                        showBroadcastDetails(cursor);
                         break;
 
                     default:
@@ -549,6 +649,13 @@ public class CellBroadcastListActivity extends CollapsingToolbarBaseActivity {
                         mode.getMenuInflater().inflate(R.menu.cell_broadcast_list_action_menu,
                                 menu);
                         mInformationMenuItem = menu.findItem(R.id.action_detail_info);
+                        // The merged history mixes row IDs of both sources, see
+                        // CellBroadcastHistoryMerger#MERGED_COLUMNS, so it cannot be deleted
+                        // from.
+                        MenuItem deleteMenuItem = menu.findItem(R.id.action_delete);
+                        if (deleteMenuItem != null) {
+                            deleteMenuItem.setVisible(mCurrentLoaderId == LOADER_NORMAL_HISTORY);
+                        }
                         mAdapter.setIsActionMode(true);
                         mAdapter.notifyDataSetChanged();
                         updateActionIconsVisibility();
@@ -569,15 +676,14 @@ public class CellBroadcastListActivity extends CollapsingToolbarBaseActivity {
                         if (item.getItemId() == R.id.action_detail_info) {
                             Cursor cursor = getSelectedItemSingle();
                             if (cursor != null) {
-                                showBroadcastDetails(CellBroadcastCursorAdapter.createFromCursor(
-                                                getContext(), cursor), getLocationCheckTime(cursor),
-                                        wasMessageDisplayed(cursor), getGeometryString(cursor));
+                                showBroadcastDetails(cursor);
                             } else {
                                 Log.e(TAG, "Multiple items selected with action_detail_info");
                             }
                             mode.finish();
                             return true;
-                        } else if (item.getItemId() == R.id.action_delete) {
+                        } else if (item.getItemId() == R.id.action_delete
+                                && mCurrentLoaderId == LOADER_NORMAL_HISTORY) {
                             long[] selectedRowId = getSelectedItemsRowId();
                             confirmDeleteThread(selectedRowId);
                             mode.finish();
@@ -620,6 +726,105 @@ public class CellBroadcastListActivity extends CollapsingToolbarBaseActivity {
             dialog.show(getFragmentManager(), KEY_DELETE_DIALOG);
         }
 
+        /**
+         * Loads the alert history and decodes its first rows on the loader thread, so that the
+         * first screen of the list is bound without decoding rows on the main thread.
+         */
+        private static class HistoryCursorLoader extends CursorLoader {
+            private final CellBroadcastCursorAdapter mAdapter;
+
+            HistoryCursorLoader(Context context, CellBroadcastCursorAdapter adapter, Uri uri,
+                    String[] projection, String sortOrder) {
+                super(context, uri, projection, null, null, sortOrder);
+                mAdapter = adapter;
+            }
+
+            /**
+             * @return the cursor of the history, which is queried on the loader thread
+             */
+            protected Cursor queryInBackground() {
+                return super.loadInBackground();
+            }
+
+            @Override
+            public Cursor loadInBackground() {
+                Cursor cursor = queryInBackground();
+                if (cursor != null) {
+                    try {
+                        mAdapter.prefetchRows(getContext(), cursor);
+                    } catch (RuntimeException e) {
+                        // the rows are decoded again when bound, so prefetching is best effort.
+                        Log.e(TAG, "Failed to prefetch history rows", e);
+                    }
+                }
+                return cursor;
+            }
+        }
+
+        /**
+         * Loads the history of cell broadcast service merged with the local history a page at a
+         * time, see {@link CellBroadcastHistoryMerger.Pager}.
+         */
+        private static class MergedHistoryCursorLoader extends HistoryCursorLoader {
+            // Created here because the loader thread has no looper for the observer's handler.
+            private final ForceLoadContentObserver mObserver = new ForceLoadContentObserver();
+            // Only used on the loader thread, which runs one load at a time.
+            private CellBroadcastHistoryMerger.Pager mPager;
+            // Whether the next load only merges the next page instead of reloading the rows.
+            private volatile boolean mNextPageOnly;
+            private volatile boolean mComplete;
+
+            MergedHistoryCursorLoader(Context context, CellBroadcastCursorAdapter adapter) {
+                super(context, adapter, CONTENT_URI, CellBroadcastHistoryMerger.CBS_COLUMNS,
+                        Telephony.CellBroadcasts.RECEIVED_TIME + " DESC");
+            }
+
+            /**
+             * Merge the next page and deliver the rows merged so far.
+             */
+            void loadNextPage() {
+                mNextPageOnly = true;
+                forceLoad();
+            }
+
+            /**
+             * @return {@code true} if all rows of the history are loaded
+             */
+            boolean isComplete() {
+                return mComplete;
+            }
+
+            @Override
+            public void onContentChanged() {
+                // merged rows may have changed, so they are reloaded.
+                mNextPageOnly = false;
+                super.onContentChanged();
+            }
+
+            @Override
+            protected Cursor queryInBackground() {
+                CellBroadcastHistoryMerger.Pager pager = mPager;
+                if (pager != null && mNextPageOnly) {
+                    mNextPageOnly = false;
+                    pager.loadPage(getContext(), CONTENT_URI);
+                } else {
+                    // reload as many rows as were loaded before.
+                    int count = pager != null ? pager.getCount() : 0;
+                    pager = new CellBroadcastHistoryMerger.Pager();
+                    do {
+                        pager.loadPage(getContext(), CONTENT_URI);
+                    } while (!pager.isComplete() && pager.getCount() < count);
+                    mPager = pager;
+                }
+                mComplete = pager.isComplete();
+                Cursor cursor = pager.getRows();
+                cursor.setNotificationUris(getContext().getContentResolver(),
+                        Arrays.asList(CONTENT_URI, CellBroadcastContentProvider.CONTENT_URI));
+                cursor.registerContentObserver(mObserver);
+                return cursor;
+            }
+        }
+
         public static class DeleteDialogFragment extends DialogFragment {
             /**
              * Key for the row id of the message to delete. If the row id is -1, the displayed
@@ -669,12 +874,7 @@ public class CellBroadcastListActivity extends CollapsingToolbarBaseActivity {
                         mContext.getContentResolver()).execute(
                                 (CellBroadcastContentProvider.CellBroadcastOperation) provider -> {
                                     if (mRowId[0] != -1) {
-                                        for (int i = 0; i < mRowId.length; i++) {
-                                            if (!provider.deleteBroadcast(mRowId[i])) {
-                                                Log.e(TAG, "failed to delete at row " + mRowId[i]);
-                                            }
-                                        }
-                                        return true;
+                                        return provider.deleteBroadcasts(mRowId);
                                     } else {
                                         return provider.deleteAllBroadcasts();
                                     }
@@ -17,10 +17,7 @@
 package com.android.cellbroadcastreceiver;
 
 import android.content.Context;
-import android.content.res.Resources;
-import android.database.Cursor;
 import android.graphics.Typeface;
-import android.provider.Telephony;
 import android.telephony.SmsCbMessage;
 import android.text.Spannable;
 import android.text.SpannableStringBuilder;
@@ -67,43 +64,32 @@ public class CellBroadcastListItem extends RelativeLayout {
     }
 
     /**
-     * Only used for header binding.
-     * @param message the message contents to bind
+     * Bind a row of the alert history whose strings were already resolved.
+     * @param model the decoded row to bind
      */
-    public void bind(SmsCbMessage message) {
-        mCbMessage = message;
-        Resources res = CellBroadcastSettings.getResourcesByOperator(mContext,
-                message.getSubscriptionId(),
-                CellBroadcastReceiver.getRoamingOperatorSupported(mContext));
-        mChannelView.setText(res.getText(
-                CellBroadcastResources.getDialogTitleResource(mContext, message)));
-        mDateView.setText(DateUtils.formatDateTime(getContext(), message.getReceivedTime(),
-                DateUtils.FORMAT_NO_NOON_MIDNIGHT | DateUtils.FORMAT_SHOW_TIME
-                        | DateUtils.FORMAT_ABBREV_ALL | DateUtils.FORMAT_SHOW_DATE
-                        | DateUtils.FORMAT_CAP_AMPM));
+    public void bind(CellBroadcastListItemModel model) {
+        mCbMessage = model.mMessage;
+        mChannelView.setText(model.mTitle);
+        mDateView.setText(model.mDate);
 
-        SpannableStringBuilder messageText = new SpannableStringBuilder(message.getMessageBody());
-        try (Cursor cursor = mContext.getContentResolver().query(
-                CellBroadcastContentProvider.CONTENT_URI,
-                CellBroadcastDatabaseHelper.QUERY_COLUMNS,
-                Telephony.CellBroadcasts.DELIVERY_TIME + "=?",
-                new String[] {Long.toString(message.getReceivedTime())},
-                null)) {
-            if (cursor != null) {
-                while (cursor.moveToNext()) {
-                    if (cursor.getInt(cursor.getColumnIndexOrThrow(
-                            Telephony.CellBroadcasts.MESSAGE_READ)) == 0) {
-                        messageText.setSpan(new StyleSpan(Typeface.BOLD), 0, messageText.length(),
-                                Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
-                        break;
-                    }
-                }
-            }
+        SpannableStringBuilder messageText = new SpannableStringBuilder(
+                model.mMessage.getMessageBody());
+        if (!model.mRead) {
+            messageText.setSpan(new StyleSpan(Typeface.BOLD), 0, messageText.length(),
+                    Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
         }
-
         mMessageView.setText(messageText);
     }
 
+    /**
+     * Only used for header binding.
+     * @param message the message contents to bind
+     */
+    public void bind(SmsCbMessage message) {
+        bind(CellBroadcastListItemModel.create(mContext, message,
+                CellBroadcastListItemModel.queryMessageRead(mContext, message)));
+    }
+
     @Override
     public boolean dispatchPopulateAccessibilityEvent(AccessibilityEvent event) {
         // Speak the date first, then channel name, then message body
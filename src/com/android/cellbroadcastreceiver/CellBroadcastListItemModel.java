@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.cellbroadcastreceiver;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.database.Cursor;
+import android.provider.Telephony;
+import android.telephony.SmsCbMessage;
+import android.text.format.DateUtils;
+
+/**
+ * The decoded contents of one row of the alert history, with the title and date strings already
+ * formatted so that binding a {@link CellBroadcastListItem} does no resource lookups, date
+ * formatting or provider queries.
+ */
+public final class CellBroadcastListItemModel {
+
+    private static final int DATE_FORMAT_FLAGS = DateUtils.FORMAT_NO_NOON_MIDNIGHT
+            | DateUtils.FORMAT_SHOW_TIME | DateUtils.FORMAT_ABBREV_ALL
+            | DateUtils.FORMAT_SHOW_DATE | DateUtils.FORMAT_CAP_AMPM;
+
+    final SmsCbMessage mMessage;
+    final CharSequence mTitle;
+    final String mDate;
+    final boolean mRead;
+
+    private CellBroadcastListItemModel(SmsCbMessage message, CharSequence title, String date,
+            boolean read) {
+        mMessage = message;
+        mTitle = title;
+        mDate = date;
+        mRead = read;
+    }
+
+    /**
+     * Create the model of a message. This might be called from a background thread.
+     *
+     * @param context the context to use
+     * @param message the message of the row
+     * @param read whether the message was read
+     * @return the model with the title and date strings resolved
+     */
+    static CellBroadcastListItemModel create(Context context, SmsCbMessage message,
+            boolean read) {
+        Resources res = CellBroadcastSettings.getResourcesByOperator(context,
+                message.getSubscriptionId(),
+                CellBroadcastReceiver.getRoamingOperatorSupported(context));
+        CharSequence title = res.getText(
+                CellBroadcastResources.getDialogTitleResource(context, message));
+        String date = DateUtils.formatDateTime(context, message.getReceivedTime(),
+                DATE_FORMAT_FLAGS);
+        return new CellBroadcastListItemModel(message, title, date, read);
+    }
+
+    /**
+     * Look up whether a message was read in {@link CellBroadcastContentProvider}. Only needed for
+     * rows whose cursor does not carry {@link Telephony.CellBroadcasts#MESSAGE_READ}, e.g. the
+     * history from cell broadcast service.
+     *
+     * @param context the context to use
+     * @param message the message to look up
+     * @return {@code false} if a matching unread message is stored, {@code true} otherwise
+     */
+    static boolean queryMessageRead(Context context, SmsCbMessage message) {
+        try (Cursor cursor = context.getContentResolver().query(
+                CellBroadcastContentProvider.CONTENT_URI,
+                new String[] {Telephony.CellBroadcasts.MESSAGE_READ},
+                Telephony.CellBroadcasts.DELIVERY_TIME + "=?",
+                new String[] {Long.toString(message.getReceivedTime())},
+                null)) {
+            if (cursor != null) {
+                while (cursor.moveToNext()) {
+                    if (cursor.getInt(0) == 0) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the message of the row
+     */
+    public SmsCbMessage getMessage() {
+        return mMessage;
+    }
+
+    /**
+     * @return a copy of this model with the given read state, or this model if it is unchanged
+     */
+    CellBroadcastListItemModel withRead(boolean read) {
+        if (read == mRead) {
+            return this;
+        }
+        return new CellBroadcastListItemModel(mMessage, mTitle, mDate, read);
+    }
+}
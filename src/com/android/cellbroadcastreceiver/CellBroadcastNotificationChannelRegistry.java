@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.cellbroadcastreceiver;
+
+import android.annotation.NonNull;
+import android.annotation.Nullable;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.content.res.Configuration;
+
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.io.PrintWriter;
+
+/**
+ * Remembers the configuration the notification channels were last created for, so that
+ * {@link CellBroadcastAlertService#createNotificationChannels} only registers them with
+ * NotificationManager once per process, and again when their names or settings might change.
+ *
+ * <p>The channel names are localized, and the channel settings depend on whether the device is
+ * a watch, so the channels are keyed by a fingerprint of the locales, the mobile country and
+ * network codes the resources are selected by, and the watch feature.
+ */
+public class CellBroadcastNotificationChannelRegistry {
+
+    private static CellBroadcastNotificationChannelRegistry sInstance;
+
+    private @Nullable String mFingerprint;
+    private long mCreatedCount;
+    private long mSkippedCount;
+
+    /**
+     * Get the registry of the app.
+     */
+    public static synchronized CellBroadcastNotificationChannelRegistry getInstance() {
+        if (sInstance == null) {
+            sInstance = new CellBroadcastNotificationChannelRegistry();
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    public CellBroadcastNotificationChannelRegistry() {
+    }
+
+    /**
+     * Get the fingerprint of the configuration the channels are created for.
+     *
+     * @param context the context the channels are created with
+     * @return the fingerprint
+     */
+    public static @NonNull String getFingerprint(@NonNull Context context) {
+        Configuration config = context.getResources().getConfiguration();
+        boolean isWatch = context.getPackageManager().hasSystemFeature(
+                PackageManager.FEATURE_WATCH);
+        return config.getLocales().toLanguageTags() + "/" + config.mcc + "/" + config.mnc
+                + "/" + isWatch;
+    }
+
+    /**
+     * Check whether the channels need to be created for a configuration.
+     *
+     * @param fingerprint the fingerprint of the configuration
+     * @return true if the channels were not created for it yet
+     */
+    public synchronized boolean shouldCreate(@NonNull String fingerprint) {
+        if (fingerprint.equals(mFingerprint)) {
+            mSkippedCount++;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Remember that the channels were created for a configuration.
+     *
+     * @param fingerprint the fingerprint of the configuration
+     */
+    public synchronized void onCreated(@NonNull String fingerprint) {
+        mFingerprint = fingerprint;
+        mCreatedCount++;
+    }
+
+    /**
+     * Forget the created channels, so that they are created again.
+     */
+    public synchronized void clear() {
+        mFingerprint = null;
+    }
+
+    /**
+     * Dump the configuration of the created channels.
+     *
+     * @param writer the writer of the dump
+     */
+    public synchronized void dump(@NonNull PrintWriter writer) {
+        writer.println("CellBroadcastNotificationChannelRegistry:");
+        writer.println("  fingerprint=" + mFingerprint + " created=" + mCreatedCount
+                + " skipped=" + mSkippedCount);
+    }
+}
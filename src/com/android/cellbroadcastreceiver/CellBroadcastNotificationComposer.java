@@ -0,0 +1,301 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.cellbroadcastreceiver;
+
+import android.annotation.NonNull;
+import android.annotation.Nullable;
+import android.app.NotificationManager;
+import android.content.Context;
+import android.telephony.SmsCbMessage;
+import android.util.Log;
+import android.util.SparseArray;
+
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.io.PrintWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Composes the notifications of {@link CellBroadcastAlertService#addToNotificationBar}
+ * incrementally.
+ *
+ * <p>The line of each alert, i.e. its title, body and whether it is an emergency alert, is
+ * rendered once and cached by alert, so that posting the notification again for a stack of
+ * unread alerts does not resolve the channel ranges and the title of the alert again. The
+ * content last posted for each notification id is remembered, and a silent update which would
+ * post the same content again is skipped, as well as building the notification for it.
+ *
+ * <p>The lines depend on the locale and the carrier configuration, and are cleared when they
+ * change.
+ */
+public class CellBroadcastNotificationComposer {
+
+    private static final String TAG = "CBNotificationComposer";
+
+    /** Maximum number of cached lines, as many as unread alerts are kept. */
+    @VisibleForTesting
+    public static final int MAX_LINES = CellBroadcastUnreadStore.MAX_MESSAGES;
+
+    private static CellBroadcastNotificationComposer sInstance;
+
+    // the lines of the recently posted alerts, least recently used first.
+    private final LinkedHashMap<Key, Line> mLines = new LinkedHashMap<Key, Line>(
+            16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Line> eldest) {
+            return size() > MAX_LINES;
+        }
+    };
+    // the content last posted, by notification id.
+    private final SparseArray<Content> mPosted = new SparseArray<>();
+    private long mLineHits;
+    private long mLineMisses;
+    private long mNotifiedCount;
+    private long mSkippedCount;
+
+    /**
+     * Get the composer of the app.
+     */
+    public static synchronized CellBroadcastNotificationComposer getInstance() {
+        if (sInstance == null) {
+            sInstance = new CellBroadcastNotificationComposer();
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    public CellBroadcastNotificationComposer() {
+    }
+
+    /**
+     * Get the rendered line of an alert, rendering it if it is not cached.
+     *
+     * @param context the context
+     * @param message the alert
+     * @return the line of the alert
+     */
+    public @NonNull Line getLine(@NonNull Context context, @NonNull SmsCbMessage message) {
+        Key key = new Key(message);
+        synchronized (this) {
+            Line line = mLines.get(key);
+            if (line != null) {
+                mLineHits++;
+                return line;
+            }
+            mLineMisses++;
+        }
+        CharSequence title = context.getText(
+                CellBroadcastResources.getDialogTitleResource(context, message));
+        boolean emergency = new CellBroadcastChannelManager(context, message.getSubscriptionId())
+                .isEmergencyMessage(message);
+        Line line = new Line(title, message.getMessageBody(), emergency);
+        synchronized (this) {
+            mLines.put(key, line);
+        }
+        return line;
+    }
+
+    /**
+     * Check whether a notification needs to be posted, and remember its content as posted.
+     *
+     * @param notificationId the id of the notification
+     * @param content the content of the notification
+     * @param shouldAlert true if the notification alerts the user, which is always posted
+     * @return true if the notification needs to be posted, or false if the same content is
+     * posted already and the update is silent
+     */
+    public synchronized boolean shouldNotify(int notificationId, @NonNull Content content,
+            boolean shouldAlert) {
+        if (!shouldAlert && content.equals(mPosted.get(notificationId))) {
+            mSkippedCount++;
+            if (CellBroadcastReceiver.VDBG) {
+                Log.v(TAG, "notification " + notificationId + " did not change");
+            }
+            return false;
+        }
+        mPosted.put(notificationId, content);
+        mNotifiedCount++;
+        return true;
+    }
+
+    /**
+     * Cancel a notification, and forget its posted content.
+     *
+     * @param notificationManager the notification manager
+     * @param notificationId the id of the notification
+     */
+    public void cancel(@NonNull NotificationManager notificationManager, int notificationId) {
+        synchronized (this) {
+            mPosted.remove(notificationId);
+        }
+        notificationManager.cancel(notificationId);
+    }
+
+    /**
+     * Forget the rendered lines and the posted notifications, e.g. when the locale changed.
+     */
+    public synchronized void clear() {
+        mLines.clear();
+        mPosted.clear();
+    }
+
+    /**
+     * @return the number of cached lines
+     */
+    @VisibleForTesting
+    public synchronized int getLineCount() {
+        return mLines.size();
+    }
+
+    /**
+     * Dump the cached lines and how often the notifications were posted or skipped.
+     *
+     * @param writer the writer of the dump
+     */
+    public synchronized void dump(@NonNull PrintWriter writer) {
+        writer.println("CellBroadcastNotificationComposer:");
+        writer.println("  lines=" + mLines.size() + " lineHits=" + mLineHits
+                + " lineMisses=" + mLineMisses + " notified=" + mNotifiedCount
+                + " skipped=" + mSkippedCount + " posted=" + mPosted.size());
+    }
+
+    /**
+     * The rendered line of an alert.
+     */
+    public static class Line {
+        private final CharSequence mTitle;
+        private final String mBody;
+        private final boolean mEmergency;
+
+        Line(CharSequence title, String body, boolean emergency) {
+            mTitle = title;
+            mBody = body;
+            mEmergency = emergency;
+        }
+
+        /** @return the title of the alert */
+        public CharSequence getTitle() {
+            return mTitle;
+        }
+
+        /** @return the body of the alert */
+        public String getBody() {
+            return mBody;
+        }
+
+        /** @return true if the alert is an emergency alert of its channel ranges */
+        public boolean isEmergency() {
+            return mEmergency;
+        }
+    }
+
+    /**
+     * The content of a posted notification, which decides whether posting it again changes
+     * what the user sees or where the notification leads.
+     */
+    public static class Content {
+        private final String mChannelId;
+        private final @Nullable CharSequence mTitle;
+        private final @Nullable CharSequence mText;
+        private final boolean mOngoing;
+        private final int mUnreadCount;
+        private final Key mLatest;
+        private final boolean mFromSaveState;
+        private final boolean mFromDialog;
+
+        /**
+         * @param channelId the notification channel
+         * @param title the title, or null if the notification has none
+         * @param text the text
+         * @param ongoing true if the notification cannot be swiped away
+         * @param unreadCount the number of unread alerts the notification leads to
+         * @param latest the latest of these alerts
+         * @param fromSaveState true if the alerts were shown in the dialog before
+         * @param fromDialog true if the alert dialog is shown with the notification
+         */
+        public Content(@NonNull String channelId, @Nullable CharSequence title,
+                @Nullable CharSequence text, boolean ongoing, int unreadCount,
+                @NonNull SmsCbMessage latest, boolean fromSaveState, boolean fromDialog) {
+            mChannelId = channelId;
+            mTitle = title;
+            mText = text;
+            mOngoing = ongoing;
+            mUnreadCount = unreadCount;
+            mLatest = new Key(latest);
+            mFromSaveState = fromSaveState;
+            mFromDialog = fromDialog;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Content)) {
+                return false;
+            }
+            Content content = (Content) o;
+            return mChannelId.equals(content.mChannelId)
+                    && Objects.equals(toString(mTitle), toString(content.mTitle))
+                    && Objects.equals(toString(mText), toString(content.mText))
+                    && mOngoing == content.mOngoing && mUnreadCount == content.mUnreadCount
+                    && mLatest.equals(content.mLatest) && mFromSaveState == content.mFromSaveState
+                    && mFromDialog == content.mFromDialog;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(mChannelId, toString(mTitle), mUnreadCount, mLatest);
+        }
+
+        private static String toString(CharSequence text) {
+            return text != null ? text.toString() : null;
+        }
+    }
+
+    /**
+     * Identifies an alert. The received time alone is not unique, as alerts might be received
+     * in the same millisecond.
+     */
+    private static class Key {
+        final long mReceivedTime;
+        final int mSerialNumber;
+        final int mServiceCategory;
+        final int mSubId;
+
+        Key(SmsCbMessage message) {
+            mReceivedTime = message.getReceivedTime();
+            mSerialNumber = message.getSerialNumber();
+            mServiceCategory = message.getServiceCategory();
+            mSubId = message.getSubscriptionId();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return mReceivedTime == key.mReceivedTime && mSerialNumber == key.mSerialNumber
+                    && mServiceCategory == key.mServiceCategory && mSubId == key.mSubId;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(mReceivedTime, mSerialNumber, mServiceCategory, mSubId);
+        }
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.cellbroadcastreceiver;
+
+import android.annotation.NonNull;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.io.PrintWriter;
+import java.util.ArrayDeque;
+
+/**
+ * Runs the operations of {@link CellBroadcastContentProvider} on background threads, in place of
+ * the serial executor of {@link android.os.AsyncTask} which is shared with the whole process.
+ *
+ * <p>Operations are queued in lanes by priority. One thread runs the alert lane and the user
+ * lane, and always takes the next alert write before any user action. Another thread runs the
+ * maintenance lane, so that a long resync or migration never holds back the writes of alerts;
+ * the database commits those in pages, so that the writes only wait for a page at most.
+ * Operations of a lane run in the order they were queued.
+ *
+ * <p>The maintenance lane is bounded, and rejects operations when it is full, rather than let a
+ * stuck database pile up work. Maintenance is triggered again later, so a rejected operation is
+ * only logged by its caller. The alert and user lanes are never full, as alerts must be written
+ * and actions of the user must not be lost.
+ */
+public class CellBroadcastOperationExecutor {
+
+    private static final String TAG = "CBOperationExecutor";
+
+    /** Writes of received alerts. */
+    public static final int LANE_ALERT = 0;
+    /**
+     * Actions of the user, e.g. marking an alert as read or deleting alerts, and saving the
+     * unread alerts they change.
+     */
+    public static final int LANE_USER = 1;
+    /** Maintenance, e.g. resync to the SMS inbox or migration of legacy data. */
+    public static final int LANE_MAINTENANCE = 2;
+
+    private static final String[] LANE_NAMES = {"alert", "user", "maintenance"};
+
+    /** Number of operations which can be queued in each lane. */
+    @VisibleForTesting
+    public static final int[] LANE_CAPACITIES = {Integer.MAX_VALUE, Integer.MAX_VALUE, 16};
+
+    private static CellBroadcastOperationExecutor sInstance;
+
+    private final Object mLock = new Object();
+    private final Lane[] mLanes = new Lane[LANE_NAMES.length];
+    private final Worker mForegroundWorker;
+    private final Worker mMaintenanceWorker;
+    private boolean mShutdown;
+
+    /**
+     * Get the executor of the app.
+     */
+    public static synchronized CellBroadcastOperationExecutor getInstance() {
+        if (sInstance == null) {
+            sInstance = new CellBroadcastOperationExecutor();
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    public CellBroadcastOperationExecutor() {
+        for (int lane = 0; lane < mLanes.length; lane++) {
+            mLanes[lane] = new Lane(LANE_CAPACITIES[lane]);
+        }
+        mForegroundWorker = new Worker("CellBroadcastProviderOps",
+                Process.THREAD_PRIORITY_DEFAULT, LANE_ALERT, LANE_USER);
+        mMaintenanceWorker = new Worker("CellBroadcastProviderMaintenance",
+                Process.THREAD_PRIORITY_BACKGROUND, LANE_MAINTENANCE, LANE_MAINTENANCE);
+    }
+
+    /**
+     * Queue an operation.
+     *
+     * @param lane the lane of the operation, e.g. {@link #LANE_USER}
+     * @param operation the operation
+     * @return false if the operation was rejected, because its lane is full or the executor was
+     * shut down
+     */
+    public boolean execute(int lane, @NonNull Runnable operation) {
+        synchronized (mLock) {
+            Lane queue = mLanes[lane];
+            if (mShutdown || queue.mOperations.size() >= queue.mCapacity) {
+                queue.mRejectedCount++;
+                Log.e(TAG, "rejected " + LANE_NAMES[lane] + " operation, queued="
+                        + queue.mOperations.size() + ", shutdown=" + mShutdown);
+                return false;
+            }
+            queue.mOperations.add(new Operation(operation, SystemClock.elapsedRealtime()));
+            queue.mMaxDepth = Math.max(queue.mMaxDepth, queue.mOperations.size());
+            Worker worker = lane == LANE_MAINTENANCE ? mMaintenanceWorker : mForegroundWorker;
+            worker.startIfNeeded();
+            mLock.notifyAll();
+            return true;
+        }
+    }
+
+    /**
+     * Stop accepting operations, and wait for the queued operations to finish. The executor of
+     * the app is never shut down, as operations are queued until the process ends, so this is
+     * only used for executors created by tests.
+     *
+     * @param timeoutMillis the time to wait at most
+     * @return true if all queued operations finished in time
+     */
+    @VisibleForTesting
+    public boolean shutdown(long timeoutMillis) {
+        synchronized (mLock) {
+            mShutdown = true;
+            mLock.notifyAll();
+        }
+        long deadline = SystemClock.elapsedRealtime() + timeoutMillis;
+        try {
+            return mForegroundWorker.join(deadline) && mMaintenanceWorker.join(deadline);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * @param lane the lane, e.g. {@link #LANE_USER}
+     * @return the number of operations queued in the lane, which did not start yet
+     */
+    @VisibleForTesting
+    public int getQueueDepth(int lane) {
+        synchronized (mLock) {
+            return mLanes[lane].mOperations.size();
+        }
+    }
+
+    /**
+     * @param lane the lane, e.g. {@link #LANE_USER}
+     * @return the number of operations of the lane which were rejected
+     */
+    @VisibleForTesting
+    public long getRejectedCount(int lane) {
+        synchronized (mLock) {
+            return mLanes[lane].mRejectedCount;
+        }
+    }
+
+    /**
+     * Dump the queue depth and the wait time of each lane.
+     *
+     * @param writer the writer of the dump
+     */
+    public void dump(@NonNull PrintWriter writer) {
+        synchronized (mLock) {
+            writer.println("CellBroadcastOperationExecutor:");
+            writer.println("  shutdown=" + mShutdown);
+            for (int lane = 0; lane < mLanes.length; lane++) {
+                Lane queue = mLanes[lane];
+                writer.println("  " + LANE_NAMES[lane] + ": queued=" + queue.mOperations.size()
+                        + " maxQueued=" + queue.mMaxDepth
+                        + " executed=" + queue.mExecutedCount
+                        + " rejected=" + queue.mRejectedCount
+                        + " meanWaitMs=" + (queue.mExecutedCount > 0
+                                ? queue.mTotalWaitMs / queue.mExecutedCount : 0)
+                        + " maxWaitMs=" + queue.mMaxWaitMs);
+            }
+        }
+    }
+
+    /**
+     * Take the next operation of the lanes of a worker, by priority. Blocks until there is an
+     * operation, or returns null once the executor is shut down and the lanes are empty.
+     */
+    private Operation take(int firstLane, int lastLane) throws InterruptedException {
+        synchronized (mLock) {
+            while (true) {
+                for (int lane = firstLane; lane <= lastLane; lane++) {
+                    Lane queue = mLanes[lane];
+                    Operation operation = queue.mOperations.poll();
+                    if (operation != null) {
+                        long waitMs = SystemClock.elapsedRealtime() - operation.mQueuedTime;
+                        queue.mExecutedCount++;
+                        queue.mTotalWaitMs += waitMs;
+                        queue.mMaxWaitMs = Math.max(queue.mMaxWaitMs, waitMs);
+                        return operation;
+                    }
+                }
+                if (mShutdown) {
+                    return null;
+                }
+                mLock.wait();
+            }
+        }
+    }
+
+    private static class Operation {
+        final Runnable mRunnable;
+        final long mQueuedTime;
+
+        Operation(Runnable runnable, long queuedTime) {
+            mRunnable = runnable;
+            mQueuedTime = queuedTime;
+        }
+    }
+
+    private static class Lane {
+        final ArrayDeque<Operation> mOperations = new ArrayDeque<>();
+        final int mCapacity;
+        int mMaxDepth;
+        long mExecutedCount;
+        long mRejectedCount;
+        long mTotalWaitMs;
+        long mMaxWaitMs;
+
+        Lane(int capacity) {
+            mCapacity = capacity;
+        }
+    }
+
+    /**
+     * A thread running the operations of a range of lanes. Started with the first operation.
+     */
+    private class Worker implements Runnable {
+        private final String mName;
+        private final int mPriority;
+        private final int mFirstLane;
+        private final int mLastLane;
+        private Thread mThread;
+
+        Worker(String name, int priority, int firstLane, int lastLane) {
+            mName = name;
+            mPriority = priority;
+            mFirstLane = firstLane;
+            mLastLane = lastLane;
+        }
+
+        // called with mLock held
+        void startIfNeeded() {
+            if (mThread == null) {
+                mThread = new Thread(this, mName);
+                mThread.start();
+            }
+        }
+
+        boolean join(long deadline) throws InterruptedException {
+            Thread thread;
+            synchronized (mLock) {
+                thread = mThread;
+            }
+            if (thread != null) {
+                thread.join(Math.max(1, deadline - SystemClock.elapsedRealtime()));
+                return !thread.isAlive();
+            }
+            return true;
+        }
+
+        @Override
+        public void run() {
+            Process.setThreadPriority(mPriority);
+            try {
+                Operation operation;
+                while ((operation = take(mFirstLane, mLastLane)) != null) {
+                    try {
+                        operation.mRunnable.run();
+                    } catch (RuntimeException e) {
+                        // a failed operation must not stop the operations queued after it
+                        Log.e(TAG, "operation failed", e);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Log.e(TAG, mName + " interrupted");
+            }
+        }
+    }
+}
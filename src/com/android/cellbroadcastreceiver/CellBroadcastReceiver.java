@@ -151,11 +151,21 @@ public class CellBroadcastReceiver extends BroadcastReceiver {
             if (!intent.getBooleanExtra(
                     "android.telephony.extra.REBROADCAST_ON_UNLOCK", false)) {
                 resetCellBroadcastChannelRanges();
+                CellBroadcastContentProvider.resetSmsInboxCache();
+                // the titles of the notified and shown alerts depend on the channel ranges.
+                CellBroadcastNotificationComposer.getInstance().clear();
+                CellBroadcastAlertDisplayModel.clearCache();
+                // the carrier resources are cached by operator, and may have changed.
+                CellBroadcastSettings.resetResourcesCache();
+                res = getResourcesMethod();
                 int subId = intent.getIntExtra(CarrierConfigManager.EXTRA_SUBSCRIPTION_INDEX,
                         SubscriptionManager.INVALID_SUBSCRIPTION_ID);
                 initializeSharedPreference(context, subId);
                 enableLauncher();
                 startConfigServiceToEnableChannels();
+                // prepare the alert tones and speech of the carrier before an alert needs them.
+                CellBroadcastAlertTonePool.getInstance().prewarm(context, subId);
+                CellBroadcastSpeechEngine.getInstance().warmUp(context, res);
 
                 // Some OEMs do not have legacyMigrationProvider active during boot-up, thus we
                 // need to retry data migration from another trigger point.
@@ -163,13 +173,18 @@ public class CellBroadcastReceiver extends BroadcastReceiver {
                         .getBoolean(CellBroadcastDatabaseHelper.KEY_LEGACY_DATA_MIGRATION, false);
                 if (res.getBoolean(R.bool.retry_message_history_data_migration) && !hasMigrated) {
                     // migrate message history from legacy app on a background thread.
-                    new CellBroadcastContentProvider.AsyncCellBroadcastTask(
-                            mContext.getContentResolver()).execute(
+                    boolean queued = new CellBroadcastContentProvider.AsyncCellBroadcastTask(
+                            mContext.getContentResolver(),
+                            CellBroadcastOperationExecutor.LANE_MAINTENANCE).execute(
                             (CellBroadcastContentProvider.CellBroadcastOperation) provider -> {
                                 provider.call(CellBroadcastContentProvider.CALL_MIGRATION_METHOD,
                                         null, null);
                                 return true;
                             });
+                    if (!queued) {
+                        // retried on the next carrier config change until it is migrated.
+                        Log.w(TAG, "Data migration from legacy app not queued");
+                    }
                 }
             }
         } else if (ACTION_SERVICE_STATE.equals(action)) {
@@ -184,6 +199,7 @@ public class CellBroadcastReceiver extends BroadcastReceiver {
             }
         } else if (Telephony.Sms.Intents.ACTION_SMS_EMERGENCY_CB_RECEIVED.equals(action) ||
                 Telephony.Sms.Intents.SMS_CB_RECEIVED_ACTION.equals(action)) {
+            CellBroadcastAlertLatency.setReceiveTime(intent);
             intent.setClass(mContext, CellBroadcastAlertService.class);
             mContext.startService(intent);
         } else if (Telephony.Sms.Intents.SMS_SERVICE_CATEGORY_PROGRAM_DATA_RECEIVED_ACTION
@@ -202,6 +218,14 @@ public class CellBroadcastReceiver extends BroadcastReceiver {
         } else if (Intent.ACTION_LOCALE_CHANGED.equals(action)) {
             // rename registered notification channels on locale change
             CellBroadcastAlertService.createNotificationChannels(mContext);
+            CellBroadcastNotificationComposer.getInstance().clear();
+            CellBroadcastAlertDisplayModel.clearCache();
+            CellBroadcastSettings.resetResourcesCache();
+            res = getResourcesMethod();
+            // the alert tones are localized.
+            CellBroadcastAlertTonePool.getInstance().prewarm(mContext,
+                    SubscriptionManager.getDefaultSubscriptionId());
+            CellBroadcastSpeechEngine.getInstance().warmUp(mContext, res);
         } else if (TelephonyManager.ACTION_SECRET_CODE.equals(action)) {
             if (SystemProperties.getInt("ro.debuggable", 0) == 1
                     || res.getBoolean(R.bool.allow_testing_mode_on_user_build)) {
@@ -222,12 +246,16 @@ public class CellBroadcastReceiver extends BroadcastReceiver {
                 }
             }
         } else if (Intent.ACTION_BOOT_COMPLETED.equals(action)) {
-            new CellBroadcastContentProvider.AsyncCellBroadcastTask(
-                    mContext.getContentResolver()).execute((CellBroadcastContentProvider
-                    .CellBroadcastOperation) provider -> {
+            boolean queued = new CellBroadcastContentProvider.AsyncCellBroadcastTask(
+                    mContext.getContentResolver(), CellBroadcastOperationExecutor.LANE_MAINTENANCE)
+                    .execute((CellBroadcastContentProvider.CellBroadcastOperation) provider -> {
                         provider.resyncToSmsInbox(mContext);
                         return true;
                     });
+            if (!queued) {
+                // the messages stay marked as pending, and are synced on the next boot.
+                Log.w(TAG, "Resync to SMS inbox not queued");
+            }
         } else {
             Log.w(TAG, "onReceive() unexpected action " + action);
         }
@@ -21,7 +21,10 @@ import android.app.Application;
 import android.telephony.SmsCbMessage;
 
 import android.util.Log;
+
+import java.io.File;
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * The application class loads the default preferences at first start,
@@ -31,39 +34,58 @@ public class CellBroadcastReceiverApp extends Application {
     private static final String TAG = "CellBroadcastReceiverApp";
     private static final boolean VDBG = Log.isLoggable(TAG, Log.VERBOSE);
 
-    /** List of unread non-emergency alerts to show when user selects the notification. */
-    private static final ArrayList<SmsCbMessage> sNewMessageList = new ArrayList<>(4);
+    private static final String UNREAD_MESSAGES_FILE = "unread_alerts";
+
+    /** Unread non-emergency alerts to show when user selects the notification. */
+    private static final CellBroadcastUnreadStore sNewMessages = new CellBroadcastUnreadStore();
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        // restore the unread alerts of the notification after the process was killed.
+        sNewMessages.attachFile(new File(getFilesDir(), UNREAD_MESSAGES_FILE));
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level >= TRIM_MEMORY_BACKGROUND) {
+            // the alert tones are prepared again on the next alert or carrier config change.
+            CellBroadcastAlertTonePool.getInstance().clear();
+        }
+    }
 
     /** Adds a new unread non-emergency message and returns the current list. */
     static ArrayList<SmsCbMessage> addNewMessageToList(SmsCbMessage message) {
         if (VDBG) Log.v(TAG, "addNewMessageToList: " + message);
-        sNewMessageList.add(message);
-        return sNewMessageList;
+        return new ArrayList<>(sNewMessages.add(message));
     }
 
     /** Clears the list of unread non-emergency messages. */
     static void clearNewMessageList() {
         if (VDBG) Log.v(TAG, "clearNewMessageList");
-        sNewMessageList.clear();
+        sNewMessages.clear();
     }
 
     /** Remove the read message from the unread message list. */
     static ArrayList<SmsCbMessage> removeReadMessage(@NonNull SmsCbMessage message) {
-        if (sNewMessageList.removeIf(msg -> msg.getReceivedTime() == message.getReceivedTime())) {
+        List<SmsCbMessage> before = sNewMessages.getSnapshot();
+        List<SmsCbMessage> after = sNewMessages.remove(message);
+        if (after != before) {
             if (VDBG) Log.v(TAG, "removeReadMessage succeed, msg: " + message);
         } else {
             if (VDBG) Log.v(TAG, "removeReadMessage failed, no matching message: " + message);
         }
-        return sNewMessageList;
+        return new ArrayList<>(after);
     }
 
     /** Returns the latest unread message. */
     static SmsCbMessage getLatestMessage() {
-        return sNewMessageList.isEmpty() ? null : sNewMessageList.get(sNewMessageList.size()-1);
+        return sNewMessages.getLatest();
     }
 
-    /** Returns a list of unread non-emergency alerts */
+    /** Returns a copy of the list of unread non-emergency alerts */
     static ArrayList<SmsCbMessage> getNewMessageList() {
-        return sNewMessageList;
+        return new ArrayList<>(sNewMessages.getSnapshot());
     }
 }
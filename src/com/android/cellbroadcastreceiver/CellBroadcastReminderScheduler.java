@@ -0,0 +1,481 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.cellbroadcastreceiver;
+
+import android.annotation.NonNull;
+import android.annotation.Nullable;
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.media.AudioAttributes;
+import android.media.AudioManager;
+import android.media.MediaPlayer;
+import android.os.SystemClock;
+import android.provider.Settings;
+import android.text.format.DateUtils;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Schedules the reminders of the alerts which the user did not dismiss yet.
+ *
+ * <p>Each alert has its own reminder, with the first interval resolved when the alert finished
+ * playing, so alerts of several subscriptions remind independently. The next reminders follow
+ * the interval and vibration of the settings when the alarm plays. A single alarm is
+ * set for the earliest reminder, and the reminders due within {@link #BATCH_WINDOW_MILLIS} of
+ * it are played together. The notification sound is prepared once and replayed for each
+ * reminder, until no reminder is left.
+ *
+ * <p>The schedule is written to a file in the background after each change, so that the
+ * reminders are still known when the process is restarted by the alarm. Alarms do not survive
+ * a reboot, so the schedule of a previous boot is dropped.
+ */
+public class CellBroadcastReminderScheduler {
+
+    private static final String TAG = "CBReminderScheduler";
+
+    /** Reminders due within this time of the alarm are played with it. */
+    @VisibleForTesting
+    public static final long BATCH_WINDOW_MILLIS = DateUtils.MINUTE_IN_MILLIS;
+
+    private static final String FILE_NAME = "alert_reminders";
+    private static final int FILE_VERSION = 1;
+
+    private static CellBroadcastReminderScheduler sInstance;
+
+    private final Context mContext;
+    private final @Nullable AtomicFile mFile;
+    private final int mBootCount;
+    // serializes the writes of the file, which happen outside of the lock of the scheduler.
+    private final Object mSaveLock = new Object();
+    // the reminders by alert, in the order they were scheduled.
+    private final LinkedHashMap<Long, Reminder> mReminders = new LinkedHashMap<>();
+    private boolean mLoaded;
+    private boolean mSaveScheduled;
+
+    private @Nullable PendingIntent mAlarmIntent;
+    private boolean mAlarmVibrate;
+    private long mAlarmTime = -1;
+
+    // the prepared notification sound, only used on the main thread.
+    private @Nullable MediaPlayer mSound;
+    private int mSoundStreamType;
+
+    /**
+     * Get the scheduler of the app, which is persisted in the files of the app.
+     */
+    public static synchronized CellBroadcastReminderScheduler getInstance(
+            @NonNull Context context) {
+        if (sInstance == null) {
+            Context appContext = context.getApplicationContext();
+            sInstance = new CellBroadcastReminderScheduler(appContext,
+                    new File(appContext.getFilesDir(), FILE_NAME),
+                    Settings.Global.getInt(appContext.getContentResolver(),
+                            Settings.Global.BOOT_COUNT, 0));
+        }
+        return sInstance;
+    }
+
+    /**
+     * @param context the context the alarm is set with
+     * @param file the file to persist the schedule to, or null to not persist it
+     * @param bootCount the number of boots of the device, which the schedule is valid for
+     */
+    @VisibleForTesting
+    public CellBroadcastReminderScheduler(@NonNull Context context, @Nullable File file,
+            int bootCount) {
+        mContext = context;
+        mFile = file != null ? new AtomicFile(file) : null;
+        mBootCount = bootCount;
+    }
+
+    /**
+     * Schedule the reminders of an alert, replacing the ones scheduled for it before.
+     *
+     * @param alertId the alert, i.e. its received time
+     * @param subId the subscription index of the alert
+     * @param delayMillis the time until the first reminder
+     * @param intervalMillis the time between the next reminders, or 0 to remind only once
+     * @param vibrate true if the reminders vibrate
+     */
+    public void schedule(long alertId, int subId, long delayMillis, long intervalMillis,
+            boolean vibrate) {
+        schedule(alertId, subId, delayMillis, intervalMillis, vibrate,
+                SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * Schedule the reminders of an alert at the given time.
+     */
+    @VisibleForTesting
+    public synchronized void schedule(long alertId, int subId, long delayMillis,
+            long intervalMillis, boolean vibrate, long now) {
+        loadIfNeeded();
+        mReminders.remove(alertId);
+        mReminders.put(alertId, new Reminder(alertId, subId, now + delayMillis, intervalMillis,
+                vibrate));
+        Log.d(TAG, "reminder of alert " + alertId + " in " + delayMillis + "ms, "
+                + mReminders.size() + " scheduled");
+        onChangedLocked();
+    }
+
+    /**
+     * Cancel the reminders of an alert, e.g. once it was dismissed.
+     *
+     * @param alertId the alert, i.e. its received time
+     */
+    public synchronized void cancel(long alertId) {
+        loadIfNeeded();
+        if (mReminders.remove(alertId) != null) {
+            Log.d(TAG, "cancelled reminders of alert " + alertId);
+            onChangedLocked();
+        }
+    }
+
+    /**
+     * Cancel the reminders of all alerts.
+     */
+    public synchronized void cancelAll() {
+        loadIfNeeded();
+        if (!mReminders.isEmpty()) {
+            Log.d(TAG, "cancelled reminders of " + mReminders.size() + " alerts");
+            mReminders.clear();
+            onChangedLocked();
+        }
+    }
+
+    /**
+     * Advance the reminders played by the alarm, and set the alarm for the next ones.
+     *
+     * @param intervalMillis the time until the next reminder from the current settings, or 0 if
+     * the reminders were turned off or remind only once
+     * @param vibrate true if the next reminders vibrate from the current settings
+     * @return true if reminders are left
+     */
+    public boolean onAlarm(long intervalMillis, boolean vibrate) {
+        onAlarm(SystemClock.elapsedRealtime(), intervalMillis, vibrate);
+        return size() > 0;
+    }
+
+    /**
+     * Advance the reminders due at the given time. Each of them is repeated with the current
+     * settings, unless it was scheduled to remind only once.
+     *
+     * @return the number of reminders which were due
+     */
+    @VisibleForTesting
+    public synchronized int onAlarm(long now, long intervalMillis, boolean vibrate) {
+        loadIfNeeded();
+        int due = 0;
+        Iterator<Reminder> it = mReminders.values().iterator();
+        while (it.hasNext()) {
+            Reminder reminder = it.next();
+            if (reminder.mTriggerTime > now + BATCH_WINDOW_MILLIS) {
+                continue;
+            }
+            due++;
+            if (reminder.mIntervalMillis == 0 || intervalMillis == 0) {
+                it.remove();
+            } else {
+                reminder.mTriggerTime = now + intervalMillis;
+                reminder.mIntervalMillis = intervalMillis;
+                reminder.mVibrate = vibrate;
+            }
+        }
+        Log.d(TAG, "played " + due + " reminders, " + mReminders.size() + " left");
+        onChangedLocked();
+        return due;
+    }
+
+    /**
+     * @return the number of alerts with scheduled reminders
+     */
+    public synchronized int size() {
+        loadIfNeeded();
+        return mReminders.size();
+    }
+
+    /**
+     * Play the default notification sound of the reminders, from the prepared player if the
+     * stream did not change. Called on the main thread.
+     *
+     * @param context the context of the reminder service
+     * @param streamType the stream the sound plays on
+     */
+    public void playSound(@NonNull Context context, int streamType) {
+        AudioManager audioManager = (AudioManager) context.getSystemService(
+                Context.AUDIO_SERVICE);
+        if (audioManager != null && audioManager.getStreamVolume(streamType) == 0) {
+            // as Ringtone, a muted stream does not play.
+            Log.d(TAG, "stream " + streamType + " is muted");
+            return;
+        }
+        if (mSound == null || streamType != mSoundStreamType) {
+            releaseSound();
+            MediaPlayer player = new MediaPlayer();
+            try {
+                // as CellBroadcastAlertAudio, the default URI resolves the current sound and
+                // falls back if the app can't read it. The player is released with the last
+                // reminder, so a changed default is picked up by the next alert.
+                player.setDataSource(context, Settings.System.DEFAULT_NOTIFICATION_URI);
+                player.setAudioAttributes(new AudioAttributes.Builder()
+                        .setLegacyStreamType(streamType)
+                        .build());
+                player.prepare();
+                player.setOnCompletionListener(mp -> {
+                    if (size() == 0) {
+                        releaseSound();
+                    }
+                });
+            } catch (IOException | RuntimeException e) {
+                Log.e(TAG, "failed to prepare alert reminder sound: " + e);
+                player.release();
+                return;
+            }
+            mSound = player;
+            mSoundStreamType = streamType;
+        } else if (mSound.isPlaying()) {
+            mSound.pause();
+        }
+        mSound.seekTo(0);
+        mSound.start();
+    }
+
+    /**
+     * Stop the notification sound if it is playing. Called on the main thread.
+     */
+    public void stopSound() {
+        if (mSound != null && mSound.isPlaying()) {
+            mSound.pause();
+        }
+    }
+
+    /**
+     * Release the prepared notification sound. Called on the main thread.
+     */
+    public void releaseSound() {
+        if (mSound != null) {
+            mSound.release();
+            mSound = null;
+        }
+    }
+
+    /**
+     * Dump the scheduled reminders.
+     *
+     * @param writer the writer of the dump
+     */
+    public synchronized void dump(@NonNull PrintWriter writer) {
+        writer.println("CellBroadcastReminderScheduler:");
+        writer.println("  alarmTime=" + mAlarmTime + " vibrate=" + mAlarmVibrate
+                + " now=" + SystemClock.elapsedRealtime());
+        for (Reminder reminder : mReminders.values()) {
+            writer.println("  " + reminder);
+        }
+    }
+
+    /**
+     * Set the alarm which plays the reminders.
+     *
+     * @param triggerTime the time of the alarm, in elapsed realtime
+     * @param vibrate true if the reminders vibrate
+     */
+    @VisibleForTesting
+    protected void setAlarm(long triggerTime, boolean vibrate) {
+        AlarmManager alarmManager = (AlarmManager) mContext.getSystemService(
+                Context.ALARM_SERVICE);
+        if (alarmManager == null) {
+            Log.e(TAG, "can't get Alarm Service");
+            return;
+        }
+        // We use setExact instead of set because this is for emergency reminder.
+        alarmManager.setExact(AlarmManager.ELAPSED_REALTIME_WAKEUP, triggerTime,
+                getAlarmIntent(vibrate));
+    }
+
+    /**
+     * Cancel the alarm which plays the reminders.
+     */
+    @VisibleForTesting
+    protected void cancelAlarm() {
+        AlarmManager alarmManager = (AlarmManager) mContext.getSystemService(
+                Context.ALARM_SERVICE);
+        if (alarmManager != null) {
+            // also cancels the alarm set before the process was restarted, as the intents
+            // are equal.
+            alarmManager.cancel(getAlarmIntent(mAlarmVibrate));
+        }
+    }
+
+    // the intent is only updated when the vibration of the reminders changes.
+    private PendingIntent getAlarmIntent(boolean vibrate) {
+        if (mAlarmIntent == null || vibrate != mAlarmVibrate) {
+            Intent playIntent = new Intent(mContext, CellBroadcastAlertReminder.class);
+            playIntent.setAction(CellBroadcastAlertReminder.ACTION_PLAY_ALERT_REMINDER);
+            playIntent.putExtra(CellBroadcastAlertReminder.ALERT_REMINDER_VIBRATE_EXTRA, vibrate);
+            mAlarmIntent = PendingIntent.getService(mContext, 0, playIntent,
+                    PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+        }
+        return mAlarmIntent;
+    }
+
+    private void onChangedLocked() {
+        long triggerTime = -1;
+        for (Reminder reminder : mReminders.values()) {
+            if (triggerTime == -1 || reminder.mTriggerTime < triggerTime) {
+                triggerTime = reminder.mTriggerTime;
+            }
+        }
+        if (triggerTime == -1) {
+            cancelAlarm();
+            mAlarmTime = -1;
+        } else {
+            // the alarm vibrates if any of the reminders it plays does.
+            boolean vibrate = false;
+            for (Reminder reminder : mReminders.values()) {
+                if (reminder.mTriggerTime <= triggerTime + BATCH_WINDOW_MILLIS) {
+                    vibrate |= reminder.mVibrate;
+                }
+            }
+            if (triggerTime != mAlarmTime || vibrate != mAlarmVibrate) {
+                setAlarm(triggerTime, vibrate);
+                mAlarmTime = triggerTime;
+                mAlarmVibrate = vibrate;
+            }
+        }
+        scheduleSaveLocked();
+    }
+
+    private void scheduleSaveLocked() {
+        if (mFile == null || mSaveScheduled) {
+            return;
+        }
+        // changes made until the write starts are written together.
+        mSaveScheduled = CellBroadcastOperationExecutor.getInstance().execute(
+                CellBroadcastOperationExecutor.LANE_USER, this::save);
+    }
+
+    /**
+     * Write the schedule to its file now.
+     */
+    @VisibleForTesting
+    public void save() {
+        synchronized (mSaveLock) {
+            List<Reminder> reminders = new ArrayList<>();
+            synchronized (this) {
+                mSaveScheduled = false;
+                if (mFile == null) {
+                    return;
+                }
+                for (Reminder reminder : mReminders.values()) {
+                    reminders.add(new Reminder(reminder.mAlertId, reminder.mSubId,
+                            reminder.mTriggerTime, reminder.mIntervalMillis, reminder.mVibrate));
+                }
+            }
+            FileOutputStream fos = null;
+            try {
+                fos = mFile.startWrite();
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+                out.writeInt(FILE_VERSION);
+                out.writeInt(mBootCount);
+                out.writeInt(reminders.size());
+                for (Reminder reminder : reminders) {
+                    out.writeLong(reminder.mAlertId);
+                    out.writeInt(reminder.mSubId);
+                    out.writeLong(reminder.mTriggerTime);
+                    out.writeLong(reminder.mIntervalMillis);
+                    out.writeBoolean(reminder.mVibrate);
+                }
+                out.flush();
+                mFile.finishWrite(fos);
+            } catch (IOException | RuntimeException e) {
+                Log.e(TAG, "failed to save alert reminders: " + e);
+                mFile.failWrite(fos);
+            }
+        }
+    }
+
+    private void loadIfNeeded() {
+        if (mLoaded) {
+            return;
+        }
+        mLoaded = true;
+        if (mFile == null) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(mFile.openRead()))) {
+            if (in.readInt() != FILE_VERSION || in.readInt() != mBootCount) {
+                Log.d(TAG, "ignoring alert reminders of a previous boot");
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                Reminder reminder = new Reminder(in.readLong(), in.readInt(), in.readLong(),
+                        in.readLong(), in.readBoolean());
+                mReminders.put(reminder.mAlertId, reminder);
+            }
+        } catch (FileNotFoundException e) {
+            // nothing was saved yet.
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "failed to load alert reminders: " + e);
+            mReminders.clear();
+        }
+        Log.d(TAG, "loaded " + mReminders.size() + " alert reminders");
+    }
+
+    private static class Reminder {
+        final long mAlertId;
+        final int mSubId;
+        // the time of the next reminder, in elapsed realtime.
+        long mTriggerTime;
+        long mIntervalMillis;
+        boolean mVibrate;
+
+        Reminder(long alertId, int subId, long triggerTime, long intervalMillis,
+                boolean vibrate) {
+            mAlertId = alertId;
+            mSubId = subId;
+            mTriggerTime = triggerTime;
+            mIntervalMillis = intervalMillis;
+            mVibrate = vibrate;
+        }
+
+        @Override
+        public String toString() {
+            return "alert=" + mAlertId + " subId=" + mSubId + " triggerTime=" + mTriggerTime
+                    + " intervalMs=" + mIntervalMillis + " vibrate=" + mVibrate;
+        }
+    }
+}
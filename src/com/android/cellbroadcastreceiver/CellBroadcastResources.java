@@ -19,6 +19,7 @@ package com.android.cellbroadcastreceiver;
 import android.annotation.NonNull;
 import android.content.Context;
 import android.content.res.Configuration;
+import android.content.res.Resources;
 import android.graphics.Typeface;
 import android.telephony.SmsCbCmasInfo;
 import android.telephony.SmsCbEtwsInfo;
@@ -27,8 +28,10 @@ import android.text.Spannable;
 import android.text.SpannableStringBuilder;
 import android.text.TextUtils;
 import android.text.style.StyleSpan;
+import android.util.SparseArray;
 
 import com.android.cellbroadcastreceiver.CellBroadcastChannelManager.CellBroadcastChannelRange;
+import com.android.internal.annotations.VisibleForTesting;
 
 import java.text.DateFormat;
 import java.util.Locale;
@@ -38,6 +41,17 @@ import java.util.Locale;
  */
 public class CellBroadcastResources {
 
+    /** All string resource IDs that {@link #getSmsSenderAddressResource} can return. */
+    private static final int[] SMS_SENDER_ADDRESS_RESOURCES = {
+            R.string.sms_cb_sender_name_presidential,
+            R.string.sms_cb_sender_name_emergency,
+            R.string.sms_cb_sender_name_public_safety,
+            R.string.sms_cb_sender_name_default
+    };
+
+    /** English SMS sender addresses keyed by string resource ID. */
+    private static final SparseArray<String> sSmsSenderAddressEnglishCache = new SparseArray<>();
+
     private CellBroadcastResources() {
     }
 
@@ -294,11 +308,31 @@ public class CellBroadcastResources {
 
         int resId = getSmsSenderAddressResource(context, message);
 
-        Configuration conf = context.getResources().getConfiguration();
-        conf = new Configuration(conf);
-        conf.setLocale(Locale.ENGLISH);
-        Context localizedContext = context.createConfigurationContext(conf);
-        return localizedContext.getResources().getText(resId).toString();
+        synchronized (sSmsSenderAddressEnglishCache) {
+            if (sSmsSenderAddressEnglishCache.size() == 0) {
+                // The English strings do not depend on the device locale, so resolve all of them
+                // with a single configuration context and reuse them for the process lifetime.
+                Configuration conf = context.getResources().getConfiguration();
+                conf = new Configuration(conf);
+                conf.setLocale(Locale.ENGLISH);
+                Resources res = context.createConfigurationContext(conf).getResources();
+                for (int senderResId : SMS_SENDER_ADDRESS_RESOURCES) {
+                    sSmsSenderAddressEnglishCache.put(senderResId,
+                            res.getText(senderResId).toString());
+                }
+            }
+            return sSmsSenderAddressEnglishCache.get(resId);
+        }
+    }
+
+    /**
+     * Clear the cached English SMS sender addresses.
+     */
+    @VisibleForTesting
+    public static void resetSmsSenderAddressCache() {
+        synchronized (sSmsSenderAddressEnglishCache) {
+            sSmsSenderAddressEnglishCache.clear();
+        }
     }
 
     /**
@@ -33,6 +33,7 @@ import android.os.Bundle;
 import android.os.UserManager;
 import android.os.Vibrator;
 import android.telephony.SubscriptionManager;
+import android.text.TextUtils;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.MenuItem;
@@ -55,7 +56,10 @@ import com.android.modules.utils.build.SdkLevel;
 import com.android.settingslib.collapsingtoolbar.CollapsingToolbarBaseActivity;
 import com.android.settingslib.widget.MainSwitchPreference;
 
+import java.io.PrintWriter;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
 import java.util.Map;
 
 /**
@@ -172,6 +176,22 @@ public class CellBroadcastSettings extends CollapsingToolbarBaseActivity {
     public static final Map<String, Resources> sResourcesCacheByOperator = new HashMap<>();
     private static final Object sCacheLock = new Object();
 
+    // Maximum number of cached resources per operator and language.
+    private static final int MAX_LOCALIZED_RESOURCES = 8;
+
+    // Resource cache per operator and language, least recently used first.
+    private static final Map<String, Resources> sLocalizedResourcesCache =
+            new LinkedHashMap<String, Resources>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Resources> eldest) {
+                    return size() > MAX_LOCALIZED_RESOURCES;
+                }
+            };
+    private static long sResourcesCacheHits;
+    private static long sResourcesCacheMisses;
+    private static long sLocalizedResourcesCacheHits;
+    private static long sLocalizedResourcesCacheMisses;
+
     // Intent sent from cellbroadcastreceiver to notify cellbroadcastservice that area info update
     // is disabled/enabled.
     private static final String AREA_INFO_UPDATE_ACTION =
@@ -564,6 +584,16 @@ public class CellBroadcastSettings extends CollapsingToolbarBaseActivity {
                         });
             }
 
+            if (mSpeechCheckBox != null) {
+                mSpeechCheckBox.setOnPreferenceChangeListener(
+                        (pref, newValue) -> {
+                            // bind or unbind the speech engine kept warm for alerts.
+                            CellBroadcastSpeechEngine.getInstance().warmUp(getContext(), res,
+                                    (boolean) newValue);
+                            return true;
+                        });
+            }
+
             if (mAlertHistory != null) {
                 mAlertHistory.setOnPreferenceClickListener(
                         preference -> {
@@ -1006,8 +1036,10 @@ public class CellBroadcastSettings extends CollapsingToolbarBaseActivity {
         synchronized (sCacheLock) {
             Resources res = sResourcesCacheByOperator.get(operator);
             if (res != null) {
+                sResourcesCacheHits++;
                 return res;
             }
+            sResourcesCacheMisses++;
 
             Configuration overrideConfig = new Configuration();
             try {
@@ -1031,6 +1063,54 @@ public class CellBroadcastSettings extends CollapsingToolbarBaseActivity {
         }
     }
 
+    /**
+     * Get the resources per network operator in a language, e.g. to show an alert in the
+     * language of the message. Creating a configuration context is expensive, so the resources
+     * of the recently used operators and languages are cached.
+     *
+     * @param context Context
+     * @param subId Subscription index
+     * @param operator Operator numeric, or empty for the resources of the subscription
+     * @param languageCode the ISO-639-1 language code
+     * @return the Resources based on network operator and language
+     */
+    public static @NonNull Resources getResourcesByOperatorAndLanguage(@NonNull Context context,
+            int subId, @NonNull String operator, @NonNull String languageCode) {
+        Resources res = getResourcesByOperator(context, subId, operator);
+        String key = (TextUtils.isEmpty(operator) ? "sub" + subId : operator) + "/"
+                + languageCode;
+        synchronized (sCacheLock) {
+            Resources localizedRes = sLocalizedResourcesCache.get(key);
+            if (localizedRes != null) {
+                sLocalizedResourcesCacheHits++;
+                return localizedRes;
+            }
+            sLocalizedResourcesCacheMisses++;
+
+            Configuration conf = new Configuration(res.getConfiguration());
+            conf.setLocale(new Locale(languageCode));
+            localizedRes = context.createConfigurationContext(conf).getResources();
+            sLocalizedResourcesCache.put(key, localizedRes);
+            return localizedRes;
+        }
+    }
+
+    /**
+     * Dump the resources caches and how often the resources were found cached.
+     *
+     * @param writer the writer of the dump
+     */
+    public static void dumpResourcesCache(@NonNull PrintWriter writer) {
+        synchronized (sCacheLock) {
+            writer.println("CellBroadcastSettings resources cache:");
+            writer.println("  byOperator=" + sResourcesCacheByOperator.size()
+                    + " hits=" + sResourcesCacheHits + " misses=" + sResourcesCacheMisses);
+            writer.println("  byOperatorAndLanguage=" + sLocalizedResourcesCache.size()
+                    + " hits=" + sLocalizedResourcesCacheHits
+                    + " misses=" + sLocalizedResourcesCacheMisses);
+        }
+    }
+
     /**
      * Get the resources id which is used for the default value of the preference
      * @param key the preference key
@@ -1073,12 +1153,12 @@ public class CellBroadcastSettings extends CollapsingToolbarBaseActivity {
     }
 
     /**
-     * Reset the resources cache.
+     * Reset the resources cache. Called when the carrier config or the locale changes.
      */
-    @VisibleForTesting
     public static void resetResourcesCache() {
         synchronized (sCacheLock) {
             sResourcesCacheByOperator.clear();
+            sLocalizedResourcesCache.clear();
         }
     }
 }
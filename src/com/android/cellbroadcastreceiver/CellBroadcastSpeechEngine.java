@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.cellbroadcastreceiver;
+
+import android.annotation.NonNull;
+import android.annotation.Nullable;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.res.Resources;
+import android.os.SystemClock;
+import android.preference.PreferenceManager;
+import android.speech.tts.TextToSpeech;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.util.Locale;
+
+/**
+ * Keeps a text-to-speech engine bound and initialized while alerts might be spoken, so that
+ * {@link CellBroadcastAlertAudio} can speak an alert without waiting for the engine to start,
+ * which can take seconds.
+ *
+ * <p>Warm-up is enabled by the carrier with {@code R.bool.warm_up_alert_speech}, and only while
+ * alert speech is enabled by the user or by default. The engine is bound when the carrier
+ * configuration, the locale or the speech preference changes, and the language of the device
+ * and the second alert language are selected ahead of the first alert. The engine is lent to
+ * one alert at a time, and is unbound once warm-up is disabled.
+ */
+public class CellBroadcastSpeechEngine implements TextToSpeech.OnInitListener {
+
+    private static final String TAG = "CBSpeechEngine";
+
+    // status of an engine which did not call onInit yet.
+    private static final int INIT_PENDING = Integer.MIN_VALUE;
+
+    private static CellBroadcastSpeechEngine sInstance;
+
+    private @Nullable TextToSpeech mTts;
+    private boolean mReady;
+    private int mInitStatus = INIT_PENDING;
+    private boolean mInUse;
+    private boolean mEnabled;
+    private @Nullable String mSecondLanguage;
+    private long mInitStartTime;
+
+    /**
+     * Get the engine of the app.
+     */
+    public static synchronized CellBroadcastSpeechEngine getInstance() {
+        if (sInstance == null) {
+            sInstance = new CellBroadcastSpeechEngine();
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    public CellBroadcastSpeechEngine() {
+    }
+
+    /**
+     * Bind the engine if warm-up is enabled and alerts might be spoken, or unbind it otherwise.
+     *
+     * @param context the context
+     * @param res the resources of the default subscription
+     */
+    public void warmUp(@NonNull Context context, @NonNull Resources res) {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        // as CellBroadcastAlertService decides whether to speak an alert.
+        boolean speechEnabled = !res.getBoolean(R.bool.show_alert_speech_setting)
+                || prefs.getBoolean(CellBroadcastSettings.KEY_ENABLE_ALERT_SPEECH,
+                        res.getBoolean(R.bool.enable_alert_speech_default));
+        warmUp(context, res, speechEnabled);
+    }
+
+    /**
+     * Bind the engine if warm-up is enabled and alerts are spoken, or unbind it otherwise.
+     *
+     * @param context the context
+     * @param res the resources of the default subscription
+     * @param speechEnabled true if alerts are spoken
+     */
+    public void warmUp(@NonNull Context context, @NonNull Resources res, boolean speechEnabled) {
+        boolean enabled = speechEnabled && res.getBoolean(R.bool.warm_up_alert_speech);
+        String secondLanguage = res.getString(R.string.emergency_alert_second_language_code);
+        TextToSpeech unbound = null;
+        synchronized (this) {
+            mEnabled = enabled;
+            mSecondLanguage = secondLanguage;
+            if (!enabled) {
+                if (!mInUse) {
+                    unbound = mTts;
+                    mTts = null;
+                    mReady = false;
+                }
+            } else if (mTts == null) {
+                Log.d(TAG, "binding text-to-speech engine");
+                mInitStartTime = SystemClock.elapsedRealtime();
+                mInitStatus = INIT_PENDING;
+                // the engine calls onInit right away if it cannot be bound.
+                TextToSpeech tts = new TextToSpeech(context.getApplicationContext(), this);
+                if (mInitStatus == INIT_PENDING || mInitStatus == TextToSpeech.SUCCESS) {
+                    mTts = tts;
+                    mReady = mInitStatus == TextToSpeech.SUCCESS;
+                }
+            } else if (mReady && !mInUse) {
+                // the locale might have changed.
+                selectLanguages();
+            }
+        }
+        if (unbound != null) {
+            Log.d(TAG, "unbinding text-to-speech engine");
+            unbound.shutdown();
+        }
+    }
+
+    @Override
+    public void onInit(int status) {
+        synchronized (this) {
+            CellBroadcastAlertLatency.getInstance().onStep(
+                    CellBroadcastAlertLatency.STEP_TTS_ENGINE_INIT,
+                    SystemClock.elapsedRealtime() - mInitStartTime);
+            mInitStatus = status;
+            if (status != TextToSpeech.SUCCESS) {
+                Log.e(TAG, "text-to-speech engine error: " + status);
+                mTts = null;
+                mReady = false;
+                return;
+            }
+            if (mTts == null) {
+                // still in the constructor of the engine.
+                return;
+            }
+            mReady = true;
+            if (!mInUse) {
+                selectLanguages();
+            }
+        }
+    }
+
+    /**
+     * Borrow the initialized engine for an alert. Return it with {@link #release} when done.
+     *
+     * @return the engine, or null if it is not initialized or lent already
+     */
+    public synchronized @Nullable TextToSpeech acquire() {
+        if (mTts == null || !mReady || mInUse) {
+            return null;
+        }
+        mInUse = true;
+        return mTts;
+    }
+
+    /**
+     * Return the engine borrowed with {@link #acquire}.
+     *
+     * @param tts the engine
+     */
+    public void release(@NonNull TextToSpeech tts) {
+        boolean unbind;
+        synchronized (this) {
+            mInUse = false;
+            if (tts != mTts) {
+                // the engine failed while it was lent.
+                unbind = true;
+            } else {
+                unbind = !mEnabled;
+                if (unbind) {
+                    mTts = null;
+                    mReady = false;
+                }
+            }
+        }
+        tts.setOnUtteranceProgressListener(null);
+        if (unbind) {
+            tts.shutdown();
+        }
+    }
+
+    /**
+     * @return true if the engine is initialized
+     */
+    @VisibleForTesting
+    public synchronized boolean isReady() {
+        return mReady;
+    }
+
+    // Load the voices of the languages alerts are likely spoken in. Called with the lock held.
+    private void selectLanguages() {
+        if (!TextUtils.isEmpty(mSecondLanguage)) {
+            mTts.isLanguageAvailable(new Locale(mSecondLanguage));
+        }
+        // the default language is set last, as alerts without a language are spoken in it.
+        int result = mTts.setLanguage(Locale.getDefault());
+        if (CellBroadcastReceiver.VDBG) {
+            Log.v(TAG, "selected " + Locale.getDefault() + ", result=" + result);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.cellbroadcastreceiver;
+
+import android.annotation.NonNull;
+import android.content.ContentValues;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * File of the alerts which are staged by {@link CellBroadcastContentProvider} while its
+ * database initializes, so that they are still written to the database if the process dies
+ * before the initialization finishes.
+ *
+ * <p>The whole list is written on each change. It only holds the alerts received during the
+ * initialization, so it stays small. Not thread safe, the provider guards it with its lock.
+ */
+public class CellBroadcastStagedInserts {
+
+    private static final String TAG = "CBStagedInserts";
+
+    /** The name of the file in the files directory of the app. */
+    public static final String FILE_NAME = "staged_broadcasts";
+
+    private static final int FILE_VERSION = 1;
+
+    private static final int TYPE_NULL = 0;
+    private static final int TYPE_INTEGER = 1;
+    private static final int TYPE_LONG = 2;
+    private static final int TYPE_STRING = 3;
+
+    private final AtomicFile mFile;
+
+    /**
+     * @param file the file of the staged alerts
+     */
+    @VisibleForTesting
+    public CellBroadcastStagedInserts(@NonNull File file) {
+        mFile = new AtomicFile(file);
+    }
+
+    /**
+     * Read the staged alerts.
+     *
+     * @return the values of the staged alerts, in the order they were staged
+     */
+    public @NonNull List<ContentValues> read() {
+        List<ContentValues> staged = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(mFile.openRead()))) {
+            if (in.readInt() != FILE_VERSION) {
+                Log.e(TAG, "ignoring staged alerts of an unknown version");
+                return staged;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                staged.add(readValues(in));
+            }
+        } catch (FileNotFoundException e) {
+            // nothing is staged.
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "failed to read staged alerts: " + e);
+        }
+        return staged;
+    }
+
+    /**
+     * Write the staged alerts, and sync the file before returning.
+     *
+     * @param staged the values of the staged alerts
+     * @return true if the alerts were written
+     */
+    public boolean write(@NonNull List<ContentValues> staged) {
+        if (staged.isEmpty()) {
+            mFile.delete();
+            return true;
+        }
+        FileOutputStream fos = null;
+        try {
+            fos = mFile.startWrite();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+            out.writeInt(FILE_VERSION);
+            out.writeInt(staged.size());
+            for (ContentValues cv : staged) {
+                writeValues(out, cv);
+            }
+            out.flush();
+            mFile.finishWrite(fos);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "failed to write staged alerts: " + e);
+            mFile.failWrite(fos);
+            return false;
+        }
+    }
+
+    private static void writeValues(DataOutputStream out, ContentValues cv) throws IOException {
+        out.writeInt(cv.size());
+        for (String key : cv.keySet()) {
+            out.writeUTF(key);
+            Object value = cv.get(key);
+            if (value == null) {
+                out.writeByte(TYPE_NULL);
+            } else if (value instanceof Integer) {
+                out.writeByte(TYPE_INTEGER);
+                out.writeInt((Integer) value);
+            } else if (value instanceof Long) {
+                out.writeByte(TYPE_LONG);
+                out.writeLong((Long) value);
+            } else if (value instanceof String) {
+                out.writeByte(TYPE_STRING);
+                out.writeUTF((String) value);
+            } else {
+                throw new IOException("unsupported value of " + key + ": " + value.getClass());
+            }
+        }
+    }
+
+    private static ContentValues readValues(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        ContentValues cv = new ContentValues(size);
+        for (int i = 0; i < size; i++) {
+            String key = in.readUTF();
+            int type = in.readByte();
+            switch (type) {
+                case TYPE_NULL:
+                    cv.putNull(key);
+                    break;
+                case TYPE_INTEGER:
+                    cv.put(key, in.readInt());
+                    break;
+                case TYPE_LONG:
+                    cv.put(key, in.readLong());
+                    break;
+                case TYPE_STRING:
+                    cv.put(key, in.readUTF());
+                    break;
+                default:
+                    throw new IOException("unknown type " + type + " of " + key);
+            }
+        }
+        return cv;
+    }
+}
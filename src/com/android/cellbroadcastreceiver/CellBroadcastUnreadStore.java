@@ -0,0 +1,373 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.cellbroadcastreceiver;
+
+import android.annotation.NonNull;
+import android.annotation.Nullable;
+import android.os.Build;
+import android.os.Parcel;
+import android.telephony.SmsCbMessage;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The unread non-emergency alerts, shown when the user selects the notification.
+ *
+ * <p>The alerts are kept in the order they were added, in a linked list indexed by a hash map
+ * of their received time, serial number and service category, so that adding and removing an
+ * alert take constant time. Readers get an immutable snapshot, which is cached until the store
+ * changes. The store holds at most {@link #MAX_MESSAGES} alerts, and forgets the oldest beyond.
+ *
+ * <p>Once attached to a file, the store is written to it in the background after each change,
+ * and read back in the background when the process starts again. The alerts are stored as
+ * parcels, which are only read back on the same build.
+ */
+public class CellBroadcastUnreadStore {
+
+    private static final String TAG = "CBUnreadStore";
+
+    /** Maximum number of unread alerts kept. */
+    @VisibleForTesting
+    public static final int MAX_MESSAGES = 100;
+
+    private static final int FILE_VERSION = 1;
+
+    private final Object mLock = new Object();
+    // serializes the writes of the file, which happen outside of mLock.
+    private final Object mSaveLock = new Object();
+    private final HashMap<Key, Node> mNodes = new HashMap<>();
+    // head is the oldest alert, tail the latest.
+    private Node mHead;
+    private Node mTail;
+    private @Nullable List<SmsCbMessage> mSnapshot = Collections.emptyList();
+
+    private @Nullable AtomicFile mFile;
+    private boolean mSaveScheduled;
+
+    /**
+     * Attach the store to its file. The file is read in the background, as the store is
+     * attached when the process starts on the main thread. Until then, the store only holds the
+     * alerts added since the start, and is not written to the file.
+     *
+     * @param file the file to persist the store to
+     */
+    public void attachFile(@NonNull File file) {
+        if (!CellBroadcastOperationExecutor.getInstance().execute(
+                CellBroadcastOperationExecutor.LANE_USER, () -> loadFile(file))) {
+            Log.e(TAG, "failed to schedule loading unread alerts");
+        }
+    }
+
+    /**
+     * Read the file of the store now. The alerts read from the file go before the alerts added
+     * so far, and the store is written to the file after each change.
+     *
+     * @param file the file to persist the store to
+     */
+    @VisibleForTesting
+    public void loadFile(@NonNull File file) {
+        AtomicFile atomicFile = new AtomicFile(file);
+        List<SmsCbMessage> loaded = load(atomicFile);
+        synchronized (mLock) {
+            mFile = atomicFile;
+            for (int i = loaded.size() - 1; i >= 0; i--) {
+                SmsCbMessage message = loaded.get(i);
+                if (!mNodes.containsKey(new Key(message))) {
+                    insertFirst(message);
+                }
+            }
+            trim();
+            mSnapshot = null;
+            scheduleSaveLocked();
+        }
+        Log.d(TAG, "loaded " + loaded.size() + " unread alerts");
+    }
+
+    /**
+     * Add an unread alert as the latest one. An alert which is stored already is moved to the
+     * end.
+     *
+     * @param message the alert
+     * @return the snapshot of the unread alerts after the change
+     */
+    public @NonNull List<SmsCbMessage> add(@NonNull SmsCbMessage message) {
+        synchronized (mLock) {
+            Node node = mNodes.remove(new Key(message));
+            if (node != null) {
+                unlink(node);
+            }
+            node = new Node(message);
+            mNodes.put(node.mKey, node);
+            node.mPrev = mTail;
+            if (mTail != null) {
+                mTail.mNext = node;
+            } else {
+                mHead = node;
+            }
+            mTail = node;
+            trim();
+            return onChangedLocked();
+        }
+    }
+
+    /**
+     * Remove an alert which was read.
+     *
+     * @param message the alert
+     * @return the snapshot of the unread alerts after the change
+     */
+    public @NonNull List<SmsCbMessage> remove(@NonNull SmsCbMessage message) {
+        synchronized (mLock) {
+            Node node = mNodes.remove(new Key(message));
+            if (node == null) {
+                return getSnapshotLocked();
+            }
+            unlink(node);
+            return onChangedLocked();
+        }
+    }
+
+    /**
+     * Remove all alerts.
+     */
+    public void clear() {
+        synchronized (mLock) {
+            if (mNodes.isEmpty()) {
+                return;
+            }
+            mNodes.clear();
+            mHead = null;
+            mTail = null;
+            onChangedLocked();
+        }
+    }
+
+    /**
+     * @return the latest unread alert, or null if there is none
+     */
+    public @Nullable SmsCbMessage getLatest() {
+        synchronized (mLock) {
+            return mTail != null ? mTail.mMessage : null;
+        }
+    }
+
+    /**
+     * @return the immutable snapshot of the unread alerts, from the oldest to the latest
+     */
+    public @NonNull List<SmsCbMessage> getSnapshot() {
+        synchronized (mLock) {
+            return getSnapshotLocked();
+        }
+    }
+
+    /**
+     * Write the store to its file now.
+     */
+    @VisibleForTesting
+    public void save() {
+        synchronized (mSaveLock) {
+            AtomicFile file;
+            List<SmsCbMessage> messages;
+            synchronized (mLock) {
+                mSaveScheduled = false;
+                if (mFile == null) {
+                    return;
+                }
+                file = mFile;
+                messages = getSnapshotLocked();
+            }
+            write(file, messages);
+        }
+    }
+
+    private static void write(AtomicFile file, List<SmsCbMessage> messages) {
+        FileOutputStream fos = null;
+        try {
+            fos = file.startWrite();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+            out.writeInt(FILE_VERSION);
+            out.writeUTF(Build.FINGERPRINT);
+            out.writeInt(messages.size());
+            for (SmsCbMessage message : messages) {
+                Parcel parcel = Parcel.obtain();
+                try {
+                    message.writeToParcel(parcel, 0);
+                    byte[] bytes = parcel.marshall();
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                } finally {
+                    parcel.recycle();
+                }
+            }
+            out.flush();
+            file.finishWrite(fos);
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "failed to save unread alerts: " + e);
+            file.failWrite(fos);
+        }
+    }
+
+    private static List<SmsCbMessage> load(AtomicFile file) {
+        ArrayList<SmsCbMessage> messages = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(file.openRead()))) {
+            if (in.readInt() != FILE_VERSION || !Build.FINGERPRINT.equals(in.readUTF())) {
+                // the parcels of another build might not be read correctly.
+                Log.d(TAG, "ignoring unread alerts of another version");
+                return messages;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                Parcel parcel = Parcel.obtain();
+                try {
+                    parcel.unmarshall(bytes, 0, bytes.length);
+                    parcel.setDataPosition(0);
+                    messages.add(SmsCbMessage.CREATOR.createFromParcel(parcel));
+                } finally {
+                    parcel.recycle();
+                }
+            }
+        } catch (FileNotFoundException e) {
+            // nothing was saved yet.
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "failed to load unread alerts: " + e);
+        }
+        return messages;
+    }
+
+    private List<SmsCbMessage> onChangedLocked() {
+        mSnapshot = null;
+        scheduleSaveLocked();
+        return getSnapshotLocked();
+    }
+
+    private void scheduleSaveLocked() {
+        if (mFile == null || mSaveScheduled) {
+            return;
+        }
+        // changes made until the write starts are written together.
+        mSaveScheduled = CellBroadcastOperationExecutor.getInstance().execute(
+                CellBroadcastOperationExecutor.LANE_USER, this::save);
+    }
+
+    private List<SmsCbMessage> getSnapshotLocked() {
+        if (mSnapshot == null) {
+            ArrayList<SmsCbMessage> messages = new ArrayList<>(mNodes.size());
+            for (Node node = mHead; node != null; node = node.mNext) {
+                messages.add(node.mMessage);
+            }
+            mSnapshot = Collections.unmodifiableList(messages);
+        }
+        return mSnapshot;
+    }
+
+    private void insertFirst(SmsCbMessage message) {
+        Node node = new Node(message);
+        mNodes.put(node.mKey, node);
+        node.mNext = mHead;
+        if (mHead != null) {
+            mHead.mPrev = node;
+        } else {
+            mTail = node;
+        }
+        mHead = node;
+    }
+
+    private void trim() {
+        while (mNodes.size() > MAX_MESSAGES) {
+            Node oldest = mHead;
+            mNodes.remove(oldest.mKey);
+            unlink(oldest);
+        }
+    }
+
+    private void unlink(Node node) {
+        if (node.mPrev != null) {
+            node.mPrev.mNext = node.mNext;
+        } else {
+            mHead = node.mNext;
+        }
+        if (node.mNext != null) {
+            node.mNext.mPrev = node.mPrev;
+        } else {
+            mTail = node.mPrev;
+        }
+        node.mPrev = null;
+        node.mNext = null;
+    }
+
+    private static class Node {
+        final Key mKey;
+        final SmsCbMessage mMessage;
+        Node mPrev;
+        Node mNext;
+
+        Node(SmsCbMessage message) {
+            mKey = new Key(message);
+            mMessage = message;
+        }
+    }
+
+    /**
+     * Identifies an alert. The received time alone is not unique, as alerts might be received
+     * in the same millisecond.
+     */
+    private static class Key {
+        final long mReceivedTime;
+        final int mSerialNumber;
+        final int mServiceCategory;
+
+        Key(SmsCbMessage message) {
+            mReceivedTime = message.getReceivedTime();
+            mSerialNumber = message.getSerialNumber();
+            mServiceCategory = message.getServiceCategory();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return mReceivedTime == key.mReceivedTime && mSerialNumber == key.mSerialNumber
+                    && mServiceCategory == key.mServiceCategory;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(mReceivedTime, mSerialNumber, mServiceCategory);
+        }
+    }
+}
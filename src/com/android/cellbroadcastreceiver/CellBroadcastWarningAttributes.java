@@ -0,0 +1,238 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.cellbroadcastreceiver;
+
+import android.annotation.Nullable;
+import android.content.ContentValues;
+import android.provider.Telephony;
+import android.telephony.SmsCbCmasInfo;
+import android.telephony.SmsCbEtwsInfo;
+
+/**
+ * Packs the ETWS and CMAS warning attributes of a message into the single integer column
+ * {@link CellBroadcastDatabaseHelper#WARNING_ATTRIBUTES}, instead of one nullable column for
+ * each attribute.
+ *
+ * <p>Each attribute is stored as its value plus one in a fixed-width field, so that the unknown
+ * value -1 is stored as 0. Values which do not fit their field are stored as unknown. A present
+ * bit for ETWS and for CMAS tells whether the message has the warning info at all:
+ * <pre>
+ * bit  0      ETWS present
+ * bits 1-8    ETWS warning type
+ * bit  9      CMAS present
+ * bits 10-12  CMAS message class
+ * bits 13-16  CMAS category
+ * bits 17-20  CMAS response type
+ * bits 21-22  CMAS severity
+ * bits 23-24  CMAS urgency
+ * bits 25-26  CMAS certainty
+ * </pre>
+ * Messages without warning info store NULL.
+ */
+public final class CellBroadcastWarningAttributes {
+
+    /** Field of {@link Telephony.CellBroadcasts#ETWS_WARNING_TYPE}. */
+    public static final int FIELD_ETWS_WARNING_TYPE = 0;
+    /** Field of {@link Telephony.CellBroadcasts#CMAS_MESSAGE_CLASS}. */
+    public static final int FIELD_CMAS_MESSAGE_CLASS = 1;
+    /** Field of {@link Telephony.CellBroadcasts#CMAS_CATEGORY}. */
+    public static final int FIELD_CMAS_CATEGORY = 2;
+    /** Field of {@link Telephony.CellBroadcasts#CMAS_RESPONSE_TYPE}. */
+    public static final int FIELD_CMAS_RESPONSE_TYPE = 3;
+    /** Field of {@link Telephony.CellBroadcasts#CMAS_SEVERITY}. */
+    public static final int FIELD_CMAS_SEVERITY = 4;
+    /** Field of {@link Telephony.CellBroadcasts#CMAS_URGENCY}. */
+    public static final int FIELD_CMAS_URGENCY = 5;
+    /** Field of {@link Telephony.CellBroadcasts#CMAS_CERTAINTY}. */
+    public static final int FIELD_CMAS_CERTAINTY = 6;
+
+    /** The columns packed into {@link CellBroadcastDatabaseHelper#WARNING_ATTRIBUTES}. */
+    public static final String[] COLUMNS = {
+            Telephony.CellBroadcasts.ETWS_WARNING_TYPE,
+            Telephony.CellBroadcasts.CMAS_MESSAGE_CLASS,
+            Telephony.CellBroadcasts.CMAS_CATEGORY,
+            Telephony.CellBroadcasts.CMAS_RESPONSE_TYPE,
+            Telephony.CellBroadcasts.CMAS_SEVERITY,
+            Telephony.CellBroadcasts.CMAS_URGENCY,
+            Telephony.CellBroadcasts.CMAS_CERTAINTY
+    };
+
+    private static final int ETWS_PRESENT = 1;
+    private static final int CMAS_PRESENT = 1 << 9;
+
+    private static final int[] SHIFTS = {1, 10, 13, 17, 21, 23, 25};
+    private static final int[] WIDTHS = {8, 3, 4, 4, 2, 2, 2};
+
+    private CellBroadcastWarningAttributes() {
+    }
+
+    /**
+     * Pack the warning info of a message.
+     *
+     * @param etwsInfo the ETWS warning info, or null
+     * @param cmasInfo the CMAS warning info, or null
+     * @return the packed attributes, or 0 if the message has no warning info
+     */
+    public static int pack(@Nullable SmsCbEtwsInfo etwsInfo, @Nullable SmsCbCmasInfo cmasInfo) {
+        int bits = 0;
+        if (etwsInfo != null) {
+            bits |= ETWS_PRESENT | packField(FIELD_ETWS_WARNING_TYPE, etwsInfo.getWarningType());
+        }
+        if (cmasInfo != null) {
+            bits |= CMAS_PRESENT
+                    | packField(FIELD_CMAS_MESSAGE_CLASS, cmasInfo.getMessageClass())
+                    | packField(FIELD_CMAS_CATEGORY, cmasInfo.getCategory())
+                    | packField(FIELD_CMAS_RESPONSE_TYPE, cmasInfo.getResponseType())
+                    | packField(FIELD_CMAS_SEVERITY, cmasInfo.getSeverity())
+                    | packField(FIELD_CMAS_URGENCY, cmasInfo.getUrgency())
+                    | packField(FIELD_CMAS_CERTAINTY, cmasInfo.getCertainty());
+        }
+        return bits;
+    }
+
+    /**
+     * Replace the values of {@link #COLUMNS} by the packed
+     * {@link CellBroadcastDatabaseHelper#WARNING_ATTRIBUTES}. As in the unpacked columns, the
+     * message has CMAS info if {@link Telephony.CellBroadcasts#CMAS_MESSAGE_CLASS} is not null.
+     *
+     * @param values the values of a row, which might hold the values as strings
+     */
+    public static void packContentValues(ContentValues values) {
+        int bits = 0;
+        for (int field = 0; field < COLUMNS.length; field++) {
+            Integer value = values.getAsInteger(COLUMNS[field]);
+            values.remove(COLUMNS[field]);
+            if (value != null) {
+                bits |= packField(field, value);
+                if (field == FIELD_ETWS_WARNING_TYPE) {
+                    bits |= ETWS_PRESENT;
+                } else if (field == FIELD_CMAS_MESSAGE_CLASS) {
+                    bits |= CMAS_PRESENT;
+                }
+            }
+        }
+        if ((bits & CMAS_PRESENT) == 0) {
+            // CMAS attributes without message class are not read as CMAS info.
+            bits &= ETWS_PRESENT | fieldMask(FIELD_ETWS_WARNING_TYPE);
+        }
+        if (bits != 0) {
+            values.put(CellBroadcastDatabaseHelper.WARNING_ATTRIBUTES, bits);
+        }
+    }
+
+    /**
+     * @param bits the packed attributes
+     * @param field the field, e.g. {@link #FIELD_CMAS_SEVERITY}
+     * @return whether the field has a value, i.e. the message has the warning info of the field
+     */
+    public static boolean hasField(int bits, int field) {
+        return (bits & getPresentBit(field)) != 0;
+    }
+
+    /**
+     * @param bits the packed attributes
+     * @param field the field, e.g. {@link #FIELD_CMAS_SEVERITY}
+     * @return the value of the field, which is -1 for unknown values
+     */
+    public static int getField(int bits, int field) {
+        return ((bits >>> SHIFTS[field]) & ((1 << WIDTHS[field]) - 1)) - 1;
+    }
+
+    /**
+     * @param bits the packed attributes
+     * @return the ETWS warning info, or null if the message has none
+     */
+    public static @Nullable SmsCbEtwsInfo getEtwsInfo(int bits) {
+        if ((bits & ETWS_PRESENT) == 0) {
+            return null;
+        }
+        return new SmsCbEtwsInfo(getField(bits, FIELD_ETWS_WARNING_TYPE), false, false, false,
+                null);
+    }
+
+    /**
+     * @param bits the packed attributes
+     * @return the CMAS warning info, or null if the message has none
+     */
+    public static @Nullable SmsCbCmasInfo getCmasInfo(int bits) {
+        if ((bits & CMAS_PRESENT) == 0) {
+            return null;
+        }
+        return new SmsCbCmasInfo(getField(bits, FIELD_CMAS_MESSAGE_CLASS),
+                getField(bits, FIELD_CMAS_CATEGORY), getField(bits, FIELD_CMAS_RESPONSE_TYPE),
+                getField(bits, FIELD_CMAS_SEVERITY), getField(bits, FIELD_CMAS_URGENCY),
+                getField(bits, FIELD_CMAS_CERTAINTY));
+    }
+
+    /**
+     * @return the SQL expression of a field read from
+     * {@link CellBroadcastDatabaseHelper#WARNING_ATTRIBUTES}, which is NULL if the message has
+     * not the warning info of the field, as the unpacked column was
+     */
+    static String getFieldSql(int field) {
+        String column = CellBroadcastDatabaseHelper.WARNING_ATTRIBUTES;
+        return "CASE WHEN (" + column + " & " + getPresentBit(field) + ") = 0 THEN NULL"
+                + " ELSE ((" + column + " >> " + SHIFTS[field] + ") & "
+                + ((1 << WIDTHS[field]) - 1) + ") - 1 END";
+    }
+
+    /**
+     * @return the SQL expression packing the values of {@link #COLUMNS} of a row, to convert rows
+     * stored in the unpacked columns
+     */
+    static String getPackSql() {
+        String etws = COLUMNS[FIELD_ETWS_WARNING_TYPE];
+        String cmas = COLUMNS[FIELD_CMAS_MESSAGE_CLASS];
+        StringBuilder sb = new StringBuilder("CASE WHEN ").append(etws).append(" IS NULL AND ")
+                .append(cmas).append(" IS NULL THEN NULL ELSE ");
+        sb.append("(CASE WHEN ").append(etws).append(" IS NULL THEN 0 ELSE ")
+                .append(ETWS_PRESENT).append(" | ")
+                .append(getPackFieldSql(FIELD_ETWS_WARNING_TYPE)).append(" END)");
+        sb.append(" | (CASE WHEN ").append(cmas).append(" IS NULL THEN 0 ELSE ")
+                .append(CMAS_PRESENT);
+        for (int field = FIELD_CMAS_MESSAGE_CLASS; field < COLUMNS.length; field++) {
+            sb.append(" | ").append(getPackFieldSql(field));
+        }
+        return sb.append(" END) END").toString();
+    }
+
+    private static String getPackFieldSql(int field) {
+        String column = COLUMNS[field];
+        return "(CASE WHEN " + column + " BETWEEN -1 AND " + getMaxValue(field) + " THEN ("
+                + column + " + 1) << " + SHIFTS[field] + " ELSE 0 END)";
+    }
+
+    private static int packField(int field, int value) {
+        if (value < -1 || value > getMaxValue(field)) {
+            // store values which do not fit as unknown
+            return 0;
+        }
+        return (value + 1) << SHIFTS[field];
+    }
+
+    private static int getMaxValue(int field) {
+        return (1 << WIDTHS[field]) - 2;
+    }
+
+    private static int fieldMask(int field) {
+        return ((1 << WIDTHS[field]) - 1) << SHIFTS[field];
+    }
+
+    private static int getPresentBit(int field) {
+        return field == FIELD_ETWS_WARNING_TYPE ? ETWS_PRESENT : CMAS_PRESENT;
+    }
+}
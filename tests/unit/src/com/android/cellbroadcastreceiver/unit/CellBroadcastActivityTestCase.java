@@ -32,6 +32,9 @@ import android.test.ActivityUnitTestCase;
 import android.util.Log;
 import android.view.Display;
 
+import com.android.cellbroadcastreceiver.CellBroadcastAlertDisplayModel;
+import com.android.cellbroadcastreceiver.CellBroadcastNotificationComposer;
+
 import java.util.HashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -52,6 +55,9 @@ public class CellBroadcastActivityTestCase<T extends Activity> extends ActivityU
         super.setUp();
         mContext = new TestContext(getInstrumentation().getTargetContext());
         setActivityContext(mContext);
+        // the notified and shown alerts are rendered with the resources of each test.
+        CellBroadcastNotificationComposer.getInstance().clear();
+        CellBroadcastAlertDisplayModel.clearCache();
     }
 
     @Override
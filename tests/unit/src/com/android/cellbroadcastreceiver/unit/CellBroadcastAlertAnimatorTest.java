@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.cellbroadcastreceiver.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import android.os.SystemClock;
+import android.view.View;
+
+import androidx.test.InstrumentationRegistry;
+
+import com.android.cellbroadcastreceiver.CellBroadcastAlertAnimator;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+@RunWith(JUnit4.class)
+public class CellBroadcastAlertAnimatorTest {
+
+    private static final int HIGHLIGHT_COLOR = 0xFFFF0000;
+    private static final int ICON_PERIOD = CellBroadcastAlertAnimator.WARNING_ICON_ON_DURATION_MSEC
+            + CellBroadcastAlertAnimator.WARNING_ICON_OFF_DURATION_MSEC;
+
+    @Mock
+    private View mMockIconView;
+    @Mock
+    private View mMockLayout;
+
+    private CellBroadcastAlertAnimator mAnimator;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() ->
+                mAnimator = new CellBroadcastAlertAnimator());
+    }
+
+    @Test
+    public void testIconFlashing() {
+        runOnMainSync(() -> {
+            mAnimator.startIcon(mMockIconView);
+            long start = mAnimator.mIconStartTime;
+            assertTrue(mAnimator.mWarningIconVisible);
+            assertEquals(start + CellBroadcastAlertAnimator.WARNING_ICON_ON_DURATION_MSEC,
+                    mAnimator.getNextChangeTime(start));
+
+            mAnimator.update(start + CellBroadcastAlertAnimator.WARNING_ICON_ON_DURATION_MSEC);
+            assertFalse(mAnimator.mWarningIconVisible);
+            verify(mMockIconView).setAlpha(0f);
+
+            mAnimator.update(start + ICON_PERIOD);
+            assertTrue(mAnimator.mWarningIconVisible);
+            assertEquals(start + ICON_PERIOD
+                    + CellBroadcastAlertAnimator.WARNING_ICON_ON_DURATION_MSEC,
+                    mAnimator.getNextChangeTime(start + ICON_PERIOD));
+        });
+    }
+
+    @Test
+    public void testIconAndPulsationShareClock() {
+        runOnMainSync(() -> {
+            mAnimator.startIcon(mMockIconView);
+            mAnimator.startPulsation(mMockLayout, new int[] {HIGHLIGHT_COLOR, 100000, 300, 500});
+            long start = mAnimator.mPulsationStartTime;
+
+            // the pulsation is highlighted after its off interval, before the icon changes.
+            assertEquals(start + 500, mAnimator.getNextChangeTime(start));
+            mAnimator.update(start + 500);
+            assertTrue(mAnimator.mIsPulsationOn);
+            verify(mMockLayout).setBackgroundColor(eq(HIGHLIGHT_COLOR));
+        });
+    }
+
+    @Test
+    public void testPulsationEndsAfterDuration() {
+        runOnMainSync(() -> {
+            mAnimator.startPulsation(mMockLayout, new int[] {HIGHLIGHT_COLOR, 1000, 300, 500});
+            int backgroundColor = mAnimator.mBackgroundColor;
+            long start = mAnimator.mPulsationStartTime;
+
+            mAnimator.update(start + 800);
+            assertFalse(mAnimator.mIsPulsationOn);
+            assertEquals(start + 1000, mAnimator.getNextChangeTime(start + 800));
+
+            mAnimator.update(start + 1000);
+            assertNull(mAnimator.mLayout);
+            verify(mMockLayout).setBackgroundColor(eq(backgroundColor));
+            assertEquals(-1, mAnimator.getNextChangeTime(start + 1000));
+        });
+    }
+
+    @Test
+    public void testInvalidPulsationPattern() {
+        runOnMainSync(() -> {
+            mAnimator.startPulsation(mMockLayout, new int[] {HIGHLIGHT_COLOR, -1, -1, -1});
+            // the invalid values fall back to the defaults.
+            assertEquals(10000, mAnimator.mDuration);
+            assertEquals(1000, mAnimator.mOnInterval);
+            assertEquals(1000, mAnimator.mOffInterval);
+        });
+    }
+
+    @Test
+    public void testPauseStopsClock() {
+        long[] pausedTime = new long[1];
+        runOnMainSync(() -> {
+            mAnimator.startPulsation(mMockLayout, new int[] {HIGHLIGHT_COLOR, 100000, 300, 500});
+            mAnimator.pause();
+            assertTrue(mAnimator.isPaused());
+            pausedTime[0] = mAnimator.getClockTime(SystemClock.uptimeMillis());
+        });
+
+        SystemClock.sleep(1000);
+
+        runOnMainSync(() -> {
+            assertEquals(pausedTime[0], mAnimator.getClockTime(SystemClock.uptimeMillis()));
+            mAnimator.resume();
+            assertFalse(mAnimator.isPaused());
+            // the clock goes on from where it was paused.
+            long time = mAnimator.getClockTime(SystemClock.uptimeMillis());
+            assertTrue(time >= pausedTime[0] && time < pausedTime[0] + 500);
+            assertEquals(mAnimator.mPulsationStartTime + 500, mAnimator.getNextChangeTime(time));
+        });
+        // no frame was animated while paused.
+        verify(mMockLayout, never()).setBackgroundColor(eq(HIGHLIGHT_COLOR));
+    }
+
+    @Test
+    public void testStartPulsationWhilePaused() {
+        runOnMainSync(() -> mAnimator.pause());
+
+        SystemClock.sleep(200);
+
+        runOnMainSync(() -> {
+            mAnimator.startPulsation(mMockLayout, new int[] {HIGHLIGHT_COLOR, 100000, 300, 500});
+            assertEquals(mAnimator.getClockTime(SystemClock.uptimeMillis()),
+                    mAnimator.mPulsationStartTime);
+        });
+
+        SystemClock.sleep(1000);
+
+        runOnMainSync(() -> {
+            mAnimator.resume();
+            // the pulsation starts when the animator is resumed.
+            long start = mAnimator.mPulsationStartTime;
+            long time = mAnimator.getClockTime(SystemClock.uptimeMillis());
+            assertTrue(time >= start && time < start + 500);
+            assertEquals(start + 500, mAnimator.getNextChangeTime(time));
+        });
+        verify(mMockLayout, never()).setBackgroundColor(eq(HIGHLIGHT_COLOR));
+    }
+
+    private static void runOnMainSync(Runnable runnable) {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(runnable);
+    }
+}
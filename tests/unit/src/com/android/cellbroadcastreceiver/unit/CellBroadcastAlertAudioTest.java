@@ -18,12 +18,14 @@ package com.android.cellbroadcastreceiver.unit;
 
 import static com.android.cellbroadcastreceiver.CellBroadcastAlertService.SHOW_NEW_ALERT_ACTION;
 
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
@@ -47,6 +49,7 @@ import android.telephony.PhoneStateListener;
 import android.telephony.TelephonyManager;
 
 import com.android.cellbroadcastreceiver.CellBroadcastAlertAudio;
+import com.android.cellbroadcastreceiver.CellBroadcastAlertLatency;
 import com.android.cellbroadcastreceiver.CellBroadcastAlertService;
 import com.android.cellbroadcastreceiver.CellBroadcastSettings;
 
@@ -58,6 +61,9 @@ import org.mockito.MockitoAnnotations;
 
 import java.lang.reflect.Field;
 import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class CellBroadcastAlertAudioTest extends
         CellBroadcastServiceTestCase<CellBroadcastAlertAudio> {
@@ -73,6 +79,7 @@ public class CellBroadcastAlertAudioTest extends
     private Object mLock = new Object();
     private boolean mReady;
 
+    private static final int STATE_IDLE = 0;
     private static final int STATE_ALERTING = 1;
     private static final int STATE_STOPPING = 4;
 
@@ -111,6 +118,15 @@ public class CellBroadcastAlertAudioTest extends
         }
     }
 
+    /**
+     * Wait until the audio thread of the service handled the intents started so far.
+     */
+    private void waitForAudioThread() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        ((CellBroadcastAlertAudio) getService()).mHandler.post(latch::countDown);
+        assertTrue(latch.await(MAX_INIT_WAIT_MS, TimeUnit.MILLISECONDS));
+    }
+
     protected void setReady(boolean ready) {
         synchronized (mLock) {
             mReady = ready;
@@ -162,11 +178,64 @@ public class CellBroadcastAlertAudioTest extends
                 });
         phoneStateListenerHandler.start();
         waitUntilReady();
+        waitForAudioThread();
         verify(mMockedAudioManager).getRingerMode();
         verify(mMockedVibrator).vibrate(any(), any(AudioAttributes.class));
         phoneStateListenerHandler.quit();
     }
 
+    public void testOnDestroyReleasesBeforeReturning() throws Throwable {
+        PhoneStateListenerHandler phoneStateListenerHandler = new PhoneStateListenerHandler(
+                "testOnDestroyReleasesBeforeReturning",
+                () -> {
+                    doReturn(AudioManager.RINGER_MODE_NORMAL).when(
+                            mMockedAudioManager).getRingerMode();
+                    startService(createStartAudioIntent());
+                });
+        phoneStateListenerHandler.start();
+        waitUntilReady();
+        waitForAudioThread();
+        CellBroadcastAlertAudio audio = (CellBroadcastAlertAudio) getService();
+
+        shutdownService();
+
+        // the audio is released by the time the service is destroyed.
+        assertEquals(STATE_STOPPING, audio.getState());
+        verify(mMockedVibrator, atLeastOnce()).cancel();
+        verify(mMockedAudioManager).abandonAudioFocus(any());
+        phoneStateListenerHandler.quit();
+    }
+
+    public void testStartServicePlaysOffMainThread() throws Throwable {
+        AtomicReference<Thread> vibrateThread = new AtomicReference<>();
+        doAnswer(invocation -> {
+            vibrateThread.set(Thread.currentThread());
+            return null;
+        }).when(mMockedVibrator).vibrate(any(), any(AudioAttributes.class));
+        CellBroadcastAlertLatency latency = CellBroadcastAlertLatency.getInstance();
+        long firstSoundCount = latency.getStepCount(
+                CellBroadcastAlertLatency.STEP_AUDIO_FIRST_SOUND);
+        PhoneStateListenerHandler phoneStateListenerHandler = new PhoneStateListenerHandler(
+                "testStartServicePlaysOffMainThread",
+                () -> {
+                    doReturn(AudioManager.RINGER_MODE_NORMAL).when(
+                            mMockedAudioManager).getRingerMode();
+                    Intent intent = createStartAudioIntent();
+                    intent.setAction(SHOW_NEW_ALERT_ACTION);
+                    startService(intent);
+                });
+        phoneStateListenerHandler.start();
+        waitUntilReady();
+        waitForAudioThread();
+
+        assertNotNull(vibrateThread.get());
+        assertNotEquals(Looper.getMainLooper().getThread(), vibrateThread.get());
+        assertNotEquals(phoneStateListenerHandler, vibrateThread.get());
+        assertEquals(firstSoundCount + 1,
+                latency.getStepCount(CellBroadcastAlertLatency.STEP_AUDIO_FIRST_SOUND));
+        phoneStateListenerHandler.quit();
+    }
+
     public void testPlayAlertToneInfo() throws Throwable {
         setWatchFeatureEnabled(false);
         doReturn(AudioManager.RINGER_MODE_NORMAL).when(
@@ -181,6 +250,7 @@ public class CellBroadcastAlertAudioTest extends
                 });
         phoneStateListenerHandler.start();
         waitUntilReady();
+        waitForAudioThread();
         verify(mMockedAudioManager).getRingerMode();
         verify(mMockedVibrator).vibrate(any(), any(AudioAttributes.class));
         phoneStateListenerHandler.quit();
@@ -201,6 +271,7 @@ public class CellBroadcastAlertAudioTest extends
                 });
         phoneStateListenerHandler.start();
         waitUntilReady();
+        waitForAudioThread();
         verify(mMockedAudioManager).getRingerMode();
         verify(mMockedVibrator).vibrate(any(), any(AudioAttributes.class));
         phoneStateListenerHandler.quit();
@@ -232,6 +303,7 @@ public class CellBroadcastAlertAudioTest extends
                 });
         phoneStateListenerHandler.start();
         waitUntilReady();
+        waitForAudioThread();
         verify(mMockedAudioManager).getRingerMode();
         verify(mMockedVibrator).vibrate(any(), any(AudioAttributes.class));
         verify(mMockedTelephonyManager, atLeastOnce()).getCallState();
@@ -260,6 +332,7 @@ public class CellBroadcastAlertAudioTest extends
                 });
         phoneStateListenerHandler.start();
         waitUntilReady();
+        waitForAudioThread();
         // TODO(b/134400042): we can't mock CameraManager because it's final, but let's at least
         //                    make sure the code doesn't crash. If we switch to Mockito 2 this
         //                    will be mockable.
@@ -284,6 +357,7 @@ public class CellBroadcastAlertAudioTest extends
                 });
         phoneStateListenerHandler.start();
         waitUntilReady();
+        waitForAudioThread();
         verify(mMockedAudioManager).getRingerMode();
         verify(mMockedVibrator, times(0)).vibrate(any(), any(AudioAttributes.class));
         phoneStateListenerHandler.quit();
@@ -306,6 +380,7 @@ public class CellBroadcastAlertAudioTest extends
                 });
         phoneStateListenerHandler.start();
         waitUntilReady();
+        waitForAudioThread();
         verify(mMockedAudioManager).getRingerMode();
         verify(mMockedVibrator).vibrate(any(), any(AudioAttributes.class));
         phoneStateListenerHandler.quit();
@@ -332,6 +407,7 @@ public class CellBroadcastAlertAudioTest extends
                 });
         phoneStateListenerHandler.start();
         waitUntilReady();
+        waitForAudioThread();
 
         CellBroadcastAlertAudio audio = (CellBroadcastAlertAudio) getService();
         audio.stop();
@@ -398,6 +474,7 @@ public class CellBroadcastAlertAudioTest extends
                 });
         phoneStateListenerHandler.start();
         waitUntilReady();
+        waitForAudioThread();
 
         Locale original_locale = Locale.getDefault();
         Locale.setDefault(Locale.UK);
@@ -410,6 +487,8 @@ public class CellBroadcastAlertAudioTest extends
         fieldTts.set(audio, mockTts);
 
         audio.onInit(TextToSpeech.SUCCESS);
+        // the engine is set up on the audio thread.
+        waitForAudioThread();
 
         ArgumentCaptor<Locale> localeArgumentCaptor = ArgumentCaptor.forClass(Locale.class);
         verify(mockTts, times(1)).setLanguage(localeArgumentCaptor.capture());
@@ -440,6 +519,7 @@ public class CellBroadcastAlertAudioTest extends
                 });
         phoneStateListenerHandler.start();
         waitUntilReady();
+        waitForAudioThread();
         verify(mMockedVibrator, atLeastOnce()).cancel();
         phoneStateListenerHandler.quit();
         waitUntilReady();
@@ -473,6 +553,7 @@ public class CellBroadcastAlertAudioTest extends
                 });
         phoneStateListenerHandler.start();
         waitUntilReady();
+        waitForAudioThread();
         verify(mMockedAudioManager).getRingerMode();
         verify(mMockedVibrator, never()).vibrate(any(), any(AudioAttributes.class));
         verify(mMockedTelephonyManager, never()).getCallState();
@@ -539,9 +620,10 @@ public class CellBroadcastAlertAudioTest extends
         audio.handleStartIntent(intent);
         assertEquals(STATE_ALERTING, audio.getState());
 
-        // Call state change to OFFHOOK, stop audio play
+        // Call state change to OFFHOOK, stop audio play. The test cannot stop the service, so
+        // the stop fails and the service is idle for the next start.
         mPhoneStateListener.onCallStateChanged(TelephonyManager.CALL_STATE_OFFHOOK, "");
-        assertEquals(STATE_STOPPING, audio.getState());
+        assertEquals(STATE_IDLE, audio.getState());
 
         phoneStateListenerHandler.quit();
     }
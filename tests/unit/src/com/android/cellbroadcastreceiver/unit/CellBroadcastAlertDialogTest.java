@@ -43,7 +43,6 @@ import android.os.Bundle;
 import android.os.IPowerManager;
 import android.os.IThermalService;
 import android.os.Looper;
-import android.os.Message;
 import android.os.PowerManager;
 import android.telephony.SmsCbMessage;
 import android.telephony.SubscriptionInfo;
@@ -60,6 +59,7 @@ import android.widget.ImageView;
 import android.widget.LinearLayout;
 import android.widget.TextView;
 
+import com.android.cellbroadcastreceiver.CellBroadcastAlertAnimator;
 import com.android.cellbroadcastreceiver.CellBroadcastAlertDialog;
 import com.android.cellbroadcastreceiver.CellBroadcastAlertService;
 import com.android.cellbroadcastreceiver.CellBroadcastChannelManager;
@@ -387,19 +387,23 @@ public class CellBroadcastAlertDialogTest extends
         assertNotNull(image.getLayoutParams());
     }
 
-    public void testAnimationHandler() throws Throwable {
+    public void testIconAnimation() throws Throwable {
         CellBroadcastAlertDialog activity = startActivity();
+        View icon = activity.findViewById(R.id.icon);
 
-        activity.mAnimationHandler.startIconAnimation(mSubId);
+        runTestOnUiThread(() -> {
+            activity.mAnimator.startIcon(icon);
 
-        assertTrue(activity.mAnimationHandler.mWarningIconVisible);
+            assertTrue(activity.mAnimator.mWarningIconVisible);
+            assertEquals(View.VISIBLE, icon.getVisibility());
 
-        Message m = Message.obtain();
-        m.what = activity.mAnimationHandler.mCount.get();
-        activity.mAnimationHandler.handleMessage(m);
+            activity.mAnimator.update(activity.mAnimator.mIconStartTime
+                    + CellBroadcastAlertAnimator.WARNING_ICON_ON_DURATION_MSEC);
 
-        // assert that message count has gone up
-        assertEquals(m.what + 1, activity.mAnimationHandler.mCount.get());
+            // assert that the icon has been hidden
+            assertFalse(activity.mAnimator.mWarningIconVisible);
+            assertEquals(0f, icon.getAlpha(), 0f);
+        });
     }
 
     public void testOnResume() throws Throwable {
@@ -409,12 +413,12 @@ public class CellBroadcastAlertDialogTest extends
         Looper.prepare();
         CellBroadcastAlertDialog activity = startActivity(intent, null, null);
 
-        CellBroadcastAlertDialog.AnimationHandler mockAnimationHandler = mock(
-                CellBroadcastAlertDialog.AnimationHandler.class);
-        activity.mAnimationHandler = mockAnimationHandler;
+        CellBroadcastAlertAnimator mockAnimator = mock(CellBroadcastAlertAnimator.class);
+        activity.mAnimator = mockAnimator;
 
         activity.onResume();
-        verify(mockAnimationHandler).startIconAnimation(anyInt());
+        verify(mockAnimator).resume();
+        verify(mockAnimator).startIcon(any(View.class));
     }
 
     public void testOnPause() throws Throwable {
@@ -424,12 +428,11 @@ public class CellBroadcastAlertDialogTest extends
         Looper.prepare();
         CellBroadcastAlertDialog activity = startActivity(intent, null, null);
 
-        CellBroadcastAlertDialog.AnimationHandler mockAnimationHandler = mock(
-                CellBroadcastAlertDialog.AnimationHandler.class);
-        activity.mAnimationHandler = mockAnimationHandler;
+        CellBroadcastAlertAnimator mockAnimator = mock(CellBroadcastAlertAnimator.class);
+        activity.mAnimator = mockAnimator;
 
         activity.onPause();
-        verify(mockAnimationHandler).stopIconAnimation();
+        verify(mockAnimator).pause();
     }
 
     public void testOnKeyDown() throws Throwable {
@@ -487,19 +490,19 @@ public class CellBroadcastAlertDialogTest extends
                 new KeyEvent(KeyEvent.ACTION_DOWN, KeyEvent.KEYCODE_FOCUS)));
     }
 
-    public void testPulsationHandlerStart() throws Throwable {
+    public void testPulsationStart() throws Throwable {
         int[] pattern = new int[] {0xFFFF0000, 100000, 500, 1000};
         doReturn(pattern).when(mContext.getResources()).getIntArray(
                 eq(com.android.cellbroadcastreceiver.R.array.default_pulsation_pattern));
 
         CellBroadcastAlertDialog activity = startActivity();
         waitForMs(100);
-        activity.mPulsationHandler.mLayout = mMockLinearLayout;
+        activity.mAnimator.mLayout = mMockLinearLayout;
 
-        assertEquals(0xFFFF0000, activity.mPulsationHandler.mHighlightColor);
-        assertEquals(100000, activity.mPulsationHandler.mDuration);
-        assertEquals(500, activity.mPulsationHandler.mOnInterval);
-        assertEquals(1000, activity.mPulsationHandler.mOffInterval);
+        assertEquals(0xFFFF0000, activity.mAnimator.mHighlightColor);
+        assertEquals(100000, activity.mAnimator.mDuration);
+        assertEquals(500, activity.mAnimator.mOnInterval);
+        assertEquals(1000, activity.mAnimator.mOffInterval);
 
         waitForMs(2000);
 
@@ -513,12 +516,12 @@ public class CellBroadcastAlertDialogTest extends
 
         CellBroadcastAlertDialog activity = startActivity();
         waitForMs(100);
-        activity.mPulsationHandler.mLayout = mMockLinearLayout;
+        activity.mAnimator.mLayout = mMockLinearLayout;
 
-        assertEquals(0xFFFF0000, activity.mPulsationHandler.mHighlightColor);
-        assertEquals(100000, activity.mPulsationHandler.mDuration);
-        assertEquals(500, activity.mPulsationHandler.mOnInterval);
-        assertEquals(1000, activity.mPulsationHandler.mOffInterval);
+        assertEquals(0xFFFF0000, activity.mAnimator.mHighlightColor);
+        assertEquals(100000, activity.mAnimator.mDuration);
+        assertEquals(500, activity.mAnimator.mOnInterval);
+        assertEquals(1000, activity.mAnimator.mOffInterval);
 
         pattern = new int[] {0xFFFFFFFF, 200000, 1000, 500};
         doReturn(pattern).when(mContext.getResources()).getIntArray(
@@ -536,15 +539,15 @@ public class CellBroadcastAlertDialogTest extends
 
         // Verify existing pulsation has been stopped
         verify(mMockLinearLayout, times(1)).setBackgroundColor(
-                eq(activity.mPulsationHandler.mBackgroundColor));
+                eq(activity.mAnimator.mBackgroundColor));
 
-        activity.mPulsationHandler.mLayout = mMockLinearLayout;
+        activity.mAnimator.mLayout = mMockLinearLayout;
 
         // Verify new parameters have been applied
-        assertEquals(0xFFFFFFFF, activity.mPulsationHandler.mHighlightColor);
-        assertEquals(200000, activity.mPulsationHandler.mDuration);
-        assertEquals(1000, activity.mPulsationHandler.mOnInterval);
-        assertEquals(500, activity.mPulsationHandler.mOffInterval);
+        assertEquals(0xFFFFFFFF, activity.mAnimator.mHighlightColor);
+        assertEquals(200000, activity.mAnimator.mDuration);
+        assertEquals(1000, activity.mAnimator.mOnInterval);
+        assertEquals(500, activity.mAnimator.mOffInterval);
 
         waitForMs(2000);
 
@@ -552,51 +555,39 @@ public class CellBroadcastAlertDialogTest extends
         verify(mMockLinearLayout, atLeastOnce()).setBackgroundColor(eq(0xFFFFFFFF));
     }
 
-    public void testPulsationHandlerHandleMessageAndStop() throws Throwable {
+    public void testPulsationUpdateAndStop() throws Throwable {
         CellBroadcastAlertDialog activity = startActivity();
         waitForMs(100);
 
-        int backgroundColor = activity.mPulsationHandler.mBackgroundColor;
-        activity.mPulsationHandler.mHighlightColor = 0xFFFF0000;
-        activity.mPulsationHandler.mLayout = mMockLinearLayout;
-        activity.mPulsationHandler.mOnInterval = 60000;
-        activity.mPulsationHandler.mOffInterval = 60000;
-        activity.mPulsationHandler.mDuration = 300000;
-
-        Message m = Message.obtain();
-        m.what = activity.mPulsationHandler.mCount.get();
-        activity.mPulsationHandler.handleMessage(m);
-
-        // assert that message count has gone up, and the background color is highlighted
-        assertEquals(m.what + 1, activity.mPulsationHandler.mCount.get());
-        assertTrue(activity.mPulsationHandler.mIsPulsationOn);
-        verify(mMockLinearLayout, times(1)).setBackgroundColor(eq(0xFFFF0000));
-
-        m = Message.obtain();
-        m.what = activity.mPulsationHandler.mCount.get();
-        activity.mPulsationHandler.handleMessage(m);
-
-        // assert that message count has gone up, and the background color is restored
-        assertEquals(m.what + 1, activity.mPulsationHandler.mCount.get());
-        assertFalse(activity.mPulsationHandler.mIsPulsationOn);
-        verify(mMockLinearLayout, times(1)).setBackgroundColor(eq(backgroundColor));
-
-        m = Message.obtain();
-        m.what = activity.mPulsationHandler.mCount.get();
-        activity.mPulsationHandler.handleMessage(m);
-
-        // assert that the background color is highlighted again
-        assertEquals(m.what + 1, activity.mPulsationHandler.mCount.get());
-        assertTrue(activity.mPulsationHandler.mIsPulsationOn);
-        verify(mMockLinearLayout, times(2)).setBackgroundColor(eq(0xFFFF0000));
-
-        activity.mPulsationHandler.stop();
-        waitForMs(100);
-
-        // assert that the background color is restored
-        assertEquals(m.what + 2, activity.mPulsationHandler.mCount.get());
-        assertFalse(activity.mPulsationHandler.mIsPulsationOn);
-        verify(mMockLinearLayout, times(2)).setBackgroundColor(eq(backgroundColor));
+        runTestOnUiThread(() -> {
+            CellBroadcastAlertAnimator animator = activity.mAnimator;
+            animator.startPulsation(mMockLinearLayout, new int[] {0xFFFF0000, 300000, 60000,
+                    60000});
+            int backgroundColor = animator.mBackgroundColor;
+            long startTime = animator.mPulsationStartTime;
+
+            // assert that the background color is highlighted after the off interval
+            animator.update(startTime + 60000);
+            assertTrue(animator.mIsPulsationOn);
+            verify(mMockLinearLayout, times(1)).setBackgroundColor(eq(0xFFFF0000));
+
+            // assert that the background color is restored after the on interval
+            animator.update(startTime + 120000);
+            assertFalse(animator.mIsPulsationOn);
+            verify(mMockLinearLayout, times(1)).setBackgroundColor(eq(backgroundColor));
+
+            // assert that the background color is highlighted again
+            animator.update(startTime + 180000);
+            assertTrue(animator.mIsPulsationOn);
+            verify(mMockLinearLayout, times(2)).setBackgroundColor(eq(0xFFFF0000));
+
+            animator.stopPulsation();
+
+            // assert that the background color is restored
+            assertFalse(animator.mIsPulsationOn);
+            assertNull(animator.mLayout);
+            verify(mMockLinearLayout, times(2)).setBackgroundColor(eq(backgroundColor));
+        });
     }
 
     private ArrayList<SmsCbMessage> getNewMessageList() throws Exception {
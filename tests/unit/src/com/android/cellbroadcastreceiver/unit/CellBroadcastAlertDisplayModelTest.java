@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.cellbroadcastreceiver.unit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.telephony.SmsCbMessage;
+
+import androidx.test.InstrumentationRegistry;
+
+import com.android.cellbroadcastreceiver.CellBroadcastAlertDisplayModel;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class CellBroadcastAlertDisplayModelTest {
+
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        CellBroadcastAlertDisplayModel.clearCache();
+    }
+
+    @After
+    public void tearDown() {
+        CellBroadcastAlertDisplayModel.clearCache();
+    }
+
+    @Test
+    public void testPreparedModelUsedByDialog() {
+        SmsCbMessage message = CellBroadcastAlertServiceTest.createMessage(1);
+        assertFalse(CellBroadcastAlertDisplayModel.isCached(message));
+
+        CellBroadcastAlertDisplayModel.prepare(mContext, message);
+        assertTrue(CellBroadcastAlertDisplayModel.isCached(message));
+
+        CellBroadcastAlertDisplayModel model = CellBroadcastAlertDisplayModel.get(mContext,
+                message);
+        assertSame(model, CellBroadcastAlertDisplayModel.get(mContext, message));
+        // a presidential alert is an emergency alert with the default channel ranges.
+        assertTrue(model.isEmergency());
+    }
+
+    @Test
+    public void testModelCreatedIfNotPrepared() {
+        SmsCbMessage message = CellBroadcastAlertServiceTest.createMessage(1);
+        CellBroadcastAlertDisplayModel model = CellBroadcastAlertDisplayModel.get(mContext,
+                message);
+        assertTrue(CellBroadcastAlertDisplayModel.isCached(message));
+        assertSame(model, CellBroadcastAlertDisplayModel.get(mContext, message));
+    }
+
+    @Test
+    public void testClearCache() {
+        SmsCbMessage message = CellBroadcastAlertServiceTest.createMessage(1);
+        CellBroadcastAlertDisplayModel model = CellBroadcastAlertDisplayModel.get(mContext,
+                message);
+
+        CellBroadcastAlertDisplayModel.clearCache();
+        assertFalse(CellBroadcastAlertDisplayModel.isCached(message));
+        assertNotSame(model, CellBroadcastAlertDisplayModel.get(mContext, message));
+    }
+
+    @Test
+    public void testCacheBounded() {
+        SmsCbMessage first = CellBroadcastAlertServiceTest.createMessage(0);
+        CellBroadcastAlertDisplayModel.prepare(mContext, first);
+        for (int i = 1; i <= CellBroadcastAlertDisplayModel.MAX_ENTRIES; i++) {
+            CellBroadcastAlertDisplayModel.prepare(mContext,
+                    CellBroadcastAlertServiceTest.createMessage(i));
+        }
+        assertFalse(CellBroadcastAlertDisplayModel.isCached(first));
+    }
+}
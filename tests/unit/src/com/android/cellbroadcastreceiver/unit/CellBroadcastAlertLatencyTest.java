@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.cellbroadcastreceiver.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Intent;
+
+import com.android.cellbroadcastreceiver.CellBroadcastAlertLatency;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+@RunWith(JUnit4.class)
+public class CellBroadcastAlertLatencyTest {
+
+    private static final long RECEIVE_TIME = 100000L;
+
+    @Test
+    public void testPercentiles() {
+        CellBroadcastAlertLatency latency = new CellBroadcastAlertLatency();
+        // 1ms to 100ms
+        for (int i = 1; i <= 100; i++) {
+            latency.onStage(CellBroadcastAlertLatency.STAGE_STORED, RECEIVE_TIME,
+                    RECEIVE_TIME + i);
+        }
+
+        assertEquals(100, latency.getCount(CellBroadcastAlertLatency.STAGE_STORED));
+        // the percentiles are the upper bounds of the buckets
+        assertEquals(60, latency.getPercentile(CellBroadcastAlertLatency.STAGE_STORED, 0.5));
+        assertEquals(100, latency.getPercentile(CellBroadcastAlertLatency.STAGE_STORED, 0.95));
+        assertEquals(100, latency.getPercentile(CellBroadcastAlertLatency.STAGE_STORED, 0.99));
+        assertEquals(-1, latency.getPercentile(CellBroadcastAlertLatency.STAGE_DIALOG_SHOWN, 0.5));
+    }
+
+    @Test
+    public void testUnknownReceiveTimeIsIgnored() {
+        CellBroadcastAlertLatency latency = new CellBroadcastAlertLatency();
+        latency.onStage(CellBroadcastAlertLatency.STAGE_STORED, -1, RECEIVE_TIME);
+        latency.onStage(CellBroadcastAlertLatency.STAGE_STORED, new Intent());
+        // the clock is monotonic, a later receive time is not from this boot
+        latency.onStage(CellBroadcastAlertLatency.STAGE_STORED, RECEIVE_TIME, RECEIVE_TIME - 1);
+
+        assertEquals(0, latency.getCount(CellBroadcastAlertLatency.STAGE_STORED));
+    }
+
+    @Test
+    public void testReceiveTimeIsCarriedOver() {
+        Intent received = new Intent();
+        CellBroadcastAlertLatency.setReceiveTime(received);
+        Intent next = new Intent();
+        CellBroadcastAlertLatency.copyReceiveTime(received, next);
+
+        assertTrue(CellBroadcastAlertLatency.getReceiveTime(received) > 0);
+        assertEquals(CellBroadcastAlertLatency.getReceiveTime(received),
+                CellBroadcastAlertLatency.getReceiveTime(next));
+
+        CellBroadcastAlertLatency latency = new CellBroadcastAlertLatency();
+        latency.onStage(CellBroadcastAlertLatency.STAGE_DIALOG_SHOWN, next);
+        assertEquals(1, latency.getCount(CellBroadcastAlertLatency.STAGE_DIALOG_SHOWN));
+    }
+
+    @Test
+    public void testDump() {
+        CellBroadcastAlertLatency latency = new CellBroadcastAlertLatency();
+        latency.onStage(CellBroadcastAlertLatency.STAGE_SERVICE_STARTED, RECEIVE_TIME,
+                RECEIVE_TIME + 7);
+
+        StringWriter stringWriter = new StringWriter();
+        latency.dump(new PrintWriter(stringWriter));
+        String dump = stringWriter.toString();
+
+        assertTrue(dump, dump.contains("serviceStarted: count=1 p50=7 p95=7 p99=7"));
+        assertTrue(dump, dump.contains("dialogShown: count=0"));
+    }
+}
@@ -61,6 +61,7 @@ import android.view.Display;
 
 import com.android.cellbroadcastreceiver.CellBroadcastAlertAudio;
 import com.android.cellbroadcastreceiver.CellBroadcastAlertService;
+import com.android.cellbroadcastreceiver.CellBroadcastOperationExecutor;
 import com.android.cellbroadcastreceiver.CellBroadcastSettings;
 import com.android.internal.telephony.gsm.SmsCbConstants;
 import com.android.modules.utils.build.SdkLevel;
@@ -73,6 +74,8 @@ import org.mockito.Mock;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 public class CellBroadcastAlertServiceTest extends
         CellBroadcastServiceTestCase<CellBroadcastAlertService> {
@@ -82,6 +85,8 @@ public class CellBroadcastAlertServiceTest extends
     @Mock
     SharedPreferences.Editor mMockEditor;
 
+    private static final long PROVIDER_BUSY_TIMEOUT_MS = 3000;
+
     public CellBroadcastAlertServiceTest() {
         super(CellBroadcastAlertService.class);
     }
@@ -210,6 +215,40 @@ public class CellBroadcastAlertServiceTest extends
         compareCellBroadCastMessage(cbm, cbmTest);
     }
 
+    // Test that emergency alerts are stored before they are shown, so they are kept in the
+    // history if the process dies afterwards
+    @InstrumentationTest
+    // This test has a module dependency, so it is disabled for OEM testing because it is not a true
+    // unit test
+    public void testEmergencyAlertShownAfterStoring() {
+        doReturn(new String[]{"0x1112:rat=gsm, emergency=true"})
+                .when(mResources).getStringArray(
+                        eq(com.android.cellbroadcastreceiver.R.array.etws_alerts_range_strings));
+        enablePreference(CellBroadcastSettings.KEY_ENABLE_ALERTS_MASTER_TOGGLE);
+
+        // hold the alert lane, which stores the alert
+        CountDownLatch storeBlocked = new CountDownLatch(1);
+        CellBroadcastOperationExecutor.getInstance().execute(
+                CellBroadcastOperationExecutor.LANE_ALERT, () -> {
+                    try {
+                        storeBlocked.await(PROVIDER_BUSY_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        // done waiting
+                    }
+                });
+        try {
+            sendMessage(987654321);
+            // the alert is not shown before it is stored
+            assertNull(mServiceIntentToVerify);
+        } finally {
+            storeBlocked.countDown();
+        }
+
+        waitForServiceIntent();
+        assertNotNull(mServiceIntentToVerify);
+        assertEquals(SHOW_NEW_ALERT_ACTION, mServiceIntentToVerify.getAction());
+    }
+
     // Test testHandleCellBroadcastIntentDomesticRoaming method
     @InstrumentationTest
     // This test has a module dependency, so it is disabled for OEM testing because it is not a true
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.cellbroadcastreceiver.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import android.content.res.AssetFileDescriptor;
+import android.content.res.Resources;
+import android.media.AudioAttributes;
+import android.media.MediaPlayer;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.InstrumentationRegistry;
+
+import com.android.cellbroadcastreceiver.CellBroadcastAlertAudio;
+import com.android.cellbroadcastreceiver.CellBroadcastAlertService.AlertType;
+import com.android.cellbroadcastreceiver.CellBroadcastAlertTonePool;
+import com.android.cellbroadcastreceiver.R;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class CellBroadcastAlertTonePoolTest {
+
+    private static final String TAG = "CBAlertTonePoolTest";
+
+    // tones of the alert types on a phone, where info and area alerts play the notification
+    // sound, and the test, mute and default alerts share the default tone.
+    private static final int PHONE_TONE_COUNT = 5;
+
+    private Resources mResources;
+    private CellBroadcastAlertTonePool mPool;
+
+    @Before
+    public void setUp() {
+        mResources = InstrumentationRegistry.getTargetContext().getResources();
+        mPool = new CellBroadcastAlertTonePool();
+    }
+
+    @After
+    public void tearDown() {
+        mPool.clear();
+    }
+
+    @Test
+    public void testPrewarmPreparesEachTone() {
+        mPool.prewarmNow(mResources, false, true);
+        assertEquals(PHONE_TONE_COUNT, mPool.size());
+
+        // a second warm-up keeps the prepared players.
+        mPool.prewarmNow(mResources, false, true);
+        assertEquals(PHONE_TONE_COUNT, mPool.size());
+    }
+
+    @Test
+    public void testAcquireMatchesAudioAttributes() {
+        mPool.prewarmNow(mResources, false, true);
+        AudioAttributes withoutOverride = CellBroadcastAlertAudio.getAlertAudioAttributes(
+                AlertType.ETWS_EARTHQUAKE, false);
+        assertNull(mPool.acquire(mResources, R.raw.etws_earthquake, withoutOverride));
+
+        AudioAttributes withOverride = CellBroadcastAlertAudio.getAlertAudioAttributes(
+                AlertType.ETWS_EARTHQUAKE, true);
+        MediaPlayer player = mPool.acquire(mResources, R.raw.etws_earthquake, withOverride);
+        assertNotNull(player);
+        player.release();
+    }
+
+    @Test
+    public void testClearReleasesPlayers() {
+        mPool.prewarmNow(mResources, false, true);
+        mPool.clear();
+        assertEquals(0, mPool.size());
+    }
+
+    /**
+     * Compares the time to start the tone of each alert type, from a new player as before, and
+     * from a prepared player. The tones play muted.
+     */
+    @Test
+    public void testToneStartLatency() throws Exception {
+        mPool.prewarmNow(mResources, false, true);
+        for (AlertType alertType : AlertType.values()) {
+            int toneRes = CellBroadcastAlertTonePool.getToneResource(alertType, false);
+            if (toneRes == 0) {
+                continue;
+            }
+            AudioAttributes attributes = CellBroadcastAlertAudio.getAlertAudioAttributes(
+                    alertType, true);
+
+            long start = SystemClock.elapsedRealtimeNanos();
+            MediaPlayer cold = new MediaPlayer();
+            try (AssetFileDescriptor afd = mResources.openRawResourceFd(toneRes)) {
+                cold.setDataSource(afd.getFileDescriptor(), afd.getStartOffset(),
+                        afd.getLength());
+            }
+            cold.setAudioAttributes(attributes);
+            cold.prepare();
+            long coldMicros = startMuted(cold, start);
+
+            start = SystemClock.elapsedRealtimeNanos();
+            MediaPlayer warm = mPool.acquire(mResources, toneRes, attributes);
+            assertNotNull(alertType.toString(), warm);
+            long warmMicros = startMuted(warm, start);
+
+            Log.i(TAG, alertType + ": tone start latency cold=" + coldMicros + "us warm="
+                    + warmMicros + "us");
+            // the replacement of the taken player is prepared in the background.
+            mPool.prewarmNow(mResources, false, true);
+        }
+    }
+
+    private static long startMuted(MediaPlayer player, long startNanos) {
+        player.setVolume(0f, 0f);
+        player.start();
+        long micros = (SystemClock.elapsedRealtimeNanos() - startNanos) / 1000;
+        player.stop();
+        player.release();
+        return micros;
+    }
+}
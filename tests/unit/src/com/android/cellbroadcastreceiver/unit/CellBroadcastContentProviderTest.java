@@ -21,7 +21,17 @@ import static com.google.common.truth.Truth.assertThat;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
+import static com.android.cellbroadcastreceiver.CellBroadcastContentProvider.CHANGES_PARAM_SINCE;
+import static com.android.cellbroadcastreceiver.CellBroadcastContentProvider.CHANGES_URI;
+import static com.android.cellbroadcastreceiver.CellBroadcastContentProvider.SEARCH_PARAM_CATEGORY;
+import static com.android.cellbroadcastreceiver.CellBroadcastContentProvider.SEARCH_PARAM_LIMIT;
+import static com.android.cellbroadcastreceiver.CellBroadcastContentProvider.SEARCH_PARAM_OFFSET;
+import static com.android.cellbroadcastreceiver.CellBroadcastContentProvider.SEARCH_PARAM_QUERY;
+import static com.android.cellbroadcastreceiver.CellBroadcastContentProvider.SEARCH_PARAM_SEVERITY;
+import static com.android.cellbroadcastreceiver.CellBroadcastContentProvider.SEARCH_URI;
+
 import android.content.ContentProvider;
+import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.pm.PackageManager;
@@ -39,12 +49,23 @@ import android.telephony.SubscriptionManager;
 import android.test.mock.MockContentResolver;
 import android.test.mock.MockContext;
 import android.util.Log;
+
+import androidx.test.InstrumentationRegistry;
+
+import com.android.cellbroadcastreceiver.CellBroadcastContentProvider;
 import com.android.cellbroadcastreceiver.CellBroadcastDatabaseHelper;
+import com.android.cellbroadcastreceiver.CellBroadcastStagedInserts;
 import junit.framework.TestCase;
 import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
 public class CellBroadcastContentProviderTest extends TestCase {
     private static final String TAG = CellBroadcastContentProviderTest.class.getSimpleName();
 
@@ -176,6 +197,56 @@ public class CellBroadcastContentProviderTest extends TestCase {
         assertThat(cursor.getCount()).isEqualTo(1);
     }
 
+    @Test
+    @InstrumentationTest
+    // This test requires the content provider from the cell broadcast module, so it is disabled for
+    // OEM testing because it is not a true unit test
+    public void testDeleteBroadcasts() {
+        // Insert three cell broadcast message
+        mCellBroadcastProviderTestable.insertNewBroadcast(fakeSmsCbMessage());
+        mCellBroadcastProviderTestable.insertNewBroadcast(fakeSmsCbMessage());
+        mCellBroadcastProviderTestable.insertNewBroadcast(fakeSmsCbMessage());
+        // delete two messages at once
+        assertThat(mCellBroadcastProviderTestable.deleteBroadcasts(new long[] {1, 3})).isTrue();
+        Cursor cursor = mContentResolver.query(CONTENT_URI,
+                CellBroadcastDatabaseHelper.QUERY_COLUMNS, null, null, null);
+        assertThat(cursor.getCount()).isEqualTo(1);
+        cursor.moveToFirst();
+        assertThat(cursor.getLong(cursor.getColumnIndexOrThrow(CellBroadcasts._ID))).isEqualTo(2);
+        // nothing left to delete
+        assertThat(mCellBroadcastProviderTestable.deleteBroadcasts(new long[] {1, 3})).isFalse();
+    }
+
+    @Test
+    @InstrumentationTest
+    public void testMarkBroadcastsRead() {
+        // new broadcasts are inserted without a read state
+        mCellBroadcastProviderTestable.insertNewBroadcast(fakeSmsCbMessage());
+        mCellBroadcastProviderTestable.insertNewBroadcast(fakeSmsCbMessage());
+        mCellBroadcastProviderTestable.insertNewBroadcast(fakeSmsCbMessage());
+        ContentValues cv = new ContentValues();
+        cv.put(CellBroadcasts.MESSAGE_READ, 0);
+        mCellBroadcastProviderTestable.mOpenHelper.getWritableDatabase().update(
+                CellBroadcastDatabaseHelper.TABLE_NAME, cv, CellBroadcasts._ID + "=3", null);
+        // mark two messages read at once
+        assertThat(mCellBroadcastProviderTestable.markBroadcastsRead(new long[] {1, 3})).isTrue();
+        assertThat(getReadRowIds()).containsExactly(1L, 3L);
+        // nothing left to mark read
+        assertThat(mCellBroadcastProviderTestable.markBroadcastsRead(new long[] {1, 3})).isFalse();
+    }
+
+    @Test
+    @InstrumentationTest
+    public void testMarkAllBroadcastsRead() {
+        mCellBroadcastProviderTestable.insertNewBroadcast(fakeSmsCbMessage());
+        mCellBroadcastProviderTestable.insertNewBroadcast(fakeSmsCbMessage());
+        assertThat(getReadRowIds()).isEmpty();
+        assertThat(mCellBroadcastProviderTestable.markAllBroadcastsRead()).isTrue();
+        assertThat(getReadRowIds()).containsExactly(1L, 2L);
+        // nothing left to mark read
+        assertThat(mCellBroadcastProviderTestable.markAllBroadcastsRead()).isFalse();
+    }
+
     @Test
     @InstrumentationTest
     public void testMarkSmsSyncPending() {
@@ -269,6 +340,233 @@ public class CellBroadcastContentProviderTest extends TestCase {
                 .isEqualTo(CMAS_CERTAINTY);
     }
 
+    @Test
+    @InstrumentationTest
+    // This test requires the content provider from the cell broadcast module, so it is disabled for
+    // OEM testing because it is not a true unit test
+    public void testSearch() {
+        mCellBroadcastProviderTestable.insertNewBroadcast(fakeSmsCbMessage());
+        mCellBroadcastProviderTestable.insertNewBroadcast(fakeSmsCbMessage("Flood warning"));
+
+        // keywords match word prefixes of the message body
+        Cursor cursor = mContentResolver.query(SEARCH_URI.buildUpon()
+                .appendQueryParameter(SEARCH_PARAM_QUERY, "amb xxxx").build(),
+                CellBroadcastDatabaseHelper.QUERY_COLUMNS, null, null, null);
+        assertThat(cursor.getCount()).isEqualTo(1);
+        cursor.moveToNext();
+        assertThat(cursor.getString(cursor.getColumnIndexOrThrow(CellBroadcasts.MESSAGE_BODY)))
+                .isEqualTo(MESSAGE_BODY);
+
+        cursor = mContentResolver.query(SEARCH_URI.buildUpon()
+                .appendQueryParameter(SEARCH_PARAM_QUERY, "\"tornado").build(),
+                CellBroadcastDatabaseHelper.QUERY_COLUMNS, null, null, null);
+        assertThat(cursor.getCount()).isEqualTo(0);
+
+        // filters apply without keywords
+        cursor = mContentResolver.query(SEARCH_URI.buildUpon()
+                .appendQueryParameter(SEARCH_PARAM_CATEGORY, Integer.toString(SERVICE_CATEGORY))
+                .appendQueryParameter(SEARCH_PARAM_SEVERITY, Integer.toString(CMAS_SEVERITY))
+                .build(), CellBroadcastDatabaseHelper.QUERY_COLUMNS, null, null, null);
+        assertThat(cursor.getCount()).isEqualTo(2);
+
+        cursor = mContentResolver.query(SEARCH_URI.buildUpon()
+                .appendQueryParameter(SEARCH_PARAM_CATEGORY, Integer.toString(SERVICE_CATEGORY + 1))
+                .build(), CellBroadcastDatabaseHelper.QUERY_COLUMNS, null, null, null);
+        assertThat(cursor.getCount()).isEqualTo(0);
+
+        // results are paged
+        cursor = mContentResolver.query(SEARCH_URI.buildUpon()
+                .appendQueryParameter(SEARCH_PARAM_LIMIT, "1")
+                .appendQueryParameter(SEARCH_PARAM_OFFSET, "1").build(),
+                CellBroadcastDatabaseHelper.QUERY_COLUMNS, null, null, null);
+        assertThat(cursor.getCount()).isEqualTo(1);
+    }
+
+    @Test
+    @InstrumentationTest
+    // This test requires the content provider from the cell broadcast module, so it is disabled for
+    // OEM testing because it is not a true unit test
+    public void testQueryChanges() {
+        mCellBroadcastProviderTestable.insertNewBroadcast(fakeSmsCbMessage());
+        mCellBroadcastProviderTestable.insertNewBroadcast(fakeSmsCbMessage());
+
+        Cursor cursor = mContentResolver.query(CHANGES_URI, null, null, null, null);
+        assertThat(cursor.getCount()).isEqualTo(2);
+        assertThat(cursor.getExtras().getBoolean(
+                CellBroadcastContentProvider.EXTRA_CHANGES_TRUNCATED)).isFalse();
+        cursor.moveToLast();
+        long firstId = cursor.getLong(cursor.getColumnIndexOrThrow(CellBroadcasts._ID)) - 1;
+        long lastSeq = cursor.getLong(cursor.getColumnIndexOrThrow(
+                CellBroadcastDatabaseHelper.CHANGE_SEQUENCE));
+        assertThat(cursor.getInt(cursor.getColumnIndexOrThrow(
+                CellBroadcastDatabaseHelper.CHANGE_TYPE))).isEqualTo(ContentResolver.NOTIFY_INSERT);
+
+        // only the rows changed after the given sequence number are returned
+        mCellBroadcastProviderTestable.deleteBroadcast(firstId);
+        cursor = mContentResolver.query(CHANGES_URI.buildUpon().appendQueryParameter(
+                CHANGES_PARAM_SINCE, Long.toString(lastSeq)).build(), null, null, null, null);
+        assertThat(cursor.getCount()).isEqualTo(1);
+        cursor.moveToFirst();
+        assertThat(cursor.getLong(cursor.getColumnIndexOrThrow(CellBroadcasts._ID)))
+                .isEqualTo(firstId);
+        assertThat(cursor.getInt(cursor.getColumnIndexOrThrow(
+                CellBroadcastDatabaseHelper.CHANGE_TYPE))).isEqualTo(ContentResolver.NOTIFY_DELETE);
+    }
+
+    @Test
+    @InstrumentationTest
+    // This test requires the content provider from the cell broadcast module, so it is disabled for
+    // OEM testing because it is not a true unit test
+    public void testInsertStagedWhileDatabaseInitializes() throws Exception {
+        CellBroadcastContentProviderTestable provider =
+                new CellBroadcastContentProviderTestable(false);
+        ContentResolver resolver = new MockContextWithProvider(provider).getContentResolver();
+        try {
+            // the alerts are staged in memory until the database is ready
+            assertThat(provider.insertNewBroadcast(fakeSmsCbMessage())).isTrue();
+            assertThat(provider.insertNewBroadcast(fakeSmsCbMessage())).isTrue();
+            assertThat(getRowCount(provider)).isEqualTo(0);
+
+            // queries wait for the initialization to finish
+            CompletableFuture<Integer> queryCount = CompletableFuture.supplyAsync(() -> {
+                try (Cursor cursor = resolver.query(CONTENT_URI,
+                        CellBroadcastDatabaseHelper.QUERY_COLUMNS, null, null, null)) {
+                    return cursor.getCount();
+                }
+            });
+            Thread.sleep(100);
+            assertThat(queryCount.isDone()).isFalse();
+
+            // the staged alerts are flushed when the database is ready
+            provider.finishDatabaseInitialization();
+            assertThat(queryCount.get(5, TimeUnit.SECONDS)).isEqualTo(2);
+            assertThat(getRowCount(provider)).isEqualTo(2);
+
+            // and new alerts are written directly
+            provider.insertNewBroadcast(fakeSmsCbMessage());
+            assertThat(getRowCount(provider)).isEqualTo(3);
+        } finally {
+            provider.closeDatabase();
+        }
+    }
+
+    @Test
+    @InstrumentationTest
+    // This test requires the content provider from the cell broadcast module, so it is disabled for
+    // OEM testing because it is not a true unit test
+    public void testStagedInsertsKeptIfProcessDies() throws Exception {
+        File file = new File(InstrumentationRegistry.getTargetContext().getCacheDir(),
+                "test_staged_broadcasts");
+        file.delete();
+        CellBroadcastContentProviderTestable provider =
+                new CellBroadcastContentProviderTestable(false);
+        new MockContextWithProvider(provider);
+        provider.mStagedInsertsFile = new CellBroadcastStagedInserts(file);
+        CellBroadcastContentProviderTestable restarted =
+                new CellBroadcastContentProviderTestable(false);
+        new MockContextWithProvider(restarted);
+        restarted.mStagedInsertsFile = new CellBroadcastStagedInserts(file);
+        try {
+            assertThat(provider.insertNewBroadcast(fakeSmsCbMessage())).isTrue();
+            assertThat(provider.insertNewBroadcast(fakeSmsCbMessage("Flood warning"))).isTrue();
+            assertThat(file.exists()).isTrue();
+
+            // the process died before the database was ready, the next one writes the alerts.
+            restarted.insertNewBroadcast(fakeSmsCbMessage("Tsunami warning"));
+            restarted.finishDatabaseInitialization();
+            assertThat(getRowCount(restarted)).isEqualTo(3);
+            assertThat(file.exists()).isFalse();
+        } finally {
+            provider.closeDatabase();
+            restarted.closeDatabase();
+            file.delete();
+        }
+    }
+
+    @Test
+    @InstrumentationTest
+    // This test requires the content provider from the cell broadcast module, so it is disabled for
+    // OEM testing because it is not a true unit test
+    public void testStagedInsertsWrittenOnce() throws Exception {
+        File file = new File(InstrumentationRegistry.getTargetContext().getCacheDir(),
+                "test_staged_broadcasts");
+        file.delete();
+        CellBroadcastContentProviderTestable provider =
+                new CellBroadcastContentProviderTestable(false);
+        new MockContextWithProvider(provider);
+        provider.mStagedInsertsFile = new CellBroadcastStagedInserts(file);
+        try {
+            provider.insertNewBroadcast(fakeSmsCbMessage());
+            List<ContentValues> staged = provider.mStagedInsertsFile.read();
+            provider.finishDatabaseInitialization();
+            assertThat(getRowCount(provider)).isEqualTo(1);
+
+            // the process died after writing the alert, before the file was updated.
+            provider.mStagedInsertsFile.write(staged);
+            CellBroadcastContentProviderTestable restarted =
+                    new CellBroadcastContentProviderTestable(false) {
+                        @Override
+                        public boolean onCreate() {
+                            mOpenHelper = provider.mOpenHelper;
+                            return true;
+                        }
+                    };
+            new MockContextWithProvider(restarted);
+            restarted.mStagedInsertsFile = new CellBroadcastStagedInserts(file);
+            restarted.finishDatabaseInitialization();
+            assertThat(getRowCount(provider)).isEqualTo(1);
+        } finally {
+            provider.closeDatabase();
+            file.delete();
+        }
+    }
+
+    @Test
+    @InstrumentationTest
+    // This test requires the content provider from the cell broadcast module, so it is disabled for
+    // OEM testing because it is not a true unit test
+    public void testMainThreadQueryDoesNotWaitForDatabase() throws Exception {
+        CellBroadcastContentProviderTestable provider =
+                new CellBroadcastContentProviderTestable(false);
+        ContentResolver resolver = new MockContextWithProvider(provider).getContentResolver();
+        try {
+            provider.insertNewBroadcast(fakeSmsCbMessage());
+            CompletableFuture<Void> ready = provider.getDatabaseReadyFuture();
+            assertThat(ready.isDone()).isFalse();
+
+            // the main thread gets no rows instead of waiting for the initialization
+            int[] count = new int[1];
+            InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+                try (Cursor cursor = resolver.query(CONTENT_URI,
+                        CellBroadcastDatabaseHelper.QUERY_COLUMNS, null, null, null)) {
+                    count[0] = cursor.getCount();
+                }
+            });
+            assertThat(count[0]).isEqualTo(0);
+
+            provider.finishDatabaseInitialization();
+            assertThat(ready.isDone()).isTrue();
+            assertThat(provider.getDatabaseReadyFuture().isDone()).isTrue();
+            InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+                try (Cursor cursor = resolver.query(CONTENT_URI,
+                        CellBroadcastDatabaseHelper.QUERY_COLUMNS, null, null, null)) {
+                    count[0] = cursor.getCount();
+                }
+            });
+            assertThat(count[0]).isEqualTo(1);
+        } finally {
+            provider.closeDatabase();
+        }
+    }
+
+    @Test
+    public void testBuildSearchMatch() {
+        assertThat(CellBroadcastContentProvider.buildSearchMatch(null)).isNull();
+        assertThat(CellBroadcastContentProvider.buildSearchMatch("  ")).isNull();
+        assertThat(CellBroadcastContentProvider.buildSearchMatch("amber \"alert"))
+                .isEqualTo("\"amber*\" \"alert*\"");
+    }
+
     /**
      * This is used to give the CellBroadcastContentProviderTest a mocked context which takes a
      * CellBroadcastProvider and attaches it to the ContentResolver.
@@ -320,10 +618,33 @@ public class CellBroadcastContentProviderTest extends TestCase {
         }
     }
 
+    private static int getRowCount(CellBroadcastContentProviderTestable provider) {
+        try (Cursor cursor = provider.mOpenHelper.getReadableDatabase().query(
+                CellBroadcastDatabaseHelper.TABLE_NAME, null, null, null, null, null, null)) {
+            return cursor.getCount();
+        }
+    }
+
+    private List<Long> getReadRowIds() {
+        List<Long> rowIds = new ArrayList<>();
+        try (Cursor cursor = mContentResolver.query(CONTENT_URI,
+                CellBroadcastDatabaseHelper.QUERY_COLUMNS, CellBroadcasts.MESSAGE_READ + "=1",
+                null, null)) {
+            while (cursor.moveToNext()) {
+                rowIds.add(cursor.getLong(cursor.getColumnIndexOrThrow(CellBroadcasts._ID)));
+            }
+        }
+        return rowIds;
+    }
+
     private SmsCbMessage fakeSmsCbMessage() {
+        return fakeSmsCbMessage(MESSAGE_BODY);
+    }
+
+    private SmsCbMessage fakeSmsCbMessage(String body) {
         return new SmsCbMessage(MESSAGE_FORMAT, GEO_SCOPE, SERIAL_NUMBER,
                 new SmsCbLocation(PLMN, LAC, CID), SERVICE_CATEGORY, LANGUAGE_CODE, 0 ,
-                MESSAGE_BODY, MESSAGE_PRIORITY, new SmsCbEtwsInfo(ETWS_WARNING_TYPE, false,
+                body, MESSAGE_PRIORITY, new SmsCbEtwsInfo(ETWS_WARNING_TYPE, false,
                 false, false, null),
                 new SmsCbCmasInfo(CMAS_MESSAGE_CLASS, CMAS_CATEGORY, CMAS_RESPONSE_TYPE,
                         CMAS_SEVERITY, CMAS_URGENCY, CMAS_CERTAINTY), 0, null,
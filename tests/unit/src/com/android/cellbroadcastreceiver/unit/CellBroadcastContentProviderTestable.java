@@ -29,7 +29,16 @@ import com.android.cellbroadcastreceiver.CellBroadcastDatabaseHelper;
 public class CellBroadcastContentProviderTestable extends CellBroadcastContentProvider {
     private static final String TAG = CellBroadcastContentProviderTestable.class.getSimpleName();
 
+    // Whether the in-memory database is ready right away, or only once
+    // finishDatabaseInitialization is called.
+    private final boolean mDatabaseReadyOnCreate;
+
     public CellBroadcastContentProviderTestable() {
+        this(true);
+    }
+
+    public CellBroadcastContentProviderTestable(boolean databaseReadyOnCreate) {
+        mDatabaseReadyOnCreate = databaseReadyOnCreate;
     }
 
     @Override
@@ -44,14 +53,34 @@ public class CellBroadcastContentProviderTestable extends CellBroadcastContentPr
         mOpenHelper.close();
     }
 
+    /**
+     * Finish the initialization of a database which was not ready on creation, as the
+     * initialization thread of the provider does.
+     */
+    public void finishDatabaseInitialization() {
+        onDatabaseInitialized(mOpenHelper.getWritableDatabase());
+    }
+
+    @Override
+    protected boolean isDatabaseReady() {
+        // The in-memory database is always ready in testing, unless initialized slowly
+        return mDatabaseReadyOnCreate || super.isDatabaseReady();
+    }
+
     @Override
     protected SQLiteDatabase awaitInitAndGetWritableDatabase() {
+        if (!mDatabaseReadyOnCreate) {
+            return super.awaitInitAndGetWritableDatabase();
+        }
         // Do not wait on latch in testing
         return mOpenHelper.getWritableDatabase();
     }
 
     @Override
     protected SQLiteDatabase awaitInitAndGetReadableDatabase() {
+        if (!mDatabaseReadyOnCreate) {
+            return super.awaitInitAndGetReadableDatabase();
+        }
         // Do not wait on latch in testing
         return mOpenHelper.getReadableDatabase();
     }
@@ -68,6 +97,9 @@ public class CellBroadcastContentProviderTestable extends CellBroadcastContentPr
             Log.d(TAG, "IN MEMORY DB CREATED");
             db.execSQL(CellBroadcastDatabaseHelper.getStringForCellBroadcastTableCreation(
                     CellBroadcastDatabaseHelper.TABLE_NAME));
+            CellBroadcastDatabaseHelper.createSearchIndex(db);
+            CellBroadcastDatabaseHelper.createChangeLog(db);
+            CellBroadcastDatabaseHelper.createView(db);
         }
 
         @Override
@@ -22,11 +22,18 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 import android.content.ContentProviderClient;
 import android.content.ContentResolver;
+import android.content.ContentValues;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.database.Cursor;
@@ -48,8 +55,10 @@ import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
 
 import java.util.Arrays;
+import java.util.List;
 
 @RunWith(JUnit4.class)
 public class CellBroadcastDatabaseHelperTest {
@@ -128,6 +137,137 @@ public class CellBroadcastDatabaseHelperTest {
                 CellBroadcastDatabaseHelper.SMS_SYNC_PENDING));
     }
 
+    @Test
+    public void databaseHelperOnUpgrade_V14() {
+        Log.d(TAG, "databaseHelperOnUpgrade_V14");
+        SQLiteDatabase db = mInMemoryDbHelper.getWritableDatabase();
+        ContentValues cv = new ContentValues();
+        cv.put(Telephony.CellBroadcasts.MESSAGE_BODY, "Tsunami warning");
+        db.insert(CellBroadcastDatabaseHelper.TABLE_NAME, null, cv);
+        // version 11 -> 14 trigger in onUpgrade
+        mHelper.onUpgrade(db, 11, 14);
+
+        // messages stored before the upgrade are indexed
+        String searchQuery = "SELECT docid FROM " + CellBroadcastDatabaseHelper.SEARCH_TABLE_NAME
+                + " WHERE " + CellBroadcastDatabaseHelper.SEARCH_TABLE_NAME + " MATCH ?";
+        Cursor cursor = db.rawQuery(searchQuery, new String[] {"tsunami"});
+        assertEquals(1, cursor.getCount());
+
+        // and the triggers keep the index in sync afterwards
+        db.delete(CellBroadcastDatabaseHelper.TABLE_NAME, null, null);
+        cursor = db.rawQuery(searchQuery, new String[] {"tsunami"});
+        assertEquals(0, cursor.getCount());
+    }
+
+    @Test
+    public void databaseHelperOnUpgrade_V15() {
+        Log.d(TAG, "databaseHelperOnUpgrade_V15");
+        SQLiteDatabase db = mInMemoryDbHelper.getWritableDatabase();
+        // version 11 -> 15 trigger in onUpgrade
+        mHelper.onUpgrade(db, 11, 15);
+
+        // changes are logged after the upgrade
+        ContentValues cv = new ContentValues();
+        cv.put(Telephony.CellBroadcasts.MESSAGE_BODY, "Tsunami warning");
+        long rowId = db.insert(CellBroadcastDatabaseHelper.TABLE_NAME, null, cv);
+        Cursor cursor = db.query(CellBroadcastDatabaseHelper.CHANGES_TABLE_NAME, null, null, null,
+                null, null, null);
+        assertEquals(1, cursor.getCount());
+        cursor.moveToFirst();
+        assertEquals(rowId, cursor.getLong(cursor.getColumnIndexOrThrow(
+                CellBroadcastDatabaseHelper.CHANGE_ROW_ID)));
+        assertEquals(ContentResolver.NOTIFY_INSERT, cursor.getInt(cursor.getColumnIndexOrThrow(
+                CellBroadcastDatabaseHelper.CHANGE_TYPE)));
+    }
+
+    @Test
+    public void databaseHelperOnUpgrade_V16() {
+        Log.d(TAG, "databaseHelperOnUpgrade_V16");
+        SQLiteDatabase db = mInMemoryDbHelper.getWritableDatabase();
+        ContentValues cv = new ContentValues();
+        cv.put(Telephony.CellBroadcasts.MESSAGE_BODY, "Tsunami warning");
+        cv.put(Telephony.CellBroadcasts.CMAS_MESSAGE_CLASS,
+                SmsCbCmasInfo.CMAS_CLASS_EXTREME_THREAT);
+        cv.put(Telephony.CellBroadcasts.CMAS_CATEGORY, SmsCbCmasInfo.CMAS_CATEGORY_UNKNOWN);
+        cv.put(Telephony.CellBroadcasts.CMAS_SEVERITY, SmsCbCmasInfo.CMAS_SEVERITY_SEVERE);
+        long rowId = db.insert(CellBroadcastDatabaseHelper.TABLE_NAME, null, cv);
+        // version 11 -> 16 trigger in onUpgrade
+        mHelper.onUpgrade(db, 11, 16);
+
+        // the warning attributes are stored packed
+        Cursor cursor = db.query(CellBroadcastDatabaseHelper.TABLE_NAME,
+                null, null, null, null, null, null);
+        List<String> columns = Arrays.asList(cursor.getColumnNames());
+        assertTrue(columns.contains(CellBroadcastDatabaseHelper.WARNING_ATTRIBUTES));
+        assertFalse(columns.contains(CellBroadcasts.CMAS_MESSAGE_CLASS));
+
+        // and read through the view with the unpacked columns
+        cursor = db.query(CellBroadcastDatabaseHelper.VIEW_NAME,
+                CellBroadcastDatabaseHelper.QUERY_COLUMNS, null, null, null, null, null);
+        assertEquals(1, cursor.getCount());
+        cursor.moveToFirst();
+        assertEquals(rowId, cursor.getLong(cursor.getColumnIndexOrThrow(CellBroadcasts._ID)));
+        assertTrue(cursor.isNull(cursor.getColumnIndexOrThrow(
+                CellBroadcasts.ETWS_WARNING_TYPE)));
+        assertEquals(SmsCbCmasInfo.CMAS_CLASS_EXTREME_THREAT, cursor.getInt(
+                cursor.getColumnIndexOrThrow(CellBroadcasts.CMAS_MESSAGE_CLASS)));
+        assertEquals(SmsCbCmasInfo.CMAS_CATEGORY_UNKNOWN, cursor.getInt(
+                cursor.getColumnIndexOrThrow(CellBroadcasts.CMAS_CATEGORY)));
+        assertEquals(SmsCbCmasInfo.CMAS_SEVERITY_SEVERE, cursor.getInt(
+                cursor.getColumnIndexOrThrow(CellBroadcasts.CMAS_SEVERITY)));
+        // unset attributes of CMAS messages are read as unknown
+        assertEquals(SmsCbCmasInfo.CMAS_URGENCY_UNKNOWN, cursor.getInt(
+                cursor.getColumnIndexOrThrow(CellBroadcasts.CMAS_URGENCY)));
+
+        // the search index and the change log are kept for the rebuilt table
+        cursor = db.rawQuery("SELECT docid FROM " + CellBroadcastDatabaseHelper.SEARCH_TABLE_NAME
+                + " WHERE " + CellBroadcastDatabaseHelper.SEARCH_TABLE_NAME + " MATCH ?",
+                new String[] {"tsunami"});
+        assertEquals(1, cursor.getCount());
+        db.delete(CellBroadcastDatabaseHelper.TABLE_NAME, null, null);
+        cursor = db.query(CellBroadcastDatabaseHelper.CHANGES_TABLE_NAME, null, null, null,
+                null, null, null);
+        assertEquals(1, cursor.getCount());
+
+        // row IDs are not reused
+        cv = new ContentValues();
+        cv.put(Telephony.CellBroadcasts.MESSAGE_BODY, "Test message");
+        assertTrue(db.insert(CellBroadcastDatabaseHelper.TABLE_NAME, null, cv) > rowId);
+    }
+
+    @Test
+    public void databaseHelperOnUpgrade_legacyProvider() {
+        CellBroadcastDatabaseHelper legacyHelper = new CellBroadcastDatabaseHelper(mContext, true);
+        SQLiteDatabase db = mInMemoryDbHelper.getWritableDatabase();
+        ContentValues cv = new ContentValues();
+        cv.put(Telephony.CellBroadcasts.CMAS_MESSAGE_CLASS,
+                SmsCbCmasInfo.CMAS_CLASS_EXTREME_THREAT);
+        db.insert(CellBroadcastDatabaseHelper.TABLE_NAME, null, cv);
+        // version 11 -> 13 trigger in onUpgrade
+        legacyHelper.onUpgrade(db, 11, 13);
+
+        // the legacy provider keeps the unpacked columns for the data migration
+        Cursor cursor = db.query(CellBroadcastDatabaseHelper.TABLE_NAME,
+                CellBroadcastDatabaseHelper.QUERY_COLUMNS, null, null, null, null, null);
+        assertEquals(1, cursor.getCount());
+        cursor.moveToFirst();
+        assertEquals(SmsCbCmasInfo.CMAS_CLASS_EXTREME_THREAT, cursor.getInt(
+                cursor.getColumnIndexOrThrow(CellBroadcasts.CMAS_MESSAGE_CLASS)));
+        // and has no tables of later versions
+        cursor = db.rawQuery("SELECT name FROM sqlite_master WHERE name=?",
+                new String[] {CellBroadcastDatabaseHelper.SEARCH_TABLE_NAME});
+        assertEquals(0, cursor.getCount());
+    }
+
+    @Test
+    public void databaseHelperKeepsV13Database() {
+        // the database of version 13 is not upgraded in place, so it can still be opened after
+        // a rollback.
+        assertEquals("cell_broadcasts_v16.db", mHelper.getDatabaseName());
+        CellBroadcastDatabaseHelper legacyHelper = new CellBroadcastDatabaseHelper(mContext, true);
+        assertEquals("cell_broadcasts_v13.db", legacyHelper.getDatabaseName());
+    }
+
     @Test
     public void testMigration() throws Exception {
         Log.d(TAG, "dataBaseHelper_testMigration");
@@ -162,16 +302,147 @@ public class CellBroadcastDatabaseHelperTest {
         SQLiteDatabase db = mInMemoryDbHelper.getWritableDatabase();
         // version 11 -> 12 trigger in onUpgrade
         mHelper.onUpgrade(db, 11, 12);
-        Cursor cursor = db.query(CellBroadcastDatabaseHelper.TABLE_NAME,
+        Cursor cursor = db.query(CellBroadcastDatabaseHelper.VIEW_NAME,
                 CellBroadcastDatabaseHelper.QUERY_COLUMNS, null, null, null, null, null);
         assertEquals(0, cursor.getCount());
 
         mHelper.migrateFromLegacyIfNeeded(db);
         // verify insertion from legacy provider is succeed
         verify(mContentProviderClient).query(any(), any(), any(), any(), any());
-        cursor = db.query(CellBroadcastDatabaseHelper.TABLE_NAME,
+        cursor = db.query(CellBroadcastDatabaseHelper.VIEW_NAME,
                 CellBroadcastDatabaseHelper.QUERY_COLUMNS, null, null, null, null, null);
         assertEquals(1, cursor.getCount());
+        cursor.moveToFirst();
+        assertEquals(SmsCbCmasInfo.CMAS_CLASS_PRESIDENTIAL_LEVEL_ALERT, cursor.getInt(
+                cursor.getColumnIndexOrThrow(CellBroadcasts.CMAS_MESSAGE_CLASS)));
+    }
+
+    @Test
+    public void testMigrationInterruptedIsNotMarkedComplete() throws Exception {
+        mHelper.setOverrideContentProviderClient(mContentProviderClient);
+        doThrow(new IllegalStateException("legacy provider died")).when(mContentProviderClient)
+                .query(any(), any(), any(), any(), any());
+        SQLiteDatabase db = mInMemoryDbHelper.getWritableDatabase();
+        mHelper.onUpgrade(db, 11, 16);
+
+        mHelper.migrateFromLegacyIfNeeded(db);
+
+        // the migration must be retried from the checkpoint on the next trigger
+        verify(mEditor, never()).putBoolean(
+                eq(CellBroadcastDatabaseHelper.KEY_LEGACY_DATA_MIGRATION), eq(true));
+        verify(mEditor).putInt(anyString(), eq(1));
+    }
+
+    @Test
+    public void testMigrationRetriedAfterRepeatedFailures() throws Exception {
+        mHelper.setOverrideContentProviderClient(mContentProviderClient);
+        doThrow(new IllegalStateException("legacy provider died")).when(mContentProviderClient)
+                .query(any(), any(), any(), any(), any());
+        doReturn(5).when(mSharedPreferences).getInt(anyString(), anyInt());
+        SQLiteDatabase db = mInMemoryDbHelper.getWritableDatabase();
+        mHelper.onUpgrade(db, 11, 16);
+
+        mHelper.migrateFromLegacyIfNeeded(db);
+
+        // the legacy history is not given up, however often the migration failed
+        verify(mEditor, never()).putBoolean(
+                eq(CellBroadcastDatabaseHelper.KEY_LEGACY_DATA_MIGRATION), eq(true));
+        verify(mEditor).putInt(anyString(), eq(6));
+    }
+
+    @Test
+    public void testMigrationInPages() throws Exception {
+        mHelper.setOverrideContentProviderClient(mContentProviderClient);
+        int rows = CellBroadcastDatabaseHelper.LEGACY_MIGRATION_PAGE_SIZE + 10;
+        doAnswer(invocation -> queryLegacyPage(invocation, rows)).when(mContentProviderClient)
+                .query(any(), any(), any(), any(), any());
+        SQLiteDatabase db = mInMemoryDbHelper.getWritableDatabase();
+        mHelper.onUpgrade(db, 11, 16);
+
+        mHelper.migrateFromLegacyIfNeeded(db);
+
+        verify(mContentProviderClient, times(2)).query(any(), any(), any(), any(), any());
+        assertEquals(rows, getRowCount(db));
+        verify(mEditor).putBoolean(
+                eq(CellBroadcastDatabaseHelper.KEY_LEGACY_DATA_MIGRATION), eq(true));
+    }
+
+    @Test
+    public void testMigrationResumesFromCheckpoint() throws Exception {
+        mHelper.setOverrideContentProviderClient(mContentProviderClient);
+        int rows = CellBroadcastDatabaseHelper.LEGACY_MIGRATION_PAGE_SIZE + 10;
+        // the legacy provider dies after the first page
+        doAnswer(invocation -> {
+            if (!"-1".equals(((String[]) invocation.getArgument(3))[0])) {
+                throw new IllegalStateException("legacy provider died");
+            }
+            return queryLegacyPage(invocation, rows);
+        }).when(mContentProviderClient).query(any(), any(), any(), any(), any());
+        SQLiteDatabase db = mInMemoryDbHelper.getWritableDatabase();
+        mHelper.onUpgrade(db, 11, 16);
+
+        mHelper.migrateFromLegacyIfNeeded(db);
+        assertEquals(CellBroadcastDatabaseHelper.LEGACY_MIGRATION_PAGE_SIZE, getRowCount(db));
+        verify(mEditor, never()).putBoolean(
+                eq(CellBroadcastDatabaseHelper.KEY_LEGACY_DATA_MIGRATION), eq(true));
+
+        // the retry continues after the committed page, without duplicating its rows
+        clearInvocations(mContentProviderClient);
+        doAnswer(invocation -> queryLegacyPage(invocation, rows)).when(mContentProviderClient)
+                .query(any(), any(), any(), any(), any());
+        mHelper.migrateFromLegacyIfNeeded(db);
+
+        verify(mContentProviderClient, never()).query(any(), any(), any(),
+                eq(new String[] {"-1"}), any());
+        verify(mContentProviderClient).query(any(), any(), any(), eq(new String[] {
+                Integer.toString(CellBroadcastDatabaseHelper.LEGACY_MIGRATION_PAGE_SIZE)}),
+                any());
+        assertEquals(rows, getRowCount(db));
+        verify(mEditor).putBoolean(
+                eq(CellBroadcastDatabaseHelper.KEY_LEGACY_DATA_MIGRATION), eq(true));
+    }
+
+    /**
+     * Answer a legacy provider query for the page after the row ID of the selection, with legacy
+     * row IDs from 1 to {@code rows}.
+     */
+    private static Cursor queryLegacyPage(InvocationOnMock invocation, int rows) {
+        long lastId = Long.parseLong(((String[]) invocation.getArgument(3))[0]);
+        MatrixCursor mc = new MatrixCursor(CellBroadcastDatabaseHelper.QUERY_COLUMNS);
+        for (long id = lastId + 1; id <= rows
+                && mc.getCount() < CellBroadcastDatabaseHelper.LEGACY_MIGRATION_PAGE_SIZE; id++) {
+            mc.addRow(new Object[]{
+                    id,             // _ID
+                    0,              // SLOT_INDEX
+                    0,              // GEOGRAPHICAL_SCOPE
+                    "311480",       // PLMN
+                    0,              // LAC
+                    0,              // CID
+                    1234,           // SERIAL_NUMBER
+                    4379,           // SERVICE CATEGORY
+                    "en",           // LANGUAGE_CODE
+                    "Test Message " + id, // MESSAGE_BODY
+                    id,             // DELIVERY_TIME
+                    true,           // MESSAGE_READ
+                    1,              // MESSAGE_FORMAT
+                    3,              // MESSAGE_PRIORITY
+                    0,              // ETWS_WARNING_TYPE
+                    SmsCbCmasInfo.CMAS_CLASS_PRESIDENTIAL_LEVEL_ALERT, // CMAS_MESSAGE_CLASS
+                    0,              // CMAS_CATEGORY
+                    0,              // CMAS_RESPONSE_TYPE
+                    0,              // CMAS_SEVERITY
+                    0,              // CMAS_URGENCY
+                    0,              // CMAS_CERTAINTY
+            });
+        }
+        return mc;
+    }
+
+    private static int getRowCount(SQLiteDatabase db) {
+        try (Cursor cursor = db.query(CellBroadcastDatabaseHelper.TABLE_NAME, null, null, null,
+                null, null, null)) {
+            return cursor.getCount();
+        }
     }
 
     private static class InMemoryCellBroadcastProviderDbHelperV11 extends SQLiteOpenHelper {
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.cellbroadcastreceiver.unit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.telephony.SmsCbLocation;
+import android.telephony.SmsCbMessage;
+
+import com.android.cellbroadcastreceiver.CellBroadcastDuplicateCache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+
+@RunWith(JUnit4.class)
+public class CellBroadcastDuplicateCacheTest {
+
+    private static final String PLMN = "310260";
+    private static final int LAC = 1234;
+    private static final int CID = 5678;
+    private static final int CATEGORY = 4370;
+    private static final long WINDOW = 60000L;
+    private static final long NOW = 1000000L;
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws Exception {
+        mFile = File.createTempFile("duplicate_alerts", null);
+        mFile.delete();
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    @Test
+    public void testRepeatIsDuplicate() {
+        CellBroadcastDuplicateCache cache = new CellBroadcastDuplicateCache(null, WINDOW);
+        SmsCbMessage message = createMessage(SmsCbMessage.GEOGRAPHICAL_SCOPE_PLMN_WIDE, 1, "body",
+                CID);
+
+        assertFalse(cache.isDuplicate(message, NOW));
+        cache.add(message, NOW);
+        assertTrue(cache.isDuplicate(message, NOW + 1));
+        assertFalse(cache.isDuplicate(createMessage(SmsCbMessage.GEOGRAPHICAL_SCOPE_PLMN_WIDE, 2,
+                "body", CID), NOW + 1));
+        assertFalse(cache.isDuplicate(createMessage(SmsCbMessage.GEOGRAPHICAL_SCOPE_PLMN_WIDE, 1,
+                "updated body", CID), NOW + 1));
+    }
+
+    @Test
+    public void testRepeatAfterWindowIsNotDuplicate() {
+        CellBroadcastDuplicateCache cache = new CellBroadcastDuplicateCache(null, WINDOW);
+        SmsCbMessage message = createMessage(SmsCbMessage.GEOGRAPHICAL_SCOPE_PLMN_WIDE, 1, "body",
+                CID);
+
+        cache.add(message, NOW);
+        assertTrue(cache.isDuplicate(message, NOW + WINDOW));
+        assertFalse(cache.isDuplicate(message, NOW + WINDOW + 1));
+        // the clock was set back
+        assertFalse(cache.isDuplicate(message, NOW - 1));
+    }
+
+    @Test
+    public void testGeographicalScope() {
+        CellBroadcastDuplicateCache cache = new CellBroadcastDuplicateCache(null, WINDOW);
+        cache.add(createMessage(SmsCbMessage.GEOGRAPHICAL_SCOPE_CELL_WIDE, 1, "body", CID), NOW);
+        cache.add(createMessage(SmsCbMessage.GEOGRAPHICAL_SCOPE_PLMN_WIDE, 2, "body", CID), NOW);
+
+        // a cell wide alert in another cell is a new alert
+        assertTrue(cache.isDuplicate(
+                createMessage(SmsCbMessage.GEOGRAPHICAL_SCOPE_CELL_WIDE, 1, "body", CID), NOW));
+        assertFalse(cache.isDuplicate(
+                createMessage(SmsCbMessage.GEOGRAPHICAL_SCOPE_CELL_WIDE, 1, "body", CID + 1), NOW));
+        // a PLMN wide alert in another cell is a repeat
+        assertTrue(cache.isDuplicate(
+                createMessage(SmsCbMessage.GEOGRAPHICAL_SCOPE_PLMN_WIDE, 2, "body", CID + 1), NOW));
+    }
+
+    @Test
+    public void testSaveAndLoad() {
+        long now = System.currentTimeMillis();
+        SmsCbMessage message = createMessage(SmsCbMessage.GEOGRAPHICAL_SCOPE_PLMN_WIDE, 1, "body",
+                CID);
+        CellBroadcastDuplicateCache cache = new CellBroadcastDuplicateCache(mFile, WINDOW);
+        cache.add(message, now);
+        cache.save();
+
+        CellBroadcastDuplicateCache loaded = new CellBroadcastDuplicateCache(mFile, WINDOW);
+        assertTrue(loaded.isDuplicate(message, now));
+
+        loaded.clear();
+        assertFalse(mFile.exists());
+        assertFalse(new CellBroadcastDuplicateCache(mFile, WINDOW).isDuplicate(message, now));
+    }
+
+    @Test
+    public void testCapacityIsBounded() {
+        CellBroadcastDuplicateCache cache = new CellBroadcastDuplicateCache(null, WINDOW);
+        int count = CellBroadcastDuplicateCache.CAPACITY * 4;
+        for (int serial = 0; serial < count; serial++) {
+            cache.add(createMessage(SmsCbMessage.GEOGRAPHICAL_SCOPE_PLMN_WIDE, serial, "body",
+                    CID), NOW + serial);
+        }
+
+        // the latest alert is always remembered, older ones are forgotten first
+        assertTrue(cache.isDuplicate(createMessage(SmsCbMessage.GEOGRAPHICAL_SCOPE_PLMN_WIDE,
+                count - 1, "body", CID), NOW + count));
+    }
+
+    private static SmsCbMessage createMessage(int geoScope, int serial, String body, int cid) {
+        return new SmsCbMessage(1, geoScope, serial, new SmsCbLocation(PLMN, LAC, cid), CATEGORY,
+                "en", body, SmsCbMessage.MESSAGE_PRIORITY_EMERGENCY, null, null, 0, 1);
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.cellbroadcastreceiver.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.provider.Telephony;
+
+import com.android.cellbroadcastreceiver.CellBroadcastDatabaseHelper;
+import com.android.cellbroadcastreceiver.CellBroadcastHistoryMerger;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class CellBroadcastHistoryMergerTest {
+
+    private static final String PLMN = "310260";
+    private static final int CATEGORY = 4370;
+
+    @Test
+    public void testMergeSortsAndRemovesDuplicates() {
+        MatrixCursor cbs = new MatrixCursor(CellBroadcastHistoryMerger.CBS_COLUMNS);
+        addCbsRow(cbs, 10, 1, 3000L);
+        addCbsRow(cbs, 11, 2, 1000L);
+        MatrixCursor local = new MatrixCursor(CellBroadcastDatabaseHelper.QUERY_COLUMNS);
+        addLocalRow(local, 5, 3, 2000L, true);
+        // same message as the first row of cell broadcast service
+        addLocalRow(local, 4, 1, 3000L, false);
+
+        Cursor merged = CellBroadcastHistoryMerger.merge(cbs, local, 10);
+
+        assertEquals(3, merged.getCount());
+        merged.moveToPosition(0);
+        assertEquals(10, getLong(merged, Telephony.CellBroadcasts._ID));
+        assertEquals(3000L, getLong(merged, Telephony.CellBroadcasts.RECEIVED_TIME));
+        // the read state is taken from the local duplicate
+        assertEquals(0, getLong(merged, Telephony.CellBroadcasts.MESSAGE_READ));
+        merged.moveToPosition(1);
+        // rows only stored locally have negated row IDs
+        assertEquals(-5, getLong(merged, Telephony.CellBroadcasts._ID));
+        assertEquals(2000L, getLong(merged, Telephony.CellBroadcasts.RECEIVED_TIME));
+        assertEquals(1, getLong(merged, Telephony.CellBroadcasts.MESSAGE_DISPLAYED));
+        merged.moveToPosition(2);
+        assertEquals(11, getLong(merged, Telephony.CellBroadcasts._ID));
+        assertEquals(1, getLong(merged, Telephony.CellBroadcasts.MESSAGE_READ));
+    }
+
+    @Test
+    public void testMergeStopsAtLimit() {
+        MatrixCursor cbs = new MatrixCursor(CellBroadcastHistoryMerger.CBS_COLUMNS);
+        addCbsRow(cbs, 10, 1, 3000L);
+        addCbsRow(cbs, 11, 2, 1000L);
+        MatrixCursor local = new MatrixCursor(CellBroadcastDatabaseHelper.QUERY_COLUMNS);
+        addLocalRow(local, 5, 3, 2000L, true);
+
+        Cursor merged = CellBroadcastHistoryMerger.merge(cbs, local, 2);
+
+        assertEquals(2, merged.getCount());
+        merged.moveToLast();
+        assertEquals(-5, getLong(merged, Telephony.CellBroadcasts._ID));
+    }
+
+    @Test
+    public void testMergeWithoutLocalHistory() {
+        MatrixCursor cbs = new MatrixCursor(CellBroadcastHistoryMerger.CBS_COLUMNS);
+        addCbsRow(cbs, 10, 1, 3000L);
+
+        Cursor merged = CellBroadcastHistoryMerger.merge(cbs, null, 10);
+
+        assertEquals(1, merged.getCount());
+        merged.moveToFirst();
+        assertEquals(1, getLong(merged, Telephony.CellBroadcasts.MESSAGE_READ));
+    }
+
+    @Test
+    public void testPagerContinuesAfterLastMergedRow() {
+        CellBroadcastHistoryMerger.Pager pager = new CellBroadcastHistoryMerger.Pager();
+        MatrixCursor cbs = new MatrixCursor(CellBroadcastHistoryMerger.CBS_COLUMNS);
+        addCbsRow(cbs, 10, 1, 3000L);
+        addCbsRow(cbs, 11, 2, 2000L);
+        MatrixCursor local = new MatrixCursor(CellBroadcastDatabaseHelper.QUERY_COLUMNS);
+        addLocalRow(local, 4, 1, 3000L, true);
+        addLocalRow(local, 5, 2, 2000L, true);
+
+        pager.mergePage(cbs, local, 2);
+        assertEquals(2, pager.getCount());
+        assertFalse(pager.isComplete());
+        Cursor firstPage = pager.getRows();
+
+        // the next page starts at the time of the last merged row, which is merged already.
+        cbs = new MatrixCursor(CellBroadcastHistoryMerger.CBS_COLUMNS);
+        addCbsRow(cbs, 11, 2, 2000L);
+        addCbsRow(cbs, 12, 3, 2000L);
+        local = new MatrixCursor(CellBroadcastDatabaseHelper.QUERY_COLUMNS);
+        addLocalRow(local, 5, 2, 2000L, true);
+        addLocalRow(local, 6, 4, 1000L, true);
+
+        pager.mergePage(cbs, local, 2);
+        assertEquals(4, pager.getCount());
+        assertFalse(pager.isComplete());
+        Cursor rows = pager.getRows();
+        rows.moveToPosition(2);
+        assertEquals(12, getLong(rows, Telephony.CellBroadcasts._ID));
+        rows.moveToPosition(3);
+        assertEquals(-6, getLong(rows, Telephony.CellBroadcasts._ID));
+        rows.moveToPosition(1);
+        assertEquals(11, getLong(rows, Telephony.CellBroadcasts._ID));
+        // the rows delivered before are not changed by the next page.
+        assertEquals(2, firstPage.getCount());
+        assertTrue(firstPage.moveToLast());
+        assertEquals(11, getLong(firstPage, Telephony.CellBroadcasts._ID));
+
+        local = new MatrixCursor(CellBroadcastDatabaseHelper.QUERY_COLUMNS);
+        addLocalRow(local, 6, 4, 1000L, true);
+
+        pager.mergePage(null, local, 2);
+        assertEquals(4, pager.getCount());
+        assertTrue(pager.isComplete());
+    }
+
+    private static long getLong(Cursor cursor, String column) {
+        return cursor.getLong(cursor.getColumnIndexOrThrow(column));
+    }
+
+    private static void addCbsRow(MatrixCursor cursor, long id, int serial, long time) {
+        MatrixCursor.RowBuilder row = cursor.newRow();
+        row.add(Telephony.CellBroadcasts._ID, id);
+        row.add(Telephony.CellBroadcasts.SERIAL_NUMBER, serial);
+        row.add(Telephony.CellBroadcasts.SERVICE_CATEGORY, CATEGORY);
+        row.add(Telephony.CellBroadcasts.PLMN, PLMN);
+        row.add(Telephony.CellBroadcasts.MESSAGE_BODY, "body " + serial);
+        row.add(Telephony.CellBroadcasts.RECEIVED_TIME, time);
+        row.add(Telephony.CellBroadcasts.MESSAGE_DISPLAYED, 0);
+    }
+
+    private static void addLocalRow(MatrixCursor cursor, long id, int serial, long time,
+            boolean read) {
+        MatrixCursor.RowBuilder row = cursor.newRow();
+        row.add(Telephony.CellBroadcasts._ID, id);
+        row.add(Telephony.CellBroadcasts.SERIAL_NUMBER, serial);
+        row.add(Telephony.CellBroadcasts.SERVICE_CATEGORY, CATEGORY);
+        row.add(Telephony.CellBroadcasts.PLMN, PLMN);
+        row.add(Telephony.CellBroadcasts.MESSAGE_BODY, "body " + serial);
+        row.add(Telephony.CellBroadcasts.DELIVERY_TIME, time);
+        row.add(Telephony.CellBroadcasts.MESSAGE_READ, read ? 1 : 0);
+    }
+}
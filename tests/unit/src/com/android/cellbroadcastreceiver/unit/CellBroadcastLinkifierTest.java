@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.cellbroadcastreceiver.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import android.os.SystemClock;
+import android.text.Spanned;
+import android.text.style.URLSpan;
+import android.widget.TextView;
+
+import androidx.test.InstrumentationRegistry;
+
+import com.android.cellbroadcastreceiver.CellBroadcastLinkifier;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class CellBroadcastLinkifierTest {
+
+    private static final String TEXT = "Visit https://www.android.com for details";
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private CellBroadcastLinkifier mLinkifier;
+
+    @Before
+    public void setUp() {
+        mLinkifier = new CellBroadcastLinkifier();
+    }
+
+    @Test
+    public void testGenerateLinks() {
+        Spanned linked = CellBroadcastLinkifier.generateLinks(TEXT,
+                CellBroadcastLinkifier.LINK_METHOD_LEGACY_LINKIFY, null);
+        assertEquals(TEXT, linked.toString());
+        assertEquals(1, getUrlCount(linked));
+    }
+
+    @Test
+    public void testPlainTextShownFirst() {
+        TextView textView = createTextView();
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            mLinkifier.setText(textView, TEXT, CellBroadcastLinkifier.LINK_METHOD_LEGACY_LINKIFY);
+            assertEquals(TEXT, textView.getText().toString());
+            assertEquals(0, getUrlCount(textView.getText()));
+        });
+
+        waitForCached(TEXT);
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+        assertEquals(1, getUrlCount(textView.getText()));
+    }
+
+    @Test
+    public void testCachedLinksShownRightAway() {
+        TextView textView = createTextView();
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() ->
+                mLinkifier.setText(textView, TEXT,
+                        CellBroadcastLinkifier.LINK_METHOD_LEGACY_LINKIFY));
+        waitForCached(TEXT);
+
+        TextView otherTextView = createTextView();
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            mLinkifier.setText(otherTextView, TEXT,
+                    CellBroadcastLinkifier.LINK_METHOD_LEGACY_LINKIFY);
+            assertEquals(1, getUrlCount(otherTextView.getText()));
+        });
+    }
+
+    @Test
+    public void testNoLinks() {
+        TextView textView = createTextView();
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() ->
+                mLinkifier.setText(textView, TEXT, CellBroadcastLinkifier.LINK_METHOD_NONE));
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+        assertEquals(TEXT, textView.getText().toString());
+        assertEquals(0, getUrlCount(textView.getText()));
+        assertNull(mLinkifier.getCached(TEXT, CellBroadcastLinkifier.LINK_METHOD_NONE));
+    }
+
+    @Test
+    public void testCacheBounded() {
+        TextView textView = createTextView();
+        for (int i = 0; i <= CellBroadcastLinkifier.MAX_ENTRIES; i++) {
+            String text = TEXT + " " + i;
+            InstrumentationRegistry.getInstrumentation().runOnMainSync(() ->
+                    mLinkifier.setText(textView, text,
+                            CellBroadcastLinkifier.LINK_METHOD_LEGACY_LINKIFY));
+            waitForCached(text);
+        }
+        assertNull(mLinkifier.getCached(TEXT + " 0",
+                CellBroadcastLinkifier.LINK_METHOD_LEGACY_LINKIFY));
+        assertNotNull(mLinkifier.getCached(TEXT + " " + CellBroadcastLinkifier.MAX_ENTRIES,
+                CellBroadcastLinkifier.LINK_METHOD_LEGACY_LINKIFY));
+    }
+
+    @Test
+    public void testDroppedTextLinkedWhenShownAgain() {
+        int count = CellBroadcastLinkifier.MAX_ENTRIES / 2;
+        TextView[] textViews = new TextView[count];
+        for (int i = 0; i < count; i++) {
+            textViews[i] = createTextView();
+        }
+        // queue more texts than the linkifier keeps, so the oldest ones are dropped.
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            for (int i = 0; i < count; i++) {
+                mLinkifier.setText(textViews[i], TEXT + " " + i,
+                        CellBroadcastLinkifier.LINK_METHOD_LEGACY_LINKIFY);
+            }
+        });
+
+        for (int i = 0; i < count; i++) {
+            String text = TEXT + " " + i;
+            TextView textView = textViews[i];
+            InstrumentationRegistry.getInstrumentation().runOnMainSync(() ->
+                    mLinkifier.setText(textView, text,
+                            CellBroadcastLinkifier.LINK_METHOD_LEGACY_LINKIFY));
+            waitForCached(text);
+            InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+            assertEquals(1, getUrlCount(textView.getText()));
+        }
+    }
+
+    private static TextView createTextView() {
+        TextView[] textView = new TextView[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() ->
+                textView[0] = new TextView(InstrumentationRegistry.getTargetContext()));
+        return textView[0];
+    }
+
+    private void waitForCached(String text) {
+        long deadline = SystemClock.elapsedRealtime() + TIMEOUT_MILLIS;
+        while (mLinkifier.getCached(text, CellBroadcastLinkifier.LINK_METHOD_LEGACY_LINKIFY)
+                == null && SystemClock.elapsedRealtime() < deadline) {
+            SystemClock.sleep(10);
+        }
+        assertNotNull(mLinkifier.getCached(text,
+                CellBroadcastLinkifier.LINK_METHOD_LEGACY_LINKIFY));
+    }
+
+    private static int getUrlCount(CharSequence text) {
+        if (!(text instanceof Spanned)) {
+            return 0;
+        }
+        return ((Spanned) text).getSpans(0, text.length(), URLSpan.class).length;
+    }
+}
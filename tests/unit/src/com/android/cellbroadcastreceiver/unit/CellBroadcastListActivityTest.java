@@ -67,7 +67,6 @@ import android.os.Handler;
 import android.os.Looper;
 import android.os.UserManager;
 import android.provider.Telephony;
-import android.telephony.SmsCbMessage;
 import android.telephony.SubscriptionInfo;
 import android.telephony.SubscriptionManager;
 import android.view.ActionMode;
@@ -84,8 +83,10 @@ import androidx.test.filters.SdkSuppress;
 import androidx.test.platform.app.InstrumentationRegistry;
 
 import com.android.cellbroadcastreceiver.CellBroadcastCursorAdapter;
+import com.android.cellbroadcastreceiver.CellBroadcastDatabaseHelper;
 import com.android.cellbroadcastreceiver.CellBroadcastListActivity;
 import com.android.cellbroadcastreceiver.CellBroadcastListItem;
+import com.android.cellbroadcastreceiver.CellBroadcastListItemModel;
 import com.android.cellbroadcastreceiver.R;
 import com.android.internal.view.menu.ContextMenuBuilder;
 import com.android.settingslib.collapsingtoolbar.CollapsingToolbarBaseActivity;
@@ -381,6 +382,30 @@ public class CellBroadcastListActivityTest extends
         verify(mockCursor, atLeastOnce()).getColumnIndex(eq(Telephony.CellBroadcasts._ID));
     }
 
+    public void testOnActionItemClickedDeleteInMergedHistory() throws Throwable {
+        CellBroadcastListActivity activity = startActivity();
+        assertNotNull(activity.mListFragment);
+        getMockCursor(activity, 0, 0L);
+
+        // the merged history mixes row IDs of both sources, so it is not deleted from.
+        Field fieldCurrentLoaderId =
+                CellBroadcastListActivity.CursorLoaderListFragment.class.getDeclaredField(
+                        "mCurrentLoaderId");
+        fieldCurrentLoaderId.setAccessible(true);
+        fieldCurrentLoaderId.setInt(activity.mListFragment, LOADER_HISTORY_FROM_CBS);
+
+        MenuItem mockMenuItem = mock(MenuItem.class);
+        doReturn(R.id.action_delete).when(mockMenuItem).getItemId();
+        activity.mListFragment.getListView().setItemChecked(0, true);
+
+        ActionMode mode = mock(ActionMode.class);
+        assertFalse(activity.mListFragment.getMultiChoiceModeListener()
+                .onActionItemClicked(mode, mockMenuItem));
+        verify(mode, never()).finish();
+        assertNull(activity.mListFragment.getFragmentManager().findFragmentByTag(
+                CellBroadcastListActivity.CursorLoaderListFragment.KEY_DELETE_DIALOG));
+    }
+
     public void testOnActionTitleOnMultiSelect() throws Throwable {
         CellBroadcastListActivity activity = startActivity();
         assertNotNull(activity.mListFragment);
@@ -567,8 +592,8 @@ public class CellBroadcastListActivityTest extends
         verify(mode, times(2)).finish();
         verify(mockAlertDialogBuilder).show();
 
-        // getColumnIndex is called 13 times within CellBroadcastCursorAdapter.createFromCursor
-        verify(mockCursor, times(13)).getColumnIndex(mColumnCaptor.capture());
+        // getColumnIndex is called 14 times within CellBroadcastCursorAdapter.createFromCursor
+        verify(mockCursor, times(14)).getColumnIndex(mColumnCaptor.capture());
         List<String> columns = mColumnCaptor.getAllValues();
         assertTrue(contains(columns, PLMN));
         assertTrue(contains(columns, LAC));
@@ -580,6 +605,7 @@ public class CellBroadcastListActivityTest extends
         assertTrue(contains(columns, CMAS_SEVERITY));
         assertTrue(contains(columns, CMAS_URGENCY));
         assertTrue(contains(columns, CMAS_CERTAINTY));
+        assertTrue(contains(columns, CellBroadcastDatabaseHelper.WARNING_ATTRIBUTES));
         assertTrue(contains(columns, DELIVERY_TIME));
         assertTrue(contains(columns, DATA_CODING_SCHEME));
         assertTrue(contains(columns, MAXIMUM_WAIT_TIME));
@@ -605,8 +631,8 @@ public class CellBroadcastListActivityTest extends
 
         verify(mockAlertDialogBuilder).show();
 
-        // getColumnIndex is called 13 times within CellBroadcastCursorAdapter.createFromCursor
-        verify(mockCursor, times(13)).getColumnIndex(mColumnCaptor.capture());
+        // getColumnIndex is called 14 times within CellBroadcastCursorAdapter.createFromCursor
+        verify(mockCursor, times(14)).getColumnIndex(mColumnCaptor.capture());
         List<String> columns = mColumnCaptor.getAllValues();
         assertTrue(contains(columns, PLMN));
         assertTrue(contains(columns, LAC));
@@ -618,6 +644,7 @@ public class CellBroadcastListActivityTest extends
         assertTrue(contains(columns, CMAS_SEVERITY));
         assertTrue(contains(columns, CMAS_URGENCY));
         assertTrue(contains(columns, CMAS_CERTAINTY));
+        assertTrue(contains(columns, CellBroadcastDatabaseHelper.WARNING_ATTRIBUTES));
         assertTrue(contains(columns, DELIVERY_TIME));
         assertTrue(contains(columns, DATA_CODING_SCHEME));
         assertTrue(contains(columns, MAXIMUM_WAIT_TIME));
@@ -736,9 +763,27 @@ public class CellBroadcastListActivityTest extends
 
         adapter.bindView(mockListItemView, mContext, data);
 
-        ArgumentCaptor<SmsCbMessage> messageCaptor = ArgumentCaptor.forClass(SmsCbMessage.class);
-        verify(mockListItemView).bind(messageCaptor.capture());
-        assertEquals("testAlert", messageCaptor.getValue().getMessageBody());
+        ArgumentCaptor<CellBroadcastListItemModel> modelCaptor =
+                ArgumentCaptor.forClass(CellBroadcastListItemModel.class);
+        verify(mockListItemView).bind(modelCaptor.capture());
+        assertEquals("testAlert", modelCaptor.getValue().getMessage().getMessageBody());
+    }
+
+    public void testCursorAdaptorBindViewReusesDecodedRow() {
+        CellBroadcastListItem mockListItemView = mock(CellBroadcastListItem.class);
+        MatrixCursor data = makeTestCursor();
+        data.moveToFirst();
+        CellBroadcastCursorAdapter adapter = new CellBroadcastCursorAdapter(mContext,
+                mock(ListView.class));
+
+        adapter.bindView(mockListItemView, mContext, data);
+        adapter.bindView(mockListItemView, mContext, data);
+
+        // the row is decoded once and the same model is bound again
+        ArgumentCaptor<CellBroadcastListItemModel> modelCaptor =
+                ArgumentCaptor.forClass(CellBroadcastListItemModel.class);
+        verify(mockListItemView, times(2)).bind(modelCaptor.capture());
+        assertSame(modelCaptor.getAllValues().get(0), modelCaptor.getAllValues().get(1));
     }
 
     public void testCursorAdaptorBindView() {
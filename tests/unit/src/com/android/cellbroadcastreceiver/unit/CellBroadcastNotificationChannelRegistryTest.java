@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.cellbroadcastreceiver.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.LocaleList;
+
+import androidx.test.InstrumentationRegistry;
+
+import com.android.cellbroadcastreceiver.CellBroadcastNotificationChannelRegistry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class CellBroadcastNotificationChannelRegistryTest {
+
+    private Context mContext;
+    private CellBroadcastNotificationChannelRegistry mRegistry;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        mRegistry = new CellBroadcastNotificationChannelRegistry();
+    }
+
+    @Test
+    public void testCreatedOncePerFingerprint() {
+        String fingerprint = CellBroadcastNotificationChannelRegistry.getFingerprint(mContext);
+        assertTrue(mRegistry.shouldCreate(fingerprint));
+        mRegistry.onCreated(fingerprint);
+
+        assertFalse(mRegistry.shouldCreate(fingerprint));
+        assertEquals(fingerprint,
+                CellBroadcastNotificationChannelRegistry.getFingerprint(mContext));
+    }
+
+    @Test
+    public void testCreatedAgainWhenLocaleChanges() {
+        String japanese = getFingerprint("ja-JP");
+        String french = getFingerprint("fr-FR");
+        assertNotEquals(japanese, french);
+
+        mRegistry.onCreated(japanese);
+        assertFalse(mRegistry.shouldCreate(japanese));
+        assertTrue(mRegistry.shouldCreate(french));
+    }
+
+    @Test
+    public void testClear() {
+        String fingerprint = CellBroadcastNotificationChannelRegistry.getFingerprint(mContext);
+        mRegistry.onCreated(fingerprint);
+        mRegistry.clear();
+        assertTrue(mRegistry.shouldCreate(fingerprint));
+    }
+
+    private String getFingerprint(String languageTags) {
+        Configuration config = new Configuration(mContext.getResources().getConfiguration());
+        config.setLocales(LocaleList.forLanguageTags(languageTags));
+        return CellBroadcastNotificationChannelRegistry.getFingerprint(
+                mContext.createConfigurationContext(config));
+    }
+}
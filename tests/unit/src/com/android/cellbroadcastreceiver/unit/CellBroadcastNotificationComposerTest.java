@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.cellbroadcastreceiver.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import android.app.NotificationManager;
+import android.content.Context;
+import android.telephony.SmsCbMessage;
+
+import androidx.test.InstrumentationRegistry;
+
+import com.android.cellbroadcastreceiver.CellBroadcastNotificationComposer;
+import com.android.cellbroadcastreceiver.CellBroadcastNotificationComposer.Content;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class CellBroadcastNotificationComposerTest {
+
+    private static final int NOTIFICATION_ID = 1;
+    private static final String CHANNEL = "broadcastMessagesNonEmergency";
+
+    private Context mContext;
+    private CellBroadcastNotificationComposer mComposer;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        mComposer = new CellBroadcastNotificationComposer();
+    }
+
+    @Test
+    public void testLineRenderedOnce() {
+        SmsCbMessage message = CellBroadcastAlertServiceTest.createMessage(1);
+        CellBroadcastNotificationComposer.Line line = mComposer.getLine(mContext, message);
+        assertEquals(message.getMessageBody(), line.getBody());
+        assertTrue(line.isEmergency());
+        assertSame(line, mComposer.getLine(mContext, message));
+        assertEquals(1, mComposer.getLineCount());
+    }
+
+    @Test
+    public void testLinesBounded() {
+        for (int i = 0; i < CellBroadcastNotificationComposer.MAX_LINES + 10; i++) {
+            mComposer.getLine(mContext, CellBroadcastAlertServiceTest.createMessage(i));
+        }
+        assertEquals(CellBroadcastNotificationComposer.MAX_LINES, mComposer.getLineCount());
+    }
+
+    @Test
+    public void testSilentUpdateSkippedIfUnchanged() {
+        SmsCbMessage message = CellBroadcastAlertServiceTest.createMessage(1);
+        assertTrue(mComposer.shouldNotify(NOTIFICATION_ID, content(message, 1), false));
+        assertFalse(mComposer.shouldNotify(NOTIFICATION_ID, content(message, 1), false));
+
+        // an alerting update is always posted.
+        assertTrue(mComposer.shouldNotify(NOTIFICATION_ID, content(message, 1), true));
+        // so is a changed one.
+        assertTrue(mComposer.shouldNotify(NOTIFICATION_ID, content(message, 2), false));
+    }
+
+    @Test
+    public void testCancelledNotificationPostedAgain() {
+        SmsCbMessage message = CellBroadcastAlertServiceTest.createMessage(1);
+        NotificationManager notificationManager = mock(NotificationManager.class);
+        mComposer.shouldNotify(NOTIFICATION_ID, content(message, 1), true);
+
+        mComposer.cancel(notificationManager, NOTIFICATION_ID);
+        verify(notificationManager).cancel(NOTIFICATION_ID);
+        assertTrue(mComposer.shouldNotify(NOTIFICATION_ID, content(message, 1), false));
+    }
+
+    private static Content content(SmsCbMessage latest, int unreadCount) {
+        return new Content(CHANNEL, "title", "text " + unreadCount, false, unreadCount, latest,
+                false, false);
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.cellbroadcastreceiver.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.android.cellbroadcastreceiver.CellBroadcastOperationExecutor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(JUnit4.class)
+public class CellBroadcastOperationExecutorTest {
+
+    private static final long TIMEOUT_MS = 5000;
+
+    private CellBroadcastOperationExecutor mExecutor;
+
+    @Before
+    public void setUp() {
+        mExecutor = new CellBroadcastOperationExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdown(TIMEOUT_MS);
+    }
+
+    @Test
+    public void testAlertRunsBeforeUserAction() throws Exception {
+        CountDownLatch busy = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(2);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        mExecutor.execute(CellBroadcastOperationExecutor.LANE_USER, () -> {
+            started.countDown();
+            await(busy);
+        });
+        assertTrue(started.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+
+        mExecutor.execute(CellBroadcastOperationExecutor.LANE_USER, () -> {
+            order.add("user");
+            done.countDown();
+        });
+        mExecutor.execute(CellBroadcastOperationExecutor.LANE_ALERT, () -> {
+            order.add("alert");
+            done.countDown();
+        });
+        assertEquals(1, mExecutor.getQueueDepth(CellBroadcastOperationExecutor.LANE_USER));
+        assertEquals(1, mExecutor.getQueueDepth(CellBroadcastOperationExecutor.LANE_ALERT));
+        busy.countDown();
+
+        assertTrue(done.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        assertEquals(List.of("alert", "user"), order);
+    }
+
+    @Test
+    public void testMaintenanceDoesNotDelayAlert() throws Exception {
+        CountDownLatch busy = new CountDownLatch(1);
+        CountDownLatch written = new CountDownLatch(1);
+        mExecutor.execute(CellBroadcastOperationExecutor.LANE_MAINTENANCE, () -> await(busy));
+
+        try {
+            mExecutor.execute(CellBroadcastOperationExecutor.LANE_ALERT, written::countDown);
+            assertTrue(written.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        } finally {
+            busy.countDown();
+        }
+    }
+
+    @Test
+    public void testFullLaneRejectsOperations() throws Exception {
+        CountDownLatch busy = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        mExecutor.execute(CellBroadcastOperationExecutor.LANE_MAINTENANCE, () -> {
+            started.countDown();
+            await(busy);
+        });
+        assertTrue(started.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+
+        try {
+            int capacity = CellBroadcastOperationExecutor.LANE_CAPACITIES[
+                    CellBroadcastOperationExecutor.LANE_MAINTENANCE];
+            for (int i = 0; i < capacity; i++) {
+                assertTrue(mExecutor.execute(CellBroadcastOperationExecutor.LANE_MAINTENANCE,
+                        () -> { }));
+            }
+            assertFalse(mExecutor.execute(CellBroadcastOperationExecutor.LANE_MAINTENANCE,
+                    () -> { }));
+            assertEquals(1, mExecutor.getRejectedCount(
+                    CellBroadcastOperationExecutor.LANE_MAINTENANCE));
+            // other lanes still accept operations
+            assertTrue(mExecutor.execute(CellBroadcastOperationExecutor.LANE_USER, () -> { }));
+        } finally {
+            busy.countDown();
+        }
+    }
+
+    @Test
+    public void testShutdownRunsQueuedOperations() {
+        CountDownLatch done = new CountDownLatch(3);
+        mExecutor.execute(CellBroadcastOperationExecutor.LANE_ALERT, done::countDown);
+        mExecutor.execute(CellBroadcastOperationExecutor.LANE_USER, done::countDown);
+        mExecutor.execute(CellBroadcastOperationExecutor.LANE_MAINTENANCE, done::countDown);
+
+        assertTrue(mExecutor.shutdown(TIMEOUT_MS));
+        assertEquals(0, done.getCount());
+        assertFalse(mExecutor.execute(CellBroadcastOperationExecutor.LANE_ALERT, () -> { }));
+    }
+
+    @Test
+    public void testFailedOperationDoesNotStopLane() throws Exception {
+        CountDownLatch done = new CountDownLatch(1);
+        mExecutor.execute(CellBroadcastOperationExecutor.LANE_USER, () -> {
+            throw new IllegalStateException("failed");
+        });
+        mExecutor.execute(CellBroadcastOperationExecutor.LANE_USER, done::countDown);
+
+        assertTrue(done.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            // done waiting
+        }
+    }
+}
@@ -145,11 +145,13 @@ public class CellBroadcastReceiverTest extends CellBroadcastTest {
     public void testOnReceive_actionCarrierConfigChanged() {
         doReturn(CarrierConfigManager.ACTION_CARRIER_CONFIG_CHANGED).when(mIntent).getAction();
         doNothing().when(mCellBroadcastReceiver).enableLauncher();
+        CellBroadcastSettings.sResourcesCacheByOperator.put("310260", mResources);
         mCellBroadcastReceiver.onReceive(mContext, mIntent);
         verify(mCellBroadcastReceiver).initializeSharedPreference(any(), anyInt());
         verify(mCellBroadcastReceiver).startConfigServiceToEnableChannels();
         verify(mCellBroadcastReceiver).enableLauncher();
         verify(mCellBroadcastReceiver).resetCellBroadcastChannelRanges();
+        assertTrue(CellBroadcastSettings.sResourcesCacheByOperator.isEmpty());
     }
 
     @Test
@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.cellbroadcastreceiver.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+
+import androidx.test.InstrumentationRegistry;
+
+import com.android.cellbroadcastreceiver.CellBroadcastReminderScheduler;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+
+@RunWith(JUnit4.class)
+public class CellBroadcastReminderSchedulerTest {
+
+    private static final long MINUTE = 60 * 1000;
+    private static final int BOOT_COUNT = 3;
+
+    private Context mContext;
+    private File mFile;
+    private TestScheduler mScheduler;
+
+    /** Records the alarm instead of setting it. */
+    private static class TestScheduler extends CellBroadcastReminderScheduler {
+        long mAlarm = -1;
+        boolean mVibrate;
+        int mAlarmCount;
+
+        TestScheduler(Context context, File file, int bootCount) {
+            super(context, file, bootCount);
+        }
+
+        @Override
+        protected void setAlarm(long triggerTime, boolean vibrate) {
+            mAlarm = triggerTime;
+            mVibrate = vibrate;
+            mAlarmCount++;
+        }
+
+        @Override
+        protected void cancelAlarm() {
+            mAlarm = -1;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        mFile = new File(mContext.getCacheDir(), "test_alert_reminders");
+        mFile.delete();
+        mScheduler = new TestScheduler(mContext, mFile, BOOT_COUNT);
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    @Test
+    public void testOneAlarmForTheEarliestReminder() {
+        mScheduler.schedule(1000, 1, 15 * MINUTE, 15 * MINUTE, false, 0);
+        assertEquals(15 * MINUTE, mScheduler.mAlarm);
+
+        mScheduler.schedule(2000, 2, 2 * MINUTE, 0, true, 0);
+        assertEquals(2 * MINUTE, mScheduler.mAlarm);
+        assertTrue(mScheduler.mVibrate);
+        assertEquals(2, mScheduler.size());
+
+        // the reminder of the second alert is played once, the first one is kept.
+        assertEquals(1, mScheduler.onAlarm(2 * MINUTE, 15 * MINUTE, false));
+        assertEquals(1, mScheduler.size());
+        assertEquals(15 * MINUTE, mScheduler.mAlarm);
+        assertFalse(mScheduler.mVibrate);
+    }
+
+    @Test
+    public void testRemindersDueTogetherAreBatched() {
+        mScheduler.schedule(1000, 1, 15 * MINUTE, 15 * MINUTE, false, 0);
+        mScheduler.schedule(2000, 2, 15 * MINUTE, 15 * MINUTE, false, 30 * 1000);
+        int alarmCount = mScheduler.mAlarmCount;
+
+        assertEquals(2, mScheduler.onAlarm(15 * MINUTE, 15 * MINUTE, false));
+        assertEquals(30 * MINUTE, mScheduler.mAlarm);
+        assertEquals(alarmCount + 1, mScheduler.mAlarmCount);
+    }
+
+    @Test
+    public void testNextRemindersFollowCurrentSettings() {
+        mScheduler.schedule(1000, 1, 2 * MINUTE, 15 * MINUTE, false, 0);
+        mScheduler.schedule(2000, 2, 10 * MINUTE, 15 * MINUTE, false, 0);
+
+        // the interval and vibration were changed to 5 minutes with vibration.
+        assertEquals(1, mScheduler.onAlarm(2 * MINUTE, 5 * MINUTE, true));
+        assertEquals(7 * MINUTE, mScheduler.mAlarm);
+        assertTrue(mScheduler.mVibrate);
+
+        // the reminders were turned off, the reminders which are due are not repeated.
+        assertEquals(1, mScheduler.onAlarm(7 * MINUTE, 0, true));
+        assertEquals(1, mScheduler.size());
+        assertEquals(10 * MINUTE, mScheduler.mAlarm);
+        assertEquals(1, mScheduler.onAlarm(10 * MINUTE, 0, true));
+        assertEquals(0, mScheduler.size());
+        assertEquals(-1, mScheduler.mAlarm);
+    }
+
+    @Test
+    public void testAlarmNotSetAgainIfUnchanged() {
+        mScheduler.schedule(1000, 1, 2 * MINUTE, 0, false, 0);
+        mScheduler.schedule(2000, 1, 15 * MINUTE, 15 * MINUTE, false, 0);
+        assertEquals(1, mScheduler.mAlarmCount);
+    }
+
+    @Test
+    public void testCancelAlert() {
+        mScheduler.schedule(1000, 1, 2 * MINUTE, 0, false, 0);
+        mScheduler.schedule(2000, 2, 15 * MINUTE, 15 * MINUTE, false, 0);
+
+        mScheduler.cancel(1000);
+        assertEquals(1, mScheduler.size());
+        assertEquals(15 * MINUTE, mScheduler.mAlarm);
+
+        mScheduler.cancelAll();
+        assertEquals(0, mScheduler.size());
+        assertEquals(-1, mScheduler.mAlarm);
+    }
+
+    @Test
+    public void testScheduleSurvivesProcessRestart() {
+        mScheduler.schedule(1000, 1, 2 * MINUTE, 0, true, 0);
+        mScheduler.schedule(2000, 2, 15 * MINUTE, 15 * MINUTE, false, 0);
+        mScheduler.save();
+
+        TestScheduler restarted = new TestScheduler(mContext, mFile, BOOT_COUNT);
+        assertEquals(2, restarted.size());
+        assertEquals(1, restarted.onAlarm(2 * MINUTE, 15 * MINUTE, false));
+        assertEquals(15 * MINUTE, restarted.mAlarm);
+    }
+
+    @Test
+    public void testScheduleOfPreviousBootDropped() {
+        mScheduler.schedule(1000, 1, 2 * MINUTE, 0, true, 0);
+        mScheduler.save();
+
+        TestScheduler rebooted = new TestScheduler(mContext, mFile, BOOT_COUNT + 1);
+        assertEquals(0, rebooted.size());
+    }
+}
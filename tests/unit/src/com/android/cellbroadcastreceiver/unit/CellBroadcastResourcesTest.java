@@ -25,6 +25,8 @@ import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 import android.content.Context;
 import android.content.res.Configuration;
@@ -64,6 +66,7 @@ public class CellBroadcastResourcesTest {
         String stringResultToReturn = "";
         doReturn(stringResultToReturn).when(mResources).getString(anyInt());
         CellBroadcastChannelManager.clearAllCellBroadcastChannelRanges();
+        CellBroadcastResources.resetSmsSenderAddressCache();
     }
 
     @Test
@@ -240,6 +243,8 @@ public class CellBroadcastResourcesTest {
                     CellBroadcastResources.getSmsSenderAddressResourceEnglishString(mContext,
                             message));
         }
+        // the English strings are resolved once and reused for all later messages
+        verify(mContext, times(1)).createConfigurationContext(any());
     }
 
     @Test
@@ -43,7 +43,11 @@ import android.telephony.SubscriptionManager;
 import android.telephony.TelephonyManager;
 import android.test.ServiceTestCase;
 
+import com.android.cellbroadcastreceiver.CellBroadcastAlertDisplayModel;
 import com.android.cellbroadcastreceiver.CellBroadcastChannelManager;
+import com.android.cellbroadcastreceiver.CellBroadcastDuplicateCache;
+import com.android.cellbroadcastreceiver.CellBroadcastNotificationChannelRegistry;
+import com.android.cellbroadcastreceiver.CellBroadcastNotificationComposer;
 import com.android.cellbroadcastreceiver.CellBroadcastSettings;
 import com.android.internal.telephony.ISub;
 
@@ -262,6 +266,10 @@ public abstract class CellBroadcastServiceTestCase<T extends Service> extends Se
         setContext(mContext);
         CellBroadcastSettings.resetResourcesCache();
         CellBroadcastChannelManager.clearAllCellBroadcastChannelRanges();
+        CellBroadcastDuplicateCache.getInstance(mContext).clear();
+        CellBroadcastNotificationChannelRegistry.getInstance().clear();
+        CellBroadcastNotificationComposer.getInstance().clear();
+        CellBroadcastAlertDisplayModel.clearCache();
     }
 
     @After
@@ -293,6 +293,39 @@ public class CellBroadcastSettingsTest extends
         assertEquals(mnc, captorConfig.getValue().mnc);
     }
 
+    @Test
+    public void testGetResourcesByOperatorAndLanguage() {
+        Context mockContext = mock(Context.class);
+        Resources mockResources = mock(Resources.class);
+        doReturn(mockResources).when(mockContext).getResources();
+        doReturn(new Configuration()).when(mockResources).getConfiguration();
+        Context mockContext2 = mock(Context.class);
+        Resources mockResources2 = mock(Resources.class);
+        doReturn(mockResources2).when(mockContext2).getResources();
+        doReturn(mockContext2).when(mockContext).createConfigurationContext(any());
+        ArgumentCaptor<Configuration> captorConfig = ArgumentCaptor.forClass(Configuration.class);
+
+        assertSame(mockResources2, CellBroadcastSettings.getResourcesByOperatorAndLanguage(
+                mockContext, SubscriptionManager.DEFAULT_SUBSCRIPTION_ID, "", "fr"));
+        verify(mockContext, times(1)).createConfigurationContext(captorConfig.capture());
+        assertEquals(Locale.FRENCH.getLanguage(),
+                captorConfig.getValue().getLocales().get(0).getLanguage());
+
+        // the localized resources are reused.
+        assertSame(mockResources2, CellBroadcastSettings.getResourcesByOperatorAndLanguage(
+                mockContext, SubscriptionManager.DEFAULT_SUBSCRIPTION_ID, "", "fr"));
+        verify(mockContext, times(1)).createConfigurationContext(any());
+
+        CellBroadcastSettings.getResourcesByOperatorAndLanguage(mockContext,
+                SubscriptionManager.DEFAULT_SUBSCRIPTION_ID, "", "he");
+        verify(mockContext, times(2)).createConfigurationContext(any());
+
+        CellBroadcastSettings.resetResourcesCache();
+        CellBroadcastSettings.getResourcesByOperatorAndLanguage(mockContext,
+                SubscriptionManager.DEFAULT_SUBSCRIPTION_ID, "", "fr");
+        verify(mockContext, times(3)).createConfigurationContext(any());
+    }
+
     public void waitUntilDialogOpens(Runnable r, long maxWaitMs) {
         long waitTime = 0;
         while (waitTime < maxWaitMs) {
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.cellbroadcastreceiver.unit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.os.SystemClock;
+import android.speech.tts.TextToSpeech;
+
+import androidx.test.InstrumentationRegistry;
+
+import com.android.cellbroadcastreceiver.CellBroadcastSpeechEngine;
+import com.android.cellbroadcastreceiver.R;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class CellBroadcastSpeechEngineTest {
+
+    private static final long INIT_TIMEOUT_MS = 10000;
+
+    private Context mContext;
+    private Resources mResources;
+    private CellBroadcastSpeechEngine mEngine;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        mResources = mock(Resources.class);
+        mEngine = new CellBroadcastSpeechEngine();
+    }
+
+    @After
+    public void tearDown() {
+        doReturn(false).when(mResources).getBoolean(R.bool.warm_up_alert_speech);
+        mEngine.warmUp(mContext, mResources, true);
+    }
+
+    @Test
+    public void testNotBoundWhenWarmUpDisabled() {
+        doReturn(false).when(mResources).getBoolean(R.bool.warm_up_alert_speech);
+        mEngine.warmUp(mContext, mResources, true);
+        assertFalse(mEngine.isReady());
+        assertNull(mEngine.acquire());
+    }
+
+    @Test
+    public void testNotBoundWhenSpeechDisabled() {
+        doReturn(true).when(mResources).getBoolean(R.bool.warm_up_alert_speech);
+        mEngine.warmUp(mContext, mResources, false);
+        assertFalse(mEngine.isReady());
+        assertNull(mEngine.acquire());
+    }
+
+    @Test
+    public void testEngineLentToOneAlertAtATime() throws Exception {
+        doReturn(true).when(mResources).getBoolean(R.bool.warm_up_alert_speech);
+        mEngine.warmUp(mContext, mResources, true);
+        long deadline = SystemClock.elapsedRealtime() + INIT_TIMEOUT_MS;
+        while (!mEngine.isReady() && SystemClock.elapsedRealtime() < deadline) {
+            Thread.sleep(50);
+        }
+        // the device might have no text-to-speech engine.
+        assumeTrue(mEngine.isReady());
+
+        TextToSpeech tts = mEngine.acquire();
+        assertNotNull(tts);
+        assertNull(mEngine.acquire());
+        mEngine.release(tts);
+        assertSame(tts, mEngine.acquire());
+
+        // disabling the warm-up while the engine is lent unbinds it once returned.
+        doReturn(false).when(mResources).getBoolean(R.bool.warm_up_alert_speech);
+        mEngine.warmUp(mContext, mResources, true);
+        mEngine.release(tts);
+        assertFalse(mEngine.isReady());
+        assertNull(mEngine.acquire());
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.cellbroadcastreceiver.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import android.telephony.SmsCbLocation;
+import android.telephony.SmsCbMessage;
+
+import com.android.cellbroadcastreceiver.CellBroadcastOperationExecutor;
+import com.android.cellbroadcastreceiver.CellBroadcastUnreadStore;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(JUnit4.class)
+public class CellBroadcastUnreadStoreTest {
+
+    private static final long RECEIVED_TIME = 1000000L;
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws Exception {
+        mFile = File.createTempFile("unread_alerts", null);
+        mFile.delete();
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    @Test
+    public void testAddAndRemove() {
+        CellBroadcastUnreadStore store = new CellBroadcastUnreadStore();
+        SmsCbMessage first = getFakeMessage(1, RECEIVED_TIME);
+        // received in the same millisecond
+        SmsCbMessage second = getFakeMessage(2, RECEIVED_TIME);
+        SmsCbMessage third = getFakeMessage(3, RECEIVED_TIME + 1);
+        store.add(first);
+        store.add(second);
+
+        assertEquals(List.of(first, second, third), store.add(third));
+        assertEquals(third, store.getLatest());
+
+        assertEquals(List.of(first, third), store.remove(second));
+        assertEquals(List.of(first), store.remove(third));
+        assertEquals(first, store.getLatest());
+        // removing an alert which is not stored changes nothing
+        assertEquals(List.of(first), store.remove(third));
+
+        store.clear();
+        assertEquals(0, store.getSnapshot().size());
+        assertNull(store.getLatest());
+    }
+
+    @Test
+    public void testAddAgainMovesToEnd() {
+        CellBroadcastUnreadStore store = new CellBroadcastUnreadStore();
+        SmsCbMessage first = getFakeMessage(1, RECEIVED_TIME);
+        SmsCbMessage second = getFakeMessage(2, RECEIVED_TIME + 1);
+        store.add(first);
+        store.add(second);
+
+        assertEquals(List.of(second, first), store.add(first));
+    }
+
+    @Test
+    public void testSnapshotIsImmutable() {
+        CellBroadcastUnreadStore store = new CellBroadcastUnreadStore();
+        SmsCbMessage first = getFakeMessage(1, RECEIVED_TIME);
+        List<SmsCbMessage> snapshot = store.add(first);
+        store.add(getFakeMessage(2, RECEIVED_TIME + 1));
+
+        assertEquals(List.of(first), snapshot);
+        assertThrows(UnsupportedOperationException.class,
+                () -> snapshot.add(getFakeMessage(3, RECEIVED_TIME + 2)));
+    }
+
+    @Test
+    public void testOldestIsForgottenWhenFull() {
+        CellBroadcastUnreadStore store = new CellBroadcastUnreadStore();
+        int count = CellBroadcastUnreadStore.MAX_MESSAGES + 5;
+        for (int i = 0; i < count; i++) {
+            store.add(getFakeMessage(i, RECEIVED_TIME + i));
+        }
+
+        List<SmsCbMessage> snapshot = store.getSnapshot();
+        assertEquals(CellBroadcastUnreadStore.MAX_MESSAGES, snapshot.size());
+        assertEquals(5, snapshot.get(0).getSerialNumber());
+        assertEquals(count - 1, store.getLatest().getSerialNumber());
+    }
+
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        CellBroadcastUnreadStore store = new CellBroadcastUnreadStore();
+        store.loadFile(mFile);
+        store.add(getFakeMessage(1, RECEIVED_TIME));
+        store.add(getFakeMessage(2, RECEIVED_TIME + 1));
+        store.save();
+
+        CellBroadcastUnreadStore restored = new CellBroadcastUnreadStore();
+        // alerts added before the file was read go after the restored ones
+        restored.add(getFakeMessage(3, RECEIVED_TIME + 2));
+        // the file is read in the background
+        restored.attachFile(mFile);
+        waitForUserLane();
+
+        List<SmsCbMessage> snapshot = restored.getSnapshot();
+        assertEquals(3, snapshot.size());
+        assertEquals(1, snapshot.get(0).getSerialNumber());
+        assertEquals("AMBER Alert: 1", snapshot.get(0).getMessageBody());
+        assertEquals(RECEIVED_TIME, snapshot.get(0).getReceivedTime());
+        assertEquals(2, snapshot.get(1).getSerialNumber());
+        assertEquals(3, snapshot.get(2).getSerialNumber());
+    }
+
+    private static void waitForUserLane() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        CellBroadcastOperationExecutor.getInstance().execute(
+                CellBroadcastOperationExecutor.LANE_USER, latch::countDown);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+
+    private static SmsCbMessage getFakeMessage(int serial, long receivedTime) {
+        return new SmsCbMessage(1, 1, serial, new SmsCbLocation(), 4379, "en", 0,
+                "AMBER Alert: " + serial, 3, null, null, 0, null, receivedTime, 1, 0);
+    }
+}
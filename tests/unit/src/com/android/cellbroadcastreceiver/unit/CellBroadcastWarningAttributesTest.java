@@ -0,0 +1,288 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.cellbroadcastreceiver.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.provider.Telephony;
+import android.telephony.SmsCbCmasInfo;
+import android.telephony.SmsCbEtwsInfo;
+
+import com.android.cellbroadcastreceiver.CellBroadcastDatabaseHelper;
+import com.android.cellbroadcastreceiver.CellBroadcastWarningAttributes;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class CellBroadcastWarningAttributesTest {
+
+    private static final String UNPACKED_TABLE_NAME = "broadcasts_unpacked";
+
+    private static final int MIXED_ROWS = 3000;
+
+    @Test
+    public void testPackCmasInfo() {
+        SmsCbCmasInfo cmasInfo = new SmsCbCmasInfo(SmsCbCmasInfo.CMAS_CLASS_EXTREME_THREAT,
+                SmsCbCmasInfo.CMAS_CATEGORY_OTHER, SmsCbCmasInfo.CMAS_RESPONSE_TYPE_NONE,
+                SmsCbCmasInfo.CMAS_SEVERITY_EXTREME, SmsCbCmasInfo.CMAS_URGENCY_UNKNOWN,
+                SmsCbCmasInfo.CMAS_CERTAINTY_LIKELY);
+
+        int bits = CellBroadcastWarningAttributes.pack(null, cmasInfo);
+
+        assertNull(CellBroadcastWarningAttributes.getEtwsInfo(bits));
+        SmsCbCmasInfo unpacked = CellBroadcastWarningAttributes.getCmasInfo(bits);
+        assertEquals(cmasInfo.getMessageClass(), unpacked.getMessageClass());
+        assertEquals(cmasInfo.getCategory(), unpacked.getCategory());
+        assertEquals(cmasInfo.getResponseType(), unpacked.getResponseType());
+        assertEquals(cmasInfo.getSeverity(), unpacked.getSeverity());
+        assertEquals(cmasInfo.getUrgency(), unpacked.getUrgency());
+        assertEquals(cmasInfo.getCertainty(), unpacked.getCertainty());
+    }
+
+    @Test
+    public void testPackEtwsInfo() {
+        SmsCbEtwsInfo etwsInfo = new SmsCbEtwsInfo(SmsCbEtwsInfo.ETWS_WARNING_TYPE_TSUNAMI,
+                false, false, false, null);
+
+        int bits = CellBroadcastWarningAttributes.pack(etwsInfo, null);
+
+        assertNull(CellBroadcastWarningAttributes.getCmasInfo(bits));
+        assertEquals(SmsCbEtwsInfo.ETWS_WARNING_TYPE_TSUNAMI,
+                CellBroadcastWarningAttributes.getEtwsInfo(bits).getWarningType());
+        assertTrue(CellBroadcastWarningAttributes.hasField(bits,
+                CellBroadcastWarningAttributes.FIELD_ETWS_WARNING_TYPE));
+        assertFalse(CellBroadcastWarningAttributes.hasField(bits,
+                CellBroadcastWarningAttributes.FIELD_CMAS_SEVERITY));
+    }
+
+    @Test
+    public void testPackStoresOutOfRangeValuesAsUnknown() {
+        SmsCbCmasInfo cmasInfo = new SmsCbCmasInfo(SmsCbCmasInfo.CMAS_CLASS_UNKNOWN, 100,
+                SmsCbCmasInfo.CMAS_RESPONSE_TYPE_SHELTER, SmsCbCmasInfo.CMAS_SEVERITY_SEVERE,
+                SmsCbCmasInfo.CMAS_URGENCY_EXPECTED, SmsCbCmasInfo.CMAS_CERTAINTY_OBSERVED);
+
+        SmsCbCmasInfo unpacked = CellBroadcastWarningAttributes.getCmasInfo(
+                CellBroadcastWarningAttributes.pack(null, cmasInfo));
+
+        // a CMAS message of unknown class is still a CMAS message
+        assertEquals(SmsCbCmasInfo.CMAS_CLASS_UNKNOWN, unpacked.getMessageClass());
+        assertEquals(SmsCbCmasInfo.CMAS_CATEGORY_UNKNOWN, unpacked.getCategory());
+        assertEquals(SmsCbCmasInfo.CMAS_RESPONSE_TYPE_SHELTER, unpacked.getResponseType());
+    }
+
+    @Test
+    public void testPackContentValues() {
+        ContentValues values = new ContentValues();
+        values.put(Telephony.CellBroadcasts.MESSAGE_BODY, "body");
+        // values copied from a cursor are strings
+        values.put(Telephony.CellBroadcasts.CMAS_MESSAGE_CLASS, "1");
+        values.put(Telephony.CellBroadcasts.CMAS_SEVERITY, "0");
+        values.putNull(Telephony.CellBroadcasts.ETWS_WARNING_TYPE);
+
+        CellBroadcastWarningAttributes.packContentValues(values);
+
+        assertEquals(2, values.size());
+        assertFalse(values.containsKey(Telephony.CellBroadcasts.CMAS_MESSAGE_CLASS));
+        int bits = values.getAsInteger(CellBroadcastDatabaseHelper.WARNING_ATTRIBUTES);
+        SmsCbCmasInfo cmasInfo = CellBroadcastWarningAttributes.getCmasInfo(bits);
+        assertEquals(1, cmasInfo.getMessageClass());
+        assertEquals(0, cmasInfo.getSeverity());
+        assertEquals(SmsCbCmasInfo.CMAS_URGENCY_UNKNOWN, cmasInfo.getUrgency());
+        assertNull(CellBroadcastWarningAttributes.getEtwsInfo(bits));
+
+        // messages without warning info store nothing
+        values.clear();
+        values.put(Telephony.CellBroadcasts.CMAS_SEVERITY, "0");
+        CellBroadcastWarningAttributes.packContentValues(values);
+        assertEquals(0, values.size());
+    }
+
+    @Test
+    public void testViewUnpacksColumns() {
+        SQLiteDatabase db = SQLiteDatabase.create(null);
+        try {
+            createPackedTable(db);
+            ContentValues values = new ContentValues();
+            values.put(CellBroadcastDatabaseHelper.WARNING_ATTRIBUTES,
+                    CellBroadcastWarningAttributes.pack(new SmsCbEtwsInfo(
+                            SmsCbEtwsInfo.ETWS_WARNING_TYPE_EARTHQUAKE, false, false, false,
+                            null), null));
+            db.insert(CellBroadcastDatabaseHelper.TABLE_NAME, null, values);
+            db.insert(CellBroadcastDatabaseHelper.TABLE_NAME,
+                    Telephony.CellBroadcasts.MESSAGE_BODY, new ContentValues());
+
+            try (Cursor cursor = db.query(CellBroadcastDatabaseHelper.VIEW_NAME,
+                    CellBroadcastDatabaseHelper.QUERY_COLUMNS, null, null, null, null,
+                    Telephony.CellBroadcasts._ID)) {
+                assertEquals(2, cursor.getCount());
+                cursor.moveToFirst();
+                assertEquals(SmsCbEtwsInfo.ETWS_WARNING_TYPE_EARTHQUAKE, cursor.getInt(
+                        cursor.getColumnIndexOrThrow(Telephony.CellBroadcasts.ETWS_WARNING_TYPE)));
+                for (int field = CellBroadcastWarningAttributes.FIELD_CMAS_MESSAGE_CLASS;
+                        field < CellBroadcastWarningAttributes.COLUMNS.length; field++) {
+                    assertTrue(cursor.isNull(cursor.getColumnIndexOrThrow(
+                            CellBroadcastWarningAttributes.COLUMNS[field])));
+                }
+                cursor.moveToNext();
+                for (String column : CellBroadcastWarningAttributes.COLUMNS) {
+                    assertTrue(cursor.isNull(cursor.getColumnIndexOrThrow(column)));
+                }
+            }
+        } finally {
+            db.close();
+        }
+    }
+
+    /**
+     * Compare the size of the warning attributes stored in one column for each attribute, and
+     * stored packed, and check that both layouts decode the same attributes.
+     */
+    @Test
+    public void testPackedRowsSmaller() {
+        SQLiteDatabase unpackedDb = SQLiteDatabase.create(null);
+        SQLiteDatabase packedDb = SQLiteDatabase.create(null);
+        try {
+            unpackedDb.execSQL(CellBroadcastDatabaseHelper.getStringForCellBroadcastTableCreation(
+                    UNPACKED_TABLE_NAME).replace(CellBroadcastDatabaseHelper.WARNING_ATTRIBUTES
+                    + " INTEGER,", String.join(" INTEGER,",
+                    CellBroadcastWarningAttributes.COLUMNS) + " INTEGER,"));
+            createPackedTable(packedDb);
+
+            unpackedDb.beginTransaction();
+            packedDb.beginTransaction();
+            try {
+                for (int i = 0; i < MIXED_ROWS; i++) {
+                    ContentValues values = getMixedRow(i);
+                    unpackedDb.insert(UNPACKED_TABLE_NAME, null, values);
+                    CellBroadcastWarningAttributes.packContentValues(values);
+                    packedDb.insert(CellBroadcastDatabaseHelper.TABLE_NAME, null, values);
+                }
+                unpackedDb.setTransactionSuccessful();
+                packedDb.setTransactionSuccessful();
+            } finally {
+                unpackedDb.endTransaction();
+                packedDb.endTransaction();
+            }
+
+            long unpackedPages = DatabaseUtils.longForQuery(unpackedDb, "PRAGMA page_count", null);
+            long packedPages = DatabaseUtils.longForQuery(packedDb, "PRAGMA page_count", null);
+            assertTrue(packedPages < unpackedPages);
+
+            try (Cursor cursor = unpackedDb.query(UNPACKED_TABLE_NAME,
+                    CellBroadcastDatabaseHelper.QUERY_COLUMNS, null, null, null, null, null)) {
+                cursor.moveToFirst();
+                assertEquals(MIXED_ROWS * 2 / 3, decodeUnpacked(cursor));
+            }
+            try (Cursor cursor = packedDb.query(CellBroadcastDatabaseHelper.TABLE_NAME,
+                    null, null, null, null, null, null)) {
+                cursor.moveToFirst();
+                assertEquals(MIXED_ROWS * 2 / 3, decodePacked(cursor));
+            }
+        } finally {
+            unpackedDb.close();
+            packedDb.close();
+        }
+    }
+
+    private static void createPackedTable(SQLiteDatabase db) {
+        db.execSQL(CellBroadcastDatabaseHelper.getStringForCellBroadcastTableCreation(
+                CellBroadcastDatabaseHelper.TABLE_NAME));
+        CellBroadcastDatabaseHelper.createView(db);
+    }
+
+    /**
+     * @return a row of a plain, an ETWS or a CMAS message
+     */
+    private static ContentValues getMixedRow(int i) {
+        ContentValues values = new ContentValues();
+        values.put(Telephony.CellBroadcasts.SERVICE_CATEGORY, 4370 + i % 3);
+        values.put(Telephony.CellBroadcasts.MESSAGE_BODY, "Alert message " + i);
+        values.put(Telephony.CellBroadcasts.DELIVERY_TIME, 1_700_000_000_000L + i);
+        switch (i % 3) {
+            case 1:
+                values.put(Telephony.CellBroadcasts.ETWS_WARNING_TYPE,
+                        SmsCbEtwsInfo.ETWS_WARNING_TYPE_EARTHQUAKE_AND_TSUNAMI);
+                break;
+            case 2:
+                values.put(Telephony.CellBroadcasts.CMAS_MESSAGE_CLASS,
+                        SmsCbCmasInfo.CMAS_CLASS_SEVERE_THREAT);
+                values.put(Telephony.CellBroadcasts.CMAS_CATEGORY,
+                        SmsCbCmasInfo.CMAS_CATEGORY_UNKNOWN);
+                values.put(Telephony.CellBroadcasts.CMAS_RESPONSE_TYPE,
+                        SmsCbCmasInfo.CMAS_RESPONSE_TYPE_UNKNOWN);
+                values.put(Telephony.CellBroadcasts.CMAS_SEVERITY,
+                        SmsCbCmasInfo.CMAS_SEVERITY_SEVERE);
+                values.put(Telephony.CellBroadcasts.CMAS_URGENCY,
+                        SmsCbCmasInfo.CMAS_URGENCY_EXPECTED);
+                values.put(Telephony.CellBroadcasts.CMAS_CERTAINTY,
+                        SmsCbCmasInfo.CMAS_CERTAINTY_LIKELY);
+                break;
+            default:
+                break;
+        }
+        return values;
+    }
+
+    private static int decodeUnpacked(Cursor cursor) {
+        int[] indexes = new int[CellBroadcastWarningAttributes.COLUMNS.length];
+        for (int field = 0; field < indexes.length; field++) {
+            indexes[field] = cursor.getColumnIndex(CellBroadcastWarningAttributes.COLUMNS[field]);
+        }
+        int decoded = 0;
+        do {
+            if (!cursor.isNull(indexes[CellBroadcastWarningAttributes.FIELD_ETWS_WARNING_TYPE])) {
+                new SmsCbEtwsInfo(cursor.getInt(indexes[0]), false, false, false, null);
+                decoded++;
+            }
+            if (!cursor.isNull(indexes[CellBroadcastWarningAttributes.FIELD_CMAS_MESSAGE_CLASS])) {
+                int[] values = new int[indexes.length];
+                for (int field = 1; field < indexes.length; field++) {
+                    values[field] = cursor.isNull(indexes[field]) ? -1
+                            : cursor.getInt(indexes[field]);
+                }
+                new SmsCbCmasInfo(values[1], values[2], values[3], values[4], values[5],
+                        values[6]);
+                decoded++;
+            }
+        } while (cursor.moveToNext());
+        return decoded;
+    }
+
+    private static int decodePacked(Cursor cursor) {
+        int index = cursor.getColumnIndex(CellBroadcastDatabaseHelper.WARNING_ATTRIBUTES);
+        int decoded = 0;
+        do {
+            int bits = cursor.isNull(index) ? 0 : cursor.getInt(index);
+            if (CellBroadcastWarningAttributes.getEtwsInfo(bits) != null) {
+                decoded++;
+            }
+            if (CellBroadcastWarningAttributes.getCmasInfo(bits) != null) {
+                decoded++;
+            }
+        } while (cursor.moveToNext());
+        return decoded;
+    }
+}